@@ -0,0 +1,348 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.MailboxInfo;
+import com.yahoo.imapnio.async.data.ImapResponseValues;
+import com.yahoo.imapnio.async.data.MailboxFlagSnapshot;
+import com.yahoo.imapnio.async.data.MailboxSyncDelta;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ExamineFolderCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.SelectFolderCommand;
+import com.yahoo.imapnio.async.request.UidFetchCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+/**
+ * Synchronizes a mailbox without mod-sequences, for servers or mailboxes not supporting CONDSTORE (RFC7162). The mailbox is listed with
+ * UID FETCH 1:* (UID FLAGS), and each FETCH response is parsed as it arrives into the primitive arrays of a {@link MailboxFlagSnapshot} and then
+ * dropped, so the memory taken by a listing is a UID and a flag mask per message rather than the responses of the whole mailbox. The snapshot is
+ * merge-joined with the snapshot of the stored state to produce the same {@link MailboxSyncDelta} as {@link QResyncMailboxSynchronizer}, with
+ * mod-sequences of -1.
+ *
+ * <p>
+ * When there is no stored state or UIDVALIDITY changed, all messages are reported as new. When the stored state has no flag snapshot, for example
+ * it was synchronized with QRESYNC, every message still in the mailbox is reported with its flags.
+ * </p>
+ */
+public final class FlagSnapshotMailboxSynchronizer {
+
+    /** UIDs of all messages in the mailbox. */
+    private static final String ALL_UIDS = "1:*";
+
+    /** Data items fetched for each message. */
+    private static final String FETCH_ITEMS = "UID FLAGS";
+
+    /** Initial capacity of the flag updates. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Whether the mailbox is opened read-only, with EXAMINE instead of SELECT. */
+    private final boolean isReadOnly;
+
+    /** Mapper to parse the mailbox information. */
+    @Nonnull
+    private final ImapResponseMapper mapper = new ImapResponseMapper();
+
+    /**
+     * Initializes a {@link FlagSnapshotMailboxSynchronizer} object opening the mailbox with SELECT.
+     */
+    public FlagSnapshotMailboxSynchronizer() {
+        this(false);
+    }
+
+    /**
+     * Initializes a {@link FlagSnapshotMailboxSynchronizer} object.
+     *
+     * @param isReadOnly true to open the mailbox with EXAMINE, false with SELECT
+     */
+    public FlagSnapshotMailboxSynchronizer(final boolean isReadOnly) {
+        this.isReadOnly = isReadOnly;
+    }
+
+    /**
+     * Opens the given mailbox and computes the changes since the given state. The mailbox stays selected on the session afterwards.
+     *
+     * @param session the session with no mailbox or another mailbox selected
+     * @param folderName the mailbox name
+     * @param state the state last synchronized, null if the mailbox was never synchronized
+     * @return the future of the changes, including the advanced state with its flag snapshot
+     * @throws ImapAsyncClientException when the command cannot be executed on the session
+     */
+    public ImapFuture<MailboxSyncDelta> sync(@Nonnull final ImapAsyncSession session, @Nonnull final String folderName,
+            @Nullable final MailboxSyncState state) throws ImapAsyncClientException {
+        final ImapFuture<MailboxSyncDelta> future = new ImapFuture<MailboxSyncDelta>();
+        final ImapRequest openCmd = isReadOnly ? new ExamineFolderCommand(folderName) : new SelectFolderCommand(folderName);
+        session.execute(openCmd).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse response) {
+                try {
+                    onOpened(session, state, response, future);
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Lists the mailbox after it is opened.
+     *
+     * @param session the session
+     * @param state the state last synchronized
+     * @param response response of SELECT or EXAMINE
+     * @param future future of the changes
+     * @throws ImapAsyncClientException when the mailbox cannot be opened, or listing cannot be executed
+     * @throws ParsingException when the responses cannot be parsed
+     */
+    private void onOpened(@Nonnull final ImapAsyncSession session, @Nullable final MailboxSyncState state, @Nonnull final ImapAsyncResponse response,
+            @Nonnull final ImapFuture<MailboxSyncDelta> future) throws ImapAsyncClientException, ParsingException {
+        final MailboxInfo info = mapper.readValue(QResyncMailboxSynchronizer.toOkResponses(response), MailboxInfo.class);
+        if (info.total == 0) {
+            future.done(merge(state, info, MailboxFlagSnapshot.EMPTY));
+            return;
+        }
+
+        // the keyword table is rebuilt from the keywords the messages have now, the stored snapshot is translated to it when merging
+        final SnapshotCollector collector = new SnapshotCollector(new MailboxFlagSnapshot.Builder(null, info.total));
+        session.execute(new SnapshotFetchCommand(collector)).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse fetchResponse) {
+                try {
+                    QResyncMailboxSynchronizer.toOkResponses(fetchResponse);
+                    if (collector.failure != null) {
+                        throw collector.failure;
+                    }
+                    future.done(merge(state, info, collector.builder.build()));
+                } catch (final ImapAsyncClientException e) {
+                    future.done(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+    }
+
+    /**
+     * Merge-joins the snapshot of the stored state with the current snapshot, both in ascending UID order. The flags of the stored snapshot are
+     * translated to the keyword table of the current snapshot, a keyword no message has anymore counting as a change.
+     *
+     * @param state the state last synchronized
+     * @param info the mailbox information
+     * @param current the current snapshot
+     * @return the changes since the given state
+     * @throws ImapAsyncClientException when a UID is not valid
+     */
+    private static MailboxSyncDelta merge(@Nullable final MailboxSyncState state, @Nonnull final MailboxInfo info,
+            @Nonnull final MailboxFlagSnapshot current) throws ImapAsyncClientException {
+        final MessageNumberRangeSet uids = current.getUids();
+        final boolean isSameMailbox = state != null && state.getUidValidity() == info.uidvalidity;
+        final long lastUidNext = isSameMailbox ? state.getUidNext() : 1;
+        final long uidNext = (info.uidnext > 0) ? info.uidnext : Math.max(lastUidNext, uids.last() + 1);
+        final long highestModSeq = (info.highestmodseq > 0) ? info.highestmodseq : -1;
+        final MailboxSyncState newState = new MailboxSyncState(info.uidvalidity, uidNext, highestModSeq, uids, current);
+
+        // without a comparable previous snapshot, UIDs are still joined when the mailbox is the same, but flags are all reported
+        final MailboxFlagSnapshot previous;
+        final boolean isFlagKnown;
+        if (!isSameMailbox) {
+            previous = MailboxFlagSnapshot.EMPTY;
+            isFlagKnown = false;
+        } else if (state.getFlagSnapshot() != null) {
+            previous = state.getFlagSnapshot();
+            isFlagKnown = true;
+        } else {
+            final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+            for (final PrimitiveIterator.OfLong it = state.getUids().iterator(); it.hasNext();) {
+                builder.add(it.nextLong(), 0);
+            }
+            previous = builder.build();
+            isFlagKnown = false;
+        }
+
+        final long[] keywordBits = previous.getKeywordBits(current);
+        final MessageNumberRangeSet.Builder newUids = new MessageNumberRangeSet.Builder();
+        final MessageNumberRangeSet.Builder vanishedUids = new MessageNumberRangeSet.Builder();
+        long[] updateUids = new long[INITIAL_CAPACITY];
+        long[] updateBits = new long[INITIAL_CAPACITY];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < previous.size() || j < current.size()) {
+            final long previousUid = (i < previous.size()) ? previous.getUid(i) : Long.MAX_VALUE;
+            final long currentUid = (j < current.size()) ? current.getUid(j) : Long.MAX_VALUE;
+            if (previousUid < currentUid) {
+                vanishedUids.add(previousUid);
+                i++;
+                continue;
+            }
+            final boolean isNew = currentUid < previousUid;
+            if (isNew) {
+                newUids.add(currentUid);
+            }
+            if (isNew || !isFlagKnown || !previous.hasSameFlags(i, keywordBits, current.getFlagBits(j), current.getOverflowHash(j))) {
+                if (count == updateUids.length) {
+                    updateUids = Arrays.copyOf(updateUids, count * 2);
+                    updateBits = Arrays.copyOf(updateBits, count * 2);
+                }
+                updateUids[count] = currentUid;
+                updateBits[count] = current.getFlagBits(j);
+                count++;
+            }
+            if (!isNew) {
+                i++;
+            }
+            j++;
+        }
+        return new MailboxSyncDelta(state != null && !isSameMailbox, newUids.build(), vanishedUids.build(), updateUids, updateBits, count, newState);
+    }
+
+    /**
+     * UID FETCH command streaming its responses to a {@link SnapshotCollector}.
+     */
+    private static final class SnapshotFetchCommand extends UidFetchCommand {
+
+        /** Queue receiving the responses. */
+        private ConcurrentLinkedQueue<IMAPResponse> collector;
+
+        /**
+         * Initializes a {@link SnapshotFetchCommand} object.
+         *
+         * @param collector queue receiving the responses
+         */
+        SnapshotFetchCommand(@Nonnull final ConcurrentLinkedQueue<IMAPResponse> collector) {
+            super(ALL_UIDS, FETCH_ITEMS);
+            this.collector = collector;
+        }
+
+        @Override
+        public ConcurrentLinkedQueue<IMAPResponse> getStreamingResponsesQueue() {
+            return collector;
+        }
+
+        @Override
+        public void cleanup() {
+            super.cleanup();
+            this.collector = null;
+        }
+    }
+
+    /**
+     * Response queue parsing FETCH responses into a {@link MailboxFlagSnapshot.Builder} as the session adds them, instead of keeping them. Other
+     * responses, including the tagged response, are kept.
+     */
+    private static final class SnapshotCollector extends ConcurrentLinkedQueue<IMAPResponse> {
+
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** Builder of the snapshot. */
+        private final transient MailboxFlagSnapshot.Builder builder;
+
+        /** First failure parsing a FETCH response, null if none. */
+        private transient ImapAsyncClientException failure;
+
+        /**
+         * Initializes a {@link SnapshotCollector} object.
+         *
+         * @param builder builder of the snapshot
+         */
+        SnapshotCollector(@Nonnull final MailboxFlagSnapshot.Builder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean add(@Nonnull final IMAPResponse response) {
+            if (!response.keyEquals("FETCH")) {
+                return super.add(response);
+            }
+            try {
+                collect(response);
+            } catch (final ImapAsyncClientException e) {
+                recordFailure(e);
+            } catch (final NumberFormatException e) {
+                recordFailure(new ImapAsyncClientException(FailureType.INVALID_INPUT, e));
+            }
+            return true;
+        }
+
+        /**
+         * Records the first failure, later ones are dropped.
+         *
+         * @param e the failure
+         */
+        private void recordFailure(@Nonnull final ImapAsyncClientException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Parses the UID and FLAGS of a FETCH response, for ex: * 12 FETCH (UID 1234 FLAGS (\Seen $Forwarded)). A FETCH response without UID or
+         * FLAGS, for example an unsolicited one, is ignored.
+         *
+         * @param response the FETCH response positioned after FETCH
+         * @throws ImapAsyncClientException when the response is not valid
+         */
+        private void collect(@Nonnull final IMAPResponse response) throws ImapAsyncClientException {
+            response.skipSpaces();
+            if (response.readByte() != '(') {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            long uid = -1;
+            long bits = 0;
+            int overflowHash = 0;
+            boolean hasFlags = false;
+            for (response.skipSpaces(); response.peekByte() != ')'; response.skipSpaces()) {
+                final String item = response.readAtom();
+                if (item == null || item.isEmpty()) {
+                    throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                }
+                if (item.equalsIgnoreCase("UID")) {
+                    uid = response.readLong();
+                } else if (item.equalsIgnoreCase("FLAGS")) {
+                    response.skipSpaces();
+                    final String[] flags = response.readSimpleList();
+                    if (flags != null) {
+                        for (final String flag : flags) {
+                            final long bit = builder.getFlagBit(flag);
+                            if (bit == MailboxFlagSnapshot.OVERFLOW_KEYWORDS) {
+                                overflowHash += flag.hashCode();
+                            }
+                            bits |= bit;
+                        }
+                    }
+                    hasFlags = true;
+                } else {
+                    try {
+                        ImapResponseValues.skipValue(response);
+                    } catch (final ParsingException e) {
+                        throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+                    }
+                }
+            }
+            if (uid > 0 && hasFlags) {
+                builder.add(uid, bits, overflowHash);
+            }
+        }
+    }
+}
@@ -5,7 +5,11 @@ import java.net.URI;
 import java.net.UnknownHostException;
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -38,17 +42,21 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ConnectTimeoutException;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.handler.ssl.ClientAuth;
 import io.netty.handler.ssl.JdkSslContext;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.GenericFutureListener;
 
 /**
@@ -68,18 +76,30 @@ public class ImapAsyncClient {
     /** Handler name for string decoder. */
     private static final String IMAP_LINE_DECODER_HANDLER_NAME = "ImapClientRespReader";
 
-    /** Handler name for string decoder. */
-    private static final String STRING_DECODER_HANDLER_NAME = "decoder";
-
     /** Handler name for string encoder. */
     private static final String STRING_ENCODER_HANDLER_NAME = "encoder";
 
     /** Handler name for string encoder. */
     private static final String STRING_IMAP_MSG_RESPONSE_NAME = "ImapClientRespDecoder";
 
+    /** Handler name for chunked writer, streaming the literal data of APPEND. */
+    private static final String CHUNKED_WRITER_HANDLER_NAME = "chunkedWriter";
+
     /** Debug record. */
     private static final String CONNECT_RESULT_REC = "[{},{}] connect operationComplete. result={}, imapServerUri={}, sniNames={}";
 
+    /** Mask of the lower 32 bits of a long. */
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /** Maximum number of SSL configurations whose SslContext is kept. */
+    private static final int MAX_SSL_CONTEXTS = 64;
+
+    /** Load factor of the SslContext cache. */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /** Multiplier combining the hash codes of the SSL configuration fields. */
+    private static final int HASH_MULTIPLIER = 31;
+
     /** Client context not available. */
     private static final String NA_CLIENT_CONTEXT = "NA";
 
@@ -94,12 +114,92 @@ public class ImapAsyncClient {
     /** Counter for session. */
     private final AtomicLong sessionCount = new AtomicLong(1);
 
-    /** The Netty bootstrap. */
+    /** The Netty bootstrap with the settings common to all the sessions, it is cloned for every distinct session configuration. */
     private final Bootstrap bootstrap;
 
+    /** Bootstraps configured for the session configurations seen so far, keyed by connection and read timeouts, never mutated once cached. */
+    private final ConcurrentHashMap<Long, Bootstrap> configuredBootstraps = new ConcurrentHashMap<Long, Bootstrap>();
+
     /** Event loop group that will serve all channels for IMAP client. */
     private final EventLoopGroup group;
 
+    /** Transport used by this client. */
+    private final TransportType transportType;
+
+    /** Admission controller for the connects, null if connects are started right away. */
+    @Nullable
+    private final ImapAsyncConnectAdmission connectAdmission;
+
+    /** SslContexts by SSL configuration of the sessions, each holding the TLS session cache used for resumption. Guarded by itself. */
+    private final SslContextCache sslContexts = new SslContextCache();
+
+    /**
+     * SSL configuration of a session: the caller provided {@link SSLContext}, compared by identity, or the SNI names when the default SslContext of
+     * this client is used.
+     */
+    private static final class SslContextKey {
+        /** Caller provided SSLContext, null for the default one. */
+        private final SSLContext jdkSslContext;
+
+        /** SNI names, empty when a caller provided SSLContext is used since it holds the TLS session cache itself. */
+        private final List<String> sniNames;
+
+        /**
+         * Initializes a {@link SslContextKey} object.
+         *
+         * @param jdkSslContext caller provided SSLContext, null for the default one
+         * @param sniNames Server Name Indication names list
+         */
+        private SslContextKey(@Nullable final SSLContext jdkSslContext, @Nullable final List<String> sniNames) {
+            this.jdkSslContext = jdkSslContext;
+            this.sniNames = (jdkSslContext != null || sniNames == null) ? Collections.<String>emptyList() : new ArrayList<String>(sniNames);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof SslContextKey)) {
+                return false;
+            }
+            final SslContextKey other = (SslContextKey) obj;
+            return jdkSslContext == other.jdkSslContext && sniNames.equals(other.sniNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH_MULTIPLIER * System.identityHashCode(jdkSslContext) + sniNames.hashCode();
+        }
+    }
+
+    /**
+     * SslContexts by SSL configuration, the least recently used one is dropped beyond {@link #MAX_SSL_CONTEXTS} configurations.
+     */
+    private static final class SslContextCache extends LinkedHashMap<SslContextKey, SslContext> {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Initializes a {@link SslContextCache} object in access order.
+         */
+        private SslContextCache() {
+            super(MAX_SSL_CONTEXTS, LOAD_FACTOR, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<SslContextKey, SslContext> eldest) {
+            return size() > MAX_SSL_CONTEXTS;
+        }
+    }
+
+    /**
+     * Transport used for the channels of the client.
+     */
+    public enum TransportType {
+        /** Java NIO transport, available on all platforms. */
+        NIO,
+        /** Netty native epoll transport, available on Linux only. Client falls back to NIO when it is not available. */
+        EPOLL
+    }
+
     /**
      * This class initialized the pipeline with the right handlers.
      */
@@ -128,9 +228,9 @@ public class ImapAsyncClient {
             // setting all idle timeout to ensure event will only be triggered when both read and write not happened for the given time
             pipeline.addLast(IDLE_STATE_HANDLER_NAME, new IdleStateHandler(0, 0, imapReadTimeoutValue, timeUnit)); // duplex
             pipeline.addLast(IMAP_LINE_DECODER_HANDLER_NAME, new ImapClientRespReader(Integer.MAX_VALUE)); // inbound
-            pipeline.addLast(STRING_DECODER_HANDLER_NAME, new StringDecoder()); // inbound
             pipeline.addLast(STRING_ENCODER_HANDLER_NAME, new StringEncoder()); // outbound
-            pipeline.addLast(STRING_IMAP_MSG_RESPONSE_NAME, new ImapClientRespDecoder()); // inbound to convert to IMAPResponse
+            pipeline.addLast(STRING_IMAP_MSG_RESPONSE_NAME, new ImapClientRespDecoder()); // inbound to convert frame bytes to IMAPResponse
+            pipeline.addLast(CHUNKED_WRITER_HANDLER_NAME, new ChunkedWriteHandler()); // outbound, writes chunked input as channel is writable
         }
     }
 
@@ -141,7 +241,63 @@ public class ImapAsyncClient {
      * @throws SSLException when encountering an error to create a SslContext for this client
      */
     public ImapAsyncClient(final int numOfThreads) throws SSLException {
-        this(Clock.systemUTC(), new Bootstrap(), new NioEventLoopGroup(numOfThreads), LoggerFactory.getLogger(ImapAsyncClient.class));
+        this(numOfThreads, TransportType.NIO);
+    }
+
+    /**
+     * Constructs an IMAP client with the given transport. If {@link TransportType#EPOLL} is requested and the native epoll transport is not available
+     * on this platform, NIO transport is used.
+     *
+     * @param numOfThreads number of threads to be used by IMAP client
+     * @param transportType the preferred transport
+     * @throws SSLException when encountering an error to create a SslContext for this client
+     */
+    public ImapAsyncClient(final int numOfThreads, @Nonnull final TransportType transportType) throws SSLException {
+        this(numOfThreads, transportType, null);
+    }
+
+    /**
+     * Constructs an IMAP client with the given transport, starting the connects of {@link #createSession} only when admitted by the given settings.
+     *
+     * @param numOfThreads number of threads to be used by IMAP client
+     * @param transportType the preferred transport
+     * @param admissionConfig connection admission settings, null to start every connect right away
+     * @throws SSLException when encountering an error to create a SslContext for this client
+     */
+    public ImapAsyncClient(final int numOfThreads, @Nonnull final TransportType transportType,
+            @Nullable final ImapAsyncConnectAdmissionConfig admissionConfig) throws SSLException {
+        this(Clock.systemUTC(), new Bootstrap(), numOfThreads, isEpollUsable(transportType), admissionConfig,
+                LoggerFactory.getLogger(ImapAsyncClient.class));
+    }
+
+    /**
+     * Constructs an IMAP client with either native epoll or NIO transport.
+     *
+     * @param clock Clock instance
+     * @param bootstrap a {@link Bootstrap} instance that makes it easy to bootstrap a {@link Channel} to use for clients
+     * @param numOfThreads number of threads to be used by IMAP client
+     * @param useEpoll true to use native epoll transport; false to use NIO transport
+     * @param logger Logger instance
+     */
+    ImapAsyncClient(@Nonnull final Clock clock, @Nonnull final Bootstrap bootstrap, final int numOfThreads, final boolean useEpoll,
+            @Nonnull final Logger logger) {
+        this(clock, bootstrap, numOfThreads, useEpoll, null, logger);
+    }
+
+    /**
+     * Constructs an IMAP client with either native epoll or NIO transport, and connection admission.
+     *
+     * @param clock Clock instance
+     * @param bootstrap a {@link Bootstrap} instance that makes it easy to bootstrap a {@link Channel} to use for clients
+     * @param numOfThreads number of threads to be used by IMAP client
+     * @param useEpoll true to use native epoll transport; false to use NIO transport
+     * @param admissionConfig connection admission settings, null to start every connect right away
+     * @param logger Logger instance
+     */
+    private ImapAsyncClient(@Nonnull final Clock clock, @Nonnull final Bootstrap bootstrap, final int numOfThreads, final boolean useEpoll,
+            @Nullable final ImapAsyncConnectAdmissionConfig admissionConfig, @Nonnull final Logger logger) {
+        this(clock, bootstrap, useEpoll ? new EpollEventLoopGroup(numOfThreads) : new NioEventLoopGroup(numOfThreads),
+                useEpoll ? TransportType.EPOLL : TransportType.NIO, admissionConfig, logger);
     }
 
     /**
@@ -154,14 +310,123 @@ public class ImapAsyncClient {
      */
     ImapAsyncClient(@Nonnull final Clock clock, @Nonnull final Bootstrap bootstrap, @Nonnull final EventLoopGroup group,
             @Nonnull final Logger logger) {
+        this(clock, bootstrap, group, null, logger);
+    }
+
+    /**
+     * Constructs a NIO based IMAP client with connection admission.
+     *
+     * @param clock Clock instance
+     * @param bootstrap a {@link Bootstrap} instance that makes it easy to bootstrap a {@link Channel} to use for clients
+     * @param group an @{link EventLoopGroup} instance allowing registering {@link Channel}s, also used as timer for the admission queue
+     * @param admissionConfig connection admission settings, null to start every connect right away
+     * @param logger Logger instance
+     */
+    ImapAsyncClient(@Nonnull final Clock clock, @Nonnull final Bootstrap bootstrap, @Nonnull final EventLoopGroup group,
+            @Nullable final ImapAsyncConnectAdmissionConfig admissionConfig, @Nonnull final Logger logger) {
+        this(clock, bootstrap, group, TransportType.NIO, admissionConfig, logger);
+    }
+
+    /**
+     * Constructs an IMAP client with the given event loop group and its matching transport.
+     *
+     * @param clock Clock instance
+     * @param bootstrap a {@link Bootstrap} instance that makes it easy to bootstrap a {@link Channel} to use for clients
+     * @param group an @{link EventLoopGroup} instance matching the transport type
+     * @param transportType transport type of the event loop group
+     * @param admissionConfig connection admission settings, null to start every connect right away
+     * @param logger Logger instance
+     */
+    private ImapAsyncClient(@Nonnull final Clock clock, @Nonnull final Bootstrap bootstrap, @Nonnull final EventLoopGroup group,
+            @Nonnull final TransportType transportType, @Nullable final ImapAsyncConnectAdmissionConfig admissionConfig,
+            @Nonnull final Logger logger) {
         this.clock = clock;
         this.logger = logger;
         this.bootstrap = bootstrap;
         this.group = group;
-        bootstrap.channel(NioSocketChannel.class); // for client
+        this.transportType = transportType;
+        this.connectAdmission = (admissionConfig != null) ? new ImapAsyncConnectAdmission(clock, admissionConfig, group) : null;
+        // for client
+        bootstrap.channel((transportType == TransportType.EPOLL) ? EpollSocketChannel.class : NioSocketChannel.class);
         bootstrap.group(group);
     }
 
+    /**
+     * Checks whether native epoll transport should be used.
+     *
+     * @param transportType the preferred transport
+     * @return true if epoll is preferred and available on this platform; false otherwise
+     */
+    static boolean isEpollUsable(@Nonnull final TransportType transportType) {
+        return transportType == TransportType.EPOLL && Epoll.isAvailable();
+    }
+
+    /**
+     * @return the transport used by this client, which is NIO if native epoll transport was preferred but not available
+     */
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    /**
+     * Returns the bootstrap configured for the given session configuration. The bootstrap shared by all the sessions is never mutated when
+     * connecting, so that concurrent calls with different configurations do not pick up each other's timeouts, and connecting does not contend on
+     * the bootstrap settings.
+     *
+     * @param config configuration to be used for the session
+     * @return the bootstrap with the channel initializer and connection timeout of the configuration
+     */
+    Bootstrap getBootstrap(@Nonnull final ImapAsyncSessionConfig config) {
+        final int connectionTimeMillis = config.getConnectionTimeoutMillis();
+        final int readTimeMillis = config.getReadTimeoutMillis();
+        final Long key = Long.valueOf(((long) connectionTimeMillis << Integer.SIZE) | (readTimeMillis & INT_MASK));
+        final Bootstrap configured = configuredBootstraps.get(key);
+        if (configured != null) {
+            return configured;
+        }
+
+        final Bootstrap newBootstrap = bootstrap.clone();
+        // setup ChannelInitializer, handlers here need to be session-less
+        newBootstrap.handler(new ImapClientChannelInitializer(readTimeMillis, TimeUnit.MILLISECONDS));
+        newBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeMillis);
+        final Bootstrap existing = configuredBootstraps.putIfAbsent(key, newBootstrap);
+        return (existing != null) ? existing : newBootstrap;
+    }
+
+    /**
+     * Returns the {@link SslContext} for a session. Building a SslContext loads the trust material and creates a new TLS session cache, hence one is
+     * built per SSL configuration and reused by the sessions with that configuration. TLS sessions are resumed by host and port within a session
+     * cache; the default SslContexts are kept per SNI names so that a TLS session established for a server name is never resumed for another one,
+     * while callers providing their own {@link SSLContext} control its session cache, for ex: by using one SSLContext per server name.
+     *
+     * @param jdkSslContext a pre-configured {@link SSLContext} provided by caller, null to use a default one of this client
+     * @param sniNames Server Name Indication names list
+     * @return the SslContext
+     * @throws SSLException when encountering an error to create the SslContext
+     */
+    SslContext getSslContext(@Nullable final SSLContext jdkSslContext, @Nullable final List<String> sniNames) throws SSLException {
+        final SslContextKey key = new SslContextKey(jdkSslContext, sniNames);
+        synchronized (sslContexts) {
+            final SslContext cached = sslContexts.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // built outside the lock so that other connects are not blocked meanwhile
+        // if callers want to use their predefined SSLContext, we need to wrap it with JdkSslContext
+        final SslContext sslContext = (jdkSslContext == null) ? SslContextBuilder.forClient().build()
+                : new JdkSslContext(jdkSslContext, true, ClientAuth.NONE);
+        synchronized (sslContexts) {
+            final SslContext existing = sslContexts.get(key);
+            if (existing != null) { // built concurrently by another connect
+                ReferenceCountUtil.release(sslContext);
+                return existing;
+            }
+            sslContexts.put(key, sslContext);
+            return sslContext;
+        }
+    }
+
     /**
      * Connects to the remote server asynchronously and returns a future for the ImapSession if connection is established.
      **
@@ -210,21 +475,41 @@ public class ImapAsyncClient {
             @Nullable final InetSocketAddress localAddress, @Nullable final List<String> sniNames, @Nonnull final DebugMode logOpt,
             @Nonnull final Object sessionCtx, @Nullable final SSLContext jdkSslContext) {
 
-        final boolean isSessionDebugOn = (logOpt == DebugMode.DEBUG_ON);
-        // ------------------------------------------------------------
-        // obtain config values
-        final int connectionTimeMillis = config.getConnectionTimeoutMillis();
-        final int readTimeMillis = config.getReadTimeoutMillis();
-
-        // ------------------------------------------------------------
-        // setup ChannelInitializer, handlers here need to be session-less
-        bootstrap.handler(new ImapClientChannelInitializer(readTimeMillis, TimeUnit.MILLISECONDS));
+        final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        if (null == connectAdmission) {
+            connect(serverUri, config, localAddress, sniNames, logOpt, sessionCtx, jdkSslContext, sessionFuture);
+            return sessionFuture;
+        }
+        connectAdmission.admit(serverUri.getHost() + ':' + serverUri.getPort(), sessionFuture, new Runnable() {
+            @Override
+            public void run() {
+                connect(serverUri, config, localAddress, sniNames, logOpt, sessionCtx, jdkSslContext, sessionFuture);
+            }
+        });
+        return sessionFuture;
+    }
 
+    /**
+     * Connects to the remote server asynchronously and completes the given future with the ImapSession once connection is established.
+     *
+     * @param serverUri IMAP server URI
+     * @param config configuration to be used for this session/connection
+     * @param localAddress the local network interface to us
+     * @param sniNames Server Name Indication names list
+     * @param logOpt session logging option for the session to be created
+     * @param sessionCtx context associated with the session created. Its toString() will be called upon displaying exception or debug logging
+     * @param jdkSslContext a pre-configured {@link SSLContext} which uses JDK's SSL/TLS implementation
+     * @param sessionFuture the future to be completed with the session
+     */
+    @SuppressWarnings("parameternumber")
+    private void connect(@Nonnull final URI serverUri, @Nonnull final ImapAsyncSessionConfig config, @Nullable final InetSocketAddress localAddress,
+            @Nullable final List<String> sniNames, @Nonnull final DebugMode logOpt, @Nonnull final Object sessionCtx,
+            @Nullable final SSLContext jdkSslContext, @Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture) {
+        final boolean isSessionDebugOn = (logOpt == DebugMode.DEBUG_ON);
         // ------------------------------------------------------------
-        // connect to remote server now, setup connection timeout time before connection
-        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeMillis);
+        // obtain the bootstrap with the connection timeout and channel initializer of the config
+        final Bootstrap bootstrap = getBootstrap(config);
 
-        final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
         final ChannelFuture nettyConnectFuture;
         if (null != localAddress) {
             final InetSocketAddress remoteAddress = new InetSocketAddress(serverUri.getHost(), serverUri.getPort());
@@ -250,9 +535,7 @@ public class ImapAsyncClient {
                     if (isSSL) {
                         SslContext sslContext;
                         try {
-                            // if callers want to use their predefined SSLContext, we need to wrap it with JdkSslContext
-                            sslContext = (jdkSslContext == null) ? SslContextBuilder.forClient().build()
-                                    : new JdkSslContext(jdkSslContext, true, ClientAuth.NONE);
+                            sslContext = getSslContext(jdkSslContext, sniNames);
                         } catch (final SSLException e) {
                             final ImapAsyncClientException ex = new ImapAsyncClientException(FailureType.CONNECTION_SSL_EXCEPTION, e);
                             sessionFuture.done(ex);
@@ -279,7 +562,7 @@ public class ImapAsyncClient {
                     final long sessionId = sessionCount.incrementAndGet();
                     sessionCount.compareAndSet(Long.MAX_VALUE - 1, 1); // roll back to 1 if reaching the max
                     pipeline.addLast(ImapClientConnectHandler.HANDLER_NAME, new ImapClientConnectHandler(clock, sessionFuture,
-                            LoggerFactory.getLogger(ImapAsyncSessionImpl.class), logOpt, sessionId, sessionCtx));
+                            LoggerFactory.getLogger(ImapAsyncSessionImpl.class), logOpt, sessionId, sessionCtx, config));
 
                     if (logger.isTraceEnabled() || isSessionDebugOn) {
                         logger.debug(CONNECT_RESULT_REC, sessionId, sessionCtx.toString(), "success", serverUri.toASCIIString(), sniNames);
@@ -301,8 +584,6 @@ public class ImapAsyncClient {
                 }
             }
         });
-
-        return sessionFuture;
     }
 
     /**
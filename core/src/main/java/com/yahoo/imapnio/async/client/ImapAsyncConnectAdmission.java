@@ -0,0 +1,341 @@
+package com.yahoo.imapnio.async.client;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Admission controller for the connects of {@link ImapAsyncClient}. A connect is started only when its destination has fewer connects in flight
+ * than the configured maximum and a token of the connect rate bucket is available; otherwise it waits in the FIFO queue of its destination, and its
+ * session future fails with {@link FailureType#CONNECTION_ADMISSION_TIMEOUT} once it has waited longer than the configured maximum. Connects of a
+ * saturated destination do not hold back the ones of other destinations, and only the destinations with a free connect slot are visited.
+ */
+final class ImapAsyncConnectAdmission {
+
+    /** Milliseconds per second. */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /** Clock instance. */
+    @Nonnull
+    private final Clock clock;
+
+    /** Admission settings. */
+    @Nonnull
+    private final ImapAsyncConnectAdmissionConfig config;
+
+    /** Timer to dispatch the queued connects when tokens are refilled or deadlines expire. */
+    @Nonnull
+    private final ScheduledExecutorService timer;
+
+    /** Connects waiting for admission, in arrival order, hence in deadline order; admitted ones are dropped once at the head. Guarded by this. */
+    private final ArrayDeque<PendingConnect> deadlineQueue = new ArrayDeque<PendingConnect>();
+
+    /** Connects waiting for admission per destination, in arrival order, destinations without queued connects are removed. Guarded by this. */
+    private final Map<String, ArrayDeque<PendingConnect>> destinationQueues = new HashMap<String, ArrayDeque<PendingConnect>>();
+
+    /** Destinations with queued connects and a free connect slot, in the order they became ready. Guarded by this. */
+    private final LinkedHashSet<String> readyDestinations = new LinkedHashSet<String>();
+
+    /** Number of connects waiting for admission. Guarded by this. */
+    private int queuedConnects;
+
+    /** Number of connects in flight per destination, destinations without connects in flight are removed. Guarded by this. */
+    private final Map<String, Integer> inFlightConnects = new HashMap<String, Integer>();
+
+    /** Tokens available in the bucket. Guarded by this. */
+    private double tokens;
+
+    /** Time in milliseconds the tokens were last refilled. Guarded by this. */
+    private long lastRefillMillis;
+
+    /** Time in milliseconds of the earliest scheduled dispatch, Long.MAX_VALUE if none is scheduled. Guarded by this. */
+    private long nextDispatchMillis = Long.MAX_VALUE;
+
+    /**
+     * A connect waiting for admission.
+     */
+    private static final class PendingConnect {
+        /** Destination of the connect. */
+        private final String destination;
+
+        /** Future of the session to be created by the connect. */
+        private final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture;
+
+        /** Task starting the connect. */
+        private final Runnable connect;
+
+        /** Time in milliseconds after which the connect fails if not admitted. */
+        private final long deadlineMillis;
+
+        /** True once the connect is no longer queued, admitted, expired or cancelled. Guarded by the admission. */
+        private boolean dequeued;
+
+        /**
+         * Initializes a {@link PendingConnect} object.
+         *
+         * @param destination destination of the connect
+         * @param sessionFuture future of the session to be created by the connect
+         * @param connect task starting the connect
+         * @param deadlineMillis time in milliseconds after which the connect fails if not admitted
+         */
+        private PendingConnect(@Nonnull final String destination, @Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture,
+                @Nonnull final Runnable connect, final long deadlineMillis) {
+            this.destination = destination;
+            this.sessionFuture = sessionFuture;
+            this.connect = connect;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+
+    /**
+     * Initializes a {@link ImapAsyncConnectAdmission} object.
+     *
+     * @param clock Clock instance
+     * @param config admission settings
+     * @param timer timer to dispatch the queued connects
+     */
+    ImapAsyncConnectAdmission(@Nonnull final Clock clock, @Nonnull final ImapAsyncConnectAdmissionConfig config,
+            @Nonnull final ScheduledExecutorService timer) {
+        this.clock = clock;
+        this.config = config;
+        this.timer = timer;
+        this.tokens = config.getConnectBurst();
+        this.lastRefillMillis = clock.millis();
+    }
+
+    /**
+     * Starts the given connect when it is admitted, right away on the calling thread if possible. The connect slot of the destination is released
+     * once the session future is done.
+     *
+     * @param destination destination of the connect, server host and port
+     * @param sessionFuture future of the session to be created by the connect
+     * @param connect task starting the connect
+     */
+    void admit(@Nonnull final String destination, @Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture,
+            @Nonnull final Runnable connect) {
+        synchronized (this) {
+            final PendingConnect pending = new PendingConnect(destination, sessionFuture, connect, clock.millis() + config.getMaxQueueWaitMillis());
+            deadlineQueue.addLast(pending);
+            ArrayDeque<PendingConnect> destinationQueue = destinationQueues.get(destination);
+            if (destinationQueue == null) {
+                destinationQueue = new ArrayDeque<PendingConnect>();
+                destinationQueues.put(destination, destinationQueue);
+            }
+            destinationQueue.addLast(pending);
+            queuedConnects++;
+            markReady(destination);
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts the queued connects which can be admitted, and fails the ones past their deadline.
+     */
+    void dispatch() {
+        final List<PendingConnect> admitted = new ArrayList<PendingConnect>();
+        final List<PendingConnect> expired = new ArrayList<PendingConnect>();
+        synchronized (this) {
+            final long now = clock.millis();
+            refillTokens(now);
+            while (!deadlineQueue.isEmpty() && (deadlineQueue.peekFirst().dequeued || deadlineQueue.peekFirst().deadlineMillis <= now
+                    || deadlineQueue.peekFirst().sessionFuture.isDone())) {
+                final PendingConnect pending = deadlineQueue.pollFirst();
+                if (!pending.dequeued) {
+                    // the oldest connect queued overall is also the oldest one of its destination
+                    dequeue(destinationQueues.get(pending.destination), pending.destination);
+                    if (!pending.sessionFuture.isDone()) {
+                        expired.add(pending);
+                    }
+                }
+            }
+            while (!readyDestinations.isEmpty() && hasToken()) {
+                final String destination = readyDestinations.iterator().next();
+                readyDestinations.remove(destination);
+                final ArrayDeque<PendingConnect> destinationQueue = destinationQueues.get(destination);
+                PendingConnect pending = null;
+                while (pending == null && destinationQueue != null && !destinationQueue.isEmpty()) {
+                    pending = dequeue(destinationQueue, destination);
+                    if (pending.sessionFuture.isDone()) { // cancelled by caller
+                        pending = null;
+                    }
+                }
+                if (pending != null) {
+                    takeToken();
+                    inFlightConnects.put(destination, getInFlightConnects(destination) + 1);
+                    admitted.add(pending);
+                    markReady(destination);
+                }
+            }
+            scheduleDispatch(now);
+        }
+
+        for (final PendingConnect pending : expired) {
+            pending.sessionFuture.done(new ImapAsyncClientException(FailureType.CONNECTION_ADMISSION_TIMEOUT));
+        }
+        for (final PendingConnect pending : admitted) {
+            pending.sessionFuture.addListener(new ImapFutureListener<ImapAsyncCreateSessionResponse>() {
+                @Override
+                public void onSuccess(final ImapAsyncCreateSessionResponse result) {
+                    release(pending.destination);
+                }
+
+                @Override
+                public void onFailure(final Exception cause) {
+                    release(pending.destination);
+                }
+            });
+            try {
+                pending.connect.run();
+            } catch (final RuntimeException e) { // failing the future releases the slot, and the remaining connects are still started
+                pending.sessionFuture.done(new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION, e));
+            }
+        }
+    }
+
+    /**
+     * Removes the first connect queued for the given destination, and the destination itself once it has no queued connect left.
+     *
+     * @param destinationQueue connects queued for the destination
+     * @param destination destination of the connects
+     * @return the connect removed
+     */
+    private PendingConnect dequeue(@Nonnull final ArrayDeque<PendingConnect> destinationQueue, @Nonnull final String destination) {
+        final PendingConnect pending = destinationQueue.pollFirst();
+        pending.dequeued = true;
+        queuedConnects--;
+        if (destinationQueue.isEmpty()) {
+            destinationQueues.remove(destination);
+            readyDestinations.remove(destination);
+        }
+        return pending;
+    }
+
+    /**
+     * Adds the given destination to the ready ones if it has queued connects and a free connect slot.
+     *
+     * @param destination destination of the connects
+     */
+    private void markReady(@Nonnull final String destination) {
+        if (destinationQueues.containsKey(destination) && getInFlightConnects(destination) < config.getMaxInFlightConnectsPerDestination()) {
+            readyDestinations.add(destination);
+        }
+    }
+
+    /**
+     * Releases a connect slot of the given destination and starts the queued connects which can be admitted now.
+     *
+     * @param destination destination of the connect
+     */
+    private void release(@Nonnull final String destination) {
+        synchronized (this) {
+            final int count = getInFlightConnects(destination) - 1;
+            if (count > 0) {
+                inFlightConnects.put(destination, count);
+            } else {
+                inFlightConnects.remove(destination);
+            }
+            markReady(destination);
+        }
+        dispatch();
+    }
+
+    /**
+     * @param destination destination of the connects
+     * @return number of connects in flight for the given destination
+     */
+    synchronized int getInFlightConnects(@Nonnull final String destination) {
+        final Integer count = inFlightConnects.get(destination);
+        return (count != null) ? count : 0;
+    }
+
+    /**
+     * @return number of connects waiting for admission
+     */
+    synchronized int getQueuedConnects() {
+        return queuedConnects;
+    }
+
+    /**
+     * @return true if rate limiting is enabled
+     */
+    private boolean isRateLimited() {
+        return config.getConnectsPerSecond() > 0;
+    }
+
+    /**
+     * @return true if a connect can be started within the connect rate
+     */
+    private boolean hasToken() {
+        return !isRateLimited() || tokens >= 1;
+    }
+
+    /**
+     * Takes a token for a connect to be started.
+     */
+    private void takeToken() {
+        if (isRateLimited()) {
+            tokens -= 1;
+        }
+    }
+
+    /**
+     * Refills the tokens for the time elapsed since the last refill, up to the burst size.
+     *
+     * @param now current time in milliseconds
+     */
+    private void refillTokens(final long now) {
+        if (isRateLimited() && now > lastRefillMillis) {
+            tokens = Math.min(config.getConnectBurst(), tokens + (now - lastRefillMillis) * config.getConnectsPerSecond() / MILLIS_PER_SECOND);
+        }
+        lastRefillMillis = Math.max(lastRefillMillis, now);
+    }
+
+    /**
+     * Schedules the next dispatch when connects are queued: at the next token if the bucket is empty, or at the earliest deadline otherwise, since
+     * a connect slot being released dispatches right away.
+     *
+     * @param now current time in milliseconds
+     */
+    private void scheduleDispatch(final long now) {
+        while (!deadlineQueue.isEmpty() && deadlineQueue.peekFirst().dequeued) {
+            deadlineQueue.pollFirst();
+        }
+        if (deadlineQueue.isEmpty()) {
+            return;
+        }
+        long wakeMillis = deadlineQueue.peekFirst().deadlineMillis;
+        if (!hasToken() && !readyDestinations.isEmpty()) {
+            final long tokenMillis = now + (long) Math.ceil((1 - tokens) * MILLIS_PER_SECOND / config.getConnectsPerSecond());
+            wakeMillis = Math.min(wakeMillis, tokenMillis);
+        }
+        if (wakeMillis >= nextDispatchMillis && nextDispatchMillis > now) {
+            return; // an earlier dispatch is scheduled already
+        }
+        nextDispatchMillis = wakeMillis;
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ImapAsyncConnectAdmission.this) {
+                        nextDispatchMillis = Long.MAX_VALUE;
+                    }
+                    dispatch();
+                }
+            }, Math.max(0, wakeMillis - now), TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            nextDispatchMillis = Long.MAX_VALUE; // client is shut down, queued connects will be dispatched on next admit or release
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.yahoo.imapnio.async.client;
+
+/**
+ * Class for {@link ImapAsyncClient} connection admission settings, limiting the connects fired at the servers and at the client event loops.
+ */
+public final class ImapAsyncConnectAdmissionConfig {
+
+    /** Default maximum number of connects in flight, i.e. not yet completed with a session or a failure, per destination. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_CONNECTS_PER_DESTINATION = 50;
+
+    /** Default number of connects started per second, across all destinations. */
+    public static final int DEFAULT_CONNECTS_PER_SECOND = 500;
+
+    /** Default maximum number of connects started at once after a quiet period, across all destinations. */
+    public static final int DEFAULT_CONNECT_BURST = 100;
+
+    /** Default maximum time in milliseconds a connect can wait in the admission queue. */
+    public static final long DEFAULT_MAX_QUEUE_WAIT_MILLIS = 10000L;
+
+    /** Maximum number of connects in flight per destination, i.e. server host and port. */
+    private int maxInFlightConnectsPerDestination = DEFAULT_MAX_IN_FLIGHT_CONNECTS_PER_DESTINATION;
+
+    /** Number of connects started per second, zero or negative for no rate limiting. */
+    private int connectsPerSecond = DEFAULT_CONNECTS_PER_SECOND;
+
+    /** Maximum number of connects started at once, i.e. the capacity of the token bucket. */
+    private int connectBurst = DEFAULT_CONNECT_BURST;
+
+    /** Maximum time in milliseconds a connect can wait in the admission queue before it fails. */
+    private long maxQueueWaitMillis = DEFAULT_MAX_QUEUE_WAIT_MILLIS;
+
+    /**
+     * @return maximum number of connects in flight per destination
+     */
+    public int getMaxInFlightConnectsPerDestination() {
+        return maxInFlightConnectsPerDestination;
+    }
+
+    /**
+     * Sets the maximum number of connects in flight per destination. A connect is in flight until the session is created or the creation fails.
+     *
+     * @param maxInFlightConnectsPerDestination maximum number of connects
+     */
+    public void setMaxInFlightConnectsPerDestination(final int maxInFlightConnectsPerDestination) {
+        this.maxInFlightConnectsPerDestination = maxInFlightConnectsPerDestination;
+    }
+
+    /**
+     * @return number of connects started per second
+     */
+    public int getConnectsPerSecond() {
+        return connectsPerSecond;
+    }
+
+    /**
+     * Sets the number of connects started per second across all destinations. Zero or negative value disables rate limiting.
+     *
+     * @param connectsPerSecond number of connects per second
+     */
+    public void setConnectsPerSecond(final int connectsPerSecond) {
+        this.connectsPerSecond = connectsPerSecond;
+    }
+
+    /**
+     * @return maximum number of connects started at once
+     */
+    public int getConnectBurst() {
+        return connectBurst;
+    }
+
+    /**
+     * Sets the maximum number of connects started at once after a quiet period.
+     *
+     * @param connectBurst maximum number of connects
+     */
+    public void setConnectBurst(final int connectBurst) {
+        this.connectBurst = connectBurst;
+    }
+
+    /**
+     * @return maximum time in milliseconds a connect can wait in the admission queue
+     */
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis;
+    }
+
+    /**
+     * Sets the maximum time a connect can wait in the admission queue before it fails with
+     * {@link com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType#CONNECTION_ADMISSION_TIMEOUT}.
+     *
+     * @param maxQueueWaitMillis time in milliseconds
+     */
+    public void setMaxQueueWaitMillis(final long maxQueueWaitMillis) {
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+}
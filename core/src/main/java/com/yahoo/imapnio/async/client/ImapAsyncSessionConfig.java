@@ -22,6 +22,12 @@ public final class ImapAsyncSessionConfig {
      */
     private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
 
+    /**
+     * Whether the session allows more than one command in flight. When enabled, commands are completed by their matching tag, and commands relying on
+     * server continuation (for example, APPEND and AUTHENTICATE) are held until all prior commands are done.
+     */
+    private boolean pipeliningEnabled = false;
+
     /**
      * @return Maximum time for opening a connection
      */
@@ -53,4 +59,20 @@ public final class ImapAsyncSessionConfig {
     public void setReadTimeoutMillis(final int readTimeoutMillis) {
         this.readTimeoutMillis = readTimeoutMillis;
     }
+
+    /**
+     * @return true if the session allows more than one command in flight; false otherwise
+     */
+    public boolean isPipeliningEnabled() {
+        return pipeliningEnabled;
+    }
+
+    /**
+     * Sets whether the session allows more than one command in flight.
+     *
+     * @param pipeliningEnabled true to allow commands to be pipelined on the session
+     */
+    public void setPipeliningEnabled(final boolean pipeliningEnabled) {
+        this.pipeliningEnabled = pipeliningEnabled;
+    }
 }
@@ -0,0 +1,124 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This class is a lease of a session borrowed from {@link ImapAsyncSessionPool}. When the lease is granted without a session, the pool has reserved
+ * a slot for the caller, who is expected to create and authenticate a session and attach it to this lease. The lease has to be given back to the pool
+ * through {@link ImapAsyncSessionPool#release(ImapAsyncSessionLease)} or {@link ImapAsyncSessionPool#invalidate(ImapAsyncSessionLease)}.
+ */
+public final class ImapAsyncSessionLease {
+
+    /** Key of the pool this lease belongs to. */
+    @Nonnull
+    private final ImapAsyncSessionPool.PoolKey key;
+
+    /** Time in milliseconds when this lease was granted. */
+    private final long borrowTimeMillis;
+
+    /** Stack trace captured when this lease was granted, used for reporting leaked leases. */
+    @Nullable
+    private final Throwable borrowTrace;
+
+    /** Whether the session was reused from the pool. */
+    private final boolean isReused;
+
+    /** Whether this lease was given back to the pool. */
+    private final AtomicBoolean isReturned = new AtomicBoolean(false);
+
+    /** The session leased. */
+    @Nullable
+    private volatile ImapAsyncSession session;
+
+    /** Whether this lease was reported as leaked. */
+    private volatile boolean isLeakReported = false;
+
+    /**
+     * Initializes a {@link ImapAsyncSessionLease} object.
+     *
+     * @param key key of the pool this lease belongs to
+     * @param session the idle session from the pool, null if caller has to create one
+     * @param borrowTimeMillis time in milliseconds when this lease was granted
+     * @param borrowTrace stack trace captured when this lease was granted, null if leak detection is disabled
+     */
+    ImapAsyncSessionLease(@Nonnull final ImapAsyncSessionPool.PoolKey key, @Nullable final ImapAsyncSession session, final long borrowTimeMillis,
+            @Nullable final Throwable borrowTrace) {
+        this.key = key;
+        this.session = session;
+        this.borrowTimeMillis = borrowTimeMillis;
+        this.borrowTrace = borrowTrace;
+        this.isReused = (session != null);
+    }
+
+    /**
+     * @return the leased session, null if caller has not attached a newly created session yet
+     */
+    @Nullable
+    public ImapAsyncSession getSession() {
+        return session;
+    }
+
+    /**
+     * Attaches a newly created and authenticated session to this lease, so that it goes back to the pool when the lease is released.
+     *
+     * @param session the session created by caller
+     */
+    public void attach(@Nonnull final ImapAsyncSession session) {
+        this.session = session;
+    }
+
+    /**
+     * @return true if the session was an idle session reused from the pool; false if caller was asked to create one
+     */
+    public boolean isReused() {
+        return isReused;
+    }
+
+    /**
+     * @return time in milliseconds when this lease was granted
+     */
+    public long getBorrowTimeMillis() {
+        return borrowTimeMillis;
+    }
+
+    /**
+     * @return the key of the pool this lease belongs to
+     */
+    @Nonnull
+    ImapAsyncSessionPool.PoolKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return stack trace captured when this lease was granted
+     */
+    @Nullable
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    /**
+     * Marks this lease as returned.
+     *
+     * @return true if this call marked the lease as returned; false if it was returned already
+     */
+    boolean markReturned() {
+        return isReturned.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks this lease as reported for leak.
+     *
+     * @return true if this call marked it; false if it was reported already
+     */
+    boolean markLeakReported() {
+        if (isLeakReported) {
+            return false;
+        }
+        isLeakReported = true;
+        return true;
+    }
+}
@@ -0,0 +1,509 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.internal.ImapAsyncSessionImpl;
+import com.yahoo.imapnio.async.request.NoopCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * A pool of authenticated {@link ImapAsyncSession}s keyed by server URI and account. It allows callers to reuse sessions and skip the cost of TCP
+ * connect, TLS handshake, server greeting and authentication.
+ *
+ * <p>
+ * Callers borrow a lease through {@link #borrow(URI, String)}. If the lease comes without a session, the pool reserved a slot, and the caller is
+ * expected to create and authenticate a session through {@link ImapAsyncClient} and attach it to the lease. Leases are given back through
+ * {@link #release(ImapAsyncSessionLease)} when the session is reusable, or {@link #invalidate(ImapAsyncSessionLease)} when it is not. Idle sessions
+ * whose connection was closed meanwhile are closed on borrow instead of being leased.
+ * </p>
+ *
+ * <p>
+ * {@link #runMaintenance()} is expected to be called periodically. It evicts sessions idle longer than the configured maximum, verifies sessions idle
+ * longer than the health check time with NOOP, and reports leases that are held longer than the leak detection threshold.
+ * </p>
+ */
+public class ImapAsyncSessionPool {
+
+    /** Error record for a lease held longer than the leak detection threshold. */
+    private static final String LEAK_REC = "Session lease held for {} ms and not returned, server={}, account={}";
+
+    /** Debug record for closing a session. */
+    private static final String CLOSE_REC = "Closing pooled session, reason={}, server={}, account={}";
+
+    /** Reason for closing a session idle longer than the maximum. */
+    private static final String IDLE_EVICTED = "idle";
+
+    /** Reason for closing a session failing health check. */
+    private static final String HEALTH_CHECK_FAILED = "healthCheckFailed";
+
+    /** Reason for closing a session invalidated by caller. */
+    private static final String INVALIDATED = "invalidated";
+
+    /** Reason for closing a session when the pool is shut down. */
+    private static final String SHUTDOWN = "shutdown";
+
+    /** Reason for closing an idle session whose connection is closed. */
+    private static final String CONNECTION_CLOSED = "connectionClosed";
+
+    /** Clock instance. */
+    @Nonnull
+    private final Clock clock;
+
+    /** Logger instance. */
+    @Nonnull
+    private final Logger logger;
+
+    /** Pool settings. */
+    @Nonnull
+    private final ImapAsyncSessionPoolConfig config;
+
+    /** Sessions for each server and account, keys without sessions nor leases are removed. */
+    private final ConcurrentHashMap<PoolKey, KeyedSessions> pools = new ConcurrentHashMap<PoolKey, KeyedSessions>();
+
+    /** Whether this pool is shut down. */
+    private volatile boolean isShutdown = false;
+
+    /**
+     * Key identifying a server and an account.
+     */
+    static final class PoolKey {
+        /** IMAP server URI. */
+        @Nonnull
+        private final URI serverUri;
+
+        /** Account name. */
+        @Nonnull
+        private final String account;
+
+        /**
+         * Initializes a {@link PoolKey} object.
+         *
+         * @param serverUri IMAP server URI
+         * @param account account name
+         */
+        PoolKey(@Nonnull final URI serverUri, @Nonnull final String account) {
+            this.serverUri = serverUri;
+            this.account = account;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PoolKey)) {
+                return false;
+            }
+            final PoolKey other = (PoolKey) obj;
+            return serverUri.equals(other.serverUri) && account.equals(other.account);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(serverUri, account);
+        }
+    }
+
+    /**
+     * An idle session with the time it was last used.
+     */
+    private static final class IdleSession {
+        /** The idle session. */
+        @Nonnull
+        private final ImapAsyncSession session;
+
+        /** Time in milliseconds this session was returned to the pool or verified. */
+        private final long lastUsedMillis;
+
+        /** Future of the NOOP health check, null if the session is not being checked. */
+        @Nullable
+        private ImapFuture<ImapAsyncResponse> healthCheckFuture;
+
+        /**
+         * Initializes a {@link IdleSession} object.
+         *
+         * @param session the idle session
+         * @param lastUsedMillis time in milliseconds this session was returned to the pool
+         */
+        IdleSession(@Nonnull final ImapAsyncSession session, final long lastUsedMillis) {
+            this.session = session;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+
+    /**
+     * Sessions belonging to the same server and account. All access is guarded by the instance lock.
+     */
+    private static final class KeyedSessions {
+        /** Idle sessions ready to be borrowed, most recently used first. */
+        private final Deque<IdleSession> idleSessions = new ArrayDeque<IdleSession>();
+
+        /** Idle sessions being verified with NOOP. */
+        private final List<IdleSession> checkingSessions = new ArrayList<IdleSession>();
+
+        /** Leases granted and not returned yet. */
+        private final Set<ImapAsyncSessionLease> leases = new HashSet<ImapAsyncSessionLease>();
+
+        /** True once removed from the pool for having no session, a new instance has to be added for the key. */
+        private boolean isRemoved;
+
+        /**
+         * @return total number of sessions and reserved slots for this key
+         */
+        int size() {
+            return idleSessions.size() + checkingSessions.size() + leases.size();
+        }
+    }
+
+    /**
+     * Initializes a {@link ImapAsyncSessionPool} object.
+     *
+     * @param config pool settings
+     */
+    public ImapAsyncSessionPool(@Nonnull final ImapAsyncSessionPoolConfig config) {
+        this(Clock.systemUTC(), config, LoggerFactory.getLogger(ImapAsyncSessionPool.class));
+    }
+
+    /**
+     * Initializes a {@link ImapAsyncSessionPool} object.
+     *
+     * @param clock Clock instance
+     * @param config pool settings
+     * @param logger Logger instance
+     */
+    ImapAsyncSessionPool(@Nonnull final Clock clock, @Nonnull final ImapAsyncSessionPoolConfig config, @Nonnull final Logger logger) {
+        this.clock = clock;
+        this.config = config;
+        this.logger = logger;
+    }
+
+    /**
+     * Borrows a session for the given server and account. The most recently returned idle session is leased if there is one. Otherwise a slot is
+     * reserved and the lease comes without a session; caller should create and authenticate a session, then attach it to the lease.
+     *
+     * @param serverUri IMAP server URI
+     * @param account account name the session is authenticated for
+     * @return a lease of a pooled session, or of a reserved slot
+     * @throws ImapAsyncClientException when the maximum number of sessions for the key is reached or the pool is shut down
+     */
+    @Nonnull
+    public ImapAsyncSessionLease borrow(@Nonnull final URI serverUri, @Nonnull final String account) throws ImapAsyncClientException {
+        if (isShutdown) {
+            throw new ImapAsyncClientException(FailureType.SESSION_POOL_SHUTDOWN);
+        }
+        final PoolKey key = new PoolKey(serverUri, account);
+        final long now = clock.millis();
+        final Throwable trace = (config.getLeakDetectionThresholdMillis() > 0) ? new Throwable("Lease borrowed here") : null;
+        final List<ImapAsyncSession> closed = new ArrayList<ImapAsyncSession>();
+        ImapAsyncSessionLease lease = null;
+        boolean isExhausted = false;
+        while (lease == null && !isExhausted) {
+            KeyedSessions keyed = pools.get(key);
+            if (keyed == null) {
+                final KeyedSessions newKeyed = new KeyedSessions();
+                final KeyedSessions existing = pools.putIfAbsent(key, newKeyed);
+                keyed = (existing != null) ? existing : newKeyed;
+            }
+            synchronized (keyed) {
+                if (keyed.isRemoved) {
+                    continue; // removed meanwhile, look up the one replacing it
+                }
+                IdleSession idle = keyed.idleSessions.pollFirst();
+                while (idle != null && isConnectionClosed(idle.session)) {
+                    closed.add(idle.session);
+                    idle = keyed.idleSessions.pollFirst();
+                }
+                if (idle == null && keyed.size() >= config.getMaxSessionsPerKey()) {
+                    isExhausted = true;
+                } else {
+                    lease = new ImapAsyncSessionLease(key, (idle != null) ? idle.session : null, now, trace);
+                    keyed.leases.add(lease);
+                }
+            }
+        }
+        for (final ImapAsyncSession session : closed) {
+            closeSession(session, key, CONNECTION_CLOSED);
+        }
+        if (isExhausted) {
+            throw new ImapAsyncClientException(FailureType.SESSION_POOL_EXHAUSTED);
+        }
+        return lease;
+    }
+
+    /**
+     * @param session the idle session
+     * @return true if the connection of the session is known to be closed
+     */
+    private static boolean isConnectionClosed(@Nonnull final ImapAsyncSession session) {
+        return (session instanceof ImapAsyncSessionImpl) && ((ImapAsyncSessionImpl) session).isChannelClosed();
+    }
+
+    /**
+     * Removes the sessions of the given key from the pool if it has no session nor lease left, so that keys no longer used do not accumulate. Caller
+     * must hold the lock of the sessions.
+     *
+     * @param key the key
+     * @param keyed the sessions of the key
+     */
+    private void removeIfEmpty(@Nonnull final PoolKey key, @Nonnull final KeyedSessions keyed) {
+        if (!keyed.isRemoved && keyed.size() == 0) {
+            keyed.isRemoved = true;
+            pools.remove(key, keyed);
+        }
+    }
+
+    /**
+     * Gives the lease back to the pool. Its session, if any, becomes idle and can be borrowed again. A lease without a session releases the reserved
+     * slot. Releasing a lease more than once has no effect.
+     *
+     * @param lease the lease to return
+     */
+    public void release(@Nonnull final ImapAsyncSessionLease lease) {
+        giveBack(lease, true);
+    }
+
+    /**
+     * Gives the lease back to the pool and closes its session, if any. It should be called when the session is broken or in a non reusable state.
+     *
+     * @param lease the lease to return
+     */
+    public void invalidate(@Nonnull final ImapAsyncSessionLease lease) {
+        giveBack(lease, false);
+    }
+
+    /**
+     * Removes the lease from its pool and either keeps its session as idle or closes it.
+     *
+     * @param lease the lease to return
+     * @param isReusable true if the session can be reused
+     */
+    private void giveBack(@Nonnull final ImapAsyncSessionLease lease, final boolean isReusable) {
+        if (!lease.markReturned()) {
+            return;
+        }
+        final ImapAsyncSession session = lease.getSession();
+        final KeyedSessions keyed = pools.get(lease.getKey());
+        if (keyed != null) {
+            synchronized (keyed) {
+                keyed.leases.remove(lease);
+                if (session != null && isReusable && !isShutdown) {
+                    keyed.idleSessions.addFirst(new IdleSession(session, clock.millis()));
+                    return;
+                }
+                removeIfEmpty(lease.getKey(), keyed);
+            }
+        }
+        if (session != null) {
+            closeSession(session, lease.getKey(), isReusable ? SHUTDOWN : INVALIDATED);
+        }
+    }
+
+    /**
+     * Evicts sessions idle longer than the maximum idle time, verifies sessions idle longer than the health check time with NOOP, puts back verified
+     * sessions, closes sessions failing verification, and reports leases held longer than the leak detection threshold. It is expected to be called
+     * periodically by the caller.
+     */
+    public void runMaintenance() {
+        final long now = clock.millis();
+        for (final Map.Entry<PoolKey, KeyedSessions> entry : pools.entrySet()) {
+            final PoolKey key = entry.getKey();
+            final KeyedSessions keyed = entry.getValue();
+            final List<ImapAsyncSession> toEvict = new ArrayList<ImapAsyncSession>();
+            final List<ImapAsyncSession> failedCheck = new ArrayList<ImapAsyncSession>();
+            final List<IdleSession> toCheck = new ArrayList<IdleSession>();
+            synchronized (keyed) {
+                // health checks completed
+                final Iterator<IdleSession> checkIt = keyed.checkingSessions.iterator();
+                while (checkIt.hasNext()) {
+                    final IdleSession checking = checkIt.next();
+                    if (checking.healthCheckFuture == null || !checking.healthCheckFuture.isDone()) {
+                        continue;
+                    }
+                    checkIt.remove();
+                    if (isHealthCheckPassed(checking.healthCheckFuture)) {
+                        keyed.idleSessions.addFirst(new IdleSession(checking.session, now));
+                    } else {
+                        failedCheck.add(checking.session);
+                    }
+                }
+
+                // idle eviction and health check candidates
+                final Iterator<IdleSession> idleIt = keyed.idleSessions.iterator();
+                while (idleIt.hasNext()) {
+                    final IdleSession idle = idleIt.next();
+                    final long idleMillis = now - idle.lastUsedMillis;
+                    if (idleMillis >= config.getMaxIdleMillis()) {
+                        idleIt.remove();
+                        toEvict.add(idle.session);
+                    } else if (idleMillis >= config.getHealthCheckIdleMillis()) {
+                        idleIt.remove();
+                        keyed.checkingSessions.add(idle);
+                        toCheck.add(idle);
+                    }
+                }
+
+                // leak detection
+                final long leakThreshold = config.getLeakDetectionThresholdMillis();
+                if (leakThreshold > 0) {
+                    for (final ImapAsyncSessionLease lease : keyed.leases) {
+                        final long heldMillis = now - lease.getBorrowTimeMillis();
+                        if (heldMillis >= leakThreshold && lease.markLeakReported()) {
+                            logger.error(LEAK_REC, heldMillis, key.serverUri.toASCIIString(), key.account, lease.getBorrowTrace());
+                        }
+                    }
+                }
+                removeIfEmpty(key, keyed);
+            }
+
+            for (final ImapAsyncSession session : toEvict) {
+                closeSession(session, key, IDLE_EVICTED);
+            }
+            for (final ImapAsyncSession session : failedCheck) {
+                closeSession(session, key, HEALTH_CHECK_FAILED);
+            }
+            for (final IdleSession idle : toCheck) {
+                startHealthCheck(idle, key, keyed);
+            }
+        }
+    }
+
+    /**
+     * Sends NOOP on the idle session. The result is examined in the next maintenance run.
+     *
+     * @param idle the idle session being checked
+     * @param key key of the pool the session belongs to
+     * @param keyed sessions of the key
+     */
+    private void startHealthCheck(@Nonnull final IdleSession idle, @Nonnull final PoolKey key, @Nonnull final KeyedSessions keyed) {
+        try {
+            final ImapFuture<ImapAsyncResponse> future = idle.session.execute(new NoopCommand());
+            synchronized (keyed) {
+                idle.healthCheckFuture = future;
+            }
+        } catch (final ImapAsyncClientException | RuntimeException e) {
+            synchronized (keyed) {
+                keyed.checkingSessions.remove(idle);
+                removeIfEmpty(key, keyed);
+            }
+            closeSession(idle.session, key, HEALTH_CHECK_FAILED);
+        }
+    }
+
+    /**
+     * Examines the NOOP result of the health check.
+     *
+     * @param future the completed NOOP future
+     * @return true if server responded OK to NOOP; false otherwise
+     */
+    private boolean isHealthCheckPassed(@Nonnull final ImapFuture<ImapAsyncResponse> future) {
+        final ImapAsyncResponse resp;
+        try {
+            resp = future.get();
+        } catch (final InterruptedException | ExecutionException | RuntimeException e) {
+            return false;
+        }
+        IMAPResponse tagged = null;
+        for (final IMAPResponse line : resp.getResponseLines()) {
+            tagged = line;
+        }
+        return tagged != null && tagged.isOK();
+    }
+
+    /**
+     * Closes the session removed from the pool.
+     *
+     * @param session the session to close
+     * @param key key of the pool the session belonged to
+     * @param reason reason for closing, used for logging
+     */
+    private void closeSession(@Nonnull final ImapAsyncSession session, @Nonnull final PoolKey key, @Nonnull final String reason) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(CLOSE_REC, reason, key.serverUri.toASCIIString(), key.account);
+        }
+        session.close();
+    }
+
+    /**
+     * Closes all idle sessions and rejects further borrowing. Sessions of outstanding leases are closed when they are returned.
+     */
+    public void shutdown() {
+        isShutdown = true;
+        for (final Map.Entry<PoolKey, KeyedSessions> entry : pools.entrySet()) {
+            final Collection<ImapAsyncSession> toClose = new ArrayList<ImapAsyncSession>();
+            final KeyedSessions keyed = entry.getValue();
+            synchronized (keyed) {
+                for (final IdleSession idle : keyed.idleSessions) {
+                    toClose.add(idle.session);
+                }
+                for (final IdleSession checking : keyed.checkingSessions) {
+                    toClose.add(checking.session);
+                }
+                keyed.idleSessions.clear();
+                keyed.checkingSessions.clear();
+                removeIfEmpty(entry.getKey(), keyed);
+            }
+            for (final ImapAsyncSession session : toClose) {
+                closeSession(session, entry.getKey(), SHUTDOWN);
+            }
+        }
+    }
+
+    /**
+     * @param serverUri IMAP server URI
+     * @param account account name
+     * @return number of idle sessions ready to be borrowed for the given server and account
+     */
+    public int getIdleSessionCount(@Nonnull final URI serverUri, @Nonnull final String account) {
+        final KeyedSessions keyed = pools.get(new PoolKey(serverUri, account));
+        if (keyed == null) {
+            return 0;
+        }
+        synchronized (keyed) {
+            return keyed.idleSessions.size();
+        }
+    }
+
+    /**
+     * @param serverUri IMAP server URI
+     * @param account account name
+     * @return number of leases granted and not returned yet for the given server and account
+     */
+    public int getLeasedSessionCount(@Nonnull final URI serverUri, @Nonnull final String account) {
+        final KeyedSessions keyed = pools.get(new PoolKey(serverUri, account));
+        if (keyed == null) {
+            return 0;
+        }
+        synchronized (keyed) {
+            return keyed.leases.size();
+        }
+    }
+
+    /**
+     * @return number of server and account keys having sessions or leases
+     */
+    int getKeyCount() {
+        return pools.size();
+    }
+}
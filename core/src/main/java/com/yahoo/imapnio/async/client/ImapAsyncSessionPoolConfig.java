@@ -0,0 +1,95 @@
+package com.yahoo.imapnio.async.client;
+
+/**
+ * Class for {@link ImapAsyncSessionPool} settings.
+ */
+public final class ImapAsyncSessionPoolConfig {
+
+    /** Default maximum number of sessions, leased and idle, per server and account. */
+    public static final int DEFAULT_MAX_SESSIONS_PER_KEY = 5;
+
+    /** Default maximum time in milliseconds a session can stay idle in the pool before it is evicted. */
+    public static final long DEFAULT_MAX_IDLE_MILLIS = 300000L;
+
+    /** Default idle time in milliseconds after which a session is verified with NOOP before it can be borrowed again. */
+    public static final long DEFAULT_HEALTH_CHECK_IDLE_MILLIS = 60000L;
+
+    /** Default time in milliseconds a lease can be held before it is reported as leaked. */
+    public static final long DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS = 600000L;
+
+    /** Maximum number of sessions, including leased, idle and being checked, per server and account. */
+    private int maxSessionsPerKey = DEFAULT_MAX_SESSIONS_PER_KEY;
+
+    /** Maximum time in milliseconds a session can stay idle in the pool before it is closed and evicted. */
+    private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+
+    /** Idle time in milliseconds after which an idle session is verified with NOOP during maintenance. */
+    private long healthCheckIdleMillis = DEFAULT_HEALTH_CHECK_IDLE_MILLIS;
+
+    /** Time in milliseconds a lease can be held before it is reported as leaked, zero or negative to disable leak detection. */
+    private long leakDetectionThresholdMillis = DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS;
+
+    /**
+     * @return maximum number of sessions per server and account
+     */
+    public int getMaxSessionsPerKey() {
+        return maxSessionsPerKey;
+    }
+
+    /**
+     * Sets the maximum number of sessions, including leased, idle and being checked, per server and account.
+     *
+     * @param maxSessionsPerKey maximum number of sessions
+     */
+    public void setMaxSessionsPerKey(final int maxSessionsPerKey) {
+        this.maxSessionsPerKey = maxSessionsPerKey;
+    }
+
+    /**
+     * @return maximum time in milliseconds a session can stay idle in the pool
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum time a session can stay idle in the pool before it is closed and evicted.
+     *
+     * @param maxIdleMillis time in milliseconds
+     */
+    public void setMaxIdleMillis(final long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * @return idle time in milliseconds after which an idle session is verified with NOOP
+     */
+    public long getHealthCheckIdleMillis() {
+        return healthCheckIdleMillis;
+    }
+
+    /**
+     * Sets the idle time after which an idle session is verified with NOOP during maintenance.
+     *
+     * @param healthCheckIdleMillis time in milliseconds
+     */
+    public void setHealthCheckIdleMillis(final long healthCheckIdleMillis) {
+        this.healthCheckIdleMillis = healthCheckIdleMillis;
+    }
+
+    /**
+     * @return time in milliseconds a lease can be held before it is reported as leaked
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * Sets the time a lease can be held before it is reported as leaked. Zero or negative value disables leak detection.
+     *
+     * @param leakDetectionThresholdMillis time in milliseconds
+     */
+    public void setLeakDetectionThresholdMillis(final long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+    }
+}
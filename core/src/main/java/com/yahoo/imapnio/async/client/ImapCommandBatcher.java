@@ -0,0 +1,304 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.CopyUID;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.UIDSet;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+/**
+ * Executes a command over a large array of {@link MessageNumberSet}, for example UID FETCH, UID STORE, UID COPY or UID EXPUNGE over sparse UIDs,
+ * as several commands whose sequence-sets are no longer than a configured length, since servers reject command lines longer than their limit. The
+ * commands are issued back to back, or pipelined up to the configured number of commands in flight on a session with pipelining enabled, and their
+ * results are merged into a single future.
+ *
+ * <p>
+ * When a command fails, or its tagged response is not OK, no more commands are issued and the merged result reflects that failure.
+ * </p>
+ */
+public final class ImapCommandBatcher {
+
+    /** Default maximum length of a sequence-set, leaving room for the rest of the command line under the 8192 octets limit of RFC7162. */
+    public static final int DEFAULT_MAX_SEQUENCE_SET_LENGTH = 7680;
+
+    /**
+     * Creates the command for one batch of message numbers.
+     */
+    public interface RequestFactory {
+        /**
+         * Creates the command for the given sequence-set.
+         *
+         * @param sequenceSet message numbers of the batch in sequence-set syntax
+         * @return the command for the batch
+         * @throws ImapAsyncClientException when the command cannot be created
+         */
+        @Nonnull
+        ImapRequest create(@Nonnull String sequenceSet) throws ImapAsyncClientException;
+    }
+
+    /** Session the commands are executed on. */
+    @Nonnull
+    private final ImapAsyncSession session;
+
+    /** Maximum length of the sequence-set of each command. */
+    private final int maxSequenceSetLength;
+
+    /** Maximum number of commands in flight, 1 to issue them back to back. */
+    private final int maxInFlightCommands;
+
+    /** Mapper to parse the results of each command. */
+    @Nonnull
+    private final ImapResponseMapper mapper = new ImapResponseMapper();
+
+    /**
+     * Initializes a {@link ImapCommandBatcher} object issuing the commands back to back.
+     *
+     * @param session session the commands are executed on
+     * @param maxSequenceSetLength maximum length of the sequence-set of each command
+     */
+    public ImapCommandBatcher(@Nonnull final ImapAsyncSession session, final int maxSequenceSetLength) {
+        this(session, maxSequenceSetLength, 1);
+    }
+
+    /**
+     * Initializes a {@link ImapCommandBatcher} object.
+     *
+     * @param session session the commands are executed on
+     * @param maxSequenceSetLength maximum length of the sequence-set of each command
+     * @param maxInFlightCommands maximum number of commands in flight, more than 1 requires the session to have pipelining enabled
+     */
+    public ImapCommandBatcher(@Nonnull final ImapAsyncSession session, final int maxSequenceSetLength, final int maxInFlightCommands) {
+        this.session = session;
+        this.maxSequenceSetLength = maxSequenceSetLength;
+        this.maxInFlightCommands = Math.max(1, maxInFlightCommands);
+    }
+
+    /**
+     * Executes the commands over the given message numbers. The merged response has the untagged responses of all commands in order, followed by
+     * the tagged response of the first command which is not OK, or of the last command if all are OK, so it can be mapped by
+     * {@link ImapResponseMapper} as the response of a single command.
+     *
+     * @param msgsets the message numbers
+     * @param factory factory of the command for each batch
+     * @return the future of the merged response
+     * @throws ImapAsyncClientException when the given message numbers are empty
+     */
+    public ImapFuture<ImapAsyncResponse> execute(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final RequestFactory factory)
+            throws ImapAsyncClientException {
+        final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+        final ImapFuture<List<ImapAsyncResponse>> batchesFuture = new BatchRun(split(msgsets), factory).start();
+        batchesFuture.addListener(new ImapFutureListener<List<ImapAsyncResponse>>() {
+            @Override
+            public void onSuccess(final List<ImapAsyncResponse> responses) {
+                final List<IMAPResponse> lines = new ArrayList<IMAPResponse>();
+                IMAPResponse tagged = null;
+                for (final ImapAsyncResponse response : responses) {
+                    for (final IMAPResponse line : response.getResponseLines()) {
+                        if (!line.isTagged()) {
+                            lines.add(line);
+                        } else if (tagged == null || tagged.isOK()) {
+                            tagged = line;
+                        }
+                    }
+                }
+                if (tagged != null) {
+                    lines.add(tagged);
+                }
+                future.done(new ImapAsyncResponse(lines));
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Executes UID COPY or UID MOVE commands over the given UIDs, and merges the COPYUID response codes (RFC4315) of all commands.
+     *
+     * @param msgsets the UIDs
+     * @param factory factory of the UID COPY or UID MOVE command for each batch
+     * @return the future of the merged COPYUID, failing with {@link FailureType#INVALID_INPUT} if a command does not return COPYUID
+     * @throws ImapAsyncClientException when the given UIDs are empty
+     */
+    public ImapFuture<CopyUID> executeCopyUid(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final RequestFactory factory)
+            throws ImapAsyncClientException {
+        final ImapFuture<CopyUID> future = new ImapFuture<CopyUID>();
+        final ImapFuture<List<ImapAsyncResponse>> batchesFuture = new BatchRun(split(msgsets), factory).start();
+        batchesFuture.addListener(new ImapFutureListener<List<ImapAsyncResponse>>() {
+            @Override
+            public void onSuccess(final List<ImapAsyncResponse> responses) {
+                long uidValidity = -1;
+                final List<UIDSet> src = new ArrayList<UIDSet>();
+                final List<UIDSet> dst = new ArrayList<UIDSet>();
+                try {
+                    for (final ImapAsyncResponse response : responses) {
+                        final IMAPResponse[] lines = response.getResponseLines().toArray(new IMAPResponse[0]);
+                        if (lines.length == 0 || !lines[lines.length - 1].isOK()) {
+                            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                        }
+                        final CopyUID copyUid = mapper.readValue(lines, CopyUID.class);
+                        uidValidity = copyUid.uidvalidity;
+                        addAll(src, copyUid.src);
+                        addAll(dst, copyUid.dst);
+                    }
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                    return;
+                }
+                future.done(new CopyUID(uidValidity, src.toArray(new UIDSet[src.size()]), dst.toArray(new UIDSet[dst.size()])));
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param list list to add to
+     * @param uidsets UIDSet array to add, could be null
+     */
+    private static void addAll(@Nonnull final List<UIDSet> list, final UIDSet[] uidsets) {
+        if (uidsets != null) {
+            for (final UIDSet uidset : uidsets) {
+                list.add(uidset);
+            }
+        }
+    }
+
+    /**
+     * @param msgsets the message numbers
+     * @return the sequence-sets of the commands
+     * @throws ImapAsyncClientException when the given message numbers are empty
+     */
+    private String[] split(@Nonnull final MessageNumberSet[] msgsets) throws ImapAsyncClientException {
+        final List<String> sequenceSets = MessageNumberSet.buildStrings(msgsets, maxSequenceSetLength);
+        if (sequenceSets.isEmpty()) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        return sequenceSets.toArray(new String[sequenceSets.size()]);
+    }
+
+    /**
+     * Issues the commands of one {@link #execute(MessageNumberSet[], RequestFactory)} call, keeping at most the configured number of them in flight,
+     * and collects their responses in order.
+     */
+    private final class BatchRun {
+
+        /** Sequence-sets of the commands. */
+        private final String[] sequenceSets;
+
+        /** Factory of the commands. */
+        private final RequestFactory factory;
+
+        /** Responses of the commands, by index. */
+        private final ImapAsyncResponse[] responses;
+
+        /** Future of the responses of all commands. */
+        private final ImapFuture<List<ImapAsyncResponse>> future = new ImapFuture<List<ImapAsyncResponse>>();
+
+        /** Index of the next command to issue. Guarded by this. */
+        private int next;
+
+        /** Number of commands completed. Guarded by this. */
+        private int completed;
+
+        /** Whether a command failed or its tagged response is not OK, so no more commands are issued. Guarded by this. */
+        private boolean isStopped;
+
+        /**
+         * Initializes a {@link BatchRun} object.
+         *
+         * @param sequenceSets sequence-sets of the commands
+         * @param factory factory of the commands
+         */
+        private BatchRun(@Nonnull final String[] sequenceSets, @Nonnull final RequestFactory factory) {
+            this.sequenceSets = sequenceSets;
+            this.factory = factory;
+            this.responses = new ImapAsyncResponse[sequenceSets.length];
+        }
+
+        /**
+         * Issues the first commands.
+         *
+         * @return future of the responses of all commands issued
+         */
+        private ImapFuture<List<ImapAsyncResponse>> start() {
+            issue();
+            return future;
+        }
+
+        /**
+         * Issues the next commands within the in flight limit, and completes the future once all commands issued are done.
+         */
+        private synchronized void issue() {
+            while (!isStopped && !future.isDone() && next < sequenceSets.length && next - completed < maxInFlightCommands) {
+                final int index = next++;
+                try {
+                    session.execute(factory.create(sequenceSets[index])).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+                        @Override
+                        public void onSuccess(final ImapAsyncResponse response) {
+                            onResponse(index, response);
+                        }
+
+                        @Override
+                        public void onFailure(final Exception cause) {
+                            onError(cause);
+                        }
+                    });
+                } catch (final ImapAsyncClientException e) {
+                    onError(e);
+                }
+            }
+            if (completed == next && (isStopped || next == sequenceSets.length)) {
+                final List<ImapAsyncResponse> list = new ArrayList<ImapAsyncResponse>(completed);
+                for (int i = 0; i < completed; i++) {
+                    list.add(responses[i]);
+                }
+                future.done(list);
+            }
+        }
+
+        /**
+         * Collects the response of a command and issues the next ones.
+         *
+         * @param index index of the command
+         * @param response response of the command
+         */
+        private synchronized void onResponse(final int index, @Nonnull final ImapAsyncResponse response) {
+            responses[index] = response;
+            completed++;
+            for (final IMAPResponse line : response.getResponseLines()) {
+                if (line.isTagged() && !line.isOK()) {
+                    isStopped = true;
+                }
+            }
+            issue();
+        }
+
+        /**
+         * Fails the run when a command fails.
+         *
+         * @param cause the failure
+         */
+        private synchronized void onError(@Nonnull final Exception cause) {
+            isStopped = true;
+            future.done(cause);
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.yahoo.imapnio.async.client;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Future object for async operations.
+ * Future object for async operations. Completion is lock-free; the lock is only taken to wake up threads blocked in {@code get()}. Listeners can be
+ * registered to be notified upon completion without blocking a thread.
  *
  * @param <V> CommandResponse
  */
@@ -22,14 +33,48 @@ public class ImapFuture<V> implements Future<V> {
     private final AtomicBoolean isDone = new AtomicBoolean(false);
     /** Is this future task done? */
     private final AtomicBoolean isCancelled = new AtomicBoolean(false);
+    /** Set by the first completion, guards the result and cause from being overwritten. */
+    private final AtomicBoolean isCompleting = new AtomicBoolean(false);
     /** Holds the failure cause. */
     private final AtomicReference<Exception> causeRef = new AtomicReference<Exception>();
     /** Used to synchronize threads. */
     private final Object lock = new Object();
     /** holds the result object. */
     private final AtomicReference<V> resultRef = new AtomicReference<V>();
+    /** Number of threads blocked in get(). */
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    /** Listeners waiting to be notified. */
+    private final ConcurrentLinkedQueue<ListenerEntry<V>> listeners = new ConcurrentLinkedQueue<ListenerEntry<V>>();
     /** Wait interval when the user calls get(). */
     private static final int GET_WAIT_INTERVAL_MILLIS = 1000;
+    /** Logger for failures thrown by listeners. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImapFuture.class);
+
+    /**
+     * A registered listener and the executor to invoke it with.
+     *
+     * @param <V> the result type of the future
+     */
+    private static final class ListenerEntry<V> {
+        /** The listener. */
+        @Nonnull
+        private final ImapFutureListener<V> listener;
+
+        /** Executor to invoke the listener, null to invoke it on the completing thread. */
+        @Nullable
+        private final Executor executor;
+
+        /**
+         * Initializes a {@link ListenerEntry} object.
+         *
+         * @param listener the listener
+         * @param executor executor to invoke the listener, null to invoke it on the completing thread
+         */
+        ListenerEntry(@Nonnull final ImapFutureListener<V> listener, @Nullable final Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
 
     /**
      * Is this Future cancelled.
@@ -63,12 +108,9 @@ public class ImapFuture<V> implements Future<V> {
      * @param result the result to be set
      */
     public void done(@Nonnull final V result) {
-        synchronized (lock) {
-            if (!isDone.get()) {
-                resultRef.set(result);
-                isDone.set(true);
-            }
-            lock.notify();
+        if (isCompleting.compareAndSet(false, true)) {
+            resultRef.set(result);
+            complete();
         }
     }
 
@@ -88,48 +130,186 @@ public class ImapFuture<V> implements Future<V> {
      * @param cancelled true if the call was the result of a cancellation
      */
     private void done(final Exception cause, final boolean cancelled) {
-        synchronized (lock) {
-            if (!isDone.get()) {
-                causeRef.set(cause);
-                isDone.set(true);
-                isCancelled.set(cancelled);
+        if (isCompleting.compareAndSet(false, true)) {
+            causeRef.set(cause);
+            isCancelled.set(cancelled);
+            complete();
+        }
+    }
+
+    /**
+     * Publishes the completion, wakes up the blocked threads if any, and notifies the listeners.
+     */
+    private void complete() {
+        isDone.set(true);
+        if (waiters.get() > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+        notifyListeners();
+    }
+
+    /**
+     * Adds a listener to be notified when this future is completed. The listener is invoked on the thread completing this future, or on the calling
+     * thread if this future is done already.
+     *
+     * @param listener the listener
+     * @return this future
+     */
+    public ImapFuture<V> addListener(@Nonnull final ImapFutureListener<V> listener) {
+        return addListener(listener, null);
+    }
+
+    /**
+     * Adds a listener to be notified when this future is completed. The listener is invoked through the given executor.
+     *
+     * @param listener the listener
+     * @param executor executor to invoke the listener, null to invoke it on the completing thread
+     * @return this future
+     */
+    public ImapFuture<V> addListener(@Nonnull final ImapFutureListener<V> listener, @Nullable final Executor executor) {
+        listeners.add(new ListenerEntry<V>(listener, executor));
+        if (isDone.get()) {
+            notifyListeners();
+        }
+        return this;
+    }
+
+    /**
+     * Notifies the registered listeners. Each listener is polled out of the queue, hence notified exactly once even when called concurrently.
+     */
+    private void notifyListeners() {
+        for (ListenerEntry<V> entry = listeners.poll(); entry != null; entry = listeners.poll()) {
+            final ImapFutureListener<V> listener = entry.listener;
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    invokeListener(listener);
+                }
+            };
+            if (entry.executor == null) {
+                task.run();
+            } else {
+                try {
+                    entry.executor.execute(task);
+                } catch (final RejectedExecutionException e) {
+                    task.run(); // executor is shut down or saturated, listener still has to be notified
+                }
+            }
+        }
+    }
+
+    /**
+     * Invokes the listener with the outcome of this future.
+     *
+     * @param listener the listener
+     */
+    private void invokeListener(@Nonnull final ImapFutureListener<V> listener) {
+        try {
+            final Exception cause = causeRef.get();
+            if (cause != null) {
+                listener.onFailure(cause);
+            } else {
+                listener.onSuccess(resultRef.get());
             }
-            lock.notify();
+        } catch (final RuntimeException e) {
+            // a faulty listener should not prevent other listeners and the completing thread from proceeding
+            LOGGER.error("Listener {} failed.", listener, e);
         }
     }
 
+    /**
+     * Returns a {@link CompletableFuture} completed when this future is completed. Cancelling the returned future cancels this future.
+     *
+     * @return a {@link CompletableFuture} mirroring this future
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        return toCompletableFuture(null);
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} completed when this future is completed. Cancelling the returned future cancels this future.
+     *
+     * @param executor executor to complete the returned future with, null to complete it on the thread completing this future
+     * @return a {@link CompletableFuture} mirroring this future
+     */
+    public CompletableFuture<V> toCompletableFuture(@Nullable final Executor executor) {
+        final CompletableFuture<V> cf = new CompletableFuture<V>();
+        addListener(new ImapFutureListener<V>() {
+            @Override
+            public void onSuccess(final V result) {
+                cf.complete(result);
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                cf.completeExceptionally(cause);
+            }
+        }, executor);
+        cf.whenComplete(new BiConsumer<V, Throwable>() {
+            @Override
+            public void accept(final V result, final Throwable cause) {
+                if (cause instanceof CancellationException) {
+                    cancel(true);
+                }
+            }
+        });
+        return cf;
+    }
+
     @Override
     public V get() throws InterruptedException, ExecutionException {
-        synchronized (lock) {
-            while (!isDone.get()) {
-                lock.wait(GET_WAIT_INTERVAL_MILLIS);
+        if (!isDone.get()) {
+            waiters.incrementAndGet();
+            try {
+                synchronized (lock) {
+                    while (!isDone.get()) {
+                        lock.wait(GET_WAIT_INTERVAL_MILLIS);
+                    }
+                }
+            } finally {
+                waiters.decrementAndGet();
             }
-            lock.notify();
-        }
-        if (causeRef.get() != null) {
-            throw new ExecutionException(causeRef.get());
-        } else {
-            return resultRef.get();
         }
+        return getNow();
     }
 
     @Override
     public V get(final long timeout, @Nonnull final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        synchronized (lock) {
-            if (!isDone.get()) {
-                lock.wait(unit.toMillis(timeout));
+        if (!isDone.get()) {
+            final long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+            waiters.incrementAndGet();
+            try {
+                synchronized (lock) {
+                    long remainingMillis = unit.toMillis(timeout);
+                    while (!isDone.get() && remainingMillis > 0) {
+                        lock.wait(remainingMillis);
+                        remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                    }
+                }
+            } finally {
+                waiters.decrementAndGet();
             }
-            lock.notify();
         }
         if (isDone.get()) {
-            if (causeRef.get() != null) {
-                throw new ExecutionException(causeRef.get());
-            } else {
-                return resultRef.get();
-            }
+            return getNow();
         } else {
             throw new TimeoutException("Timeout reached.");
         }
     }
-}
 
+    /**
+     * Returns the outcome of this future, assuming it is done.
+     *
+     * @return the result
+     * @throws ExecutionException if this future is completed with an exception
+     */
+    private V getNow() throws ExecutionException {
+        if (causeRef.get() != null) {
+            throw new ExecutionException(causeRef.get());
+        } else {
+            return resultRef.get();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener notified when an {@link ImapFuture} is completed.
+ *
+ * @param <V> the result type of the future
+ */
+public interface ImapFutureListener<V> {
+
+    /**
+     * Invoked when the future is completed with a result.
+     *
+     * @param result the result of the future
+     */
+    void onSuccess(@Nonnull V result);
+
+    /**
+     * Invoked when the future is completed with an exception, including cancellation.
+     *
+     * @param cause the exception that caused the future to fail
+     */
+    void onFailure(@Nonnull Exception cause);
+}
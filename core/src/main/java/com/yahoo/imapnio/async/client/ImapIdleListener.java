@@ -0,0 +1,38 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Listener of a session kept in IDLE by {@link ImapIdleManager}. Methods are invoked on the I/O thread of the session or on the timer thread, and
+ * must not block.
+ */
+public interface ImapIdleListener {
+
+    /**
+     * Invoked when the server sends a mailbox event while the session is idling.
+     *
+     * @param session the session
+     * @param event the event
+     */
+    void onEvent(@Nonnull ImapAsyncSession session, @Nonnull MailboxEvent event);
+
+    /**
+     * Invoked when an event response cannot be decoded, the session keeps idling.
+     *
+     * @param session the session
+     * @param cause the decoding failure
+     */
+    void onError(@Nonnull ImapAsyncSession session, @Nonnull ImapAsyncClientException cause);
+
+    /**
+     * Invoked once when the session stops idling, either because it was asked to, or because IDLE failed.
+     *
+     * @param session the session
+     * @param cause the failure, null if the session was asked to stop
+     */
+    void onStopped(@Nonnull ImapAsyncSession session, @Nullable Exception cause);
+}
@@ -0,0 +1,557 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * Keeps sessions in IDLE (RFC2177) and delivers the mailbox events they receive to an {@link ImapIdleListener} as soon as they arrive. IDLE is
+ * terminated and issued again before the server logs the client out, which RFC2177 allows after 29 minutes of inactivity. The re-arm delay of
+ * each cycle is randomly shortened by up to a jitter, so that sessions started together do not all re-arm at the same time.
+ *
+ * <p>
+ * All re-arm timeouts are scheduled on the given timer, meant to be one {@link io.netty.util.HashedWheelTimer} shared by all managers of the JVM:
+ * a wheel schedules and cancels a timeout in constant time, and its single thread only sends DONE, so hundreds of thousands of idling sessions
+ * cost one pending timeout each. Events are decoded on the I/O thread as the session adds them to the response queue of IDLE, and are not kept.
+ * </p>
+ *
+ * <p>
+ * Commands are executed through {@link IdleHandle#execute(ImapRequest)}: IDLE is suspended, the queued commands are executed one after another,
+ * then IDLE is resumed. Mailbox events received while a command is executed are part of that command's response, and are delivered to the
+ * listener as well, through an {@link ImapUntaggedResponseListener} added to the session while it idles, if the session is an
+ * {@link ImapUntaggedResponseSource}.
+ * </p>
+ *
+ * <p>
+ * The listener is invoked on the I/O thread of the session; an exception it throws is logged and does not affect the session.
+ * </p>
+ */
+public final class ImapIdleManager {
+
+    /** Default delay in milliseconds after which IDLE is re-armed, before jitter. */
+    public static final long DEFAULT_REARM_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(25);
+
+    /** Default maximum jitter in milliseconds subtracted from the re-arm delay. */
+    public static final long DEFAULT_JITTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** Maximum re-arm delay in milliseconds, servers may log out a client idling for longer. */
+    public static final long MAX_REARM_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(29);
+
+    /** Log message when a listener fails. */
+    private static final String LISTENER_FAILURE_REC = "Idle listener failed handling {} of session {}";
+
+    /** Timer scheduling the re-arm timeouts. */
+    @Nonnull
+    private final Timer timer;
+
+    /** Logger instance. */
+    @Nonnull
+    private final Logger logger;
+
+    /** Delay in milliseconds after which IDLE is re-armed, before jitter. */
+    private final long rearmIntervalMillis;
+
+    /** Maximum jitter in milliseconds subtracted from the re-arm delay. */
+    private final long jitterMillis;
+
+    /**
+     * Initializes a {@link ImapIdleManager} object with the default re-arm interval and jitter.
+     *
+     * @param timer timer scheduling the re-arm timeouts, shared by all managers
+     */
+    public ImapIdleManager(@Nonnull final Timer timer) {
+        this.timer = timer;
+        this.logger = LoggerFactory.getLogger(ImapIdleManager.class);
+        this.rearmIntervalMillis = DEFAULT_REARM_INTERVAL_MILLIS;
+        this.jitterMillis = DEFAULT_JITTER_MILLIS;
+    }
+
+    /**
+     * Initializes a {@link ImapIdleManager} object.
+     *
+     * @param timer timer scheduling the re-arm timeouts, shared by all managers
+     * @param rearmIntervalMillis delay in milliseconds after which IDLE is re-armed, at most {@link #MAX_REARM_INTERVAL_MILLIS}
+     * @param jitterMillis maximum jitter in milliseconds subtracted from the re-arm delay, less than the re-arm interval
+     * @throws ImapAsyncClientException when the re-arm interval or the jitter is out of range
+     */
+    public ImapIdleManager(@Nonnull final Timer timer, final long rearmIntervalMillis, final long jitterMillis) throws ImapAsyncClientException {
+        this(timer, rearmIntervalMillis, jitterMillis, LoggerFactory.getLogger(ImapIdleManager.class));
+    }
+
+    /**
+     * Initializes a {@link ImapIdleManager} object.
+     *
+     * @param timer timer scheduling the re-arm timeouts, shared by all managers
+     * @param rearmIntervalMillis delay in milliseconds after which IDLE is re-armed, at most {@link #MAX_REARM_INTERVAL_MILLIS}
+     * @param jitterMillis maximum jitter in milliseconds subtracted from the re-arm delay, less than the re-arm interval
+     * @param logger Logger instance
+     * @throws ImapAsyncClientException when the re-arm interval or the jitter is out of range
+     */
+    ImapIdleManager(@Nonnull final Timer timer, final long rearmIntervalMillis, final long jitterMillis, @Nonnull final Logger logger)
+            throws ImapAsyncClientException {
+        if (rearmIntervalMillis <= 0 || rearmIntervalMillis > MAX_REARM_INTERVAL_MILLIS || jitterMillis < 0 || jitterMillis >= rearmIntervalMillis) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.timer = timer;
+        this.logger = logger;
+        this.rearmIntervalMillis = rearmIntervalMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Starts idling on the given session, which must have a mailbox selected and no command in flight. The session must not be used directly
+     * until the listener is notified that it stopped idling, commands are executed through the returned handle instead.
+     *
+     * @param session the session
+     * @param listener listener of the events and of the end of idling
+     * @return the handle of the idling session
+     * @throws ImapAsyncClientException when IDLE cannot be executed on the session
+     */
+    @Nonnull
+    public IdleHandle start(@Nonnull final ImapAsyncSession session, @Nonnull final ImapIdleListener listener) throws ImapAsyncClientException {
+        final IdleHandle handle = new IdleHandle(session, listener);
+        final ImapFuture<ImapAsyncResponse> idleFuture;
+        synchronized (handle) {
+            idleFuture = handle.startIdle();
+        }
+        if (session instanceof ImapUntaggedResponseSource) {
+            ((ImapUntaggedResponseSource) session).addUntaggedResponseListener(handle.commandEvents);
+        }
+        idleFuture.addListener(handle);
+        return handle;
+    }
+
+    /**
+     * @return the delay in milliseconds of the next re-arm, the re-arm interval shortened by a random jitter
+     */
+    private long nextRearmDelayMillis() {
+        return rearmIntervalMillis - ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+    }
+
+    /**
+     * States of an idling session.
+     */
+    private enum IdleState {
+        /** IDLE is in flight. */
+        IDLING,
+
+        /** IDLE is being terminated, DONE is sent or will be sent once the server accepted IDLE. */
+        TERMINATING,
+
+        /** A queued command is executed. */
+        EXECUTING,
+
+        /** The session stopped idling. */
+        STOPPED
+    }
+
+    /**
+     * A command waiting for IDLE to be suspended.
+     */
+    private static final class PendingCommand {
+        /** The command. */
+        private final ImapRequest command;
+
+        /** Future of the command response, returned to the caller. */
+        private final ImapFuture<ImapAsyncResponse> future;
+
+        /**
+         * Initializes a {@link PendingCommand} object.
+         *
+         * @param command the command
+         * @param future future of the command response
+         */
+        private PendingCommand(@Nonnull final ImapRequest command, @Nonnull final ImapFuture<ImapAsyncResponse> future) {
+            this.command = command;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Handle of a session kept in IDLE. It is the re-arm timer task and the listener of the IDLE future itself, so that a re-arm cycle only allocates
+     * the command and its timeout.
+     */
+    public final class IdleHandle implements TimerTask, ImapFutureListener<ImapAsyncResponse> {
+
+        /** The session. */
+        @Nonnull
+        private final ImapAsyncSession session;
+
+        /** Listener of the events and of the end of idling. */
+        @Nonnull
+        private final ImapIdleListener listener;
+
+        /** Response queue of IDLE, reused by every IDLE of the session. */
+        @Nonnull
+        private final EventQueue events = new EventQueue();
+
+        /** Listener of the session forwarding the events received while a queued command is executed. */
+        @Nonnull
+        private final CommandEventForwarder commandEvents = new CommandEventForwarder();
+
+        /** Current state. Guarded by this. */
+        private IdleState state = IdleState.IDLING;
+
+        /** IDLE in flight, null if none. Guarded by this. */
+        private IdleCommand idleCommand;
+
+        /** Re-arm timeout of the IDLE in flight, null if none. Guarded by this. */
+        private Timeout timeout;
+
+        /** Whether the server accepted the IDLE in flight with a continuation request. Guarded by this. */
+        private boolean isContinued;
+
+        /** Whether DONE was sent for the IDLE in flight. Guarded by this. */
+        private boolean isDoneSent;
+
+        /** Whether the session was asked to stop idling. Guarded by this. */
+        private boolean isStopRequested;
+
+        /** Commands waiting for IDLE to be suspended, in the order they were issued, created on first use. Guarded by this. */
+        private ArrayDeque<PendingCommand> pendingCommands;
+
+        /**
+         * Initializes a {@link IdleHandle} object.
+         *
+         * @param session the session
+         * @param listener listener of the events and of the end of idling
+         */
+        private IdleHandle(@Nonnull final ImapAsyncSession session, @Nonnull final ImapIdleListener listener) {
+            this.session = session;
+            this.listener = listener;
+        }
+
+        /**
+         * @return the session
+         */
+        @Nonnull
+        public ImapAsyncSession getSession() {
+            return session;
+        }
+
+        /**
+         * @return true if IDLE is in flight and not being terminated
+         */
+        public synchronized boolean isIdling() {
+            return state == IdleState.IDLING;
+        }
+
+        /**
+         * Executes a command on the session, suspending IDLE until the command and the ones queued before it are done. Mailbox events received
+         * while the command is executed are in its response, and are delivered to the listener as well.
+         *
+         * @param command the command
+         * @return the future of the command response
+         * @throws ImapAsyncClientException when the session stopped idling or was asked to
+         */
+        @Nonnull
+        public ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+            final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+            synchronized (this) {
+                if (state == IdleState.STOPPED || isStopRequested) {
+                    throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED);
+                }
+                if (pendingCommands == null) {
+                    pendingCommands = new ArrayDeque<PendingCommand>();
+                }
+                pendingCommands.add(new PendingCommand(command, future));
+                if (state == IdleState.IDLING) {
+                    terminateIdle();
+                }
+            }
+            return future;
+        }
+
+        /**
+         * Stops idling once the queued commands are done. The listener is notified when the session can be used directly again.
+         */
+        public void stop() {
+            synchronized (this) {
+                if (state == IdleState.STOPPED || isStopRequested) {
+                    return;
+                }
+                isStopRequested = true;
+                if (state == IdleState.IDLING) {
+                    terminateIdle();
+                }
+            }
+        }
+
+        /**
+         * Executes IDLE and schedules its re-arm timeout. Caller must hold the lock of this handle.
+         *
+         * @return the future of IDLE, its listener has to be added once the lock is released
+         * @throws ImapAsyncClientException when IDLE cannot be executed on the session
+         */
+        private ImapFuture<ImapAsyncResponse> startIdle() throws ImapAsyncClientException {
+            state = IdleState.IDLING;
+            isContinued = false;
+            isDoneSent = false;
+            idleCommand = new IdleCommand(events);
+            timeout = timer.newTimeout(this, nextRearmDelayMillis(), TimeUnit.MILLISECONDS);
+            try {
+                return session.execute(idleCommand);
+            } catch (final ImapAsyncClientException | RuntimeException e) {
+                timeout.cancel();
+                timeout = null;
+                idleCommand = null;
+                throw e;
+            }
+        }
+
+        /**
+         * Terminates IDLE, DONE is sent right away if the server accepted IDLE, otherwise when it does. Caller must hold the lock of this handle.
+         */
+        private void terminateIdle() {
+            state = IdleState.TERMINATING;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+            if (isContinued) {
+                sendDone();
+            }
+        }
+
+        /**
+         * Sends DONE for the IDLE in flight. Caller must hold the lock of this handle.
+         */
+        private void sendDone() {
+            isDoneSent = true;
+            try {
+                session.terminateCommand(idleCommand);
+            } catch (final ImapAsyncClientException | RuntimeException e) {
+                // the IDLE future completes anyway, with the tagged response or the failure closing the channel
+            }
+        }
+
+        /**
+         * Sends DONE if IDLE is being terminated once the server accepted IDLE.
+         */
+        private synchronized void onContinuation() {
+            isContinued = true;
+            if (state == IdleState.TERMINATING && !isDoneSent) {
+                sendDone();
+            }
+        }
+
+        @Override
+        public void run(@Nonnull final Timeout expired) {
+            synchronized (this) {
+                if (expired != timeout || state != IdleState.IDLING) {
+                    return; // IDLE this timeout belongs to is done already
+                }
+                timeout = null;
+                terminateIdle();
+            }
+        }
+
+        @Override
+        public void onSuccess(@Nonnull final ImapAsyncResponse response) {
+            IMAPResponse tagged = null;
+            for (final IMAPResponse line : response.getResponseLines()) {
+                if (line.isTagged()) {
+                    tagged = line;
+                }
+            }
+            events.clear();
+            onIdleDone((tagged != null && tagged.isOK()) ? null : new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED));
+        }
+
+        @Override
+        public void onFailure(@Nonnull final Exception cause) {
+            events.clear();
+            onIdleDone(cause);
+        }
+
+        /**
+         * Releases the IDLE just done and proceeds with the queued commands, IDLE again or stop.
+         *
+         * @param cause the failure of IDLE, null if it completed with OK
+         */
+        private void onIdleDone(@Nullable final Exception cause) {
+            synchronized (this) {
+                idleCommand = null;
+                if (timeout != null) {
+                    timeout.cancel();
+                    timeout = null;
+                }
+            }
+            proceed(cause);
+        }
+
+        /**
+         * Proceeds after IDLE or a queued command is done: executes the next queued command, or stops if asked to or on failure, or issues IDLE
+         * again. Callbacks and command futures are completed outside the lock of this handle.
+         *
+         * @param failure the failure stopping the session, null to continue
+         */
+        private void proceed(@Nullable final Exception failure) {
+            Exception cause = failure;
+            while (true) {
+                PendingCommand next = null;
+                ArrayDeque<PendingCommand> dropped = null;
+                ImapFuture<ImapAsyncResponse> idleFuture = null;
+                synchronized (this) {
+                    if (cause != null || ((pendingCommands == null || pendingCommands.isEmpty()) && isStopRequested)) {
+                        state = IdleState.STOPPED;
+                        dropped = pendingCommands;
+                        pendingCommands = null;
+                    } else if (pendingCommands != null && !pendingCommands.isEmpty()) {
+                        state = IdleState.EXECUTING;
+                        next = pendingCommands.poll();
+                    } else {
+                        try {
+                            idleFuture = startIdle();
+                        } catch (final ImapAsyncClientException | RuntimeException e) {
+                            cause = e;
+                            continue;
+                        }
+                    }
+                }
+
+                if (idleFuture != null) {
+                    idleFuture.addListener(this);
+                    return;
+                }
+                if (next == null) { // stopped
+                    if (session instanceof ImapUntaggedResponseSource) {
+                        ((ImapUntaggedResponseSource) session).removeUntaggedResponseListener(commandEvents);
+                    }
+                    if (dropped != null) {
+                        for (final PendingCommand command : dropped) {
+                            command.future.done(cause);
+                        }
+                    }
+                    try {
+                        listener.onStopped(session, cause);
+                    } catch (final RuntimeException e) {
+                        logger.error(LISTENER_FAILURE_REC, "stop", session, e);
+                    }
+                    return;
+                }
+                final PendingCommand command = next;
+                final ImapFuture<ImapAsyncResponse> commandFuture;
+                try {
+                    commandFuture = session.execute(command.command);
+                } catch (final ImapAsyncClientException | RuntimeException e) {
+                    command.future.done(e);
+                    continue; // next command, or IDLE which reports the session failure if any
+                }
+                commandFuture.addListener(new ImapFutureListener<ImapAsyncResponse>() {
+                    @Override
+                    public void onSuccess(@Nonnull final ImapAsyncResponse response) {
+                        command.future.done(response);
+                        proceed(null);
+                    }
+
+                    @Override
+                    public void onFailure(@Nonnull final Exception commandCause) {
+                        command.future.done(commandCause);
+                        proceed(null);
+                    }
+                });
+                return;
+            }
+        }
+
+        /**
+         * Response queue of IDLE delivering events to the listener as the session adds them, instead of keeping them. Only the tagged response is
+         * kept, to complete IDLE.
+         */
+        private final class EventQueue extends ConcurrentLinkedQueue<IMAPResponse> {
+
+            /** Serial version UID. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean add(@Nonnull final IMAPResponse response) {
+                if (response.isTagged()) {
+                    return super.add(response);
+                }
+                if (response.isContinuation()) {
+                    onContinuation();
+                    return true;
+                }
+                final MailboxEvent event;
+                try {
+                    event = MailboxEventReader.decode(response);
+                } catch (final ImapAsyncClientException e) {
+                    notifyError(e);
+                    return true;
+                }
+                if (event != null) {
+                    notifyEvent(event);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Delivers an event to the listener, a failing listener must not break reading the responses of the session.
+         *
+         * @param event the event
+         */
+        private void notifyEvent(@Nonnull final MailboxEvent event) {
+            try {
+                listener.onEvent(session, event);
+            } catch (final RuntimeException e) {
+                logger.error(LISTENER_FAILURE_REC, "an event", session, e);
+            }
+        }
+
+        /**
+         * Delivers a decoding failure to the listener, a failing listener must not break reading the responses of the session.
+         *
+         * @param cause the decoding failure
+         */
+        private void notifyError(@Nonnull final ImapAsyncClientException cause) {
+            try {
+                listener.onError(session, cause);
+            } catch (final RuntimeException e) {
+                logger.error(LISTENER_FAILURE_REC, "an error", session, e);
+            }
+        }
+
+        /**
+         * Listener of the untagged responses of the session delivering the events received while a queued command is executed. Events received
+         * while IDLE is in flight come through the response queue of IDLE instead.
+         */
+        private final class CommandEventForwarder implements ImapUntaggedResponseListener {
+
+            @Override
+            public void onMailboxEvent(@Nonnull final ImapAsyncSession s, @Nonnull final MailboxEvent event) {
+                synchronized (IdleHandle.this) {
+                    if (state != IdleState.EXECUTING) {
+                        return;
+                    }
+                }
+                notifyEvent(event);
+            }
+
+            @Override
+            public void onUntaggedResponse(@Nonnull final ImapAsyncSession s, @Nonnull final IMAPResponse response) {
+                // not an event
+            }
+        }
+    }
+}
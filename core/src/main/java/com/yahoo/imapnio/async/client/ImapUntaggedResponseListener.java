@@ -0,0 +1,31 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+
+/**
+ * Listener of the untagged responses of a session, notified as each response is read from the server, before it is handed to the command in flight.
+ * Responses received while no command is in flight, which the session otherwise drops, are notified as well. Methods are invoked on the I/O thread
+ * of the session, in the order the responses are received, and must not block.
+ */
+public interface ImapUntaggedResponseListener {
+
+    /**
+     * Invoked for an untagged response decoded to a mailbox event: STATUS, EXISTS, FETCH, EXPUNGE, VANISHED, or LIST.
+     *
+     * @param session the session
+     * @param event the event
+     */
+    void onMailboxEvent(@Nonnull ImapAsyncSession session, @Nonnull MailboxEvent event);
+
+    /**
+     * Invoked for any other untagged response, for example CAPABILITY, OK with a response code, or BYE, and for an event response which cannot be
+     * decoded. The response must not be modified, it is still handed to the command in flight.
+     *
+     * @param session the session
+     * @param response the response
+     */
+    void onUntaggedResponse(@Nonnull ImapAsyncSession session, @Nonnull IMAPResponse response);
+}
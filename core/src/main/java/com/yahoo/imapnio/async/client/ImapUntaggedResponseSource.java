@@ -0,0 +1,25 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A session notifying listeners of its untagged responses as they are read from the server, see {@link ImapUntaggedResponseListener}. Sessions
+ * created by {@link ImapAsyncClient} implement it.
+ */
+public interface ImapUntaggedResponseSource {
+
+    /**
+     * Adds a listener notified of each untagged response as it is read from the server, including the responses received while no command is in
+     * flight. Adding a listener already added has no effect. Listeners have to be removed before the session is returned to a pool.
+     *
+     * @param listener the listener
+     */
+    void addUntaggedResponseListener(@Nonnull ImapUntaggedResponseListener listener);
+
+    /**
+     * Removes a listener added by {@link #addUntaggedResponseListener(ImapUntaggedResponseListener)}.
+     *
+     * @param listener the listener
+     */
+    void removeUntaggedResponseListener(@Nonnull ImapUntaggedResponseListener listener);
+}
@@ -0,0 +1,126 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.BASE64MailboxDecoder;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.ListInfo;
+import com.sun.mail.imap.protocol.Status;
+import com.yahoo.imapnio.async.data.FetchMessage;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Decodes the untagged responses streamed to a queue into {@link MailboxEvent}, for the events of NOTIFY (RFC5465) and IDLE. The queue is the one
+ * given to {@link com.yahoo.imapnio.async.request.IdleCommand}: after NOTIFY SET completes, the caller keeps an IdleCommand in flight with the
+ * queue, and polls this reader whenever it wants to consume the events received so far. Responses which are not events, like the continuation
+ * request of IDLE, are dropped.
+ *
+ * <p>
+ * The reader is meant to be polled by one thread at a time, while the session adds responses to the queue concurrently.
+ * </p>
+ */
+public final class MailboxEventReader {
+
+    /** Extended data item of LIST carrying the previous name of a renamed mailbox. */
+    private static final String OLDNAME = "OLDNAME";
+
+    /** Queue of the responses streamed by the session. */
+    @Nonnull
+    private final ConcurrentLinkedQueue<IMAPResponse> responses;
+
+    /**
+     * Initializes a {@link MailboxEventReader} object.
+     *
+     * @param responses queue of the responses streamed by the session, shared with the IdleCommand
+     */
+    public MailboxEventReader(@Nonnull final ConcurrentLinkedQueue<IMAPResponse> responses) {
+        this.responses = responses;
+    }
+
+    /**
+     * Removes responses from the queue until an event is decoded.
+     *
+     * @return the next event, null if the queue has no more event
+     * @throws ImapAsyncClientException when an event response is not valid, the response is removed from the queue
+     */
+    @Nullable
+    public MailboxEvent poll() throws ImapAsyncClientException {
+        IMAPResponse response;
+        while ((response = responses.poll()) != null) {
+            final MailboxEvent event = decode(response);
+            if (event != null) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a response to an event.
+     *
+     * @param response the response
+     * @return the event, null if the response is not an event
+     * @throws ImapAsyncClientException when the event response is not valid
+     */
+    @Nullable
+    public static MailboxEvent decode(@Nonnull final IMAPResponse response) throws ImapAsyncClientException {
+        if (!response.isUnTagged()) {
+            return null;
+        }
+        try {
+            if (response.keyEquals("STATUS")) {
+                return MailboxEvent.ofStatus(new Status(response));
+            } else if (response.keyEquals("EXISTS")) {
+                return MailboxEvent.ofExists(response.getNumber());
+            } else if (response.keyEquals("EXPUNGE")) {
+                return MailboxEvent.ofExpunge(response.getNumber());
+            } else if (response.keyEquals("FETCH")) {
+                return MailboxEvent.ofFetch(new FetchMessage(response));
+            } else if (response.keyEquals("VANISHED")) {
+                response.skipSpaces();
+                if (response.peekByte() == '(') { // EARLIER
+                    response.readAtomStringList();
+                }
+                final String uidSet = response.readString(' ');
+                if (uidSet == null) {
+                    throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                }
+                return MailboxEvent.ofVanished(MessageNumberRangeSet.parse(uidSet));
+            } else if (response.keyEquals("LIST")) {
+                final ListInfo info = new ListInfo(response);
+                return MailboxEvent.ofMailboxName(info, readOldName(response));
+            }
+        } catch (final ParsingException e) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the previous name of a renamed mailbox from the extended data of LIST, for ex: ("OLDNAME" ("Old Name")).
+     *
+     * @param response the LIST response positioned after the mailbox name
+     * @return the decoded previous name, null if not present
+     */
+    @Nullable
+    private static String readOldName(@Nonnull final IMAPResponse response) {
+        response.skipSpaces();
+        if (response.readByte() != '(') {
+            return null;
+        }
+        final String tag = response.readAtomString();
+        response.skipSpaces();
+        if (!OLDNAME.equalsIgnoreCase(tag) || response.readByte() != '(') {
+            return null;
+        }
+        final String value = response.readAtomString();
+        return (value != null) ? BASE64MailboxDecoder.decode(value) : null;
+    }
+}
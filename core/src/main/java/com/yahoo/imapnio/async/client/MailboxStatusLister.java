@@ -0,0 +1,242 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.ListInfo;
+import com.sun.mail.imap.protocol.Status;
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.ListInfoList;
+import com.yahoo.imapnio.async.data.ListStatusResult;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.request.ListCommand;
+import com.yahoo.imapnio.async.request.ListStatusCommand;
+import com.yahoo.imapnio.async.request.StatusCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+/**
+ * Lists mailboxes together with their status. When the server supports LIST-STATUS (RFC5819), a single LIST command with the STATUS return option
+ * is executed. Otherwise LIST is executed, followed by one STATUS command per selectable mailbox, issued back to back, or pipelined up to the
+ * configured number of commands in flight on a session with pipelining enabled.
+ *
+ * <p>
+ * A mailbox whose STATUS command is not OK, for example because it was deleted after LIST, has no status in the result. Any other failure fails the
+ * result.
+ * </p>
+ */
+public final class MailboxStatusLister {
+
+    /** Capability of LIST with the STATUS return option. */
+    public static final String LIST_STATUS = "LIST-STATUS";
+
+    /** Attribute of a mailbox that does not exist, RFC5258. */
+    private static final String NON_EXISTENT = "\\NonExistent";
+
+    /** Whether the server supports LIST-STATUS. */
+    private final boolean isListStatusSupported;
+
+    /** Maximum number of STATUS commands in flight when LIST-STATUS is not supported, 1 to issue them back to back. */
+    private final int maxInFlightCommands;
+
+    /** Mapper to parse the results of each command. */
+    @Nonnull
+    private final ImapResponseMapper mapper = new ImapResponseMapper();
+
+    /**
+     * Initializes a {@link MailboxStatusLister} object.
+     *
+     * @param capability capabilities of the server
+     * @param maxInFlightCommands maximum number of STATUS commands in flight when LIST-STATUS is not supported, 1 to issue them back to back, more
+     *            than 1 requires the session to have pipelining enabled
+     */
+    public MailboxStatusLister(@Nonnull final Capability capability, final int maxInFlightCommands) {
+        this.isListStatusSupported = capability.hasCapability(LIST_STATUS);
+        this.maxInFlightCommands = Math.max(1, maxInFlightCommands);
+    }
+
+    /**
+     * Lists the mailboxes matching the given pattern with their status.
+     *
+     * @param session session the commands are executed on
+     * @param ref the reference string
+     * @param pattern folder name with possible wildcards, see RFC3501 list command for detail.
+     * @param items list of status items, for ex: "MESSAGES", "UNSEEN", "UIDNEXT", "UIDVALIDITY"
+     * @return the future of the mailboxes listed joined with their status
+     * @throws ImapAsyncClientException when the LIST command cannot be executed
+     */
+    @Nonnull
+    public ImapFuture<ListStatusResult> list(@Nonnull final ImapAsyncSession session, @Nonnull final String ref, @Nonnull final String pattern,
+            @Nonnull final String[] items) throws ImapAsyncClientException {
+        final ImapFuture<ListStatusResult> future = new ImapFuture<ListStatusResult>();
+        if (isListStatusSupported) {
+            session.execute(new ListStatusCommand(ref, pattern, items)).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+                @Override
+                public void onSuccess(final ImapAsyncResponse response) {
+                    try {
+                        future.done(mapper.readValue(toArray(response), ListStatusResult.class));
+                    } catch (final ImapAsyncClientException | ParsingException e) {
+                        future.done(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(final Exception cause) {
+                    future.done(cause);
+                }
+            });
+            return future;
+        }
+
+        session.execute(new ListCommand(ref, pattern)).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse response) {
+                final ListInfoList listInfoList;
+                try {
+                    listInfoList = mapper.readValue(toArray(response), ListInfoList.class);
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                    return;
+                }
+                new StatusRun(session, listInfoList, items, future).issue();
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param response the response
+     * @return the response lines
+     */
+    private static IMAPResponse[] toArray(@Nonnull final ImapAsyncResponse response) {
+        return response.getResponseLines().toArray(new IMAPResponse[0]);
+    }
+
+    /**
+     * @param info a mailbox listed
+     * @return true if STATUS can be executed on the mailbox
+     */
+    private static boolean isSelectable(@Nonnull final ListInfo info) {
+        if (!info.canOpen) {
+            return false;
+        }
+        if (info.attrs != null) {
+            for (final String attr : info.attrs) {
+                if (NON_EXISTENT.equalsIgnoreCase(attr)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Issues the STATUS commands of one {@link #list(ImapAsyncSession, String, String, String[])} call, keeping at most the configured number of
+     * them in flight, and collects the status of each mailbox.
+     */
+    private final class StatusRun {
+
+        /** Session the commands are executed on. */
+        private final ImapAsyncSession session;
+
+        /** Mailboxes listed. */
+        private final ListInfoList listInfoList;
+
+        /** Status items. */
+        private final String[] items;
+
+        /** Future of the result. */
+        private final ImapFuture<ListStatusResult> future;
+
+        /** Names of the selectable mailboxes. */
+        private final List<String> names = new ArrayList<String>();
+
+        /** Status of the mailboxes, by mailbox name. Guarded by this. */
+        private final Map<String, Status> statuses = new HashMap<String, Status>();
+
+        /** Index of the next command to issue. Guarded by this. */
+        private int next;
+
+        /** Number of commands completed. Guarded by this. */
+        private int completed;
+
+        /**
+         * Initializes a {@link StatusRun} object.
+         *
+         * @param session session the commands are executed on
+         * @param listInfoList mailboxes listed
+         * @param items status items
+         * @param future future of the result
+         */
+        private StatusRun(@Nonnull final ImapAsyncSession session, @Nonnull final ListInfoList listInfoList, @Nonnull final String[] items,
+                @Nonnull final ImapFuture<ListStatusResult> future) {
+            this.session = session;
+            this.listInfoList = listInfoList;
+            this.items = items;
+            this.future = future;
+            for (final ListInfo info : listInfoList.getListInfo()) {
+                if (isSelectable(info)) {
+                    names.add(info.name);
+                }
+            }
+        }
+
+        /**
+         * Issues the next commands within the in flight limit, and completes the future once all commands are done.
+         */
+        private synchronized void issue() {
+            while (!future.isDone() && next < names.size() && next - completed < maxInFlightCommands) {
+                final String name = names.get(next++);
+                try {
+                    session.execute(new StatusCommand(name, items)).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+                        @Override
+                        public void onSuccess(final ImapAsyncResponse response) {
+                            onResponse(name, response);
+                        }
+
+                        @Override
+                        public void onFailure(final Exception cause) {
+                            future.done(cause);
+                        }
+                    });
+                } catch (final ImapAsyncClientException e) {
+                    future.done(e);
+                }
+            }
+            if (!future.isDone() && completed == names.size()) {
+                future.done(new ListStatusResult(listInfoList, statuses));
+            }
+        }
+
+        /**
+         * Collects the status of a mailbox and issues the next commands.
+         *
+         * @param name name of the mailbox
+         * @param response response of its STATUS command
+         */
+        private synchronized void onResponse(@Nonnull final String name, @Nonnull final ImapAsyncResponse response) {
+            completed++;
+            final IMAPResponse[] lines = toArray(response);
+            if (lines.length > 0 && lines[lines.length - 1].isOK()) {
+                try {
+                    statuses.put(name, mapper.readValue(lines, Status.class));
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                    return;
+                }
+            }
+            issue();
+        }
+    }
+}
@@ -0,0 +1,716 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.yahoo.imapnio.async.data.MailboxFlagSnapshot;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Local persistent store of {@link MailboxSyncState}, keyed by account and mailbox, where the mailbox is the MAILBOXID (RFC8474) from
+ * {@link com.yahoo.imapnio.async.data.ExtensionMailboxInfo#getMailboxId()} when the server supports it, or the folder name otherwise.
+ *
+ * <p>
+ * The store is a single append-only file of records in a compact binary format: UIDVALIDITY, UIDNEXT, HIGHESTMODSEQ, the known UIDs as ranges, and
+ * the flag snapshot as primitive arrays. Saving a state appends a record and removing a state appends a tombstone, so existing bytes are never
+ * rewritten. Each record ends with a CRC32 of its content; when the store is opened, the file is scanned and truncated after the last complete
+ * record, so a crash in the middle of an append loses at most that append. Records are read through memory-mapped segments of the file, and the
+ * index from key to record keeps only a hash and a file offset per mailbox in primitive arrays, so millions of mailboxes can be resumed after a
+ * restart without a cold resynchronization.
+ * </p>
+ *
+ * <p>
+ * Superseded records stay in the file until {@link #compact()} rewrites the live records to a new file and atomically replaces the store with it.
+ * The caller decides when to compact, for example when {@link #getLiveLength()} is less than half of {@link #getFileLength()}. All methods are
+ * synchronized, a store file must be opened by one {@link MailboxSyncStateStore} at a time.
+ * </p>
+ */
+public final class MailboxSyncStateStore implements Closeable {
+
+    /** Magic number at the start of the file, IMSS in ASCII. */
+    private static final int MAGIC = 0x494D5353;
+
+    /** Version of the file format. */
+    private static final int VERSION = 1;
+
+    /** Length of the file header: magic number and version. */
+    private static final int FILE_HEADER_LENGTH = 8;
+
+    /** Length of a record besides its content: content length before, CRC32 after. */
+    private static final int RECORD_OVERHEAD = 8;
+
+    /** Length of the content length, or of the CRC32, of a record. */
+    private static final int INT_LENGTH = 4;
+
+    /** Length of UIDVALIDITY, UIDNEXT and HIGHESTMODSEQ of a saved state. */
+    private static final int STATE_NUMBERS_LENGTH = 24;
+
+    /** Record type of a saved state. */
+    private static final byte TYPE_STATE = 1;
+
+    /** Record type of a removed state. */
+    private static final byte TYPE_REMOVED = 2;
+
+    /** Marker of a saved state without flag snapshot. */
+    private static final byte NO_SNAPSHOT = 0;
+
+    /** Marker of a saved state with a flag snapshot, whose UIDs and flag masks follow. */
+    private static final byte SNAPSHOT = 1;
+
+    /** Marker of a saved state with a flag snapshot, whose UIDs, flag masks and hashes of the overflow keywords follow. */
+    private static final byte SNAPSHOT_WITH_OVERFLOW = 2;
+
+    /** Default size of a memory-mapped segment, 1GB. */
+    private static final int DEFAULT_SEGMENT_SIZE = 0x40000000;
+
+    /** Initial number of index slots, a power of 2. */
+    private static final int INITIAL_SLOTS = 1024;
+
+    /** Number of bits to mix the upper half of a key hash into the lower half. */
+    private static final int HASH_SHIFT = 16;
+
+    /** Mask to read an unsigned 32-bit number from an int. */
+    private static final long UNSIGNED_MASK = 0xFFFFFFFFL;
+
+    /** Separator between the account and the mailbox in a key. */
+    private static final char KEY_SEPARATOR = '\0';
+
+    /** Suffix of the temporary file written by compaction. */
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    /** Path of the store file. */
+    @Nonnull
+    private final Path path;
+
+    /** Whether each update is forced to the storage device before returning. */
+    private final boolean isSyncOnWrite;
+
+    /** Size of a memory-mapped segment. */
+    private final int segmentSize;
+
+    /** Memory-mapped segments of the file, null for a segment not mapped yet. */
+    @Nonnull
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+    /** Number of times a segment was mapped. */
+    private int mapCount;
+
+    /** Channel of the store file. */
+    @Nonnull
+    private FileChannel channel;
+
+    /** Length of the valid content of the file, where the next record is appended. */
+    private long fileLength;
+
+    /** Key hash of each index slot. */
+    @Nonnull
+    private int[] slotHashes = new int[INITIAL_SLOTS];
+
+    /** File offset of the latest record of each index slot, 0 if the slot is empty. */
+    @Nonnull
+    private long[] slotOffsets = new long[INITIAL_SLOTS];
+
+    /** Number of index slots used, including mailboxes removed. */
+    private int usedSlots;
+
+    /** Number of mailboxes with a saved state. */
+    private int liveCount;
+
+    /** Total length of the latest records of the mailboxes with a saved state. */
+    private long liveLength;
+
+    /**
+     * Opens or creates a {@link MailboxSyncStateStore}.
+     *
+     * @param path path of the store file, created if it does not exist
+     * @param isSyncOnWrite true to force each update to the storage device before returning, false to leave it to the operating system
+     * @throws IOException when the file cannot be opened, or is not a store file
+     */
+    public MailboxSyncStateStore(@Nonnull final Path path, final boolean isSyncOnWrite) throws IOException {
+        this(path, isSyncOnWrite, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens or creates a {@link MailboxSyncStateStore} with the given segment size.
+     *
+     * @param path path of the store file, created if it does not exist
+     * @param isSyncOnWrite true to force each update to the storage device before returning
+     * @param segmentSize size of a memory-mapped segment
+     * @throws IOException when the file cannot be opened, or is not a store file
+     */
+    MailboxSyncStateStore(@Nonnull final Path path, final boolean isSyncOnWrite, final int segmentSize) throws IOException {
+        this.path = path;
+        this.isSyncOnWrite = isSyncOnWrite;
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the state saved for the given mailbox.
+     *
+     * @param account the account
+     * @param mailbox MAILBOXID or folder name of the mailbox
+     * @return the state, null if none is saved
+     * @throws IOException when the file cannot be read
+     */
+    @Nullable
+    public synchronized MailboxSyncState get(@Nonnull final String account, @Nonnull final String mailbox) throws IOException {
+        final byte[] key = toKey(account, mailbox);
+        final long offset = slotOffsets[findSlot(key, hash(key))];
+        if (offset == 0) {
+            return null;
+        }
+        final ByteBuffer content = readContent(offset);
+        if (content.get() != TYPE_STATE) {
+            return null;
+        }
+        content.position(content.position() + INT_LENGTH + key.length);
+        return decodeState(content);
+    }
+
+    /**
+     * Saves the state of the given mailbox, replacing the state saved before.
+     *
+     * @param account the account
+     * @param mailbox MAILBOXID or folder name of the mailbox
+     * @param state the state to save
+     * @throws IOException when the file cannot be written
+     */
+    public synchronized void put(@Nonnull final String account, @Nonnull final String mailbox, @Nonnull final MailboxSyncState state)
+            throws IOException {
+        final byte[] key = toKey(account, mailbox);
+        append(key, encodeRecord(TYPE_STATE, key, state));
+    }
+
+    /**
+     * Removes the state of the given mailbox.
+     *
+     * @param account the account
+     * @param mailbox MAILBOXID or folder name of the mailbox
+     * @throws IOException when the file cannot be written
+     */
+    public synchronized void remove(@Nonnull final String account, @Nonnull final String mailbox) throws IOException {
+        final byte[] key = toKey(account, mailbox);
+        final long offset = slotOffsets[findSlot(key, hash(key))];
+        if (offset != 0 && readContent(offset).get() == TYPE_STATE) {
+            append(key, encodeRecord(TYPE_REMOVED, key, null));
+        }
+    }
+
+    /**
+     * @return number of mailboxes with a saved state
+     */
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * @return length of the file, including superseded records
+     */
+    public synchronized long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * @return length the file would have after {@link #compact()}
+     */
+    public synchronized long getLiveLength() {
+        return FILE_HEADER_LENGTH + liveLength;
+    }
+
+    /**
+     * Rewrites the latest record of each mailbox with a saved state to a new file, and atomically replaces the store file with it. A crash during
+     * compaction leaves the store file as it was, or replaced by the new file once the rename is forced to the directory. When compaction fails,
+     * the store remains usable.
+     *
+     * @throws IOException when the new file cannot be written or moved
+     */
+    public synchronized void compact() throws IOException {
+        final Path compactPath = path.resolveSibling(path.getFileName() + COMPACT_SUFFIX);
+        final int[] newHashes = new int[slotHashes.length];
+        final long[] newOffsets = new long[slotOffsets.length];
+        long position = FILE_HEADER_LENGTH;
+        try (FileChannel out = FileChannel.open(compactPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(out, newFileHeader(), 0);
+            final int mask = newOffsets.length - 1;
+            for (int i = 0; i < slotOffsets.length; i++) {
+                final long offset = slotOffsets[i];
+                if (offset == 0 || readContent(offset).get() != TYPE_STATE) {
+                    continue;
+                }
+                final ByteBuffer record = read(offset, RECORD_OVERHEAD + readContentLength(offset));
+                final int length = record.remaining();
+                writeFully(out, record, position);
+                int slot = slotHashes[i] & mask;
+                while (newOffsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newHashes[slot] = slotHashes[i];
+                newOffsets[slot] = position;
+                position += length;
+            }
+            out.force(true);
+        }
+
+        // the new file is opened before the rename and keeps referring to it after, the current channel is kept until the rename succeeds
+        final FileChannel newChannel = FileChannel.open(compactPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            Files.move(compactPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException | RuntimeException e) {
+            newChannel.close();
+            throw e;
+        }
+        segments.clear();
+        channel.close();
+        channel = newChannel;
+        fileLength = position;
+        slotHashes = newHashes;
+        slotOffsets = newOffsets;
+        usedSlots = liveCount;
+        liveLength = position - FILE_HEADER_LENGTH;
+        forceDirectory();
+    }
+
+    /**
+     * @return number of times a segment was mapped, for testing
+     */
+    synchronized int getMapCount() {
+        return mapCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        channel.close();
+    }
+
+    /**
+     * Scans the file to build the index, truncating the file after the last complete record.
+     *
+     * @throws IOException when the file cannot be read, or is not a store file
+     */
+    private void load() throws IOException {
+        final long size = channel.size();
+        if (size < FILE_HEADER_LENGTH) { // new file, or crashed while creating it
+            channel.truncate(0);
+            writeFully(channel, newFileHeader(), 0);
+            channel.force(true);
+            fileLength = FILE_HEADER_LENGTH;
+            return;
+        }
+        fileLength = size;
+        final ByteBuffer header = read(0, FILE_HEADER_LENGTH);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a mailbox sync state store: " + path);
+        }
+
+        long position = FILE_HEADER_LENGTH;
+        while (position + RECORD_OVERHEAD <= size) {
+            final int contentLength = readContentLength(position);
+            if (contentLength <= 0 || position + RECORD_OVERHEAD + contentLength > size) {
+                break;
+            }
+            final ByteBuffer content = read(position + INT_LENGTH, contentLength);
+            final CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            if ((read(position + INT_LENGTH + contentLength, INT_LENGTH).getInt() & UNSIGNED_MASK) != crc.getValue()) {
+                break;
+            }
+            final byte type = content.get();
+            final byte[] key = new byte[content.getInt()];
+            content.get(key);
+            index(key, position, type, RECORD_OVERHEAD + contentLength);
+            position += RECORD_OVERHEAD + contentLength;
+        }
+
+        if (position < size) { // incomplete record of a crashed append
+            segments.clear();
+            channel.truncate(position);
+            channel.force(true);
+        }
+        fileLength = position;
+    }
+
+    /**
+     * Appends a record and points the index to it.
+     *
+     * @param key key of the record
+     * @param record the record
+     * @throws IOException when the file cannot be written
+     */
+    private void append(@Nonnull final byte[] key, @Nonnull final ByteBuffer record) throws IOException {
+        final long offset = fileLength;
+        writeFully(channel, record, offset);
+        if (isSyncOnWrite) {
+            channel.force(false);
+        }
+        fileLength = offset + record.limit();
+        index(key, offset, record.get(INT_LENGTH), record.limit());
+    }
+
+    /**
+     * Points the index to the record at the given offset, updating the counts of mailboxes with a saved state. The type and length of the record
+     * are given by the caller, which just wrote or read it, so the record is not read back from the file.
+     *
+     * @param key key of the record
+     * @param offset offset of the record
+     * @param type type of the record
+     * @param recordLength length of the record, including its overhead
+     * @throws IOException when the file cannot be read
+     */
+    private void index(@Nonnull final byte[] key, final long offset, final byte type, final int recordLength) throws IOException {
+        final int hash = hash(key);
+        final int slot = findSlot(key, hash);
+        final long previous = slotOffsets[slot];
+        if (previous != 0) {
+            if (readContent(previous).get() == TYPE_STATE) {
+                liveCount--;
+                liveLength -= RECORD_OVERHEAD + readContentLength(previous);
+            }
+        } else {
+            usedSlots++;
+        }
+        slotHashes[slot] = hash;
+        slotOffsets[slot] = offset;
+        if (type == TYPE_STATE) {
+            liveCount++;
+            liveLength += recordLength;
+        }
+        if (usedSlots * 2 > slotOffsets.length) {
+            growIndex();
+        }
+    }
+
+    /**
+     * Finds the index slot of a key, by linear probing from its hash.
+     *
+     * @param key the key
+     * @param hash hash of the key
+     * @return the slot of the key, or the empty slot where the key can be added
+     * @throws IOException when the file cannot be read
+     */
+    private int findSlot(@Nonnull final byte[] key, final int hash) throws IOException {
+        final int mask = slotOffsets.length - 1;
+        int slot = hash & mask;
+        while (slotOffsets[slot] != 0) {
+            if (slotHashes[slot] == hash && isKeyOf(key, slotOffsets[slot])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the number of index slots.
+     */
+    private void growIndex() {
+        final int[] newHashes = new int[slotHashes.length * 2];
+        final long[] newOffsets = new long[slotOffsets.length * 2];
+        final int mask = newOffsets.length - 1;
+        for (int i = 0; i < slotOffsets.length; i++) {
+            if (slotOffsets[i] != 0) {
+                int slot = slotHashes[i] & mask;
+                while (newOffsets[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newHashes[slot] = slotHashes[i];
+                newOffsets[slot] = slotOffsets[i];
+            }
+        }
+        slotHashes = newHashes;
+        slotOffsets = newOffsets;
+    }
+
+    /**
+     * @param key the key
+     * @param offset offset of a record
+     * @return true if the record has the given key
+     * @throws IOException when the file cannot be read
+     */
+    private boolean isKeyOf(@Nonnull final byte[] key, final long offset) throws IOException {
+        final ByteBuffer content = readContent(offset);
+        content.get(); // type
+        if (content.getInt() != key.length) {
+            return false;
+        }
+        for (final byte b : key) {
+            if (content.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param offset offset of a record
+     * @return the content of the record, starting with its type
+     * @throws IOException when the file cannot be read
+     */
+    private ByteBuffer readContent(final long offset) throws IOException {
+        return read(offset + INT_LENGTH, readContentLength(offset));
+    }
+
+    /**
+     * @param offset offset of a record
+     * @return the length of the content of the record
+     * @throws IOException when the file cannot be read
+     */
+    private int readContentLength(final long offset) throws IOException {
+        return read(offset, INT_LENGTH).getInt();
+    }
+
+    /**
+     * Reads a region of the file, from its memory-mapped segment, or from the channel if the region spans two segments. A segment is mapped again
+     * to cover records appended after it was mapped only once the file has grown to twice the mapped length within the segment, or to the full
+     * segment, so the number of mappings stays logarithmic in the segment size; until then, the records past the mapping are read from the channel.
+     * Mappings are only released by the garbage collector, mapping on each append would exhaust the mappings allowed to the process.
+     *
+     * @param position position of the region
+     * @param length length of the region
+     * @return a buffer of the region, positioned at 0
+     * @throws IOException when the file cannot be read
+     */
+    private ByteBuffer read(final long position, final int length) throws IOException {
+        final int index = (int) (position / segmentSize);
+        final long segmentStart = (long) index * segmentSize;
+        final long end = position + length;
+        if (end > segmentStart + segmentSize) {
+            return readFromChannel(position, length);
+        }
+
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        if (segment == null || segmentStart + segment.capacity() < end) { // not mapped, or mapped before the file grew
+            final long mapLength = Math.min(segmentSize, fileLength - segmentStart);
+            if (segmentStart + mapLength < end) {
+                throw new IOException("Unexpected end of mailbox sync state store: " + path);
+            }
+            if (segment != null && mapLength < segmentSize && mapLength < 2L * segment.capacity()) {
+                return readFromChannel(position, length);
+            }
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, mapLength);
+            segments.set(index, segment);
+            mapCount++;
+        }
+        final ByteBuffer buf = segment.duplicate();
+        buf.position((int) (position - segmentStart));
+        buf.limit((int) (end - segmentStart));
+        return buf.slice();
+    }
+
+    /**
+     * Reads a region of the file from the channel.
+     *
+     * @param position position of the region
+     * @param length length of the region
+     * @return a buffer of the region, positioned at 0
+     * @throws IOException when the file cannot be read
+     */
+    private ByteBuffer readFromChannel(final long position, final int length) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of mailbox sync state store: " + path);
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Forces the directory of the store file to the storage device, so a rename of the store file survives a crash.
+     *
+     * @throws IOException when the directory cannot be forced
+     */
+    private void forceDirectory() throws IOException {
+        final Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) {
+            try (FileChannel dirChannel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                dirChannel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Writes a buffer fully at the given position.
+     *
+     * @param out the channel
+     * @param buf the buffer
+     * @param position position in the channel
+     * @throws IOException when the channel cannot be written
+     */
+    private static void writeFully(@Nonnull final FileChannel out, @Nonnull final ByteBuffer buf, final long position) throws IOException {
+        long p = position;
+        while (buf.hasRemaining()) {
+            p += out.write(buf, p);
+        }
+    }
+
+    /**
+     * @return the file header
+     */
+    private static ByteBuffer newFileHeader() {
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        return header;
+    }
+
+    /**
+     * @param account the account
+     * @param mailbox MAILBOXID or folder name of the mailbox
+     * @return the key of the mailbox
+     */
+    private static byte[] toKey(@Nonnull final String account, @Nonnull final String mailbox) {
+        return (account + KEY_SEPARATOR + mailbox).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param key the key
+     * @return hash of the key
+     */
+    private static int hash(@Nonnull final byte[] key) {
+        final int h = Arrays.hashCode(key);
+        return h ^ (h >>> HASH_SHIFT);
+    }
+
+    /**
+     * Encodes a record: content length, content, CRC32 of the content. The content is the type, the key, and for a saved state: UIDVALIDITY,
+     * UIDNEXT, HIGHESTMODSEQ, the UID ranges, and the flag snapshot if any, with its keyword table, UIDs and flag masks.
+     *
+     * @param type record type
+     * @param key the key
+     * @param state the state, null for a removed state
+     * @return the record, ready to be written
+     */
+    private static ByteBuffer encodeRecord(final byte type, @Nonnull final byte[] key, @Nullable final MailboxSyncState state) {
+        final MessageNumberRangeSet uids = (state != null) ? state.getUids() : null;
+        final MailboxFlagSnapshot snapshot = (state != null) ? state.getFlagSnapshot() : null;
+        final byte[][] keywords = new byte[(snapshot != null) ? snapshot.getKeywords().length : 0][];
+        int contentLength = 1 + INT_LENGTH + key.length;
+        if (state != null) {
+            contentLength += STATE_NUMBERS_LENGTH + INT_LENGTH + uids.getRangeCount() * Integer.BYTES * 2 + 1;
+            if (snapshot != null) {
+                final String[] table = snapshot.getKeywords();
+                contentLength += INT_LENGTH;
+                for (int i = 0; i < table.length; i++) {
+                    keywords[i] = table[i].getBytes(StandardCharsets.UTF_8);
+                    contentLength += INT_LENGTH + keywords[i].length;
+                }
+                contentLength += INT_LENGTH + snapshot.size() * (Integer.BYTES + Long.BYTES);
+                if (snapshot.hasOverflowKeywords()) {
+                    contentLength += snapshot.size() * Integer.BYTES;
+                }
+            }
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + contentLength);
+        record.putInt(contentLength).put(type).putInt(key.length).put(key);
+        if (state != null) {
+            record.putLong(state.getUidValidity()).putLong(state.getUidNext()).putLong(state.getHighestModSeq());
+            record.putInt(uids.getRangeCount());
+            for (int i = 0; i < uids.getRangeCount(); i++) {
+                record.putInt((int) uids.getRangeStart(i)).putInt((int) uids.getRangeEnd(i));
+            }
+            record.put((snapshot == null) ? NO_SNAPSHOT : (snapshot.hasOverflowKeywords() ? SNAPSHOT_WITH_OVERFLOW : SNAPSHOT));
+            if (snapshot != null) {
+                record.putInt(keywords.length);
+                for (final byte[] keyword : keywords) {
+                    record.putInt(keyword.length).put(keyword);
+                }
+                record.putInt(snapshot.size());
+                for (int i = 0; i < snapshot.size(); i++) {
+                    record.putInt((int) snapshot.getUid(i));
+                }
+                for (int i = 0; i < snapshot.size(); i++) {
+                    record.putLong(snapshot.getFlagBits(i));
+                }
+                if (snapshot.hasOverflowKeywords()) {
+                    for (int i = 0; i < snapshot.size(); i++) {
+                        record.putInt(snapshot.getOverflowHash(i));
+                    }
+                }
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), INT_LENGTH, contentLength);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Decodes a saved state.
+     *
+     * @param content content of a record, positioned after the key
+     * @return the state
+     * @throws IOException when the content is not valid
+     */
+    private static MailboxSyncState decodeState(@Nonnull final ByteBuffer content) throws IOException {
+        try {
+            final long uidValidity = content.getLong();
+            final long uidNext = content.getLong();
+            final long highestModSeq = content.getLong();
+            final int rangeCount = content.getInt();
+            final MessageNumberRangeSet.Builder uidsBuilder = new MessageNumberRangeSet.Builder();
+            for (int i = 0; i < rangeCount; i++) {
+                uidsBuilder.add(content.getInt() & UNSIGNED_MASK, content.getInt() & UNSIGNED_MASK);
+            }
+            MailboxFlagSnapshot snapshot = null;
+            final byte snapshotType = content.get();
+            if (snapshotType != NO_SNAPSHOT) {
+                final int keywordCount = content.getInt();
+                final String[] keywords = new String[keywordCount];
+                for (int i = 0; i < keywordCount; i++) {
+                    final byte[] keyword = new byte[content.getInt()];
+                    content.get(keyword);
+                    keywords[i] = new String(keyword, StandardCharsets.UTF_8);
+                }
+                final int count = content.getInt();
+                final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder(null, count);
+                for (final String keyword : keywords) {
+                    builder.getFlagBit(keyword); // restores the keyword table in order
+                }
+                final ByteBuffer bits = content.duplicate();
+                bits.position(content.position() + count * Integer.BYTES);
+                final ByteBuffer hashes = (snapshotType == SNAPSHOT_WITH_OVERFLOW) ? content.duplicate() : null;
+                if (hashes != null) {
+                    hashes.position(bits.position() + count * Long.BYTES);
+                }
+                for (int i = 0; i < count; i++) {
+                    builder.add(content.getInt() & UNSIGNED_MASK, bits.getLong(), (hashes != null) ? hashes.getInt() : 0);
+                }
+                snapshot = builder.build();
+            }
+            return new MailboxSyncState(uidValidity, uidNext, highestModSeq, uidsBuilder.build(), snapshot);
+        } catch (final ImapAsyncClientException | RuntimeException e) {
+            throw new IOException("Invalid record in mailbox sync state store", e);
+        }
+    }
+}
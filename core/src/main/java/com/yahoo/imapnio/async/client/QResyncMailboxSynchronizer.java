@@ -0,0 +1,304 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.MailboxInfo;
+import com.yahoo.imapnio.async.data.FetchMessage;
+import com.yahoo.imapnio.async.data.MailboxSyncDelta;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.async.data.QResyncParameter;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ExamineFolderCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.SelectFolderCommand;
+import com.yahoo.imapnio.async.request.UidFetchCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+/**
+ * Synchronizes a mailbox incrementally with QRESYNC (RFC7162). The mailbox is opened with the UIDVALIDITY, HIGHESTMODSEQ and known UIDs of the
+ * stored state, and the server reports only what changed since then: VANISHED (EARLIER) for the messages removed, and FETCH with UID, FLAGS and
+ * MODSEQ for the messages added or whose flags changed. The cost of a synchronization therefore scales with the number of changes rather than
+ * with the size of the mailbox.
+ *
+ * <p>
+ * When there is no stored state, the stored state has no mod-sequence, or UIDVALIDITY changed, the mailbox is listed with UID FETCH 1:* and all
+ * messages are reported as new. QRESYNC must be enabled on the session, through ENABLE QRESYNC, before calling
+ * {@link #sync(ImapAsyncSession, String, MailboxSyncState)}. The returned future fails with {@link FailureType#MODSEQ_NOT_SUPPORTED} if the server
+ * does not keep mod-sequences for the mailbox, in which case a synchronization without mod-sequences is needed.
+ * </p>
+ */
+public final class QResyncMailboxSynchronizer {
+
+    /** UIDs of all messages in the mailbox. */
+    private static final String ALL_UIDS = "1:*";
+
+    /** Data items fetched for each message when listing the mailbox. */
+    private static final String FETCH_ITEMS = "FLAGS MODSEQ";
+
+    /** Initial capacity of the flag updates. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Whether the mailbox is opened read-only, with EXAMINE instead of SELECT. */
+    private final boolean isReadOnly;
+
+    /** Maximum length of the known UIDs sent in QRESYNC parameters, longer ones are not sent, so the server reports VANISHED for all UIDs. */
+    private final int maxKnownUidsLength;
+
+    /** Mapper to parse the mailbox information. */
+    @Nonnull
+    private final ImapResponseMapper mapper = new ImapResponseMapper();
+
+    /**
+     * Initializes a {@link QResyncMailboxSynchronizer} object opening the mailbox with SELECT.
+     */
+    public QResyncMailboxSynchronizer() {
+        this(false, ImapCommandBatcher.DEFAULT_MAX_SEQUENCE_SET_LENGTH);
+    }
+
+    /**
+     * Initializes a {@link QResyncMailboxSynchronizer} object.
+     *
+     * @param isReadOnly true to open the mailbox with EXAMINE, false with SELECT
+     * @param maxKnownUidsLength maximum length of the known UIDs sent in QRESYNC parameters
+     */
+    public QResyncMailboxSynchronizer(final boolean isReadOnly, final int maxKnownUidsLength) {
+        this.isReadOnly = isReadOnly;
+        this.maxKnownUidsLength = maxKnownUidsLength;
+    }
+
+    /**
+     * Opens the given mailbox and computes the changes since the given state. The mailbox stays selected on the session afterwards.
+     *
+     * @param session the session with QRESYNC enabled, and no mailbox or another mailbox selected
+     * @param folderName the mailbox name
+     * @param state the state last synchronized, null if the mailbox was never synchronized
+     * @return the future of the changes, including the advanced state
+     * @throws ImapAsyncClientException when the command cannot be executed on the session
+     */
+    public ImapFuture<MailboxSyncDelta> sync(@Nonnull final ImapAsyncSession session, @Nonnull final String folderName,
+            @Nullable final MailboxSyncState state) throws ImapAsyncClientException {
+        final ImapFuture<MailboxSyncDelta> future = new ImapFuture<MailboxSyncDelta>();
+        final ImapRequest openCmd;
+        if (state != null && state.getHighestModSeq() > 0) {
+            MessageNumberSet[] knownUids = null;
+            if (!state.getUids().isEmpty() && state.getUids().toString().length() <= maxKnownUidsLength) {
+                knownUids = state.getUids().toMessageNumberSets();
+            }
+            final QResyncParameter param = new QResyncParameter(state.getUidValidity(), state.getHighestModSeq(), knownUids, null);
+            openCmd = isReadOnly ? new ExamineFolderCommand(folderName, param) : new SelectFolderCommand(folderName, param);
+        } else {
+            openCmd = isReadOnly ? new ExamineFolderCommand(folderName) : new SelectFolderCommand(folderName);
+        }
+
+        session.execute(openCmd).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse response) {
+                try {
+                    onOpened(session, state, response, future);
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Computes the changes from the response of SELECT or EXAMINE, or lists the mailbox if the state cannot be resynchronized.
+     *
+     * @param session the session
+     * @param state the state last synchronized
+     * @param response response of SELECT or EXAMINE
+     * @param future future of the changes
+     * @throws ImapAsyncClientException when the mailbox cannot be opened or does not support mod-sequences, or listing cannot be executed
+     * @throws ParsingException when the responses cannot be parsed
+     */
+    private void onOpened(@Nonnull final ImapAsyncSession session, @Nullable final MailboxSyncState state, @Nonnull final ImapAsyncResponse response,
+            @Nonnull final ImapFuture<MailboxSyncDelta> future) throws ImapAsyncClientException, ParsingException {
+        final IMAPResponse[] lines = toOkResponses(response);
+        final Changes changes = new Changes();
+        changes.collect(lines); // before mapping, since the mailbox information parser consumes the responses
+        final MailboxInfo info = mapper.readValue(lines, MailboxInfo.class);
+        if (info.highestmodseq <= 0) {
+            throw new ImapAsyncClientException(FailureType.MODSEQ_NOT_SUPPORTED);
+        }
+
+        if (state != null && state.getHighestModSeq() > 0 && state.getUidValidity() == info.uidvalidity) {
+            future.done(resync(state, info, changes));
+            return;
+        }
+
+        final boolean isReset = state != null;
+        if (info.total == 0) {
+            future.done(list(isReset, info, new Changes()));
+            return;
+        }
+        session.execute(new UidFetchCommand(ALL_UIDS, FETCH_ITEMS)).addListener(new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse fetchResponse) {
+                try {
+                    final Changes listed = new Changes();
+                    listed.collect(toOkResponses(fetchResponse));
+                    future.done(list(isReset, info, listed));
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    future.done(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                future.done(cause);
+            }
+        });
+    }
+
+    /**
+     * Builds the changes reported by the server on a QRESYNC open.
+     *
+     * @param state the state last synchronized
+     * @param info the mailbox information
+     * @param changes VANISHED and FETCH responses
+     * @return the changes since the given state
+     * @throws ImapAsyncClientException when a UID is not valid
+     */
+    private static MailboxSyncDelta resync(@Nonnull final MailboxSyncState state, @Nonnull final MailboxInfo info, @Nonnull final Changes changes)
+            throws ImapAsyncClientException {
+        final MessageNumberRangeSet vanished = changes.vanished.intersection(state.getUids());
+        final MessageNumberRangeSet.Builder newUidsBuilder = new MessageNumberRangeSet.Builder();
+        final Changes updates = new Changes();
+        for (int i = 0; i < changes.count; i++) {
+            final long uid = changes.uids[i];
+            if (changes.vanished.contains(uid)) {
+                continue;
+            }
+            if (!state.getUids().contains(uid)) {
+                newUidsBuilder.add(uid);
+            }
+            updates.add(uid, changes.flags[i], changes.modSeqs[i]);
+        }
+        final MessageNumberRangeSet newUids = newUidsBuilder.build();
+        final MessageNumberRangeSet uids = state.getUids().difference(vanished).union(newUids);
+        final long uidNext = (info.uidnext > 0) ? info.uidnext : Math.max(state.getUidNext(), uids.last() + 1);
+        final MailboxSyncState newState = new MailboxSyncState(info.uidvalidity, uidNext, info.highestmodseq, uids);
+        return new MailboxSyncDelta(false, newUids, vanished, updates.uids, updates.flags, updates.modSeqs, updates.count, newState);
+    }
+
+    /**
+     * Builds the changes from a listing of the mailbox, where all messages are new.
+     *
+     * @param isReset whether a previous state is discarded
+     * @param info the mailbox information
+     * @param listed FETCH responses of all messages
+     * @return the changes with all messages as new
+     * @throws ImapAsyncClientException when a UID is not valid
+     */
+    private static MailboxSyncDelta list(final boolean isReset, @Nonnull final MailboxInfo info, @Nonnull final Changes listed)
+            throws ImapAsyncClientException {
+        final MessageNumberRangeSet.Builder uidsBuilder = new MessageNumberRangeSet.Builder();
+        for (int i = 0; i < listed.count; i++) {
+            uidsBuilder.add(listed.uids[i]);
+        }
+        final MessageNumberRangeSet uids = uidsBuilder.build();
+        final long uidNext = (info.uidnext > 0) ? info.uidnext : Math.max(1, uids.last() + 1);
+        final MailboxSyncState newState = new MailboxSyncState(info.uidvalidity, uidNext, info.highestmodseq, uids);
+        return new MailboxSyncDelta(isReset, uids, MessageNumberRangeSet.EMPTY, listed.uids, listed.flags, listed.modSeqs, listed.count, newState);
+    }
+
+    /**
+     * @param response the response of a command
+     * @return the response lines
+     * @throws ImapAsyncClientException when the tagged response is not OK
+     */
+    static IMAPResponse[] toOkResponses(@Nonnull final ImapAsyncResponse response) throws ImapAsyncClientException {
+        final IMAPResponse[] lines = response.getResponseLines().toArray(new IMAPResponse[0]);
+        if (lines.length == 0 || !lines[lines.length - 1].isOK()) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        return lines;
+    }
+
+    /**
+     * Changes collected from VANISHED and FETCH responses. FETCH results are kept in parallel arrays.
+     */
+    private static final class Changes {
+
+        /** UIDs of the messages removed. */
+        private MessageNumberRangeSet vanished = MessageNumberRangeSet.EMPTY;
+
+        /** UIDs of the messages fetched. */
+        private long[] uids = new long[INITIAL_CAPACITY];
+
+        /** Flags of the messages fetched. */
+        private Flags[] flags = new Flags[INITIAL_CAPACITY];
+
+        /** Mod-sequences of the messages fetched. */
+        private long[] modSeqs = new long[INITIAL_CAPACITY];
+
+        /** Number of messages fetched. */
+        private int count;
+
+        /**
+         * Collects the VANISHED and FETCH responses.
+         *
+         * @param lines the response lines
+         * @throws ImapAsyncClientException when a VANISHED response is not valid
+         * @throws ParsingException when a FETCH response cannot be parsed
+         */
+        private void collect(@Nonnull final IMAPResponse[] lines) throws ImapAsyncClientException, ParsingException {
+            for (final IMAPResponse line : lines) {
+                if (line.keyEquals("FETCH")) {
+                    final FetchMessage msg = new FetchMessage(line);
+                    final long uid = msg.getUid();
+                    if (uid > 0) {
+                        add(uid, msg.getFlags(), msg.getModSeq());
+                    }
+                } else if (line.keyEquals("VANISHED")) {
+                    // VANISHED (EARLIER) known-uids, or VANISHED known-uids
+                    line.skipSpaces();
+                    if (line.peekByte() == '(') {
+                        line.readAtomStringList();
+                    }
+                    final String uidSet = line.readString(' ');
+                    if (uidSet == null) {
+                        throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                    }
+                    vanished = vanished.union(MessageNumberRangeSet.parse(uidSet));
+                }
+            }
+        }
+
+        /**
+         * Adds a fetched message.
+         *
+         * @param uid UID of the message
+         * @param flagsOfMsg flags of the message
+         * @param modSeq mod-sequence of the message
+         */
+        private void add(final long uid, @Nullable final Flags flagsOfMsg, final long modSeq) {
+            if (count == uids.length) {
+                uids = Arrays.copyOf(uids, count * 2);
+                flags = Arrays.copyOf(flags, count * 2);
+                modSeqs = Arrays.copyOf(modSeqs, count * 2);
+            }
+            uids[count] = uid;
+            flags[count] = flagsOfMsg;
+            modSeqs[count] = modSeq;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.annotation.Nullable;
+
+/**
+ * This class provides the result of an ESEARCH (RFC4731) response, returned for a SEARCH or UID SEARCH command with return options. Results not
+ * requested or not returned by the server are -1 for the numbers and null for ALL.
+ */
+public class ESearchResult {
+
+    /** Tag of the command this result correlates to, null if the server did not return it. */
+    @Nullable
+    private final String tag;
+
+    /** Whether the numbers are UIDs. */
+    private final boolean isUid;
+
+    /** Lowest message number or UID found. */
+    private final long min;
+
+    /** Highest message number or UID found. */
+    private final long max;
+
+    /** Number of messages found. */
+    private final long count;
+
+    /** All message numbers or UIDs found. */
+    @Nullable
+    private final MessageNumberSet[] all;
+
+    /** Highest mod-sequence of all messages found (RFC7162). */
+    private final long modSeq;
+
+    /**
+     * Initializes a {@link ESearchResult} object.
+     *
+     * @param tag tag of the command this result correlates to
+     * @param isUid whether the numbers are UIDs
+     * @param min lowest message number or UID found, -1 if not returned
+     * @param max highest message number or UID found, -1 if not returned
+     * @param count number of messages found, -1 if not returned
+     * @param all all message numbers or UIDs found, null if not returned
+     * @param modSeq highest mod-sequence of all messages found, -1 if not returned
+     */
+    @SuppressWarnings("parameternumber")
+    public ESearchResult(@Nullable final String tag, final boolean isUid, final long min, final long max, final long count,
+            @Nullable final MessageNumberSet[] all, final long modSeq) {
+        this.tag = tag;
+        this.isUid = isUid;
+        this.min = min;
+        this.max = max;
+        this.count = count;
+        this.all = all;
+        this.modSeq = modSeq;
+    }
+
+    /**
+     * @return tag of the command this result correlates to, null if the server did not return it
+     */
+    @Nullable
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return true if the numbers are UIDs, false if message sequence numbers
+     */
+    public boolean isUid() {
+        return isUid;
+    }
+
+    /**
+     * @return lowest message number or UID found, -1 if not returned
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return highest message number or UID found, -1 if not returned
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return number of messages found, -1 if not returned
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return all message numbers or UIDs found in sequence-set form, null if not returned or no message is found
+     */
+    @Nullable
+    public MessageNumberSet[] getAll() {
+        return all;
+    }
+
+    /**
+     * @return highest mod-sequence of all messages found, -1 if not returned
+     */
+    public long getModSeq() {
+        return modSeq;
+    }
+}
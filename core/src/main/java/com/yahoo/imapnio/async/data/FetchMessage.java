@@ -0,0 +1,382 @@
+package com.yahoo.imapnio.async.data;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+
+import com.sun.mail.iap.ByteArray;
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.BODY;
+import com.sun.mail.imap.protocol.ENVELOPE;
+import com.sun.mail.imap.protocol.FLAGS;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.INTERNALDATE;
+
+/**
+ * This class provides the data items of a message from a FETCH response, for ex: * 12 FETCH (UID 1234 FLAGS (\Seen) MODSEQ (5678)). Data items are
+ * located and parsed from the response bytes only when accessed, hence a sweep reading UID and FLAGS does not create objects for the other items.
+ * Accessors parse on every call, callers should keep the returned value if it is needed more than once.
+ */
+public class FetchMessage {
+
+    /** UID item name. */
+    private static final String UID = "UID";
+
+    /** FLAGS item name. */
+    private static final String FLAGS_ITEM = "FLAGS";
+
+    /** MODSEQ item name. */
+    private static final String MODSEQ = "MODSEQ";
+
+    /** RFC822.SIZE item name. */
+    private static final String RFC822_SIZE = "RFC822.SIZE";
+
+    /** INTERNALDATE item name. */
+    private static final String INTERNALDATE_ITEM = "INTERNALDATE";
+
+    /** ENVELOPE item name. */
+    private static final String ENVELOPE_ITEM = "ENVELOPE";
+
+    /** BODY item name prefix. */
+    private static final String BODY_PREFIX = "BODY[";
+
+    /** Value returned by numeric accessors when the item is not present. */
+    private static final long NOT_PRESENT = -1L;
+
+    /** Radix of numbers in response. */
+    private static final int DECIMAL_RADIX = 10;
+
+    /** The FETCH response, sharing the bytes of the response given by caller. */
+    @Nonnull
+    private final ResponseBytes response;
+
+    /**
+     * Initializes a {@link FetchMessage} object. The response is not parsed at this point.
+     *
+     * @param response the FETCH response
+     */
+    public FetchMessage(@Nonnull final IMAPResponse response) {
+        this.response = new ResponseBytes(response);
+    }
+
+    /**
+     * @return the message sequence number
+     */
+    public int getMessageNumber() {
+        return response.getNumber();
+    }
+
+    /**
+     * @return the UID of the message, -1 if UID is not present
+     * @throws ParsingException when the item value is not a number
+     */
+    public long getUid() throws ParsingException {
+        return readNumber(findItem(UID, false), false);
+    }
+
+    /**
+     * @return the modification sequence of the message, -1 if MODSEQ is not present
+     * @throws ParsingException when the item value is not a parenthesized number
+     */
+    public long getModSeq() throws ParsingException {
+        return readNumber(findItem(MODSEQ, false), true);
+    }
+
+    /**
+     * @return the size of the message, -1 if RFC822.SIZE is not present
+     * @throws ParsingException when the item value is not a number
+     */
+    public long getSize() throws ParsingException {
+        return readNumber(findItem(RFC822_SIZE, false), false);
+    }
+
+    /**
+     * @return the flags of the message, null if FLAGS is not present
+     * @throws ParsingException when the item value is not a valid flags list
+     */
+    @Nullable
+    public Flags getFlags() throws ParsingException {
+        final int valueStart = findItem(FLAGS_ITEM, false);
+        if (valueStart < 0) {
+            return null;
+        }
+        final ResponseBytes reader = new ResponseBytes(response);
+        reader.setIndex(valueStart);
+        return new FLAGS(reader);
+    }
+
+    /**
+     * @return the internal date of the message, null if INTERNALDATE is not present
+     * @throws ParsingException when the item value is not a valid date
+     */
+    @Nullable
+    public Date getInternalDate() throws ParsingException {
+        final FetchResponse item = parseItem(INTERNALDATE_ITEM, false);
+        return (item != null) ? item.getItem(INTERNALDATE.class).getDate() : null;
+    }
+
+    /**
+     * @return the envelope of the message, null if ENVELOPE is not present
+     * @throws ParsingException when the item value is not a valid envelope
+     */
+    @Nullable
+    public ENVELOPE getEnvelope() throws ParsingException {
+        final FetchResponse item = parseItem(ENVELOPE_ITEM, false);
+        return (item != null) ? item.getItem(ENVELOPE.class) : null;
+    }
+
+    /**
+     * Returns the content of a body section. The section is matched regardless of the origin octet, for ex: section "1.2" matches both
+     * BODY[1.2] and BODY[1.2]&lt;0&gt;.
+     *
+     * @param section the section specification inside the brackets, for ex: empty string for the whole message, 1.2, HEADER, TEXT
+     * @return the content of the body section, null if the section is not present or is NIL
+     * @throws ParsingException when the item value is not a valid body section
+     */
+    @Nullable
+    public ByteArray getBodySection(@Nonnull final String section) throws ParsingException {
+        final FetchResponse item = parseItem(BODY_PREFIX + section.toUpperCase(Locale.ENGLISH) + ']', true);
+        if (item == null) {
+            return null;
+        }
+        final BODY body = item.getItem(BODY.class);
+        return (body != null) ? body.getByteArray() : null;
+    }
+
+    /**
+     * Parses the given item only, in a response holding a copy of the item bytes.
+     *
+     * @param name the item name
+     * @param isOriginAllowed true if the item name can be followed by an origin octet, for ex: &lt;0&gt;
+     * @return the response holding the parsed item, null if the item is not present
+     * @throws ParsingException when the item value is not valid
+     */
+    @Nullable
+    private FetchResponse parseItem(@Nonnull final String name, final boolean isOriginAllowed) throws ParsingException {
+        final int nameStart = response.findItem(name, isOriginAllowed);
+        if (nameStart < 0) {
+            return null;
+        }
+        final int valueEnd = response.skipValue(response.getValueStart(nameStart));
+        final byte[] bytes = new byte[valueEnd - nameStart + 2];
+        bytes[0] = '(';
+        System.arraycopy(response.getBuffer(), nameStart, bytes, 1, valueEnd - nameStart);
+        bytes[bytes.length - 1] = ')';
+        final ResponseBytes itemResponse = new ResponseBytes(response);
+        itemResponse.setBuffer(bytes);
+        try {
+            return new FetchResponse(itemResponse);
+        } catch (final ParsingException e) {
+            throw e;
+        } catch (final IOException | ProtocolException e) {
+            throw new ParsingException(e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the value of the given item.
+     *
+     * @param name the item name
+     * @param isOriginAllowed true if the item name can be followed by an origin octet
+     * @return the index of the item value, -1 if the item is not present
+     * @throws ParsingException when the response is not a valid FETCH response
+     */
+    private int findItem(@Nonnull final String name, final boolean isOriginAllowed) throws ParsingException {
+        final int nameStart = response.findItem(name, isOriginAllowed);
+        return (nameStart < 0) ? -1 : response.getValueStart(nameStart);
+    }
+
+    /**
+     * Reads a number at the given index.
+     *
+     * @param valueStart the index of the value, -1 if the item is not present
+     * @param isParenthesized true if the number is enclosed in parentheses
+     * @return the number, -1 if the item is not present
+     * @throws ParsingException when the value is not a number
+     */
+    private long readNumber(final int valueStart, final boolean isParenthesized) throws ParsingException {
+        if (valueStart < 0) {
+            return NOT_PRESENT;
+        }
+        final byte[] buffer = response.getBuffer();
+        int i = valueStart;
+        if (isParenthesized) {
+            if (buffer[i] != '(') {
+                throw new ParsingException("Expecting '(' at index " + i);
+            }
+            i++;
+        }
+        final int digitsStart = i;
+        long value = 0;
+        while (i < response.getSize() && buffer[i] >= '0' && buffer[i] <= '9') {
+            value = value * DECIMAL_RADIX + (buffer[i] - '0');
+            i++;
+        }
+        if (i == digitsStart) {
+            throw new ParsingException("Expecting number at index " + digitsStart);
+        }
+        return value;
+    }
+
+    /**
+     * {@link IMAPResponse} giving access to the response bytes, the bytes are shared with the response it is created from.
+     */
+    private static final class ResponseBytes extends IMAPResponse {
+
+        /**
+         * Initializes a {@link ResponseBytes} object sharing the bytes of the given response.
+         *
+         * @param response the response
+         */
+        ResponseBytes(@Nonnull final IMAPResponse response) {
+            super(response);
+        }
+
+        /**
+         * @return the response bytes
+         */
+        byte[] getBuffer() {
+            return buffer;
+        }
+
+        /**
+         * @return number of valid bytes in the buffer
+         */
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * @param nameStart the index of an item name
+         * @return the index of the value of the item
+         */
+        int getValueStart(final int nameStart) {
+            return skipSpaces(skipName(nameStart));
+        }
+
+        /**
+         * Sets the read position.
+         *
+         * @param index the read position
+         */
+        void setIndex(final int index) {
+            this.index = index;
+        }
+
+        /**
+         * Replaces the response bytes, read position is set to the start.
+         *
+         * @param bytes the new bytes
+         */
+        void setBuffer(@Nonnull final byte[] bytes) {
+            this.buffer = bytes;
+            this.size = bytes.length;
+            this.index = 0;
+        }
+
+        /**
+         * Finds the value of the given item by scanning the item names, values are skipped without being parsed.
+         *
+         * @param name the item name in upper case
+         * @param isOriginAllowed true if the item name can be followed by an origin octet
+         * @return the index of the item name, -1 if the item is not present
+         * @throws ParsingException when the response is not a valid FETCH response
+         */
+        int findItem(@Nonnull final String name, final boolean isOriginAllowed) throws ParsingException {
+            int i = 0;
+            while (i < size && buffer[i] != '(') {
+                i++;
+            }
+            i++;
+            while (true) {
+                i = skipSpaces(i);
+                if (i >= size || buffer[i] == ')') {
+                    return -1;
+                }
+                final int nameStart = i;
+                final int nameEnd = skipName(i);
+                final int valueStart = skipSpaces(nameEnd);
+                if (isNameMatched(nameStart, nameEnd, name, isOriginAllowed)) {
+                    return nameStart;
+                }
+                i = skipValue(valueStart);
+            }
+        }
+
+        /**
+         * Checks whether the item name at the given range is the expected one, case-insensitively.
+         *
+         * @param start start index of the name
+         * @param end end index of the name, exclusive
+         * @param name the expected name in upper case
+         * @param isOriginAllowed true if the name can be followed by an origin octet
+         * @return true if the name matches
+         */
+        private boolean isNameMatched(final int start, final int end, @Nonnull final String name, final boolean isOriginAllowed) {
+            final int len = name.length();
+            if (end - start < len || (end - start > len && (!isOriginAllowed || buffer[start + len] != '<'))) {
+                return false;
+            }
+            for (int j = 0; j < len; j++) {
+                final byte b = buffer[start + j];
+                final byte upper = (b >= 'a' && b <= 'z') ? (byte) (b - 'a' + 'A') : b;
+                if (upper != name.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param start the start index
+         * @return the index of the first non space character from the start index
+         */
+        private int skipSpaces(final int start) {
+            int i = start;
+            while (i < size && buffer[i] == ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Skips an item name, which can contain spaces inside brackets, for ex: BODY[HEADER.FIELDS (FROM TO)]&lt;0&gt;.
+         *
+         * @param start the start index of the name
+         * @return the index after the name
+         */
+        private int skipName(final int start) {
+            int i = start;
+            int depth = 0;
+            while (i < size) {
+                final byte b = buffer[i];
+                if (b == '[') {
+                    depth++;
+                } else if (b == ']') {
+                    depth--;
+                } else if ((b == ' ' || b == ')') && depth <= 0) {
+                    break;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Skips a value: an atom, a number, NIL, a quoted string, a literal or a parenthesized list of values.
+         *
+         * @param start the start index of the value
+         * @return the index after the value
+         * @throws ParsingException when the value is not valid
+         */
+        int skipValue(final int start) throws ParsingException {
+            return ImapResponseValues.skipValue(buffer, start, size);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This class provides the messages from FETCH or UID FETCH command responses, in the order they are received.
+ */
+public class FetchResult {
+
+    /** Messages from the FETCH responses. */
+    @Nonnull
+    private final List<FetchMessage> messages;
+
+    /**
+     * Initializes a {@link FetchResult} object with the messages.
+     *
+     * @param messages the messages from FETCH responses
+     */
+    public FetchResult(@Nonnull final List<FetchMessage> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * @return the messages from FETCH responses, their data items are parsed when accessed
+     */
+    @Nonnull
+    public List<FetchMessage> getMessages() {
+        return messages;
+    }
+}
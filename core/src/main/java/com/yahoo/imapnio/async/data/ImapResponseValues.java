@@ -0,0 +1,138 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+/**
+ * Helpers reading values of an {@link IMAPResponse} not covered by its own methods, shared by the parsers of the responses.
+ */
+public final class ImapResponseValues {
+
+    /** Radix for decimal numbers. */
+    private static final int DECIMAL_RADIX = 10;
+
+    /**
+     * Not to be instantiated.
+     */
+    private ImapResponseValues() {
+    }
+
+    /**
+     * {@link IMAPResponse} giving access to the bytes and read position of the response it is created from, the bytes are shared.
+     */
+    private static final class ResponseAccess extends IMAPResponse {
+
+        /**
+         * Initializes a {@link ResponseAccess} object sharing the bytes and read position of the given response.
+         *
+         * @param response the response
+         */
+        ResponseAccess(@Nonnull final IMAPResponse response) {
+            super(response);
+        }
+
+        /**
+         * @return number of bytes of the value at the read position
+         * @throws ParsingException when the value is not valid
+         */
+        int getValueLength() throws ParsingException {
+            return skipValue(buffer, index, size) - index;
+        }
+    }
+
+    /**
+     * Skips a value not used, for example a tagged-ext-val or the value of a FETCH data item: an atom, a number, NIL, a quoted string, a literal or a
+     * parenthesized list of values, which can be nested.
+     *
+     * @param r the response positioned before the value, positioned after the value on return
+     * @throws ParsingException when the value is not valid
+     */
+    public static void skipValue(@Nonnull final IMAPResponse r) throws ParsingException {
+        r.skip(new ResponseAccess(r).getValueLength());
+    }
+
+    /**
+     * Skips a value: an atom, a number, NIL, a quoted string, a literal or a parenthesized list of values, which can be nested.
+     *
+     * @param buffer the response bytes
+     * @param start the start index of the value, spaces before the value are skipped
+     * @param size number of valid bytes in the buffer
+     * @return the index after the value
+     * @throws ParsingException when the value is not valid
+     */
+    public static int skipValue(@Nonnull final byte[] buffer, final int start, final int size) throws ParsingException {
+        int i = skipSpaces(buffer, start, size);
+        if (i >= size) {
+            throw new ParsingException("Missing value at index " + start);
+        }
+        final byte b = buffer[i];
+        if (b == '(') {
+            i++;
+            while (true) {
+                i = skipSpaces(buffer, i, size);
+                if (i >= size) {
+                    throw new ParsingException("Missing ')' for list at index " + start);
+                }
+                if (buffer[i] == ')') {
+                    return i + 1;
+                }
+                i = skipValue(buffer, i, size);
+            }
+        }
+        if (b == '"') {
+            i++;
+            while (i < size && buffer[i] != '"') {
+                i += (buffer[i] == '\\') ? 2 : 1;
+            }
+            if (i >= size) {
+                throw new ParsingException("Missing '\"' for string at index " + start);
+            }
+            return i + 1;
+        }
+        if (b == '{') {
+            i++;
+            long count = 0;
+            while (i < size && buffer[i] >= '0' && buffer[i] <= '9') {
+                count = count * DECIMAL_RADIX + (buffer[i] - '0');
+                i++;
+            }
+            if (i >= size || buffer[i] != '}') {
+                throw new ParsingException("Invalid literal count at index " + start);
+            }
+            final long end = i + 1 + 2 + count; // }CRLF followed by the literal
+            if (end > size) {
+                throw new ParsingException("Literal exceeds response at index " + start);
+            }
+            return (int) end;
+        }
+        int depth = 0;
+        while (i < size) {
+            final byte c = buffer[i];
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            } else if (depth <= 0 && (c == ' ' || c == ')' || c == '(')) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param buffer the response bytes
+     * @param start the start index
+     * @param size number of valid bytes in the buffer
+     * @return the index of the first non space character from the start index
+     */
+    private static int skipSpaces(@Nonnull final byte[] buffer, final int start, final int size) {
+        int i = start;
+        while (i < size && buffer[i] == ' ') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,60 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.imap.protocol.Status;
+
+/**
+ * This class provides the mailboxes of a LIST command joined with the status of each of them, converted from the IMAPResponse of LIST with the
+ * STATUS return option (RFC5819), or gathered from one STATUS command per mailbox when the server does not support it.
+ */
+public final class ListStatusResult {
+
+    /** Mailboxes listed. */
+    @Nonnull
+    private final ListInfoList listInfoList;
+
+    /** Status of the mailboxes, by decoded mailbox name. */
+    @Nonnull
+    private final Map<String, Status> statuses;
+
+    /**
+     * Initializes a {@link ListStatusResult} object.
+     *
+     * @param listInfoList mailboxes listed
+     * @param statuses status of the mailboxes by decoded mailbox name, mailboxes which cannot be selected have none
+     */
+    public ListStatusResult(@Nonnull final ListInfoList listInfoList, @Nonnull final Map<String, Status> statuses) {
+        this.listInfoList = listInfoList;
+        this.statuses = Collections.unmodifiableMap(statuses);
+    }
+
+    /**
+     * @return mailboxes listed
+     */
+    @Nonnull
+    public ListInfoList getListInfoList() {
+        return listInfoList;
+    }
+
+    /**
+     * @param mailboxName decoded name of a mailbox, as in ListInfo.name
+     * @return the status of the mailbox, null if the server returned none, for ex: for a mailbox which cannot be selected
+     */
+    @Nullable
+    public Status getStatus(@Nonnull final String mailboxName) {
+        return statuses.get(mailboxName);
+    }
+
+    /**
+     * @return status of the mailboxes by decoded mailbox name
+     */
+    @Nonnull
+    public Map<String, Status> getStatuses() {
+        return statuses;
+    }
+}
@@ -0,0 +1,227 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.imap.protocol.BASE64MailboxDecoder;
+import com.sun.mail.imap.protocol.ListInfo;
+import com.sun.mail.imap.protocol.Status;
+
+/**
+ * This class models an event sent by the server as an untagged response, for example after NOTIFY (RFC5465) or during IDLE: STATUS of a mailbox
+ * other than the selected one, EXISTS, FETCH, EXPUNGE or VANISHED in the selected mailbox, and LIST when a mailbox is created, deleted or renamed.
+ * Only the fields of the event type are set.
+ */
+public final class MailboxEvent {
+
+    /**
+     * Types of events.
+     */
+    public enum Type {
+        /** STATUS of a mailbox, for ex: * STATUS Lists (MESSAGES 3 UIDNEXT 104). */
+        STATUS,
+        /** Number of messages in the selected mailbox, for ex: * 23 EXISTS. */
+        EXISTS,
+        /** Data items of a message in the selected mailbox, for ex: * 12 FETCH (UID 104 FLAGS (\Seen)). */
+        FETCH,
+        /** A message expunged from the selected mailbox, for ex: * 12 EXPUNGE. */
+        EXPUNGE,
+        /** UIDs of messages expunged from the selected mailbox when QRESYNC is enabled, for ex: * VANISHED 104:105. */
+        VANISHED,
+        /** A mailbox created, deleted or renamed, for ex: * LIST () "/" NewName ("OLDNAME" (OldName)). */
+        MAILBOX_NAME
+    }
+
+    /** Attribute of a mailbox that does not exist anymore. */
+    private static final String NON_EXISTENT = "\\NonExistent";
+
+    /** Type of the event. */
+    @Nonnull
+    private final Type type;
+
+    /** Message number for FETCH and EXPUNGE, number of messages for EXISTS, -1 otherwise. */
+    private final int messageNumber;
+
+    /** Status of the mailbox for STATUS. */
+    @Nullable
+    private final Status status;
+
+    /** Data items of the message for FETCH. */
+    @Nullable
+    private final FetchMessage fetchMessage;
+
+    /** UIDs of the messages expunged for VANISHED. */
+    @Nullable
+    private final MessageNumberRangeSet vanishedUids;
+
+    /** Mailbox information for MAILBOX_NAME. */
+    @Nullable
+    private final ListInfo listInfo;
+
+    /** Decoded name of the mailbox for STATUS and MAILBOX_NAME. */
+    @Nullable
+    private final String mailboxName;
+
+    /** Decoded previous name of the mailbox for MAILBOX_NAME when renamed. */
+    @Nullable
+    private final String oldMailboxName;
+
+    /**
+     * Initializes a {@link MailboxEvent} object.
+     *
+     * @param type type of the event
+     * @param messageNumber message number or number of messages, -1 if not applicable
+     * @param status status of the mailbox
+     * @param fetchMessage data items of the message
+     * @param vanishedUids UIDs of the messages expunged
+     * @param listInfo mailbox information
+     * @param mailboxName decoded name of the mailbox
+     * @param oldMailboxName decoded previous name of the mailbox
+     */
+    @SuppressWarnings("parameternumber")
+    private MailboxEvent(@Nonnull final Type type, final int messageNumber, @Nullable final Status status, @Nullable final FetchMessage fetchMessage,
+            @Nullable final MessageNumberRangeSet vanishedUids, @Nullable final ListInfo listInfo, @Nullable final String mailboxName,
+            @Nullable final String oldMailboxName) {
+        this.type = type;
+        this.messageNumber = messageNumber;
+        this.status = status;
+        this.fetchMessage = fetchMessage;
+        this.vanishedUids = vanishedUids;
+        this.listInfo = listInfo;
+        this.mailboxName = mailboxName;
+        this.oldMailboxName = oldMailboxName;
+    }
+
+    /**
+     * @param status status of the mailbox, with the mailbox name as sent by the server
+     * @return a STATUS event
+     */
+    @Nonnull
+    public static MailboxEvent ofStatus(@Nonnull final Status status) {
+        return new MailboxEvent(Type.STATUS, -1, status, null, null, null, BASE64MailboxDecoder.decode(status.mbox), null);
+    }
+
+    /**
+     * @param count number of messages in the selected mailbox
+     * @return an EXISTS event
+     */
+    @Nonnull
+    public static MailboxEvent ofExists(final int count) {
+        return new MailboxEvent(Type.EXISTS, count, null, null, null, null, null, null);
+    }
+
+    /**
+     * @param fetchMessage data items of the message
+     * @return a FETCH event
+     */
+    @Nonnull
+    public static MailboxEvent ofFetch(@Nonnull final FetchMessage fetchMessage) {
+        return new MailboxEvent(Type.FETCH, fetchMessage.getMessageNumber(), null, fetchMessage, null, null, null, null);
+    }
+
+    /**
+     * @param messageNumber message number of the message expunged
+     * @return an EXPUNGE event
+     */
+    @Nonnull
+    public static MailboxEvent ofExpunge(final int messageNumber) {
+        return new MailboxEvent(Type.EXPUNGE, messageNumber, null, null, null, null, null, null);
+    }
+
+    /**
+     * @param vanishedUids UIDs of the messages expunged
+     * @return a VANISHED event
+     */
+    @Nonnull
+    public static MailboxEvent ofVanished(@Nonnull final MessageNumberRangeSet vanishedUids) {
+        return new MailboxEvent(Type.VANISHED, -1, null, null, vanishedUids, null, null, null);
+    }
+
+    /**
+     * @param listInfo mailbox information, with the decoded mailbox name
+     * @param oldMailboxName decoded previous name of the mailbox when renamed, null otherwise
+     * @return a MAILBOX_NAME event
+     */
+    @Nonnull
+    public static MailboxEvent ofMailboxName(@Nonnull final ListInfo listInfo, @Nullable final String oldMailboxName) {
+        return new MailboxEvent(Type.MAILBOX_NAME, -1, null, null, null, listInfo, listInfo.name, oldMailboxName);
+    }
+
+    /**
+     * @return type of the event
+     */
+    @Nonnull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return message number for FETCH and EXPUNGE, number of messages for EXISTS, -1 otherwise
+     */
+    public int getMessageNumber() {
+        return messageNumber;
+    }
+
+    /**
+     * @return status of the mailbox for STATUS, null otherwise
+     */
+    @Nullable
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return data items of the message for FETCH, null otherwise
+     */
+    @Nullable
+    public FetchMessage getFetchMessage() {
+        return fetchMessage;
+    }
+
+    /**
+     * @return UIDs of the messages expunged for VANISHED, null otherwise
+     */
+    @Nullable
+    public MessageNumberRangeSet getVanishedUids() {
+        return vanishedUids;
+    }
+
+    /**
+     * @return mailbox information for MAILBOX_NAME, null otherwise
+     */
+    @Nullable
+    public ListInfo getListInfo() {
+        return listInfo;
+    }
+
+    /**
+     * @return decoded name of the mailbox for STATUS and MAILBOX_NAME, null otherwise
+     */
+    @Nullable
+    public String getMailboxName() {
+        return mailboxName;
+    }
+
+    /**
+     * @return decoded previous name of the mailbox for MAILBOX_NAME when renamed, null otherwise
+     */
+    @Nullable
+    public String getOldMailboxName() {
+        return oldMailboxName;
+    }
+
+    /**
+     * @return true for MAILBOX_NAME when the mailbox is deleted
+     */
+    public boolean isMailboxDeleted() {
+        if (listInfo == null || listInfo.attrs == null) {
+            return false;
+        }
+        for (final String attr : listInfo.attrs) {
+            if (NON_EXISTENT.equalsIgnoreCase(attr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
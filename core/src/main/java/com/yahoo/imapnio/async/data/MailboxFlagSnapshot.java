@@ -0,0 +1,484 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Immutable snapshot of the UIDs and flags of all messages in a mailbox, used to synchronize a mailbox without mod-sequences. Messages are kept in
+ * two parallel primitive arrays sorted by UID: the UIDs as unsigned 32-bit numbers, and the flags as 64-bit masks. The system flags take the
+ * lowest bits, and keywords take the following bits in the order they are first seen, through a keyword table shared by all messages.
+ *
+ * <p>
+ * \Recent is not kept since it is specific to a session. The keyword table of a snapshot holds only the keywords some of its messages have, at
+ * most {@link #MAX_KEYWORDS}. Keywords seen once the table is full take the {@link #OVERFLOW_KEYWORDS} bit, and a message having some of them
+ * keeps a hash of their names, so their changes are still detected although they are not listed by {@link #toFlags(long)}. Since the tables of two
+ * snapshots can differ, flag masks of different snapshots are compared with {@link #hasSameFlags(int, long[], long, int)}.
+ * </p>
+ */
+public final class MailboxFlagSnapshot {
+
+    /** Bit of \Answered. */
+    public static final long ANSWERED = 1L;
+
+    /** Bit of \Deleted. */
+    public static final long DELETED = ANSWERED << 1;
+
+    /** Bit of \Draft. */
+    public static final long DRAFT = DELETED << 1;
+
+    /** Bit of \Flagged. */
+    public static final long FLAGGED = DRAFT << 1;
+
+    /** Bit of \Seen. */
+    public static final long SEEN = FLAGGED << 1;
+
+    /** Mask of the system flags. */
+    public static final long SYSTEM_FLAGS = ANSWERED | DELETED | DRAFT | FLAGGED | SEEN;
+
+    /** Bit of the keywords not fitting in the keyword table, the highest bit. */
+    public static final long OVERFLOW_KEYWORDS = Long.MIN_VALUE;
+
+    /** Maximum number of keywords in the keyword table, one bit each between the 5 system flags and the overflow bit. */
+    public static final int MAX_KEYWORDS = 58;
+
+    /** Empty snapshot. */
+    public static final MailboxFlagSnapshot EMPTY = new MailboxFlagSnapshot(new int[0], new long[0], null, new String[0]);
+
+    /** Bit of the first keyword. */
+    private static final int FIRST_KEYWORD_BIT = 5;
+
+    /** Mask to read an unsigned 32-bit number from an int. */
+    private static final long UNSIGNED_MASK = 0xFFFFFFFFL;
+
+    /** Number of bits to shift a UID to the upper half of its sort key. */
+    private static final int KEY_SHIFT = 32;
+
+    /** Initial number of messages a builder can hold. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** UIDs in ascending order, as unsigned 32-bit numbers. */
+    @Nonnull
+    private final int[] uids;
+
+    /** Flag masks, in the same order as uids. */
+    @Nonnull
+    private final long[] flagBits;
+
+    /** Hashes of the overflow keywords in the same order as uids, null if no message has overflow keywords. */
+    @Nullable
+    private final int[] overflowHashes;
+
+    /** Keyword table, the keyword at index i takes the bit {@code 1L << (5 + i)}. */
+    @Nonnull
+    private final String[] keywords;
+
+    /**
+     * Initializes a {@link MailboxFlagSnapshot} object.
+     *
+     * @param uids UIDs in ascending order
+     * @param flagBits flag masks in the same order as uids
+     * @param overflowHashes hashes of the overflow keywords in the same order as uids, null if no message has overflow keywords
+     * @param keywords keyword table
+     */
+    private MailboxFlagSnapshot(@Nonnull final int[] uids, @Nonnull final long[] flagBits, @Nullable final int[] overflowHashes,
+            @Nonnull final String[] keywords) {
+        this.uids = uids;
+        this.flagBits = flagBits;
+        this.overflowHashes = overflowHashes;
+        this.keywords = keywords;
+    }
+
+    /**
+     * Builder of {@link MailboxFlagSnapshot}. Messages can be added in any order, adding them in ascending UID order, as UID FETCH 1:* returns
+     * them, avoids sorting when building. When a UID is added more than once, the last flags added are kept. Keywords no message added has are
+     * dropped from the keyword table when building.
+     */
+    public static final class Builder {
+
+        /** UIDs added. */
+        private int[] uids;
+
+        /** Flag masks added. */
+        private long[] flagBits;
+
+        /** Hashes of the overflow keywords added, null until a message with overflow keywords is added. */
+        private int[] overflowHashes;
+
+        /** Number of messages added. */
+        private int count;
+
+        /** Whether the UIDs are in strictly ascending order. */
+        private boolean sorted = true;
+
+        /** Keyword table. */
+        @Nonnull
+        private final String[] keywords = new String[MAX_KEYWORDS];
+
+        /** Number of keywords in the table. */
+        private int keywordCount;
+
+        /** Index of each keyword in the table. */
+        @Nonnull
+        private final Map<String, Integer> keywordIndexes = new HashMap<String, Integer>();
+
+        /**
+         * Initializes a {@link Builder} object with an empty keyword table.
+         */
+        public Builder() {
+            this(null, INITIAL_CAPACITY);
+        }
+
+        /**
+         * Initializes a {@link Builder} object starting with the keyword table of a previous snapshot, so that keywords keep their bits when they
+         * are still in use. Keywords of the previous snapshot take slots in the table until the snapshot is built.
+         *
+         * @param previous previous snapshot of the mailbox, null to start with an empty keyword table
+         * @param expectedCount number of messages expected, for example from EXISTS, to size the arrays once
+         */
+        public Builder(@Nullable final MailboxFlagSnapshot previous, final int expectedCount) {
+            final int capacity = Math.max(expectedCount, 1);
+            this.uids = new int[capacity];
+            this.flagBits = new long[capacity];
+            if (previous != null) {
+                for (final String keyword : previous.keywords) {
+                    keywordIndexes.put(keyword, keywordCount);
+                    keywords[keywordCount++] = keyword;
+                }
+            }
+        }
+
+        /**
+         * Returns the bit of the given flag as it appears in a FLAGS list, for example \Seen or $Forwarded. A keyword not in the keyword table is
+         * added to it, or takes the {@link #OVERFLOW_KEYWORDS} bit when the table is full.
+         *
+         * @param flag system flag or keyword
+         * @return the bit of the flag, 0 if the flag is \Recent or an unknown system flag
+         */
+        public long getFlagBit(@Nonnull final String flag) {
+            if (flag.isEmpty()) {
+                return 0;
+            }
+            if (flag.charAt(0) == '\\') {
+                if (flag.equalsIgnoreCase("\\Seen")) {
+                    return SEEN;
+                } else if (flag.equalsIgnoreCase("\\Answered")) {
+                    return ANSWERED;
+                } else if (flag.equalsIgnoreCase("\\Flagged")) {
+                    return FLAGGED;
+                } else if (flag.equalsIgnoreCase("\\Deleted")) {
+                    return DELETED;
+                } else if (flag.equalsIgnoreCase("\\Draft")) {
+                    return DRAFT;
+                }
+                return 0;
+            }
+            Integer index = keywordIndexes.get(flag);
+            if (index == null) {
+                if (keywordCount == MAX_KEYWORDS) {
+                    return OVERFLOW_KEYWORDS;
+                }
+                index = keywordCount;
+                keywordIndexes.put(flag, index);
+                keywords[keywordCount++] = flag;
+            }
+            return 1L << (FIRST_KEYWORD_BIT + index);
+        }
+
+        /**
+         * Adds a message without overflow keywords.
+         *
+         * @param uid UID of the message
+         * @param bits flag mask of the message, built with {@link #getFlagBit(String)}
+         * @return this builder
+         * @throws ImapAsyncClientException when the UID is not a valid nz-number
+         */
+        public Builder add(final long uid, final long bits) throws ImapAsyncClientException {
+            return add(uid, bits, 0);
+        }
+
+        /**
+         * Adds a message.
+         *
+         * @param uid UID of the message
+         * @param bits flag mask of the message, built with {@link #getFlagBit(String)}
+         * @param overflowHash sum of the {@link String#hashCode()} of the keywords of the message whose bit is {@link #OVERFLOW_KEYWORDS}, 0 if none
+         * @return this builder
+         * @throws ImapAsyncClientException when the UID is not a valid nz-number
+         */
+        public Builder add(final long uid, final long bits, final int overflowHash) throws ImapAsyncClientException {
+            if (uid < 1 || uid > MessageNumberSet.MAX_NUMBER) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            if (count > 0 && uid <= (uids[count - 1] & UNSIGNED_MASK)) {
+                sorted = false;
+            }
+            if (count == uids.length) {
+                uids = Arrays.copyOf(uids, count * 2);
+                flagBits = Arrays.copyOf(flagBits, count * 2);
+                if (overflowHashes != null) {
+                    overflowHashes = Arrays.copyOf(overflowHashes, count * 2);
+                }
+            }
+            if (overflowHash != 0 && overflowHashes == null) {
+                overflowHashes = new int[uids.length];
+            }
+            uids[count] = (int) uid;
+            flagBits[count] = bits;
+            if (overflowHashes != null) {
+                overflowHashes[count] = overflowHash;
+            }
+            count++;
+            return this;
+        }
+
+        /**
+         * @return a {@link MailboxFlagSnapshot} of the messages added so far
+         */
+        @Nonnull
+        public MailboxFlagSnapshot build() {
+            final String[] table = dropUnusedKeywords();
+            if (sorted) {
+                return new MailboxFlagSnapshot(Arrays.copyOf(uids, count), Arrays.copyOf(flagBits, count),
+                        (overflowHashes != null) ? Arrays.copyOf(overflowHashes, count) : null, table);
+            }
+            // sorts by UID then by insertion order, keeping the last message added of each UID
+            final long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (((uids[i] & UNSIGNED_MASK) << KEY_SHIFT) | i) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(keys);
+            final int[] sortedUids = new int[count];
+            final long[] sortedBits = new long[count];
+            final int[] sortedHashes = (overflowHashes != null) ? new int[count] : null;
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                final int index = (int) (keys[i] & UNSIGNED_MASK);
+                if (n > 0 && sortedUids[n - 1] == uids[index]) {
+                    n--; // replaced by the later one
+                }
+                sortedUids[n] = uids[index];
+                sortedBits[n] = flagBits[index];
+                if (sortedHashes != null) {
+                    sortedHashes[n] = overflowHashes[index];
+                }
+                n++;
+            }
+            return new MailboxFlagSnapshot(Arrays.copyOf(sortedUids, n), Arrays.copyOf(sortedBits, n),
+                    (sortedHashes != null) ? Arrays.copyOf(sortedHashes, n) : null, table);
+        }
+
+        /**
+         * Drops the keywords no message added has, moving the bits of the following keywords down in the flag masks added.
+         *
+         * @return the keyword table of the keywords in use
+         */
+        private String[] dropUnusedKeywords() {
+            long used = 0;
+            for (int i = 0; i < count; i++) {
+                used |= flagBits[i];
+            }
+            final long[] newBits = new long[keywordCount];
+            int n = 0;
+            for (int i = 0; i < keywordCount; i++) {
+                if ((used & (1L << (FIRST_KEYWORD_BIT + i))) != 0) {
+                    newBits[i] = 1L << (FIRST_KEYWORD_BIT + n);
+                    keywords[n++] = keywords[i];
+                }
+            }
+            if (n < keywordCount) {
+                for (int i = 0; i < count; i++) {
+                    flagBits[i] = translate(flagBits[i], newBits);
+                }
+                keywordIndexes.clear();
+                for (int i = 0; i < n; i++) {
+                    keywordIndexes.put(keywords[i], i);
+                }
+                Arrays.fill(keywords, n, keywordCount, null);
+                keywordCount = n;
+            }
+            return Arrays.copyOf(keywords, keywordCount);
+        }
+    }
+
+    /**
+     * Translates a flag mask to another keyword table.
+     *
+     * @param bits the flag mask
+     * @param keywordBits bit in the other table of each keyword of the mask
+     * @return the translated mask
+     */
+    private static long translate(final long bits, @Nonnull final long[] keywordBits) {
+        long translated = bits & (SYSTEM_FLAGS | OVERFLOW_KEYWORDS);
+        for (long k = (bits & ~OVERFLOW_KEYWORDS) >>> FIRST_KEYWORD_BIT; k != 0; k &= k - 1) {
+            translated |= keywordBits[Long.numberOfTrailingZeros(k)];
+        }
+        return translated;
+    }
+
+    /**
+     * @return number of messages
+     */
+    public int size() {
+        return uids.length;
+    }
+
+    /**
+     * @param i index of the message, messages are in ascending UID order
+     * @return UID of the message
+     */
+    public long getUid(final int i) {
+        return uids[i] & UNSIGNED_MASK;
+    }
+
+    /**
+     * @param i index of the message, messages are in ascending UID order
+     * @return flag mask of the message
+     */
+    public long getFlagBits(final int i) {
+        return flagBits[i];
+    }
+
+    /**
+     * @return true if a message has keywords overflowing the keyword table
+     */
+    public boolean hasOverflowKeywords() {
+        return overflowHashes != null;
+    }
+
+    /**
+     * @param i index of the message, messages are in ascending UID order
+     * @return sum of the {@link String#hashCode()} of the overflow keywords of the message, 0 if it has none
+     */
+    public int getOverflowHash(final int i) {
+        return (overflowHashes != null) ? overflowHashes[i] : 0;
+    }
+
+    /**
+     * @param uid UID of a message
+     * @return index of the message, or a negative number if the UID is not in this snapshot
+     */
+    public int indexOf(final long uid) {
+        int low = 0;
+        int high = uids.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midUid = uids[mid] & UNSIGNED_MASK;
+            if (midUid < uid) {
+                low = mid + 1;
+            } else if (midUid > uid) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the keyword table, the keyword at index i takes the bit {@code 1L << (5 + i)}
+     */
+    @Nonnull
+    public String[] getKeywords() {
+        return keywords.clone();
+    }
+
+    /**
+     * Returns the bit of each keyword of this snapshot in the keyword table of another snapshot, to compare the flags of both with
+     * {@link #hasSameFlags(int, long[], long, int)}.
+     *
+     * @param other the other snapshot
+     * @return the bit in the table of the other snapshot of each keyword of this one, by index in this table, 0 for a keyword the other snapshot has
+     *         not
+     */
+    @Nonnull
+    public long[] getKeywordBits(@Nonnull final MailboxFlagSnapshot other) {
+        final Map<String, Integer> otherIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < other.keywords.length; i++) {
+            otherIndexes.put(other.keywords[i], i);
+        }
+        final long[] keywordBits = new long[keywords.length];
+        for (int i = 0; i < keywords.length; i++) {
+            final Integer index = otherIndexes.get(keywords[i]);
+            keywordBits[i] = (index != null) ? 1L << (FIRST_KEYWORD_BIT + index) : 0;
+        }
+        return keywordBits;
+    }
+
+    /**
+     * Compares the flags of a message of this snapshot with a flag mask of another snapshot, whose keyword table can differ. A keyword in the table
+     * of one snapshot and overflowing the table of the other is seen as a change.
+     *
+     * @param i index of the message, messages are in ascending UID order
+     * @param keywordBits bits of the keywords of this snapshot in the table of the other, from {@link #getKeywordBits(MailboxFlagSnapshot)}
+     * @param otherBits flag mask of the other snapshot
+     * @param otherOverflowHash hash of the overflow keywords of the other snapshot, from {@link #getOverflowHash(int)}
+     * @return true if the message has the same flags in both snapshots
+     */
+    public boolean hasSameFlags(final int i, @Nonnull final long[] keywordBits, final long otherBits, final int otherOverflowHash) {
+        if (getOverflowHash(i) != otherOverflowHash) {
+            return false;
+        }
+        long translated = flagBits[i] & (SYSTEM_FLAGS | OVERFLOW_KEYWORDS);
+        for (long k = (flagBits[i] & ~OVERFLOW_KEYWORDS) >>> FIRST_KEYWORD_BIT; k != 0; k &= k - 1) {
+            final long bit = keywordBits[Long.numberOfTrailingZeros(k)];
+            if (bit == 0) { // a keyword no message of the other snapshot has
+                return false;
+            }
+            translated |= bit;
+        }
+        return translated == otherBits;
+    }
+
+    /**
+     * @return UIDs of all messages
+     */
+    @Nonnull
+    public MessageNumberRangeSet getUids() {
+        final MessageNumberRangeSet.Builder builder = new MessageNumberRangeSet.Builder();
+        for (final int uid : uids) {
+            final long number = uid & UNSIGNED_MASK;
+            builder.append(number, number); // validated when added to the snapshot
+        }
+        return builder.build();
+    }
+
+    /**
+     * Converts a flag mask of this snapshot to {@link Flags}. Keywords overflowing the keyword table are not included.
+     *
+     * @param bits flag mask
+     * @return the flags
+     */
+    @Nonnull
+    public Flags toFlags(final long bits) {
+        final Flags flags = new Flags();
+        if ((bits & ANSWERED) != 0) {
+            flags.add(Flags.Flag.ANSWERED);
+        }
+        if ((bits & DELETED) != 0) {
+            flags.add(Flags.Flag.DELETED);
+        }
+        if ((bits & DRAFT) != 0) {
+            flags.add(Flags.Flag.DRAFT);
+        }
+        if ((bits & FLAGGED) != 0) {
+            flags.add(Flags.Flag.FLAGGED);
+        }
+        if ((bits & SEEN) != 0) {
+            flags.add(Flags.Flag.SEEN);
+        }
+        for (int i = 0; i < keywords.length; i++) {
+            if ((bits & (1L << (FIRST_KEYWORD_BIT + i))) != 0) {
+                flags.add(keywords[i]);
+            }
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,185 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+
+/**
+ * This class provides the changes of a mailbox since the state last synchronized by the client: the UIDs of new messages, the UIDs of messages
+ * removed, and the flags of new messages and of messages whose flags changed. The flag updates are kept in parallel arrays, indexed from 0 to
+ * {@link #getFlagUpdateCount()} - 1. A delta computed from a {@link MailboxFlagSnapshot} keeps the flag masks of the snapshot instead, and builds
+ * the {@link Flags} of a message when asked.
+ *
+ * <p>
+ * When {@link #isReset()} is true, the previous state is not valid anymore, for example when UIDVALIDITY changed, and every message of the mailbox
+ * is reported as new. The caller is expected to discard what it knows of the mailbox before applying this delta.
+ * </p>
+ */
+public final class MailboxSyncDelta {
+
+    /** Whether the previous state is discarded and all messages are reported as new. */
+    private final boolean isReset;
+
+    /** UIDs of the new messages. */
+    @Nonnull
+    private final MessageNumberRangeSet newUids;
+
+    /** UIDs of the messages removed since the previous state. */
+    @Nonnull
+    private final MessageNumberRangeSet vanishedUids;
+
+    /** UIDs of the messages with flag updates. */
+    @Nonnull
+    private final long[] flagUpdateUids;
+
+    /** Flags of the messages with flag updates, null if kept as flag masks. */
+    @Nullable
+    private final Flags[] flagUpdateFlags;
+
+    /** Flag masks of the messages with flag updates, in the flag snapshot of the state, null if kept as flags. */
+    @Nullable
+    private final long[] flagUpdateBits;
+
+    /** Mod-sequences of the messages with flag updates, -1 if not known, null if none is known. */
+    @Nullable
+    private final long[] flagUpdateModSeqs;
+
+    /** Number of flag updates. */
+    private final int flagUpdateCount;
+
+    /** State of the mailbox after applying this delta. */
+    @Nonnull
+    private final MailboxSyncState state;
+
+    /**
+     * Initializes a {@link MailboxSyncDelta} object.
+     *
+     * @param isReset whether the previous state is discarded and all messages are reported as new
+     * @param newUids UIDs of the new messages
+     * @param vanishedUids UIDs of the messages removed since the previous state
+     * @param flagUpdateUids UIDs of the messages with flag updates, only the first flagUpdateCount elements are valid
+     * @param flagUpdateFlags flags of the messages with flag updates
+     * @param flagUpdateModSeqs mod-sequences of the messages with flag updates, -1 if not known
+     * @param flagUpdateCount number of flag updates
+     * @param state state of the mailbox after applying this delta
+     */
+    @SuppressWarnings("parameternumber")
+    public MailboxSyncDelta(final boolean isReset, @Nonnull final MessageNumberRangeSet newUids, @Nonnull final MessageNumberRangeSet vanishedUids,
+            @Nonnull final long[] flagUpdateUids, @Nonnull final Flags[] flagUpdateFlags, @Nonnull final long[] flagUpdateModSeqs,
+            final int flagUpdateCount, @Nonnull final MailboxSyncState state) {
+        this.isReset = isReset;
+        this.newUids = newUids;
+        this.vanishedUids = vanishedUids;
+        this.flagUpdateUids = flagUpdateUids;
+        this.flagUpdateFlags = flagUpdateFlags;
+        this.flagUpdateBits = null;
+        this.flagUpdateModSeqs = flagUpdateModSeqs;
+        this.flagUpdateCount = flagUpdateCount;
+        this.state = state;
+    }
+
+    /**
+     * Initializes a {@link MailboxSyncDelta} object with flag updates as flag masks of the flag snapshot of the given state, and no mod-sequence.
+     *
+     * @param isReset whether the previous state is discarded and all messages are reported as new
+     * @param newUids UIDs of the new messages
+     * @param vanishedUids UIDs of the messages removed since the previous state
+     * @param flagUpdateUids UIDs of the messages with flag updates, only the first flagUpdateCount elements are valid
+     * @param flagUpdateBits flag masks of the messages with flag updates
+     * @param flagUpdateCount number of flag updates
+     * @param state state of the mailbox after applying this delta, with a flag snapshot
+     */
+    public MailboxSyncDelta(final boolean isReset, @Nonnull final MessageNumberRangeSet newUids, @Nonnull final MessageNumberRangeSet vanishedUids,
+            @Nonnull final long[] flagUpdateUids, @Nonnull final long[] flagUpdateBits, final int flagUpdateCount,
+            @Nonnull final MailboxSyncState state) {
+        this.isReset = isReset;
+        this.newUids = newUids;
+        this.vanishedUids = vanishedUids;
+        this.flagUpdateUids = flagUpdateUids;
+        this.flagUpdateFlags = null;
+        this.flagUpdateBits = flagUpdateBits;
+        this.flagUpdateModSeqs = null;
+        this.flagUpdateCount = flagUpdateCount;
+        this.state = state;
+    }
+
+    /**
+     * @return true if the previous state is discarded and all messages are reported as new
+     */
+    public boolean isReset() {
+        return isReset;
+    }
+
+    /**
+     * @return UIDs of the new messages
+     */
+    @Nonnull
+    public MessageNumberRangeSet getNewUids() {
+        return newUids;
+    }
+
+    /**
+     * @return UIDs of the messages removed since the previous state
+     */
+    @Nonnull
+    public MessageNumberRangeSet getVanishedUids() {
+        return vanishedUids;
+    }
+
+    /**
+     * @return number of flag updates, for new messages and for messages whose flags changed
+     */
+    public int getFlagUpdateCount() {
+        return flagUpdateCount;
+    }
+
+    /**
+     * @param i index of the flag update
+     * @return UID of the message
+     */
+    public long getFlagUpdateUid(final int i) {
+        return flagUpdateUids[checkIndex(i)];
+    }
+
+    /**
+     * @param i index of the flag update
+     * @return flags of the message, null if the server did not return them
+     */
+    @Nullable
+    public Flags getFlagUpdateFlags(final int i) {
+        if (flagUpdateFlags != null) {
+            return flagUpdateFlags[checkIndex(i)];
+        }
+        final MailboxFlagSnapshot snapshot = state.getFlagSnapshot();
+        final long bits = flagUpdateBits[checkIndex(i)];
+        return (snapshot != null) ? snapshot.toFlags(bits) : null;
+    }
+
+    /**
+     * @param i index of the flag update
+     * @return mod-sequence of the message, -1 if not known
+     */
+    public long getFlagUpdateModSeq(final int i) {
+        final int index = checkIndex(i);
+        return (flagUpdateModSeqs != null) ? flagUpdateModSeqs[index] : -1;
+    }
+
+    /**
+     * @return state of the mailbox after applying this delta, to be given to the next synchronization
+     */
+    @Nonnull
+    public MailboxSyncState getState() {
+        return state;
+    }
+
+    /**
+     * @param i index of the flag update
+     * @return the given index
+     */
+    private int checkIndex(final int i) {
+        if (i < 0 || i >= flagUpdateCount) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + flagUpdateCount);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,97 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This class models the state of a mailbox as last synchronized by the client: the UIDVALIDITY, the UIDNEXT, the HIGHESTMODSEQ (RFC7162) and the
+ * UIDs known to the client. A state synchronized without mod-sequences also keeps the flags of all messages in a {@link MailboxFlagSnapshot},
+ * against which the next synchronization detects flag changes. It is immutable, a synchronization returns the advanced state in its
+ * {@link MailboxSyncDelta}.
+ */
+public final class MailboxSyncState {
+
+    /** UIDVALIDITY of the mailbox. */
+    private final long uidValidity;
+
+    /** UIDNEXT of the mailbox, the UID expected to be assigned to the next message. */
+    private final long uidNext;
+
+    /** HIGHESTMODSEQ of the mailbox, -1 if the server does not support mod-sequences for the mailbox. */
+    private final long highestModSeq;
+
+    /** UIDs of the messages known to the client. */
+    @Nonnull
+    private final MessageNumberRangeSet uids;
+
+    /** UIDs and flags of all messages, null if not kept. */
+    @Nullable
+    private final MailboxFlagSnapshot flagSnapshot;
+
+    /**
+     * Initializes a {@link MailboxSyncState} object.
+     *
+     * @param uidValidity UIDVALIDITY of the mailbox
+     * @param uidNext UIDNEXT of the mailbox
+     * @param highestModSeq HIGHESTMODSEQ of the mailbox, -1 if not supported
+     * @param uids UIDs of the messages known to the client
+     */
+    public MailboxSyncState(final long uidValidity, final long uidNext, final long highestModSeq, @Nonnull final MessageNumberRangeSet uids) {
+        this(uidValidity, uidNext, highestModSeq, uids, null);
+    }
+
+    /**
+     * Initializes a {@link MailboxSyncState} object with a flag snapshot.
+     *
+     * @param uidValidity UIDVALIDITY of the mailbox
+     * @param uidNext UIDNEXT of the mailbox
+     * @param highestModSeq HIGHESTMODSEQ of the mailbox, -1 if not supported
+     * @param uids UIDs of the messages known to the client
+     * @param flagSnapshot UIDs and flags of all messages, null if not kept
+     */
+    public MailboxSyncState(final long uidValidity, final long uidNext, final long highestModSeq, @Nonnull final MessageNumberRangeSet uids,
+            @Nullable final MailboxFlagSnapshot flagSnapshot) {
+        this.uidValidity = uidValidity;
+        this.uidNext = uidNext;
+        this.highestModSeq = highestModSeq;
+        this.uids = uids;
+        this.flagSnapshot = flagSnapshot;
+    }
+
+    /**
+     * @return UIDVALIDITY of the mailbox
+     */
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    /**
+     * @return UIDNEXT of the mailbox
+     */
+    public long getUidNext() {
+        return uidNext;
+    }
+
+    /**
+     * @return HIGHESTMODSEQ of the mailbox, -1 if the server does not support mod-sequences for the mailbox
+     */
+    public long getHighestModSeq() {
+        return highestModSeq;
+    }
+
+    /**
+     * @return UIDs of the messages known to the client
+     */
+    @Nonnull
+    public MessageNumberRangeSet getUids() {
+        return uids;
+    }
+
+    /**
+     * @return UIDs and flags of all messages, null if not kept
+     */
+    @Nullable
+    public MailboxFlagSnapshot getFlagSnapshot() {
+        return flagSnapshot;
+    }
+}
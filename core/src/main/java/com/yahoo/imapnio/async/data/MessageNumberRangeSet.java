@@ -0,0 +1,478 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Immutable set of message numbers, could be message sequence numbers or UIDs, stored as sorted, disjoint and non-adjacent ranges. Each range takes
+ * two unsigned 32-bit numbers, so a mailbox of tens of millions of mostly contiguous UIDs takes a few kilobytes, and union, intersection and
+ * difference are linear merges of the ranges instead of operations on boxed numbers.
+ */
+public final class MessageNumberRangeSet {
+
+    /** Empty set. */
+    public static final MessageNumberRangeSet EMPTY = new MessageNumberRangeSet(new int[0], 0);
+
+    /** Mask to read an unsigned 32-bit number from an int. */
+    private static final long UNSIGNED_MASK = 0xFFFFFFFFL;
+
+    /** Number of bits to shift the start of a range to the upper half of its sort key. */
+    private static final int KEY_SHIFT = 32;
+
+    /** Initial number of ranges a builder can hold. */
+    private static final int INITIAL_RANGES = 16;
+
+    /** Start and end, both inclusive, of each range in ascending order, as unsigned 32-bit numbers. */
+    @Nonnull
+    private final int[] bounds;
+
+    /** Number of message numbers in this set. */
+    private final long size;
+
+    /**
+     * Initializes a {@link MessageNumberRangeSet} object.
+     *
+     * @param bounds start and end of each range in ascending order, disjoint and non-adjacent
+     * @param size number of message numbers in the ranges
+     */
+    private MessageNumberRangeSet(@Nonnull final int[] bounds, final long size) {
+        this.bounds = bounds;
+        this.size = size;
+    }
+
+    /**
+     * Builder of {@link MessageNumberRangeSet}. Numbers and ranges can be added in any order and can overlap, adding them in ascending order
+     * avoids sorting the ranges when building.
+     */
+    public static final class Builder {
+
+        /** Start and end of each range added. */
+        private int[] bounds = new int[INITIAL_RANGES * 2];
+
+        /** Number of elements used in bounds, twice the number of ranges. */
+        private int length;
+
+        /** Whether the ranges are in ascending order and coalesced. */
+        private boolean sorted = true;
+
+        /**
+         * Adds a message number.
+         *
+         * @param number message number
+         * @return this builder
+         * @throws ImapAsyncClientException when the number is not a valid nz-number
+         */
+        public Builder add(final long number) throws ImapAsyncClientException {
+            return add(number, number);
+        }
+
+        /**
+         * Adds a range of message numbers.
+         *
+         * @param start starting message number, inclusive
+         * @param end ending message number, inclusive
+         * @return this builder
+         * @throws ImapAsyncClientException when the numbers are not valid nz-numbers or end is smaller than start
+         */
+        public Builder add(final long start, final long end) throws ImapAsyncClientException {
+            if (start < 1 || end < start || end > MessageNumberSet.MAX_NUMBER) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            append(start, end);
+            return this;
+        }
+
+        /**
+         * Appends a range, coalescing it with the last range if they overlap or are adjacent.
+         *
+         * @param start starting message number, inclusive
+         * @param end ending message number, inclusive
+         */
+        void append(final long start, final long end) {
+            if (length > 0) {
+                final long lastEnd = bounds[length - 1] & UNSIGNED_MASK;
+                if (start <= lastEnd + 1) {
+                    if (start >= (bounds[length - 2] & UNSIGNED_MASK)) {
+                        if (end > lastEnd) {
+                            bounds[length - 1] = (int) end;
+                        }
+                        return;
+                    }
+                    sorted = false; // starts before the last range, sorted when building
+                }
+            }
+            if (length == bounds.length) {
+                bounds = Arrays.copyOf(bounds, length * 2);
+            }
+            bounds[length++] = (int) start;
+            bounds[length++] = (int) end;
+        }
+
+        /**
+         * @return a {@link MessageNumberRangeSet} of all the numbers added so far
+         */
+        @Nonnull
+        public MessageNumberRangeSet build() {
+            if (!sorted) {
+                sort();
+            }
+            if (length == 0) {
+                return EMPTY;
+            }
+            long count = 0;
+            for (int i = 0; i < length; i += 2) {
+                count += (bounds[i + 1] & UNSIGNED_MASK) - (bounds[i] & UNSIGNED_MASK) + 1;
+            }
+            return new MessageNumberRangeSet(Arrays.copyOf(bounds, length), count);
+        }
+
+        /**
+         * Sorts the ranges by start and coalesces them. Each range is packed into one long as a sort key, so sorting does not box.
+         */
+        private void sort() {
+            final long[] keys = new long[length / 2];
+            for (int i = 0; i < keys.length; i++) {
+                // flip the sign bit so that signed order of keys is the unsigned order of starts
+                keys[i] = (((bounds[2 * i] & UNSIGNED_MASK) << KEY_SHIFT) | (bounds[2 * i + 1] & UNSIGNED_MASK)) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(keys);
+            length = 0;
+            sorted = true;
+            for (final long key : keys) {
+                final long range = key ^ Long.MIN_VALUE;
+                append(range >>> KEY_SHIFT, range & UNSIGNED_MASK);
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link MessageNumberRangeSet} from message numbers in any order, duplicates are ignored.
+     *
+     * @param numbers message numbers
+     * @return the set of the given numbers
+     * @throws ImapAsyncClientException when a number is not a valid nz-number
+     */
+    @Nonnull
+    public static MessageNumberRangeSet of(@Nonnull final long[] numbers) throws ImapAsyncClientException {
+        final Builder builder = new Builder();
+        for (final long number : numbers) {
+            builder.add(number);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a {@link MessageNumberRangeSet} from an array of MessageNumberSet.
+     *
+     * @param msgsets array of MessageNumberSet
+     * @return the set of the numbers in the given MessageNumberSet array
+     * @throws ImapAsyncClientException when a MessageNumberSet refers to the last message, which is not a known number
+     */
+    @Nonnull
+    public static MessageNumberRangeSet of(@Nonnull final MessageNumberSet[] msgsets) throws ImapAsyncClientException {
+        final Builder builder = new Builder();
+        for (final MessageNumberSet msgset : msgsets) {
+            if (!msgset.isAbsolute()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            builder.add(msgset.getStart(), msgset.getEnd());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parses an IMAP RFC3501 sequence-set returned by the server, for example: 2,4:7,9,12:15, without creating an object per range.
+     *
+     * @param sequenceSet the string in sequence-set syntax
+     * @return the set of the numbers in the given sequence-set
+     * @throws ImapAsyncClientException when the given string is not a valid sequence-set, or refers to the last message by *
+     */
+    @Nonnull
+    public static MessageNumberRangeSet parse(@Nonnull final String sequenceSet) throws ImapAsyncClientException {
+        final Builder builder = new Builder();
+        final int len = sequenceSet.length();
+        int i = 0;
+        while (i < len) {
+            int j = sequenceSet.indexOf(',', i);
+            if (j < 0) {
+                j = len;
+            }
+            final int colon = sequenceSet.indexOf(':', i);
+            final long start;
+            final long end;
+            if (colon < 0 || colon > j) {
+                start = MessageNumberSet.parseSeqNumber(sequenceSet, i, j);
+                end = start;
+            } else {
+                final long a = MessageNumberSet.parseSeqNumber(sequenceSet, i, colon);
+                final long b = MessageNumberSet.parseSeqNumber(sequenceSet, colon + 1, j);
+                start = Math.min(a, b);
+                end = Math.max(a, b);
+            }
+            if (start < 0) { // * is not a known number
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            builder.append(start, end);
+            i = j + 1;
+        }
+        if (len == 0 || sequenceSet.charAt(len - 1) == ',') {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param i index of the range
+     * @return starting message number of the range
+     */
+    private long start(final int i) {
+        return bounds[2 * i] & UNSIGNED_MASK;
+    }
+
+    /**
+     * @param i index of the range
+     * @return ending message number of the range
+     */
+    private long end(final int i) {
+        return bounds[2 * i + 1] & UNSIGNED_MASK;
+    }
+
+    /**
+     * @return number of message numbers in this set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if this set has no message number
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of ranges in this set
+     */
+    public int getRangeCount() {
+        return bounds.length / 2;
+    }
+
+    /**
+     * @param i index of the range, ranges are in ascending order
+     * @return starting message number of the range, inclusive
+     */
+    public long getRangeStart(final int i) {
+        return start(i);
+    }
+
+    /**
+     * @param i index of the range, ranges are in ascending order
+     * @return ending message number of the range, inclusive
+     */
+    public long getRangeEnd(final int i) {
+        return end(i);
+    }
+
+    /**
+     * @return smallest message number in this set, -1 if this set is empty
+     */
+    public long first() {
+        return isEmpty() ? -1 : start(0);
+    }
+
+    /**
+     * @return largest message number in this set, -1 if this set is empty
+     */
+    public long last() {
+        return isEmpty() ? -1 : end(getRangeCount() - 1);
+    }
+
+    /**
+     * Finds whether a message number is in this set, by a binary search over the ranges.
+     *
+     * @param number message number
+     * @return true if the number is in this set
+     */
+    public boolean contains(final long number) {
+        int low = 0;
+        int high = getRangeCount() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (number < start(mid)) {
+                high = mid - 1;
+            } else if (number > end(mid)) {
+                low = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param other the other set
+     * @return a set of the numbers in this set or in the other set
+     */
+    @Nonnull
+    public MessageNumberRangeSet union(@Nonnull final MessageNumberRangeSet other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        final Builder builder = new Builder();
+        final int n = getRangeCount();
+        final int m = other.getRangeCount();
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (j >= m || (i < n && start(i) <= other.start(j))) {
+                builder.append(start(i), end(i));
+                i++;
+            } else {
+                builder.append(other.start(j), other.end(j));
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param other the other set
+     * @return a set of the numbers in both this set and the other set
+     */
+    @Nonnull
+    public MessageNumberRangeSet intersection(@Nonnull final MessageNumberRangeSet other) {
+        final Builder builder = new Builder();
+        final int n = getRangeCount();
+        final int m = other.getRangeCount();
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            final long low = Math.max(start(i), other.start(j));
+            final long high = Math.min(end(i), other.end(j));
+            if (low <= high) {
+                builder.append(low, high);
+            }
+            if (end(i) < other.end(j)) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param other the other set
+     * @return a set of the numbers in this set but not in the other set
+     */
+    @Nonnull
+    public MessageNumberRangeSet difference(@Nonnull final MessageNumberRangeSet other) {
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+        final Builder builder = new Builder();
+        final int n = getRangeCount();
+        final int m = other.getRangeCount();
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            long next = start(i);
+            final long end = end(i);
+            while (j < m && other.end(j) < next) {
+                j++;
+            }
+            for (int k = j; k < m && other.start(k) <= end && next <= end; k++) {
+                if (other.start(k) > next) {
+                    builder.append(next, other.start(k) - 1);
+                }
+                next = other.end(k) + 1;
+            }
+            if (next <= end) {
+                builder.append(next, end);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return an iterator of the message numbers in ascending order, without boxing
+     */
+    @Nonnull
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            /** Index of the current range. */
+            private int range;
+
+            /** Next number to return. */
+            private long next = isEmpty() ? 0 : start(0);
+
+            @Override
+            public boolean hasNext() {
+                return range < getRangeCount();
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final long number = next;
+                if (number < end(range)) {
+                    next++;
+                } else if (++range < getRangeCount()) {
+                    next = start(range);
+                }
+                return number;
+            }
+        };
+    }
+
+    /**
+     * @return an array of MessageNumberSet, one per range, in ascending order
+     */
+    @Nonnull
+    public MessageNumberSet[] toMessageNumberSets() {
+        final MessageNumberSet[] msgsets = new MessageNumberSet[getRangeCount()];
+        for (int i = 0; i < msgsets.length; i++) {
+            msgsets[i] = new MessageNumberSet(start(i), end(i));
+        }
+        return msgsets;
+    }
+
+    /**
+     * @return this set in IMAP RFC3501 sequence-set syntax, empty string if this set is empty
+     */
+    @Override
+    public String toString() {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0, n = getRangeCount(); i < n; i++) {
+            if (i > 0) {
+                s.append(',');
+            }
+            s.append(start(i));
+            if (end(i) > start(i)) {
+                s.append(':').append(end(i));
+            }
+        }
+        return s.toString();
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bounds);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return (obj instanceof MessageNumberRangeSet) && Arrays.equals(bounds, ((MessageNumberRangeSet) obj).bounds);
+    }
+}
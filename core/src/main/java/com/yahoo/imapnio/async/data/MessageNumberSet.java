@@ -93,6 +93,12 @@ public final class MessageNumberSet {
         LAST_MESSAGE_ONLY
     }
 
+    /** Radix of a seq-number. */
+    private static final int RADIX = 10;
+
+    /** Largest nz-number, unsigned 32-bit integer. */
+    static final long MAX_NUMBER = 0xFFFFFFFFL;
+
     /** Sequence type. */
     private final SequenceType seqType;
 
@@ -150,6 +156,27 @@ public final class MessageNumberSet {
         this.seqType = seqType;
     }
 
+    /**
+     * @return starting message number, -1 if this is the last message only
+     */
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * @return ending message number, -1 if this is the last message only, same as start if it ends with the last message
+     */
+    long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return true if both start and end are absolute numbers, false if it ends with, or is, the last message
+     */
+    boolean isAbsolute() {
+        return seqType == SequenceType.ABSOLUTE_END;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -215,6 +242,76 @@ public final class MessageNumberSet {
         return v.toArray(new MessageNumberSet[v.size()]);
     }
 
+    /**
+     * Parses an IMAP RFC3501 sequence-set, for example: 2,4:7,9,12:*, into an array of MessageNumberSet. This is the reverse of
+     * {@link #buildString(MessageNumberSet[])}, used for sequence-sets returned by the server.
+     *
+     * @param sequenceSet the string in sequence-set syntax
+     * @return MessageNumberSet array
+     * @throws ImapAsyncClientException when the given string is not a valid sequence-set
+     */
+    public static MessageNumberSet[] parseMessageNumberSets(@Nonnull final String sequenceSet) throws ImapAsyncClientException {
+        final List<MessageNumberSet> v = new ArrayList<MessageNumberSet>();
+        int i = 0;
+        final int len = sequenceSet.length();
+        while (i < len) {
+            int j = sequenceSet.indexOf(',', i);
+            if (j < 0) {
+                j = len;
+            }
+            final int colon = sequenceSet.indexOf(':', i);
+            if (colon < 0 || colon > j) {
+                final long num = parseSeqNumber(sequenceSet, i, j);
+                v.add(num < 0 ? new MessageNumberSet(LastMessage.LAST_MESSAGE) : new MessageNumberSet(num, num));
+            } else {
+                final long start = parseSeqNumber(sequenceSet, i, colon);
+                final long end = parseSeqNumber(sequenceSet, colon + 1, j);
+                if (start < 0 && end < 0) {
+                    v.add(new MessageNumberSet(LastMessage.LAST_MESSAGE));
+                } else if (start < 0 || end < 0) {
+                    v.add(new MessageNumberSet(start < 0 ? end : start, LastMessage.LAST_MESSAGE));
+                } else {
+                    v.add(new MessageNumberSet(start, end));
+                }
+            }
+            i = j + 1;
+        }
+        if (v.isEmpty() || sequenceSet.charAt(len - 1) == ',') {
+            throw new ImapAsyncClientException(ImapAsyncClientException.FailureType.INVALID_INPUT);
+        }
+        return v.toArray(new MessageNumberSet[v.size()]);
+    }
+
+    /**
+     * Parses a seq-number between the given indexes.
+     *
+     * @param s the string in sequence-set syntax
+     * @param from starting index, inclusive
+     * @param to ending index, exclusive
+     * @return the number, -1 for *
+     * @throws ImapAsyncClientException when the given range is not a valid seq-number
+     */
+    static long parseSeqNumber(@Nonnull final String s, final int from, final int to) throws ImapAsyncClientException {
+        if (to == from + 1 && s.charAt(from) == '*') {
+            return -1;
+        }
+        if (to <= from || s.charAt(from) == '0') {
+            throw new ImapAsyncClientException(ImapAsyncClientException.FailureType.INVALID_INPUT);
+        }
+        long num = 0;
+        for (int i = from; i < to; i++) {
+            final int digit = Character.digit(s.charAt(i), RADIX);
+            if (digit < 0 || num > MAX_NUMBER) {
+                throw new ImapAsyncClientException(ImapAsyncClientException.FailureType.INVALID_INPUT);
+            }
+            num = num * RADIX + digit;
+        }
+        if (num > MAX_NUMBER) {
+            throw new ImapAsyncClientException(ImapAsyncClientException.FailureType.INVALID_INPUT);
+        }
+        return num;
+    }
+
     /**
      * Converts an array of MessageNumberSet into an IMAP RFC3501 sequence-set syntax.
      *
@@ -232,21 +329,9 @@ public final class MessageNumberSet {
         int i = 0; // msgset index
         final StringBuilder s = new StringBuilder();
         final int size = elems.size();
-        long start, end;
 
         for (final MessageNumberSet elem : elems) {
-            start = elem.start;
-            end = elem.end;
-
-            if (elem.seqType == SequenceType.LAST_MESSAGE_ONLY) {
-                s.append('*');
-            } else if (elem.seqType == SequenceType.LAST_MESSAGE_END) {
-                s.append(start).append(':').append('*');
-            } else if (end > start) {
-                s.append(start).append(':').append(end);
-            } else { // end == start means only one element
-                s.append(start);
-            }
+            elem.appendTo(s);
 
             i++; // increment to next round
             if (i >= size) { // No more MessageNumberSet objects
@@ -257,4 +342,54 @@ public final class MessageNumberSet {
         }
         return s.toString();
     }
+
+    /**
+     * Converts an array of MessageNumberSet into IMAP RFC3501 sequence-sets, each of them no longer than the given length, so that commands
+     * over sparse message numbers can be split to stay under the command line length limit of servers. Duplicates are removed as in
+     * {@link #buildString(MessageNumberSet[])}, and the order of the given MessageNumberSet is kept.
+     *
+     * @param msgsets array of MessageNumberSet
+     * @param maxLength maximum length of each sequence-set, a single seq-range longer than this is returned in a sequence-set of its own
+     * @return the list of sequence-sets, empty if the given array is null or empty
+     */
+    @Nonnull
+    public static List<String> buildStrings(@Nullable final MessageNumberSet[] msgsets, final int maxLength) {
+        final List<String> sequenceSets = new ArrayList<String>();
+        if (msgsets == null || msgsets.length == 0) {
+            return sequenceSets;
+        }
+        final StringBuilder s = new StringBuilder();
+        final StringBuilder elemStr = new StringBuilder();
+        for (final MessageNumberSet elem : new LinkedHashSet<>(Arrays.asList(msgsets))) {
+            elemStr.setLength(0);
+            elem.appendTo(elemStr);
+            if (s.length() > 0 && s.length() + 1 + elemStr.length() > maxLength) {
+                sequenceSets.add(s.toString());
+                s.setLength(0);
+            }
+            if (s.length() > 0) {
+                s.append(',');
+            }
+            s.append(elemStr);
+        }
+        sequenceSets.add(s.toString());
+        return sequenceSets;
+    }
+
+    /**
+     * Appends this seq-number or seq-range in IMAP RFC3501 syntax.
+     *
+     * @param s the builder to append to
+     */
+    private void appendTo(@Nonnull final StringBuilder s) {
+        if (seqType == SequenceType.LAST_MESSAGE_ONLY) {
+            s.append('*');
+        } else if (seqType == SequenceType.LAST_MESSAGE_END) {
+            s.append(start).append(':').append('*');
+        } else if (end > start) {
+            s.append(start).append(':').append(end);
+        } else { // end == start means only one element
+            s.append(start);
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.yahoo.imapnio.async.data;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -9,9 +11,16 @@ import javax.annotation.Nullable;
  * This class provides the list of message sequence numbers from search command response.
  */
 public class SearchResult {
-    /** Search command response sequence number, could be message sequence or UID. */
-    @Nonnull
-    private final List<Long> msgNumbers;
+    /** Search command response sequence number, could be message sequence or UID, built from the primitive array when first requested. */
+    @Nullable
+    private List<Long> msgNumbers;
+
+    /** Search command response sequence number in primitive form, null if this result is created with a list. */
+    @Nullable
+    private final long[] msgNumberArray;
+
+    /** Number of valid message numbers in the primitive array. */
+    private final int count;
 
     /**
      * Initializes a {@link SearchResult} object with message number collection.
@@ -20,6 +29,20 @@ public class SearchResult {
      */
     public SearchResult(@Nonnull final List<Long> msgNumbers) {
         this.msgNumbers = msgNumbers;
+        this.msgNumberArray = null;
+        this.count = (msgNumbers != null) ? msgNumbers.size() : 0;
+    }
+
+    /**
+     * Initializes a {@link SearchResult} object with message numbers in primitive form, without boxing each of them.
+     *
+     * @param msgNumbers array of message number from search command result, only the first count elements are valid
+     * @param count number of message numbers in the array
+     */
+    public SearchResult(@Nonnull final long[] msgNumbers, final int count) {
+        this.msgNumbers = null;
+        this.msgNumberArray = msgNumbers;
+        this.count = count;
     }
 
     /**
@@ -27,6 +50,50 @@ public class SearchResult {
      */
     @Nullable
     public List<Long> getMessageNumbers() {
+        if (msgNumbers == null && msgNumberArray != null) {
+            final List<Long> list = new ArrayList<Long>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(Long.valueOf(msgNumberArray[i]));
+            }
+            msgNumbers = list;
+        }
         return this.msgNumbers;
     }
+
+    /**
+     * @return number of message numbers from search command or UID search command result
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return a copy of message numbers from search command or UID search command result in primitive form, null if this result was created
+     *         with a null list
+     */
+    @Nullable
+    public long[] getMessageNumberArray() {
+        if (msgNumberArray != null) {
+            return Arrays.copyOf(msgNumberArray, count);
+        }
+        if (msgNumbers == null) {
+            return null;
+        }
+        final long[] array = new long[count];
+        for (int i = 0; i < count; i++) {
+            array[i] = msgNumbers.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Converts the message numbers to ranges of contiguous numbers, in the order of the search result, for ex: 1,2,3,7 to 1:3 and 7.
+     *
+     * @return the ranges of message numbers, empty if there is no message number
+     */
+    @Nonnull
+    public MessageNumberSet[] toMessageNumberSets() {
+        final long[] array = getMessageNumberArray();
+        return MessageNumberSet.createMessageNumberSets((array != null) ? array : new long[0]);
+    }
 }
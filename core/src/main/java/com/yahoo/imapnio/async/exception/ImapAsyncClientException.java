@@ -64,7 +64,19 @@ public class ImapAsyncClientException extends Exception {
         UNKNOWN_PARSE_RESULT_TYPE("Given class type to parse to is unknown."),
 
         /** Invalid input. */
-        INVALID_INPUT("Input is invalid.");
+        INVALID_INPUT("Input is invalid."),
+
+        /** Session pool reached the maximum number of sessions for the given server and account. */
+        SESSION_POOL_EXHAUSTED("Session pool reached the maximum number of sessions for the given server and account."),
+
+        /** Session pool is shut down. */
+        SESSION_POOL_SHUTDOWN("Session pool is shut down."),
+
+        /** Connect was not admitted before its deadline in the connection admission queue. */
+        CONNECTION_ADMISSION_TIMEOUT("Connect was not admitted within the maximum wait time of the connection admission queue."),
+
+        /** Server does not support persistent storage of mod-sequences for the mailbox, aka NOMODSEQ. */
+        MODSEQ_NOT_SUPPORTED("Server does not support persistent mod-sequences for the mailbox.");
 
         /** The error message associated with this failure type. */
         @Nonnull
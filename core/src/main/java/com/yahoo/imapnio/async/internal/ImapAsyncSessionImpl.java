@@ -3,7 +3,11 @@ package com.yahoo.imapnio.async.internal;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -14,31 +18,46 @@ import org.slf4j.Logger;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncClient;
 import com.yahoo.imapnio.async.client.ImapAsyncSession;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
 import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.client.ImapUntaggedResponseListener;
+import com.yahoo.imapnio.async.client.ImapUntaggedResponseSource;
+import com.yahoo.imapnio.async.client.MailboxEventReader;
+import com.yahoo.imapnio.async.data.MailboxEvent;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 import com.yahoo.imapnio.async.netty.ImapClientCommandRespHandler;
 import com.yahoo.imapnio.async.netty.ImapCommandChannelEventProcessor;
+import com.yahoo.imapnio.async.request.AbstractFetchCommand;
+import com.yahoo.imapnio.async.request.AppendCommand;
 import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapCommandLineAdapter;
+import com.yahoo.imapnio.async.request.ImapRFCSupportedCommandType;
 import com.yahoo.imapnio.async.request.ImapRequest;
 import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.client.ImapClientRespReader;
+import com.yahoo.imapnio.client.ImapLiteralSink;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
 import io.netty.handler.codec.compression.JdkZlibDecoder;
 import io.netty.handler.codec.compression.JdkZlibEncoder;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.timeout.IdleStateEvent;
 
 /**
  * This class establishes a session between imap server and sends command to server with async future.
  */
-public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChannelEventProcessor, ChannelFutureListener {
+public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapUntaggedResponseSource, ImapCommandChannelEventProcessor, ChannelFutureListener {
 
     /** Label for command sent, used in exception message. */
     private static final String CMD_SENT = ",cmdSent:";
@@ -59,7 +78,7 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     private static final String CLIENT_LOG_REC = "[{},{}] C:{}";
 
     /** Space character. */
-    static final char SPACE = ' ';
+    private static final char SPACE = ' ';
 
     /** Tag prefix. */
     private static final char A = 'a';
@@ -70,6 +89,17 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     /** Inflater handler name for enabling server compress. */
     private static final String ZLIB_ENCODER = "INFLATER";
 
+    /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
+    private static final byte[] CRLF_B = { '\r', '\n' };
+
+    /**
+     * Command types that need the connection exclusively while in flight, either because they rely on server continuation or because they change the
+     * connection itself. In pipelining mode, they wait for all prior commands to complete, and commands issued after them wait for their completion.
+     */
+    private static final Set<ImapRFCSupportedCommandType> PIPELINE_BARRIER_TYPES = Collections.unmodifiableSet(EnumSet.of(
+            ImapRFCSupportedCommandType.APPEND_MESSAGE, ImapRFCSupportedCommandType.AUTHENTICATE, ImapRFCSupportedCommandType.COMPRESS,
+            ImapRFCSupportedCommandType.IDLE));
+
     /** The Netty channel object. */
     private AtomicReference<Channel> channelRef = new AtomicReference<Channel>();
 
@@ -83,9 +113,18 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     /** Clock instance. */
     private Clock clock;
 
-    /** Producer queue. */
+    /** Producer queue, holding the commands sent to server in the order they are sent. */
     private ConcurrentLinkedQueue<ImapCommandEntry> requestsQueue;
 
+    /** Commands accepted in pipelining mode but held from being sent until the ordering barrier ahead of them is done. */
+    private ConcurrentLinkedQueue<ImapCommandEntry> heldRequestsQueue;
+
+    /** Lock to make the decision of sending or holding a command, and the sending itself, atomic in pipelining mode. */
+    private final Object pipelineLock = new Object();
+
+    /** True if more than one command is allowed in flight. */
+    private boolean isPipeliningEnabled;
+
     /** Logger. */
     private Logger logger;
 
@@ -95,6 +134,10 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     /** Sequence number for tag. */
     private AtomicLong tagSequence;
 
+    /** Listeners notified of each untagged response, copied on write since responses are dispatched far more often than listeners change. */
+    private final CopyOnWriteArrayList<ImapUntaggedResponseListener> untaggedResponseListeners =
+            new CopyOnWriteArrayList<ImapUntaggedResponseListener>();
+
     /**
      * This class handles and manages response from server and determines whether the job for this request is done. When the request is done, it sets
      * the future to done and returns the appropriate status to caller via handleResponse method.
@@ -224,15 +267,47 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
      */
     public ImapAsyncSessionImpl(@Nonnull final Clock clock, @Nonnull final Channel channel, @Nonnull final Logger logger,
             @Nonnull final DebugMode debugMode, final long sessionId, final ChannelPipeline pipeline, @Nonnull final Object sessionCtx) {
+        this(clock, channel, logger, debugMode, sessionId, pipeline, sessionCtx, new ImapAsyncSessionConfig());
+    }
+
+    /**
+     * Initializes an imap session that supports async operations with the given session configuration.
+     *
+     * @param clock Clock instance
+     * @param channel Channel object established for this session
+     * @param logger Logger object
+     * @param debugMode Flag for debugging
+     * @param sessionId the session id
+     * @param pipeline the ChannelPipeline object
+     * @param sessionCtx context for client to store information
+     * @param config configuration for this session
+     */
+    @SuppressWarnings("parameternumber")
+    public ImapAsyncSessionImpl(@Nonnull final Clock clock, @Nonnull final Channel channel, @Nonnull final Logger logger,
+            @Nonnull final DebugMode debugMode, final long sessionId, final ChannelPipeline pipeline, @Nonnull final Object sessionCtx,
+            @Nonnull final ImapAsyncSessionConfig config) {
         this.channelRef.set(channel);
         this.clock = clock;
         this.logger = logger;
         this.debugModeRef.set(debugMode);
         this.sessionId = sessionId;
         this.requestsQueue = new ConcurrentLinkedQueue<ImapCommandEntry>();
+        this.heldRequestsQueue = new ConcurrentLinkedQueue<ImapCommandEntry>();
+        this.isPipeliningEnabled = config.isPipeliningEnabled();
         this.tagSequence = new AtomicLong(0);
         this.sessionCtx = sessionCtx;
         pipeline.addLast(ImapClientCommandRespHandler.HANDLER_NAME, new ImapClientCommandRespHandler(this));
+        final ImapClientRespReader reader = pipeline.get(ImapClientRespReader.class);
+        if (reader != null) {
+            // a command with a sink is a pipeline barrier, so un-tagged FETCH responses read while it is in flight are all its own
+            reader.setLiteralSinkProvider(new ImapClientRespReader.LiteralSinkProvider() {
+                @Override
+                public ImapLiteralSink getLiteralSink() {
+                    final ImapCommandEntry entry = getFirstEntry();
+                    return (entry != null) ? getLiteralSinkOf(entry.getRequest()) : null;
+                }
+            });
+        }
     }
 
     /**
@@ -265,28 +340,170 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         this.debugModeRef.set(newOption);
     }
 
+    @Override
+    public void addUntaggedResponseListener(@Nonnull final ImapUntaggedResponseListener listener) {
+        untaggedResponseListeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void removeUntaggedResponseListener(@Nonnull final ImapUntaggedResponseListener listener) {
+        untaggedResponseListeners.remove(listener);
+    }
+
     @Override
     public ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
         if (isChannelClosed()) { // fail fast instead of entering to sendRequest() to fail
             throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
         }
-        if (!requestsQueue.isEmpty()) { // when prior command is in process, do not allow the new one
+        if (!isPipeliningEnabled && !requestsQueue.isEmpty()) { // when prior command is in process, do not allow the new one
             throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
         }
 
         final ImapFuture<ImapAsyncResponse> cmdFuture = new ImapFuture<ImapAsyncResponse>();
-        final String tag = getNextTag();
-        requestsQueue.add(new ImapCommandEntry(command, cmdFuture, tag));
-
-        final ByteBuf buf = Unpooled.buffer();
+        final ImapCommandEntry entry = new ImapCommandEntry(command, cmdFuture, getNextTag());
+        if (!isPipeliningEnabled) {
+            requestsQueue.add(entry);
+            sendCommandLine(entry);
+            return cmdFuture;
+        }
 
-        buf.writeBytes(tag.getBytes(StandardCharsets.US_ASCII));
-        buf.writeByte(SPACE);
-        buf.writeBytes(command.getCommandLineBytes());
+        synchronized (pipelineLock) {
+            if (mustBeHeld(command)) {
+                heldRequestsQueue.add(entry); // will be sent once the commands ahead of it are done
+            } else {
+                requestsQueue.add(entry);
+                sendCommandLine(entry);
+            }
+        }
+        return cmdFuture;
+    }
 
+    /**
+     * Builds the tagged command line for the given entry and sends it to server.
+     *
+     * @param entry the command entry to send
+     * @throws ImapAsyncClientException when building the command line fails or channel is closed
+     */
+    private void sendCommandLine(@Nonnull final ImapCommandEntry entry) throws ImapAsyncClientException {
+        final ImapRequest command = entry.getRequest();
+        final ByteBufAllocator allocator = channelRef.get().alloc();
+        final ByteBuf buf;
+        if (command instanceof ImapCommandLineAdapter) {
+            // tag and command line are written in one pass into a buffer from the channel allocator, released by netty once written
+            buf = ((ImapCommandLineAdapter) command).getTaggedCommandLineBytes(allocator, entry.getTag());
+        } else {
+            final ByteBuf line = command.getCommandLineBytes();
+            try {
+                buf = allocator.buffer(entry.getTag().length() + 1 + line.readableBytes());
+                ByteBufUtil.writeAscii(buf, entry.getTag());
+                buf.writeByte(SPACE);
+                buf.writeBytes(line);
+            } finally {
+                line.release();
+            }
+        }
         sendRequest(buf, command);
+        if (command instanceof AppendCommand) {
+            final AppendCommand appendCmd = (AppendCommand) command;
+            if (appendCmd.isLiteralDataStreamed() && appendCmd.isLiteralSentInline()) {
+                sendLiteralData(appendCmd); // LITERAL+ or LITERAL-, data follows the command line without waiting for continuation
+            }
+        }
+    }
 
-        return cmdFuture;
+    /**
+     * Streams the literal data of the given command to server. Data from file is transferred with zero-copy file region when the bytes are written as
+     * is, i.e. no SSL nor compression in the pipeline, otherwise data is read in chunks, written as the channel becomes writable.
+     *
+     * @param command the append command
+     * @throws ImapAsyncClientException when channel is closed or the literal data cannot be read
+     */
+    private void sendLiteralData(@Nonnull final AppendCommand command) throws ImapAsyncClientException {
+        if (isChannelClosed()) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
+        }
+        final Channel channel = channelRef.get();
+        final ChannelPipeline pipeline = channel.pipeline();
+        final boolean isWrittenAsIs = pipeline.get(ImapAsyncClient.SSL_HANDLER) == null && pipeline.get(ZLIB_ENCODER) == null;
+        final FileRegion region = isWrittenAsIs ? command.getLiteralDataFileRegion() : null;
+        if (region != null) {
+            if (isDebugEnabled()) {
+                logger.debug(CLIENT_LOG_REC, sessionId, getUserInfo(), "<literal data from file region, length=" + region.count() + ">");
+            }
+            final ChannelPromise regionWriteFuture = channel.newPromise();
+            regionWriteFuture.addListener(this);
+            channel.write(region, regionWriteFuture);
+            final ChannelPromise writeFuture = channel.newPromise();
+            writeFuture.addListener(this);
+            channel.writeAndFlush(Unpooled.wrappedBuffer(CRLF_B), writeFuture);
+            return;
+        }
+
+        final ChunkedInput<ByteBuf> data = command.getLiteralData();
+        if (isDebugEnabled()) {
+            logger.debug(CLIENT_LOG_REC, sessionId, getUserInfo(), "<streamed literal data and CRLF, length=" + data.length() + ">");
+        }
+        final ChannelPromise writeFuture = channel.newPromise();
+        writeFuture.addListener(this); // failure in reading the data fails the write future as well
+        channel.writeAndFlush(data, writeFuture);
+    }
+
+    /**
+     * @param command the imap command
+     * @return the sink the FETCH response literals of the given command are streamed to, null if none
+     */
+    private static ImapLiteralSink getLiteralSinkOf(@Nonnull final ImapRequest command) {
+        return (command instanceof AbstractFetchCommand) ? ((AbstractFetchCommand) command).getLiteralSink() : null;
+    }
+
+    /**
+     * @param command the imap command
+     * @return true if the given command is an ordering barrier in pipelining mode, including a command streaming literals to a sink since un-tagged
+     *         FETCH responses cannot be told apart by command
+     */
+    private boolean isPipelineBarrier(@Nonnull final ImapRequest command) {
+        return PIPELINE_BARRIER_TYPES.contains(command.getCommandType()) || getLiteralSinkOf(command) != null;
+    }
+
+    /**
+     * Decides whether a command has to be held from being sent in pipelining mode. Caller must hold the pipeline lock.
+     *
+     * @param command the imap command
+     * @return true if the command cannot be sent now
+     */
+    private boolean mustBeHeld(@Nonnull final ImapRequest command) {
+        // held commands go first to preserve the order of commands issued by caller
+        return !heldRequestsQueue.isEmpty() || isBlockedByInFlight(command);
+    }
+
+    /**
+     * Sends the held commands that are no longer blocked by an ordering barrier, in the order they were issued.
+     */
+    private void sendHeldRequests() {
+        synchronized (pipelineLock) {
+            while (!heldRequestsQueue.isEmpty() && !isBlockedByInFlight(heldRequestsQueue.peek().getRequest())) {
+                final ImapCommandEntry entry = heldRequestsQueue.poll();
+                requestsQueue.add(entry);
+                try {
+                    sendCommandLine(entry);
+                } catch (final ImapAsyncClientException | RuntimeException e) {
+                    requestDoneWithException(new ImapAsyncClientException(FailureType.CHANNEL_EXCEPTION, e, sessionId, sessionCtx));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decides whether the commands in flight prevent the given command from being sent. Caller must hold the pipeline lock.
+     *
+     * @param command the imap command
+     * @return true if the command has to wait for the commands in flight
+     */
+    private boolean isBlockedByInFlight(@Nonnull final ImapRequest command) {
+        final ImapCommandEntry inFlight = requestsQueue.peek();
+        // a barrier waits for all commands in flight, and a barrier in flight is always the only one in flight
+        return inFlight != null && (isPipelineBarrier(command) || isPipelineBarrier(inFlight.getRequest()));
     }
 
     @Override
@@ -298,7 +515,7 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     /**
      * @return true if channel is closed; false otherwise
      */
-    boolean isChannelClosed() {
+    public boolean isChannelClosed() {
         return !channelRef.get().isActive();
     }
 
@@ -316,6 +533,7 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
                     (!command.isCommandLineDataSensitive()) ? request.toString(StandardCharsets.UTF_8) : command.getDebugData());
         }
         if (isChannelClosed()) {
+            request.release();
             throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
         }
 
@@ -333,7 +551,10 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
             throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
         }
 
-        final ImapCommandEntry entry = requestsQueue.peek();
+        final ImapCommandEntry entry = isPipeliningEnabled ? getEntryByRequest(command) : requestsQueue.peek();
+        if (entry == null) { // given command is not in flight
+            throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
+        }
         sendRequest(entry.getRequest().getTerminateCommandLine(), command);
         return entry.getFuture();
     }
@@ -345,7 +566,7 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
      */
     @Override
     public void operationComplete(final ChannelFuture future) {
-        final ImapCommandEntry entry = requestsQueue.peek();
+        final ImapCommandEntry entry = getWriteCompletedEntry();
         if (entry != null) {
             // set the state to REQUEST_SENT regardless success or not
             entry.setState(ImapCommandEntry.CommandState.REQUEST_SENT, clock);
@@ -382,19 +603,74 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     }
 
     /**
-     * @return the current in-progress request without removing it
+     * Removes the given entry from the queue and calls ImapRequest.cleanup.
+     *
+     * @param entry the entry to remove
+     */
+    private void removeEntry(@Nonnull final ImapCommandEntry entry) {
+        requestsQueue.remove(entry);
+        // clean up the command since it is done regardless success or fail
+        entry.getRequest().cleanup();
+    }
+
+    /**
+     * @return the current in-progress request without removing it, in pipelining mode, this is the oldest request in flight
      */
     private ImapCommandEntry getFirstEntry() {
         return (requestsQueue.isEmpty()) ? null : requestsQueue.peek();
     }
 
+    /**
+     * @param tag the tag of the command
+     * @return the request in flight with the given tag, null if there is none
+     */
+    private ImapCommandEntry getEntryByTag(@Nonnull final String tag) {
+        for (final ImapCommandEntry entry : requestsQueue) {
+            if (entry.getTag().equals(tag)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param command the imap command
+     * @return the request in flight for the given command, null if there is none
+     */
+    private ImapCommandEntry getEntryByRequest(@Nonnull final ImapRequest command) {
+        for (final ImapCommandEntry entry : requestsQueue) {
+            if (entry.getRequest() == command) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the request whose write just completed. Since writes complete in the order they are issued, in pipelining mode it is the oldest request
+     * not yet confirmed sent.
+     *
+     * @return the request whose write completed, null if there is none
+     */
+    private ImapCommandEntry getWriteCompletedEntry() {
+        if (!isPipeliningEnabled) {
+            return requestsQueue.peek();
+        }
+        for (final ImapCommandEntry entry : requestsQueue) {
+            if (entry.getState() == ImapCommandEntry.CommandState.REQUEST_IN_PREPARATION) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
     /**
      * Sets the future done when command is executed unsuccessfully.
      *
      * @param cause the cause of why the operation fails
      */
     private void requestDoneWithException(@Nonnull final ImapAsyncClientException cause) {
-        final ImapCommandEntry entry = removeFirstEntry();
+        ImapCommandEntry entry = removeFirstEntry();
         if (entry == null) {
             return;
         }
@@ -403,7 +679,15 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         if (isDebugEnabled()) {
             logger.debug(SESSION_LOG_WITH_EXCEPTION, sessionId, getUserInfo(), cause);
         }
-        entry.getFuture().done(cause);
+        // in pipelining mode, none of the commands in flight or held can complete once session is closing
+        while (entry != null) {
+            entry.getFuture().done(cause);
+            entry = removeFirstEntry();
+        }
+        for (ImapCommandEntry held = heldRequestsQueue.poll(); held != null; held = heldRequestsQueue.poll()) {
+            held.getRequest().cleanup();
+            held.getFuture().done(cause);
+        }
 
         // close session when encountering channel exception since the health of session is frail/unknown.
         close();
@@ -430,10 +714,20 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
 
     @Override
     public <T> void handleChannelResponse(@Nonnull final IMAPResponse serverResponse) {
-        final ImapCommandEntry curEntry = getFirstEntry();
+        if (serverResponse.isUnTagged() && !untaggedResponseListeners.isEmpty()) {
+            notifyUntaggedResponseListeners(serverResponse);
+        }
+        ImapCommandEntry curEntry = getFirstEntry();
         if (curEntry == null) {
             return;
         }
+        if (isPipeliningEnabled && serverResponse.isTagged()) {
+            // tagged response completes its own command, un-tagged responses go to the oldest command in flight since server processes in order
+            final ImapCommandEntry taggedEntry = getEntryByTag(serverResponse.getTag());
+            if (taggedEntry != null) {
+                curEntry = taggedEntry;
+            }
+        }
 
         final ImapRequest currentCmd = curEntry.getRequest();
         final Collection<IMAPResponse> responses = curEntry.getResponses();
@@ -447,6 +741,11 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         if (serverResponse.isContinuation()) {
             try {
                 curEntry.setState(ImapCommandEntry.CommandState.RESPONSES_DONE, clock);
+                if (currentCmd instanceof AppendCommand && ((AppendCommand) currentCmd).isLiteralDataStreamed()) {
+                    curEntry.setState(ImapCommandEntry.CommandState.REQUEST_IN_PREPARATION, clock); // preparing to send literal data
+                    sendLiteralData((AppendCommand) currentCmd);
+                    return;
+                }
                 final ByteBuf cmdAfterContinue = currentCmd.getNextCommandLineAfterContinuation(serverResponse);
                 if (cmdAfterContinue == null) {
                     return; // no data from client after continuation, we leave, this is for Idle
@@ -487,8 +786,11 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
                 }
                 // see rfc3501, page 63 for details, since we always give a tagged command, response completion should be the first tagged response
                 final ImapAsyncResponse doneResponse = new ImapAsyncResponse(responses);
-                removeFirstEntry();
+                removeEntry(curEntry);
                 curEntry.getFuture().done(doneResponse);
+                if (isPipeliningEnabled) {
+                    sendHeldRequests();
+                }
                 return;
             } catch (final RuntimeException e) {
                 requestDoneWithException(
@@ -499,6 +801,33 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         // none-tagged server responses if reaching here
     }
 
+    /**
+     * Decodes the given untagged response once and notifies the untagged response listeners. Decoding and listeners work on copies of the response,
+     * whose parsing index is past the key, since the command in flight parses the response from that index afterwards and {@code reset()} would move
+     * it back before the key.
+     *
+     * @param serverResponse the untagged response
+     */
+    private void notifyUntaggedResponseListeners(@Nonnull final IMAPResponse serverResponse) {
+        MailboxEvent event;
+        try {
+            event = MailboxEventReader.decode(new IMAPResponse(serverResponse));
+        } catch (final ImapAsyncClientException | RuntimeException e) {
+            event = null; // listeners get the raw response
+        }
+        for (final ImapUntaggedResponseListener listener : untaggedResponseListeners) {
+            try {
+                if (event != null) {
+                    listener.onMailboxEvent(this, event);
+                } else {
+                    listener.onUntaggedResponse(this, new IMAPResponse(serverResponse));
+                }
+            } catch (final RuntimeException e) { // a failing listener must not break reading the responses of the commands in flight
+                logger.error(SESSION_LOG_WITH_EXCEPTION, sessionId, getUserInfo(), e);
+            }
+        }
+    }
+
     @Override
     public ImapFuture<Boolean> close() {
         final ImapFuture<Boolean> closeFuture = new ImapFuture<Boolean>();
@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncCreateSessionResponse;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
 import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
 import com.yahoo.imapnio.async.client.ImapFuture;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
@@ -49,6 +50,9 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
     /** Context for session information, its toString() method will be called to be used for logging and exception getMessage(). */
     private Object sessionCtx;
 
+    /** Configuration to be used for the session to be created. */
+    private ImapAsyncSessionConfig sessionConfig;
+
     /**
      * Initializes {@link ImapClientConnectHandler} to process ok greeting after connection.
      *
@@ -61,12 +65,30 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
      */
     public ImapClientConnectHandler(@Nonnull final Clock clock, @Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture,
             @Nonnull final Logger logger, @Nonnull final DebugMode logOpt, final long sessionId, @Nonnull final Object sessionCtx) {
+        this(clock, sessionFuture, logger, logOpt, sessionId, sessionCtx, new ImapAsyncSessionConfig());
+    }
+
+    /**
+     * Initializes {@link ImapClientConnectHandler} to process ok greeting after connection.
+     *
+     * @param clock The Clock instance
+     * @param sessionFuture imap session future, should be set to done once ok is received
+     * @param logger the {@link Logger} instance for @{ImapAsyncSessionImpl}
+     * @param logOpt logging option for the session to be created
+     * @param sessionId the session id
+     * @param sessionCtx context for the session information, its toString() method will be called to be used for logging and exception getMessage()
+     * @param sessionConfig configuration to be used for the session to be created
+     */
+    public ImapClientConnectHandler(@Nonnull final Clock clock, @Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture,
+            @Nonnull final Logger logger, @Nonnull final DebugMode logOpt, final long sessionId, @Nonnull final Object sessionCtx,
+            @Nonnull final ImapAsyncSessionConfig sessionConfig) {
         this.sessionCreatedFuture = sessionFuture;
         this.logger = logger;
         this.logOpt = logOpt;
         this.sessionId = sessionId;
         this.sessionCtx = sessionCtx;
         this.clock = clock;
+        this.sessionConfig = sessionConfig;
     }
 
     @Override
@@ -77,7 +99,8 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
 
         if (serverResponse.isOK()) { // we can call it successful only when response is ok
             // add the command response handler
-            final ImapAsyncSessionImpl session = new ImapAsyncSessionImpl(clock, ctx.channel(), logger, logOpt, sessionId, pipeline, sessionCtx);
+            final ImapAsyncSessionImpl session = new ImapAsyncSessionImpl(clock, ctx.channel(), logger, logOpt, sessionId, pipeline, sessionCtx,
+                    sessionConfig);
             final ImapAsyncCreateSessionResponse response = new ImapAsyncCreateSessionResponse(session, serverResponse);
             sessionCreatedFuture.done(response);
 
@@ -133,5 +156,6 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
         logOpt = null;
         clock = null;
         sessionCtx = null;
+        sessionConfig = null;
     }
 }
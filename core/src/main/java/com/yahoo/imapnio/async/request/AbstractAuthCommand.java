@@ -16,7 +16,7 @@ import io.netty.buffer.Unpooled;
 /**
  * This class defines imap authenticate command request from client.
  */
-public abstract class AbstractAuthCommand extends ImapRequestAdapter {
+public abstract class AbstractAuthCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -27,6 +27,9 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
     /** Byte buffer length for authenticate command, enough for the supported ones, oauth bear, plain, and xoauth2. */
     private static final int COMMAND_LEN = 50;
 
+    /** Byte buffer length for authenticate command with client response, enough for typical oauth tokens, the buffer grows for longer ones. */
+    private static final int COMMAND_WITH_CLIENT_RESPONSE_LEN = 2048;
+
     /** Flag whether server allows one liner (Refer to RFC4959) instead of server challenge. */
     private boolean isSaslIREnabled;
 
@@ -62,27 +65,30 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
     abstract String buildClientResponse();
 
     @Override
-    public ByteBuf getCommandLineBytes() {
+    protected void writeCommandLine(@Nonnull final ByteBuf out) {
         if (isSaslIREnabled) { // server allows client response in one line
             this.isDataSensitive = true; // containing sensitive data
             final String clientResp = buildClientResponse();
 
             // SASL-IR, rfc4959. "AUTHENTICATE" SP auth-type [SP (base64 / "=")] *(CRLF base64) ex: AUTHENTICATE XOAUTH2 [base64 response]
-            final ByteBuf sb = Unpooled.buffer(clientResp.length() + ImapClientConstants.PAD_LEN);
-            buildCommand(sb); // ex: AUTHENTICATE XOAUTH2
-            sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(clientResp.getBytes(StandardCharsets.US_ASCII)); // client responses
-            sb.writeBytes(CRLF_B);
+            buildCommand(out); // ex: AUTHENTICATE XOAUTH2
+            out.writeByte(ImapClientConstants.SPACE);
+            out.writeBytes(clientResp.getBytes(StandardCharsets.US_ASCII)); // client responses
+            out.writeBytes(CRLF_B);
             this.isClientResponseSent = true; // setting to true to indicate client response is sent
-            return sb;
+            return;
         }
 
         // SASL-IR is not supported, just send command without client response
         this.isDataSensitive = false;
-        final ByteBuf buf = Unpooled.buffer(COMMAND_LEN);
-        buildCommand(buf);
-        buf.writeBytes(CRLF_B);
-        return buf;
+        buildCommand(out);
+        out.writeBytes(CRLF_B);
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        // not building the client response here, it would encode the credentials once more
+        return isSaslIREnabled ? COMMAND_WITH_CLIENT_RESPONSE_LEN : COMMAND_LEN;
     }
 
     @Override
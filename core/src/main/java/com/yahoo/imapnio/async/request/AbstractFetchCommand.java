@@ -3,11 +3,13 @@ package com.yahoo.imapnio.async.request;
 import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.client.ImapLiteralSink;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * This class defines IMAP fetch command request from client. ABNF in RFC3501 is described as following:
@@ -25,7 +27,7 @@ import io.netty.buffer.Unpooled;
  * }
  * </pre>
  */
-public abstract class AbstractFetchCommand extends ImapRequestAdapter {
+public abstract class AbstractFetchCommand extends ImapCommandLineAdapter {
 
     /** FETCH and space. */
     private static final String FETCH_SP = "FETCH ";
@@ -54,6 +56,9 @@ public abstract class AbstractFetchCommand extends ImapRequestAdapter {
     /** True if prepending UID; false otherwise. */
     private boolean isUid;
 
+    /** Sink to stream the literals to, null if literals are kept in the responses. */
+    private ImapLiteralSink literalSink;
+
     /**
      * Initializes a {@link FetchCommand} with the {@link MessageNumberSet} array.
      *
@@ -109,13 +114,32 @@ public abstract class AbstractFetchCommand extends ImapRequestAdapter {
         this.msgNumbers = null;
         this.dataItems = null;
         this.macro = null;
+        this.literalSink = null;
+    }
+
+    /**
+     * Sets the sink to stream the literals of the FETCH responses to, for ex: BODY[] of large messages, so they are not buffered in memory. Streamed
+     * literals appear as empty literals in the responses of this command. In pipelining mode, a command with a sink is not sent along with other
+     * commands, since the un-tagged FETCH responses of the commands in flight cannot be told apart.
+     *
+     * @param sink the sink to stream the literals to, null to keep literals in the responses
+     */
+    public void setLiteralSink(@Nullable final ImapLiteralSink sink) {
+        this.literalSink = sink;
+    }
+
+    /**
+     * @return the sink to stream the FETCH response literals to as they arrive, null to have them in the responses
+     */
+    @Nullable
+    public ImapLiteralSink getLiteralSink() {
+        return literalSink;
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf sb = Unpooled.buffer();
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) {
         sb.writeBytes(isUid ? UID_FETCH_SP_B : FETCH_SP_B);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+        ByteBufUtil.writeAscii(sb, msgNumbers);
         sb.writeByte(ImapClientConstants.SPACE);
 
         if (dataItems != null) {
@@ -126,7 +150,10 @@ public abstract class AbstractFetchCommand extends ImapRequestAdapter {
             sb.writeBytes(macro.name().getBytes(StandardCharsets.US_ASCII));
         }
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return msgNumbers.length() + ((dataItems != null) ? dataItems.length() : 0) + ImapClientConstants.PAD_LEN;
     }
 }
@@ -8,12 +8,11 @@ import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap abstract commands related to change operation on folder, like create folder, rename folder, delete folder.
  */
-abstract class AbstractFolderActionCommand extends ImapRequestAdapter {
+abstract class AbstractFolderActionCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -42,19 +41,18 @@ abstract class AbstractFolderActionCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         final String base64Folder = BASE64MailboxEncoder.encode(folderName);
-        // 2 * base64Folder.length(): assuming every char needs to be escaped, goal is eliminating resizing, and avoid complex length calculation
-        final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
         sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
         sb.writeByte(ImapClientConstants.SPACE);
 
         final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
         formatter.formatArgument(base64Folder, sb, false); // already base64 encoded so can be formatted and write to sb
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return 2 * folderName.length() + ImapClientConstants.PAD_LEN;
     }
 }
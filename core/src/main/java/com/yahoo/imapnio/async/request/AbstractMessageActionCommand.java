@@ -10,12 +10,12 @@ import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * This class defines imap message change operation command from client. For example, copy message, move message.
  */
-abstract class AbstractMessageActionCommand extends ImapRequestAdapter {
+abstract class AbstractMessageActionCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -102,13 +102,9 @@ abstract class AbstractMessageActionCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         // encode the mbox as per RFC2060
         final String base64Folder = BASE64MailboxEncoder.encode(targetFolder);
-        // 2 * base64Folder.length(): assuming every char needs to be escaped, goal is eliminating resizing, and avoid complex length calculation
-        final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
 
         if (isUid) {
             sb.writeBytes(UID_B);
@@ -116,14 +112,17 @@ abstract class AbstractMessageActionCommand extends ImapRequestAdapter {
 
         sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
         sb.writeByte(ImapClientConstants.SPACE);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+        ByteBufUtil.writeAscii(sb, msgNumbers);
         sb.writeByte(ImapClientConstants.SPACE);
 
         final ImapArgumentFormatter argWriter = new ImapArgumentFormatter();
         argWriter.formatArgument(base64Folder, sb, false);
 
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return msgNumbers.length() + 2 * targetFolder.length() + ImapClientConstants.PAD_LEN;
     }
 }
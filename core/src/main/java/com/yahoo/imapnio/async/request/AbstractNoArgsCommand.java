@@ -5,12 +5,11 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines an Imap command that has no arguments sent from client.
  */
-public abstract class AbstractNoArgsCommand extends ImapRequestAdapter {
+public abstract class AbstractNoArgsCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -34,12 +33,14 @@ public abstract class AbstractNoArgsCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final int len = op.length() + ImapClientConstants.CRLFLEN;
-        final ByteBuf sb = Unpooled.buffer(len);
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) {
         sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
         sb.writeBytes(CRLF_B);
-        return sb;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return op.length() + ImapClientConstants.CRLFLEN;
     }
 
 }
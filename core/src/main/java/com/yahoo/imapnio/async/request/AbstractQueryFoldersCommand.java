@@ -8,12 +8,11 @@ import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap select command request from client.
  */
-abstract class AbstractQueryFoldersCommand extends ImapRequestAdapter {
+abstract class AbstractQueryFoldersCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -48,15 +47,12 @@ abstract class AbstractQueryFoldersCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         // Ex:LIST /usr/staff/jones ""
 
         // encode the arguments as per RFC2060
         final String ref64 = BASE64MailboxEncoder.encode(ref);
         final String pat64 = BASE64MailboxEncoder.encode(pattern);
-
-        final int len = 2 * ref64.length() + 2 * pat64.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
         sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
         sb.writeByte(ImapClientConstants.SPACE);
 
@@ -64,9 +60,22 @@ abstract class AbstractQueryFoldersCommand extends ImapRequestAdapter {
         formatter.formatArgument(ref64, sb, false); // already base64 encoded so can be formatted and write to sb
         sb.writeByte(ImapClientConstants.SPACE);
 
-        formatter.formatArgument(pat64, sb, false);
-        sb.writeBytes(CRLF_B); // already base64 encoded so can be formatted and write to sb
+        formatter.formatArgument(pat64, sb, false); // already base64 encoded so can be formatted and write to sb
+        writeReturnOptions(sb);
+        sb.writeBytes(CRLF_B);
+    }
+
+    /**
+     * Writes the return options following the mailbox pattern, for ex: RETURN (STATUS (MESSAGES)) of RFC5819. None by default.
+     *
+     * @param sb buffer to write to
+     * @throws ImapAsyncClientException when the return options are not valid
+     */
+    protected void writeReturnOptions(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return 2 * ref.length() + 2 * pattern.length() + ImapClientConstants.PAD_LEN;
     }
 }
@@ -2,6 +2,9 @@ package com.yahoo.imapnio.async.request;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -18,7 +21,7 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * This class defines IMAP search command request from client.
@@ -46,7 +49,7 @@ import io.netty.buffer.Unpooled;
  *                  "(" search-key *(SP search-key) ")"
  * </pre>
  */
-public abstract class AbstractSearchCommand extends ImapRequestAdapter {
+public abstract class AbstractSearchCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -69,6 +72,9 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
     /** UID SEARCH in byte array. */
     private static final byte[] UID_SEARCH_B = UID_SEARCH.getBytes(StandardCharsets.US_ASCII);
 
+    /** RETURN and the opening parenthesis of return options in byte array. */
+    private static final byte[] RETURN_B = " RETURN (".getBytes(StandardCharsets.US_ASCII);
+
     /** Flag whether adding UID before search. */
     private boolean isUid;
 
@@ -84,6 +90,9 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
     /** flag whether server allows LITERAL+. */
     private boolean isLiteralPlusEnabled;
 
+    /** ESEARCH return options, null for a SEARCH without return options. */
+    private Set<SearchReturnOption> returnOptions;
+
     /**
      * Initializes the object with the MessageNumberSet array, search string and character set name.
      *
@@ -113,6 +122,24 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
      */
     protected AbstractSearchCommand(final boolean isUid, @Nullable final String msgNumbers, @Nullable final SearchTerm term,
             @Nullable final Capability capa) throws ImapAsyncClientException, SearchException, IOException {
+        this(isUid, msgNumbers, term, capa, null);
+    }
+
+    /**
+     * Initializes the object with the string form of message sequence, search string, character set name and ESEARCH (RFC4731) return options.
+     *
+     * @param isUid whether it is UID Search command
+     * @param msgNumbers the set of MessageNumberSet
+     * @param term the search term
+     * @param capa the capability instance to find if it has literal
+     * @param returnOptions the return options, empty to request ALL only, null for a SEARCH without return options
+     * @throws ImapAsyncClientException when both msgsets and searchString are null
+     * @throws IOException when parsing error for generate sequence
+     * @throws SearchException when search term cannot be found
+     */
+    protected AbstractSearchCommand(final boolean isUid, @Nullable final String msgNumbers, @Nullable final SearchTerm term,
+            @Nullable final Capability capa, @Nullable final Set<SearchReturnOption> returnOptions)
+            throws ImapAsyncClientException, SearchException, IOException {
         // based on [ABNF] above, 1*(SP search-key), cannot have both null
         if (msgNumbers == null && term == null) {
             throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
@@ -128,6 +155,7 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
             this.searchExpr = searchSeq.generateSequence(term, charset == null ? null : MimeUtility.javaCharset(charset));
         }
         this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(ImapClientConstants.LITERAL_PLUS) : false;
+        this.returnOptions = copyOf(returnOptions);
     }
 
     /**
@@ -142,6 +170,23 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
      */
     protected AbstractSearchCommand(final boolean isUid, @Nullable final String msgNumbers, @Nullable final String charset,
             @Nonnull final Argument args, @Nullable final Capability capa) throws ImapAsyncClientException {
+        this(isUid, msgNumbers, charset, args, capa, null);
+    }
+
+    /**
+     * Initializes the object with the string form of message sequence, search string, character set name and ESEARCH (RFC4731) return options.
+     *
+     * @param isUid whether it is UID Search command
+     * @param msgNumbers the set of MessageNumberSet
+     * @param charset the character set
+     * @param args the argument containing the search term
+     * @param capa the capability instance to find if it has literal
+     * @param returnOptions the return options, empty to request ALL only, null for a SEARCH without return options
+     * @throws ImapAsyncClientException when both msgsets and searchString are null
+     */
+    protected AbstractSearchCommand(final boolean isUid, @Nullable final String msgNumbers, @Nullable final String charset,
+            @Nonnull final Argument args, @Nullable final Capability capa, @Nullable final Set<SearchReturnOption> returnOptions)
+            throws ImapAsyncClientException {
         // based on [ABNF] above, 1*(SP search-key), cannot have both null
         if (msgNumbers == null && args == null) {
             throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
@@ -152,6 +197,21 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
         this.charset = charset;
         this.searchExpr = args;
         this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(ImapClientConstants.LITERAL_PLUS) : false;
+        this.returnOptions = copyOf(returnOptions);
+    }
+
+    /**
+     * @param returnOptions the return options
+     * @return a copy of the return options, written in the order of {@link SearchReturnOption}, null if the given options are null
+     */
+    @Nullable
+    private static Set<SearchReturnOption> copyOf(@Nullable final Set<SearchReturnOption> returnOptions) {
+        if (returnOptions == null) {
+            return null;
+        }
+        final Set<SearchReturnOption> copy = EnumSet.noneOf(SearchReturnOption.class);
+        copy.addAll(returnOptions);
+        return copy;
     }
 
     @Override
@@ -159,13 +219,25 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
         this.msgNumbers = null;
         this.searchExpr = null;
         this.charset = null;
+        this.returnOptions = null;
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-        final ByteBuf sb = Unpooled.buffer();
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         sb.writeBytes(isUid ? UID_SEARCH_B : SEARCH_B);
 
+        if (returnOptions != null) {
+            sb.writeBytes(RETURN_B);
+            final Iterator<SearchReturnOption> it = returnOptions.iterator();
+            while (it.hasNext()) {
+                ByteBufUtil.writeAscii(sb, it.next().name());
+                if (it.hasNext()) {
+                    sb.writeByte(ImapClientConstants.SPACE);
+                }
+            }
+            sb.writeByte(ImapClientConstants.R_PAREN);
+        }
+
         if (charset != null) {
             sb.writeByte(ImapClientConstants.SPACE);
             sb.writeBytes(CHARSET_B);
@@ -175,7 +247,7 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
 
         if (msgNumbers != null) {
             sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+            ByteBufUtil.writeAscii(sb, msgNumbers);
         }
 
         if (searchExpr != null) {
@@ -187,6 +259,10 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
             }
         }
         sb.writeBytes(CRLF_B);
-        return sb;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return ((msgNumbers != null) ? msgNumbers.length() : 0) + ImapClientConstants.PAD_LEN;
     }
 }
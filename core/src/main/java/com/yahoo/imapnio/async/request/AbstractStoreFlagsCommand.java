@@ -8,7 +8,7 @@ import javax.mail.Flags;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 
 /**
  * This class defines imap store command request from client, with formal syntax below.
@@ -33,7 +33,7 @@ import io.netty.buffer.Unpooled;
  *                   ; revisions of this specification.
  * </pre>
  */
-public abstract class AbstractStoreFlagsCommand extends ImapRequestAdapter {
+public abstract class AbstractStoreFlagsCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -118,11 +118,10 @@ public abstract class AbstractStoreFlagsCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) {
         // Ex:STORE 2:4 +FLAGS (\Deleted)
-        final ByteBuf sb = Unpooled.buffer();
         sb.writeBytes(isUid ? UID_STORE_SP_B : STORE_SP_B);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+        ByteBufUtil.writeAscii(sb, msgNumbers);
         sb.writeByte(ImapClientConstants.SPACE);
 
         if (action == FlagsAction.ADD) {
@@ -142,7 +141,10 @@ public abstract class AbstractStoreFlagsCommand extends ImapRequestAdapter {
         sb.writeByte(ImapClientConstants.SPACE);
         sb.writeBytes(argWriter.buildFlagString(flags).getBytes(StandardCharsets.US_ASCII));
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return msgNumbers.length() + ImapClientConstants.PAD_LEN;
     }
 }
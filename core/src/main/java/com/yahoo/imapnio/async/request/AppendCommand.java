@@ -1,8 +1,8 @@
 package com.yahoo.imapnio.async.request;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -16,11 +16,14 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
 
 /**
- * This class defines IMAP append command request from client.
+ * This class defines IMAP append command request from client. The message data is either given as a byte array, or as an {@link AppendSource} which
+ * is streamed to the channel in chunks by the session, see {@link #getLiteralData()}.
  */
-public class AppendCommand implements ImapRequest {
+public class AppendCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -28,8 +31,8 @@ public class AppendCommand implements ImapRequest {
     /** Maximum length of data that can be sent in alternate literal form when LITERAL- is supported. */
     private static final int MAX_LITERAL_MINUS_DATA_LEN = 4096;
 
-    /** Literal for append. */
-    private static final String APPEND_SP = "APPEND ";
+    /** Byte array for append and space. */
+    private static final byte[] APPEND_SP_B = "APPEND ".getBytes(StandardCharsets.US_ASCII);
 
     /** The folder for the message to be appended to. */
     private String folderName;
@@ -40,9 +43,12 @@ public class AppendCommand implements ImapRequest {
     /** The internal date associated with the message. */
     private Date date;
 
-    /** The message data. */
+    /** The message data, null if the data is given by source. */
     private byte[] data;
 
+    /** Source of the message data to be streamed, null if the data is given as byte array. */
+    private AppendSource source;
+
     /** Whether to enable Literal support option. */
     private LiteralSupport literalOpt;
 
@@ -74,6 +80,39 @@ public class AppendCommand implements ImapRequest {
         this.flags = imapFlags;
         this.date = internalDate;
         this.data = data;
+        this.source = null;
+        this.literalOpt = literalOpt;
+    }
+
+    /**
+     * Initializes an append command for client with the message data streamed from the given source.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param source the source of the message data
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final AppendSource source) {
+        this(folderName, imapFlags, internalDate, source, LiteralSupport.DISABLE);
+    }
+
+    /**
+     * Initializes an append command for client with the message data streamed from the given source.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param source the source of the message data
+     * @param literalOpt literal support option
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final AppendSource source, @Nonnull final LiteralSupport literalOpt) {
+        this.folderName = folderName;
+        this.flags = imapFlags;
+        this.date = internalDate;
+        this.data = null;
+        this.source = source;
         this.literalOpt = literalOpt;
     }
 
@@ -83,23 +122,78 @@ public class AppendCommand implements ImapRequest {
         this.flags = null;
         this.date = null;
         this.data = null;
+        if (source != null) {
+            source.release();
+            this.source = null;
+        }
         this.literalOpt = null;
     }
 
+    /**
+     * @return the length of the message data
+     */
+    private long getDataLength() {
+        return (data != null) ? data.length : source.getLength();
+    }
+
+    /**
+     * @return true if the literal data is sent along with the command line, without waiting for server continuation
+     */
+    public boolean isLiteralSentInline() {
+        return literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS
+                || (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && getDataLength() < MAX_LITERAL_MINUS_DATA_LEN);
+    }
+
+    /**
+     * @return true if the literal data is given by an {@link AppendSource}, hence is not part of any command line and has to be written through
+     *         {@link #getLiteralData()}, right after the command line if {@link #isLiteralSentInline()}, or after server continuation otherwise
+     */
+    public boolean isLiteralDataStreamed() {
+        return source != null;
+    }
+
+    /**
+     * Creates the input streaming the literal data, followed by CRLF, to be written by {@link io.netty.handler.stream.ChunkedWriteHandler}.
+     *
+     * @return the chunked input of the literal data
+     * @throws ImapAsyncClientException when the literal data is not given by source, or the source cannot be read
+     */
+    public ChunkedInput<ByteBuf> getLiteralData() throws ImapAsyncClientException {
+        if (source == null) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
+        }
+        try {
+            return source.newChunkedInput();
+        } catch (final IOException e) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+        }
+    }
+
+    /**
+     * Creates a file region transferring the literal data from file to socket without copying it through the JVM heap. It can only be written to a
+     * channel without SSL or compression, and has to be followed by CRLF.
+     *
+     * @return the file region of the literal data, null if the literal data is not streamed from a file channel
+     */
+    public FileRegion getLiteralDataFileRegion() {
+        return (source != null) ? source.newFileRegion() : null;
+    }
+
+    /**
+     * @return estimated length of the command line, including the literal data when it is sent along with the command line
+     */
     @Override
-    public ConcurrentLinkedQueue<IMAPResponse> getStreamingResponsesQueue() {
-        return null;
+    protected int getCommandLineLengthHint() {
+        final int len = 2 * folderName.length() + ImapClientConstants.PAD_LEN;
+        return (data != null && isLiteralSentInline()) ? len + data.length + ImapClientConstants.CRLFLEN : len;
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    protected void writeCommandLine(@Nonnull final ByteBuf buf) throws ImapAsyncClientException {
         // Ex: APPEND saved-messages (\Seen) {310}
         // encode the folder name as per RFC2060
         final String base64Folder = BASE64MailboxEncoder.encode(folderName);
-        final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
-
-        final ByteBuf buf = Unpooled.buffer(len);
-        buf.writeBytes(APPEND_SP.getBytes(StandardCharsets.US_ASCII));
+        buf.writeBytes(APPEND_SP_B);
 
         // folder
         final ImapArgumentFormatter argWriter = new ImapArgumentFormatter();
@@ -120,10 +214,10 @@ public class AppendCommand implements ImapRequest {
 
         // length of the literal
         final boolean isLiteralPlus = (literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS);
-        final boolean isLiteralMinus = (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && data.length < MAX_LITERAL_MINUS_DATA_LEN);
+        final boolean isLiteralMinus = (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && getDataLength() < MAX_LITERAL_MINUS_DATA_LEN);
 
         buf.writeByte('{');
-        buf.writeBytes(Integer.toString(data.length).getBytes(StandardCharsets.US_ASCII));
+        buf.writeBytes(Long.toString(getDataLength()).getBytes(StandardCharsets.US_ASCII));
         if (isLiteralPlus) {
             buf.writeByte('+');
         } else if (isLiteralMinus) {
@@ -132,12 +226,11 @@ public class AppendCommand implements ImapRequest {
         buf.writeByte('}');
         buf.writeBytes(CRLF_B);
 
-        // decide to send literal
-        if (isLiteralPlus || isLiteralMinus) {
-            buf.writeBytes(buildDataByteBuf());
+        // decide to send literal, streamed literal is written by session right after the command line
+        if ((isLiteralPlus || isLiteralMinus) && data != null) {
+            buf.writeBytes(data);
+            buf.writeBytes(CRLF_B);
         }
-        return buf;
-
     }
 
     @Override
@@ -145,44 +238,25 @@ public class AppendCommand implements ImapRequest {
         return getCommandLineBytes().toString(StandardCharsets.UTF_8);
     }
 
-    @Override
-    public boolean isCommandLineDataSensitive() {
-        return false;
-    }
-
-    @Override
-    public String getDebugData() {
-        return null;
-    }
-
     /**
      * @return the byte buffer for the literal data
      */
     private ByteBuf buildDataByteBuf() {
         // Note: we obtain only binary from client, therefore need to write binary directly to retain the correct charset encoding, CANNOT convert it
-        // to String since we do not know the charset.
-        final int length = data.length + ImapClientConstants.CRLFLEN;
-        final ByteBuf buffer = Unpooled.buffer(length);
-        buffer.writeBytes(data);
-        buffer.writeBytes(CRLF_B); // CRLF is 10 and 13, < 128, so either ASCII or UTF-8 is fine
-        return buffer;
+        // to String since we do not know the charset. Data is wrapped along with CRLF instead of being copied.
+        return Unpooled.wrappedBuffer(data, CRLF_B.clone()); // CRLF is 10 and 13, < 128, so either ASCII or UTF-8 is fine
     }
 
     @Override
     public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse) throws ImapAsyncClientException {
-        if (literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS
-                || (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && data.length < MAX_LITERAL_MINUS_DATA_LEN)) {
-            // should not reach here, since if LITERAL+ or LITERAL- is requested, server should not ask for next line
+        if (isLiteralSentInline() || source != null) {
+            // should not reach here, since if LITERAL+ or LITERAL- is requested, server should not ask for next line, streamed data is written by
+            // session through getLiteralData()
             throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
         }
         return buildDataByteBuf();
     }
 
-    @Override
-    public ByteBuf getTerminateCommandLine() throws ImapAsyncClientException {
-        throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
-    }
-
     @Override
     public ImapRFCSupportedCommandType getCommandType() {
         return ImapRFCSupportedCommandType.APPEND_MESSAGE;
@@ -0,0 +1,415 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedNioFile;
+
+/**
+ * Source of the message data for {@link AppendCommand}, written to the channel in chunks as the channel becomes writable, instead of being held on
+ * the heap as a whole. A source can only be written once, and it owns the underlying buffer, stream or file channel: they are released or closed once
+ * the data is written or the command is cleaned up.
+ */
+public abstract class AppendSource {
+
+    /** Size of the chunks written to the channel. */
+    static final int CHUNK_SIZE = 8192;
+
+    /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
+    private static final byte[] CRLF_B = { '\r', '\n' };
+
+    /** Length of the message data. */
+    private final long length;
+
+    /**
+     * Initializes an {@link AppendSource} object.
+     *
+     * @param length length of the message data
+     */
+    AppendSource(final long length) {
+        this.length = length;
+    }
+
+    /**
+     * Creates a source backed by the readable bytes of the given buffer, which are sliced into chunks without copying.
+     *
+     * @param data the message data, released when this source is released
+     * @return the source
+     */
+    public static AppendSource of(@Nonnull final ByteBuf data) {
+        return new ByteBufSource(data);
+    }
+
+    /**
+     * Creates a source backed by the given stream, read in chunks as the channel becomes writable. The stream is read on the I/O thread of the
+     * channel, where a blocking read stalls every session of that thread: it must be a stream whose reads do not block, for ex: of a buffer or a
+     * local file, not of a socket or a pipe fed by another thread, whose data has to be buffered by caller first.
+     *
+     * @param data the stream of the message data, closed once the data is written
+     * @param length number of bytes to read from the stream, it is a failure to write the data if the stream ends before
+     * @return the source
+     */
+    public static AppendSource of(@Nonnull final InputStream data, final long length) {
+        return new InputStreamSource(data, length);
+    }
+
+    /**
+     * Creates a source backed by a region of the given file channel, read in chunks as the channel becomes writable.
+     *
+     * @param data the file channel of the message data, closed once the data is written
+     * @param position the position in the file where the message data starts
+     * @param length number of bytes of the message data
+     * @return the source
+     */
+    public static AppendSource of(@Nonnull final FileChannel data, final long position, final long length) {
+        return new FileChannelSource(data, position, length);
+    }
+
+    /**
+     * @return the length of the message data
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Creates the input to be written to the channel by {@link io.netty.handler.stream.ChunkedWriteHandler}, ended by CRLF.
+     *
+     * @return the chunked input for the message data followed by CRLF
+     * @throws IOException when failing to create the input
+     */
+    ChunkedInput<ByteBuf> newChunkedInput() throws IOException {
+        return new CrlfTerminatedInput(newDataInput());
+    }
+
+    /**
+     * @return the chunked input for the message data only
+     * @throws IOException when failing to create the input
+     */
+    abstract ChunkedInput<ByteBuf> newDataInput() throws IOException;
+
+    /**
+     * Creates a file region to transfer the message data from file to socket without copying it through the JVM heap (sendfile). It can only be used
+     * when the data is written as is, i.e. without SSL or compression.
+     *
+     * @return the file region for the message data, null if the data is not backed by a file
+     */
+    FileRegion newFileRegion() {
+        return null;
+    }
+
+    /**
+     * Releases the resources held by this source.
+     */
+    abstract void release();
+
+    /**
+     * Source backed by a {@link ByteBuf}.
+     */
+    private static final class ByteBufSource extends AppendSource {
+
+        /** The message data. */
+        private final ByteBuf data;
+
+        /**
+         * Initializes a {@link ByteBufSource} object.
+         *
+         * @param data the message data
+         */
+        ByteBufSource(@Nonnull final ByteBuf data) {
+            super(data.readableBytes());
+            this.data = data;
+        }
+
+        @Override
+        ChunkedInput<ByteBuf> newDataInput() {
+            return new ByteBufInput(data.duplicate());
+        }
+
+        @Override
+        void release() {
+            if (data.refCnt() > 0) {
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Source backed by an {@link InputStream}.
+     */
+    private static final class InputStreamSource extends AppendSource {
+
+        /** The message data. */
+        private final InputStream data;
+
+        /**
+         * Initializes an {@link InputStreamSource} object.
+         *
+         * @param data the message data
+         * @param length number of bytes to read from the stream
+         */
+        InputStreamSource(@Nonnull final InputStream data, final long length) {
+            super(length);
+            this.data = data;
+        }
+
+        @Override
+        ChunkedInput<ByteBuf> newDataInput() {
+            return new InputStreamInput(data, getLength());
+        }
+
+        @Override
+        void release() {
+            try {
+                data.close();
+            } catch (final IOException e) {
+                return; // nothing more can be done
+            }
+        }
+    }
+
+    /**
+     * Source backed by a {@link FileChannel} region.
+     */
+    private static final class FileChannelSource extends AppendSource {
+
+        /** The message data. */
+        private final FileChannel data;
+
+        /** The position in the file where the message data starts. */
+        private final long position;
+
+        /**
+         * Initializes a {@link FileChannelSource} object.
+         *
+         * @param data the message data
+         * @param position the position in the file where the message data starts
+         * @param length number of bytes of the message data
+         */
+        FileChannelSource(@Nonnull final FileChannel data, final long position, final long length) {
+            super(length);
+            this.data = data;
+            this.position = position;
+        }
+
+        @Override
+        ChunkedInput<ByteBuf> newDataInput() throws IOException {
+            return new ChunkedNioFile(data, position, getLength(), CHUNK_SIZE);
+        }
+
+        @Override
+        FileRegion newFileRegion() {
+            return new DefaultFileRegion(data, position, getLength());
+        }
+
+        @Override
+        void release() {
+            try {
+                data.close();
+            } catch (final IOException e) {
+                return; // nothing more can be done
+            }
+        }
+    }
+
+    /**
+     * Chunked input slicing a buffer, without copying.
+     */
+    private static final class ByteBufInput implements ChunkedInput<ByteBuf> {
+
+        /** The buffer, its reader index is the progress. */
+        private final ByteBuf data;
+
+        /** Total length. */
+        private final long length;
+
+        /**
+         * Initializes a {@link ByteBufInput} object.
+         *
+         * @param data the buffer, with independent indexes
+         */
+        ByteBufInput(@Nonnull final ByteBuf data) {
+            this.data = data;
+            this.length = data.readableBytes();
+        }
+
+        @Override
+        public boolean isEndOfInput() {
+            return !data.isReadable();
+        }
+
+        @Override
+        public void close() {
+            // the buffer is released by the source
+        }
+
+        @Deprecated
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext ctx) {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(final ByteBufAllocator allocator) {
+            if (isEndOfInput()) {
+                return null;
+            }
+            return data.readRetainedSlice(Math.min(CHUNK_SIZE, data.readableBytes()));
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long progress() {
+            return length - data.readableBytes();
+        }
+    }
+
+    /**
+     * Chunked input reading a stream up to a given length, on the I/O thread of the channel, see {@link AppendSource#of(InputStream, long)}.
+     */
+    private static final class InputStreamInput implements ChunkedInput<ByteBuf> {
+
+        /** The stream. */
+        private final InputStream in;
+
+        /** Total length. */
+        private final long length;
+
+        /** Number of bytes read so far. */
+        private long offset;
+
+        /**
+         * Initializes an {@link InputStreamInput} object.
+         *
+         * @param in the stream
+         * @param length number of bytes to read from the stream
+         */
+        InputStreamInput(@Nonnull final InputStream in, final long length) {
+            this.in = in;
+            this.length = length;
+            this.offset = 0;
+        }
+
+        @Override
+        public boolean isEndOfInput() {
+            return offset >= length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Deprecated
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext ctx) throws IOException {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(final ByteBufAllocator allocator) throws IOException {
+            if (isEndOfInput()) {
+                return null;
+            }
+            final int chunkSize = (int) Math.min(CHUNK_SIZE, length - offset);
+            final ByteBuf chunk = allocator.buffer(chunkSize);
+            try {
+                while (chunk.readableBytes() < chunkSize) {
+                    if (chunk.writeBytes(in, chunkSize - chunk.readableBytes()) < 0) {
+                        throw new EOFException("Stream ended before the declared length of APPEND data.");
+                    }
+                }
+            } catch (final IOException | RuntimeException e) {
+                chunk.release();
+                throw e;
+            }
+            offset += chunkSize;
+            return chunk;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public long progress() {
+            return offset;
+        }
+    }
+
+    /**
+     * Chunked input appending CRLF to another input, ending the literal data.
+     */
+    private static final class CrlfTerminatedInput implements ChunkedInput<ByteBuf> {
+
+        /** The input for the data. */
+        private final ChunkedInput<ByteBuf> data;
+
+        /** True once CRLF is read. */
+        private boolean isCrlfRead;
+
+        /**
+         * Initializes a {@link CrlfTerminatedInput} object.
+         *
+         * @param data the input for the data
+         */
+        CrlfTerminatedInput(@Nonnull final ChunkedInput<ByteBuf> data) {
+            this.data = data;
+            this.isCrlfRead = false;
+        }
+
+        @Override
+        public boolean isEndOfInput() {
+            return isCrlfRead;
+        }
+
+        @Override
+        public void close() throws Exception {
+            data.close();
+        }
+
+        @Deprecated
+        @Override
+        public ByteBuf readChunk(final ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(final ByteBufAllocator allocator) throws Exception {
+            if (isCrlfRead) {
+                return null;
+            }
+            if (!data.isEndOfInput()) {
+                return data.readChunk(allocator); // null if no data is available for now, will be asked again
+            }
+            isCrlfRead = true;
+            return Unpooled.wrappedBuffer(CRLF_B);
+        }
+
+        @Override
+        public long length() {
+            return data.length() + CRLF_B.length;
+        }
+
+        @Override
+        public long progress() {
+            return data.progress() + (isCrlfRead ? CRLF_B.length : 0);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.search.SearchException;
+import javax.mail.search.SearchTerm;
+
+import com.sun.mail.iap.Argument;
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * This class defines IMAP search command request with ESEARCH (RFC4731) return options, for ex: SEARCH RETURN (MIN MAX COUNT ALL) UNSEEN.
+ * Server returns the result in an ESEARCH response with the ALL result as a sequence-set, which can be mapped to
+ * {@link com.yahoo.imapnio.async.data.ESearchResult}.
+ */
+public class ESearchCommand extends AbstractSearchCommand {
+
+    /**
+     * Initializes this object with the MessageNumberSet array, search term and the return options.
+     *
+     * @param msgsets the set of MessageNumberSet
+     * @param term the search term
+     * @param capa the capability instance to check if it has literal
+     * @param returnOptions the return options, empty to request ALL only, null to request MIN, MAX, COUNT and ALL
+     * @throws ImapAsyncClientException when both msgsets and searchString are null
+     * @throws IOException when parsing error for generate sequence
+     * @throws SearchException when search term cannot be found
+     */
+    public ESearchCommand(@Nullable final MessageNumberSet[] msgsets, @Nullable final SearchTerm term, @Nullable final Capability capa,
+            @Nullable final Set<SearchReturnOption> returnOptions) throws ImapAsyncClientException, SearchException, IOException {
+        this(MessageNumberSet.buildString(msgsets), term, capa, returnOptions);
+    }
+
+    /**
+     * Initializes this object with the string form of message sequence, search term and the return options.
+     *
+     * @param msgNumbers the string type message numbers in sequence-set syntax
+     * @param term the search term
+     * @param capa the capability instance to check if it has literal
+     * @param returnOptions the return options, empty to request ALL only, null to request MIN, MAX, COUNT and ALL
+     * @throws ImapAsyncClientException when both msgNumber and searchString are null
+     * @throws IOException when parsing error for generate sequence
+     * @throws SearchException when search term cannot be found
+     */
+    public ESearchCommand(@Nullable final String msgNumbers, @Nullable final SearchTerm term, @Nullable final Capability capa,
+            @Nullable final Set<SearchReturnOption> returnOptions) throws ImapAsyncClientException, SearchException, IOException {
+        super(false, msgNumbers, term, capa, (returnOptions != null) ? returnOptions : EnumSet.allOf(SearchReturnOption.class));
+    }
+
+    /**
+     * Initializes this object with the string form of message sequence, character set name, Argument that expresses the search term and the return
+     * options.
+     *
+     * @param msgNumbers the string form message numbers in sequence-set syntax
+     * @param charset the character set
+     * @param args the search term in argument format
+     * @param capa the capability instance to check if it has literal
+     * @param returnOptions the return options, empty to request ALL only, null to request MIN, MAX, COUNT and ALL
+     * @throws ImapAsyncClientException when both msgNumber and searchString are null
+     */
+    public ESearchCommand(@Nullable final String msgNumbers, @Nullable final String charset, @Nonnull final Argument args,
+            @Nullable final Capability capa, @Nullable final Set<SearchReturnOption> returnOptions) throws ImapAsyncClientException {
+        super(false, msgNumbers, charset, args, capa, (returnOptions != null) ? returnOptions : EnumSet.allOf(SearchReturnOption.class));
+    }
+
+    @Override
+    public ImapRFCSupportedCommandType getCommandType() {
+        return ImapRFCSupportedCommandType.SEARCH;
+    }
+}
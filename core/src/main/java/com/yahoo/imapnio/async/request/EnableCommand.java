@@ -5,7 +5,6 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap enable command request from client. RFC5161 ABNF: https://tools.ietf.org/html/rfc5161
@@ -21,7 +20,7 @@ import io.netty.buffer.Unpooled;
  * </pre>
  *
  */
-public class EnableCommand extends ImapRequestAdapter {
+public class EnableCommand extends ImapCommandLineAdapter {
 
     /**
      * Initializes a {@link EnableCommand}.
@@ -38,9 +37,7 @@ public class EnableCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf sb = Unpooled.buffer(ENABLE_BUF_LEN);
-
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) {
         sb.writeBytes(ENABLE_B);
 
         for (int i = 0; i < capabilities.length; i++) {
@@ -50,7 +47,11 @@ public class EnableCommand extends ImapRequestAdapter {
             sb.writeBytes(capabilities[i].getBytes(StandardCharsets.US_ASCII));
         }
         sb.writeBytes(CRLF_B);
-        return sb;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return ENABLE_BUF_LEN;
     }
 
     @Override
@@ -3,15 +3,16 @@ package com.yahoo.imapnio.async.request;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
+import javax.annotation.Nonnull;
+
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap id command request from client.
  */
-public class IdCommand extends ImapRequestAdapter {
+public class IdCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -46,8 +47,7 @@ public class IdCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-        final ByteBuf sb = Unpooled.buffer(IDLINE_LEN);
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         sb.writeBytes(ID_SP_B);
 
         if (params == null) {
@@ -72,7 +72,11 @@ public class IdCommand extends ImapRequestAdapter {
         }
 
         sb.writeBytes(CRLF_B);
-        return sb;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return IDLINE_LEN;
     }
 
     @Override
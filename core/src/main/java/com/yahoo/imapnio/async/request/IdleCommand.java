@@ -13,7 +13,7 @@ import io.netty.buffer.Unpooled;
 /**
  * This class defines imap idle command request from client.
  */
-public class IdleCommand extends ImapRequestAdapter {
+public class IdleCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -66,11 +66,14 @@ public class IdleCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf buf = Unpooled.buffer(LINE_LEN);
+    protected void writeCommandLine(@Nonnull final ByteBuf buf) {
         buf.writeBytes(IDLE_B);
         buf.writeBytes(CRLF_B);
-        return buf;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return LINE_LEN;
     }
 
     @Override
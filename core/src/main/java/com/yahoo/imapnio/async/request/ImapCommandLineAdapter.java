@@ -0,0 +1,86 @@
+package com.yahoo.imapnio.async.request;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Adapter for the commands of this library, which write their command line through {@link #writeCommandLine(ByteBuf)} straight into the buffer sent
+ * to server, instead of building it in a separate buffer first. A subclass overriding {@link #getCommandLineBytes()} still has the bytes it returns
+ * sent.
+ */
+public abstract class ImapCommandLineAdapter extends ImapRequestAdapter {
+
+    /** Whether a class writes its command line through {@link #writeCommandLine(ByteBuf)}, i.e. does not override {@link #getCommandLineBytes()}. */
+    private static final ClassValue<Boolean> IS_LINE_WRITTEN = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            try {
+                return type.getMethod("getCommandLineBytes").getDeclaringClass() == ImapCommandLineAdapter.class;
+            } catch (final NoSuchMethodException e) {
+                return Boolean.FALSE; // not expected since the method is public
+            }
+        }
+    };
+
+    @Override
+    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+        final ByteBuf buf = Unpooled.buffer(getCommandLineLengthHint());
+        writeCommandLine(buf);
+        return buf;
+    }
+
+    /**
+     * Builds the command line prefixed with the given tag and a space, in one buffer obtained from the given allocator.
+     *
+     * @param allocator the allocator to obtain the buffer from, normally the one of the channel the line is written to
+     * @param tag the tag of this command
+     * @return tagged command line in binary form, caller owns the buffer and is responsible for releasing it
+     * @throws ImapAsyncClientException when encountering an error in building command line
+     */
+    @Nonnull
+    public ByteBuf getTaggedCommandLineBytes(@Nonnull final ByteBufAllocator allocator, @Nonnull final String tag) throws ImapAsyncClientException {
+        if (!IS_LINE_WRITTEN.get(getClass())) {
+            final ByteBuf line = getCommandLineBytes();
+            try {
+                final ByteBuf buf = allocator.buffer(tag.length() + 1 + line.readableBytes());
+                ByteBufUtil.writeAscii(buf, tag);
+                buf.writeByte(ImapClientConstants.SPACE);
+                buf.writeBytes(line);
+                return buf;
+            } finally {
+                line.release();
+            }
+        }
+        final ByteBuf buf = allocator.buffer(tag.length() + 1 + getCommandLineLengthHint());
+        try {
+            ByteBufUtil.writeAscii(buf, tag);
+            buf.writeByte(ImapClientConstants.SPACE);
+            writeCommandLine(buf);
+        } catch (final ImapAsyncClientException | RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+        return buf;
+    }
+
+    /**
+     * Writes the command line, without tag, to the given buffer.
+     *
+     * @param out the buffer to write to
+     * @throws ImapAsyncClientException when encountering an error in building command line
+     */
+    protected abstract void writeCommandLine(@Nonnull ByteBuf out) throws ImapAsyncClientException;
+
+    /**
+     * @return estimated length of the command line, without tag, used to size the buffer to avoid resizing
+     */
+    protected int getCommandLineLengthHint() {
+        return ImapClientConstants.PAD_LEN;
+    }
+}
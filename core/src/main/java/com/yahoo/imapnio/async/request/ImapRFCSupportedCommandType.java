@@ -48,6 +48,8 @@ public enum ImapRFCSupportedCommandType implements ImapCommandType {
     NAMESPACE,
     /** Noop command. */
     NOOP,
+    /** Notify command. */
+    NOTIFY,
     /** Rename folder command. */
     RENAME_FOLDER,
     /** Search command. */
@@ -0,0 +1,78 @@
+package com.yahoo.imapnio.async.request;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * This class defines imap list command request returning the status of each listed mailbox, for servers supporting LIST-STATUS. RFC 5819 ABNF.
+ *
+ * <pre>
+ * list-return-opt =/ "STATUS" SP "(" status-att *(SP status-att) ")"
+ * </pre>
+ *
+ * <p>
+ * For ex: LIST "" "*" RETURN (STATUS (MESSAGES UNSEEN)). The server sends a STATUS response after the LIST response of each selectable mailbox.
+ * </p>
+ */
+public class ListStatusCommand extends AbstractQueryFoldersCommand {
+
+    /** Command name. */
+    private static final String LIST = "LIST";
+
+    /** Return option and space. */
+    private static final byte[] SP_RETURN_STATUS_B = " RETURN (STATUS (".getBytes(StandardCharsets.US_ASCII);
+
+    /** Status data item names. */
+    private String[] items;
+
+    /**
+     * Initializes a {@link ListStatusCommand}.
+     *
+     * @param ref the reference string
+     * @param pattern folder name with possible wildcards, see RFC3501 list command for detail.
+     * @param items list of status items, for ex: "MESSAGES", "UNSEEN", "UIDNEXT", "UIDVALIDITY"
+     */
+    public ListStatusCommand(@Nonnull final String ref, @Nonnull final String pattern, @Nonnull final String[] items) {
+        super(LIST, ref, pattern);
+        this.items = items;
+    }
+
+    @Override
+    public void cleanup() {
+        super.cleanup();
+        this.items = null;
+    }
+
+    @Override
+    protected void writeReturnOptions(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
+        if (items.length == 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        sb.writeBytes(SP_RETURN_STATUS_B);
+        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
+        for (int i = 0, len = items.length; i < len; i++) {
+            formatter.formatArgument(items[i], sb, false);
+            if (i < len - 1) { // do not add space for last item
+                sb.writeByte(ImapClientConstants.SPACE);
+            }
+        }
+        sb.writeByte(ImapClientConstants.R_PAREN);
+        sb.writeByte(ImapClientConstants.R_PAREN);
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return super.getCommandLineLengthHint() + ImapClientConstants.PAD_LEN;
+    }
+
+    @Override
+    public ImapRFCSupportedCommandType getCommandType() {
+        return ImapRFCSupportedCommandType.LIST;
+    }
+}
@@ -7,12 +7,11 @@ import javax.annotation.Nonnull;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines IMAP login command request from client.
  */
-public class LoginCommand extends ImapRequestAdapter {
+public class LoginCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -50,9 +49,7 @@ public class LoginCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-
-        final ByteBuf sb = Unpooled.buffer(username.length() + dwp.length() + ImapClientConstants.PAD_LEN);
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         sb.writeBytes(LOGIN_SP_B);
 
         final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
@@ -61,8 +58,11 @@ public class LoginCommand extends ImapRequestAdapter {
 
         formatter.formatArgument(dwp, sb, false);
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return username.length() + dwp.length() + ImapClientConstants.PAD_LEN;
     }
 
     @Override
@@ -0,0 +1,174 @@
+package com.yahoo.imapnio.async.request;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * This class defines imap notify command request from client. RFC5465 ABNF: https://tools.ietf.org/html/rfc5465
+ *
+ * <pre>
+ * notify           = "NOTIFY" SP (notify-set / notify-none)
+ * notify-set       = "SET" [status-indicator] SP event-groups
+ * status-indicator = SP "STATUS"
+ * event-groups     = event-group *(SP event-group)
+ * notify-none      = "NONE"
+ * </pre>
+ *
+ * <p>
+ * The command completes right away, the events are then sent by the server as untagged responses: STATUS, FETCH, EXPUNGE, VANISHED and LIST.
+ * Since the session hands untagged responses to the command in flight, events are received by keeping an {@link IdleCommand} in flight with a
+ * streaming responses queue, and decoding the queue with {@code MailboxEventReader}. One connection can then watch all the mailboxes of an
+ * account instead of polling each with STATUS.
+ * </p>
+ */
+public class NotifyCommand extends ImapCommandLineAdapter {
+
+    /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
+    private static final byte[] CRLF_B = { '\r', '\n' };
+
+    /** Byte array for NOTIFY NONE. */
+    private static final byte[] NOTIFY_NONE_B = "NOTIFY NONE".getBytes(StandardCharsets.US_ASCII);
+
+    /** Byte array for NOTIFY SET. */
+    private static final byte[] NOTIFY_SET_B = "NOTIFY SET".getBytes(StandardCharsets.US_ASCII);
+
+    /** Byte array for STATUS indicator. */
+    private static final byte[] STATUS_B = " STATUS".getBytes(StandardCharsets.US_ASCII);
+
+    /** Byte array for NONE events. */
+    private static final byte[] NONE_B = "NONE".getBytes(StandardCharsets.US_ASCII);
+
+    /** Length of the command line besides mailbox names. */
+    private static final int NOTIFY_BUF_LEN = 200;
+
+    /** Whether the server sends STATUS of the mailboxes right away, null for NOTIFY NONE. */
+    private Boolean isStatus;
+
+    /** Event groups, null for NOTIFY NONE. */
+    private NotifyEventGroup[] eventGroups;
+
+    /**
+     * Initializes a {@link NotifyCommand} with NOTIFY NONE, stopping all notifications.
+     */
+    public NotifyCommand() {
+        this.isStatus = null;
+        this.eventGroups = null;
+    }
+
+    /**
+     * Initializes a {@link NotifyCommand} with NOTIFY SET.
+     *
+     * @param isStatus true for the server to send STATUS of the mailboxes with MessageNew or MessageExpunge right away
+     * @param eventGroups event groups, at least one
+     */
+    public NotifyCommand(final boolean isStatus, @Nonnull final NotifyEventGroup[] eventGroups) {
+        this.isStatus = isStatus;
+        this.eventGroups = eventGroups.clone();
+    }
+
+    @Override
+    public void cleanup() {
+        this.isStatus = null;
+        this.eventGroups = null;
+    }
+
+    @Override
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
+        if (eventGroups == null) {
+            sb.writeBytes(NOTIFY_NONE_B);
+            sb.writeBytes(CRLF_B);
+            return;
+        }
+        // ex: NOTIFY SET STATUS (selected (MessageNew (UID FLAGS) MessageExpunge)) (subtree Lists (MessageNew MessageExpunge))
+        sb.writeBytes(NOTIFY_SET_B);
+        if (isStatus) {
+            sb.writeBytes(STATUS_B);
+        }
+        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
+        for (final NotifyEventGroup group : eventGroups) {
+            sb.writeByte(ImapClientConstants.SPACE);
+            sb.writeByte(ImapClientConstants.L_PAREN);
+            sb.writeBytes(group.getFilter().getName().getBytes(StandardCharsets.US_ASCII));
+            writeMailboxes(group.getMailboxes(), formatter, sb);
+            sb.writeByte(ImapClientConstants.SPACE);
+            if (group.getEvents().isEmpty()) {
+                sb.writeBytes(NONE_B);
+            } else {
+                sb.writeByte(ImapClientConstants.L_PAREN);
+                boolean isFirst = true;
+                for (final NotifyEvent event : group.getEvents()) {
+                    if (!isFirst) {
+                        sb.writeByte(ImapClientConstants.SPACE);
+                    }
+                    isFirst = false;
+                    sb.writeBytes(event.getName().getBytes(StandardCharsets.US_ASCII));
+                    if (event == NotifyEvent.MESSAGE_NEW && group.getMessageNewFetchItems() != null) {
+                        sb.writeByte(ImapClientConstants.SPACE);
+                        sb.writeByte(ImapClientConstants.L_PAREN);
+                        sb.writeBytes(group.getMessageNewFetchItems().getBytes(StandardCharsets.US_ASCII));
+                        sb.writeByte(ImapClientConstants.R_PAREN);
+                    }
+                }
+                sb.writeByte(ImapClientConstants.R_PAREN);
+            }
+            sb.writeByte(ImapClientConstants.R_PAREN);
+        }
+        sb.writeBytes(CRLF_B);
+    }
+
+    /**
+     * Writes the mailbox names of a filter, parenthesized when there are more than one.
+     *
+     * @param mailboxes mailbox names, null if the filter has none
+     * @param formatter argument formatter
+     * @param sb buffer to write to
+     * @throws ImapAsyncClientException when a mailbox name cannot be formatted
+     */
+    private static void writeMailboxes(@Nullable final String[] mailboxes, @Nonnull final ImapArgumentFormatter formatter, @Nonnull final ByteBuf sb)
+            throws ImapAsyncClientException {
+        if (mailboxes == null) {
+            return;
+        }
+        sb.writeByte(ImapClientConstants.SPACE);
+        if (mailboxes.length > 1) {
+            sb.writeByte(ImapClientConstants.L_PAREN);
+        }
+        for (int i = 0; i < mailboxes.length; i++) {
+            if (i > 0) {
+                sb.writeByte(ImapClientConstants.SPACE);
+            }
+            formatter.formatArgument(BASE64MailboxEncoder.encode(mailboxes[i]), sb, false);
+        }
+        if (mailboxes.length > 1) {
+            sb.writeByte(ImapClientConstants.R_PAREN);
+        }
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        int length = NOTIFY_BUF_LEN;
+        if (eventGroups != null) {
+            for (final NotifyEventGroup group : eventGroups) {
+                final String[] mailboxes = group.getMailboxes();
+                if (mailboxes != null) {
+                    for (final String mailbox : mailboxes) {
+                        length += 2 * mailbox.length() + ImapClientConstants.PAD_LEN;
+                    }
+                }
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public ImapRFCSupportedCommandType getCommandType() {
+        return ImapRFCSupportedCommandType.NOTIFY;
+    }
+}
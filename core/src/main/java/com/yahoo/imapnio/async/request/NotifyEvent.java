@@ -0,0 +1,53 @@
+package com.yahoo.imapnio.async.request;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Events of NOTIFY (RFC5465), requested in an event group of the NOTIFY command.
+ */
+public enum NotifyEvent {
+    /** A message is added to the mailbox, reported with EXISTS and optionally FETCH in the selected mailbox, STATUS otherwise. */
+    MESSAGE_NEW("MessageNew"),
+    /** A message is expunged, reported with EXPUNGE or VANISHED in the selected mailbox, STATUS otherwise. */
+    MESSAGE_EXPUNGE("MessageExpunge"),
+    /** Flags of a message changed, reported with FETCH in the selected mailbox, STATUS otherwise. */
+    FLAG_CHANGE("FlagChange"),
+    /** Annotations of a message changed. */
+    ANNOTATION_CHANGE("AnnotationChange"),
+    /** A mailbox is created, deleted or renamed, reported with LIST. */
+    MAILBOX_NAME("MailboxName"),
+    /** Subscription of a mailbox changed, reported with LIST. */
+    SUBSCRIPTION_CHANGE("SubscriptionChange"),
+    /** Metadata of a mailbox changed. */
+    MAILBOX_METADATA_CHANGE("MailboxMetadataChange"),
+    /** Metadata of the server changed. */
+    SERVER_METADATA_CHANGE("ServerMetadataChange");
+
+    /** Name of the event in the command. */
+    @Nonnull
+    private final String name;
+
+    /**
+     * Initializes a {@link NotifyEvent}.
+     *
+     * @param name name of the event in the command
+     */
+    NotifyEvent(@Nonnull final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the event in the command
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the event is about messages rather than mailboxes or the server
+     */
+    public boolean isMessageEvent() {
+        return this == MESSAGE_NEW || this == MESSAGE_EXPUNGE || this == FLAG_CHANGE || this == ANNOTATION_CHANGE;
+    }
+}
@@ -0,0 +1,115 @@
+package com.yahoo.imapnio.async.request;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * This class models an event group of the NOTIFY command (RFC5465): the mailboxes selected by a filter, and the events requested for them.
+ *
+ * <pre>
+ * event-group      = "(" filter-mailboxes SP events ")"
+ * filter-mailboxes = "selected" / "selected-delayed" / "inboxes" / "personal" / "subscribed" /
+ *                    ( "subtree" SP one-or-more-mailbox ) / ( "mailboxes" SP one-or-more-mailbox )
+ * events           = ( "(" event *(SP event) ")" ) / "NONE"
+ * message-event    = ( "MessageNew" [SP "(" fetch-att *(SP fetch-att) ")" ] ) / "MessageExpunge" / "FlagChange" / "AnnotationChange"
+ * </pre>
+ */
+public final class NotifyEventGroup {
+
+    /** Filter of the mailboxes. */
+    @Nonnull
+    private final NotifyMailboxFilter filter;
+
+    /** Mailbox names for the subtree and mailboxes filters, null for other filters. */
+    @Nullable
+    private final String[] mailboxes;
+
+    /** Events requested, empty for NONE. */
+    @Nonnull
+    private final Set<NotifyEvent> events;
+
+    /** Fetch attributes returned with MessageNew in the selected mailbox, for ex: UID FLAGS, null if none. */
+    @Nullable
+    private final String messageNewFetchItems;
+
+    /**
+     * Initializes a {@link NotifyEventGroup} without mailbox names nor fetch attributes.
+     *
+     * @param filter filter of the mailboxes, other than subtree and mailboxes
+     * @param events events requested, empty for NONE
+     * @throws ImapAsyncClientException when the filter needs mailbox names, or the events are not a valid combination
+     */
+    public NotifyEventGroup(@Nonnull final NotifyMailboxFilter filter, @Nonnull final Set<NotifyEvent> events) throws ImapAsyncClientException {
+        this(filter, null, events, null);
+    }
+
+    /**
+     * Initializes a {@link NotifyEventGroup}.
+     *
+     * @param filter filter of the mailboxes
+     * @param mailboxes mailbox names for the subtree and mailboxes filters, null for other filters
+     * @param events events requested, empty for NONE
+     * @param messageNewFetchItems fetch attributes returned with MessageNew in the selected mailbox, for ex: UID FLAGS, null if none
+     * @throws ImapAsyncClientException when the mailbox names do not match the filter, or the events are not a valid combination
+     */
+    public NotifyEventGroup(@Nonnull final NotifyMailboxFilter filter, @Nullable final String[] mailboxes, @Nonnull final Set<NotifyEvent> events,
+            @Nullable final String messageNewFetchItems) throws ImapAsyncClientException {
+        if (filter.hasMailboxes() != (mailboxes != null && mailboxes.length > 0)) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        // RFC5465 section 5: MessageNew and MessageExpunge go together, and are required by FlagChange and AnnotationChange
+        boolean hasMessageEvent = false;
+        for (final NotifyEvent event : events) {
+            hasMessageEvent |= event.isMessageEvent();
+        }
+        if (hasMessageEvent && !(events.contains(NotifyEvent.MESSAGE_NEW) && events.contains(NotifyEvent.MESSAGE_EXPUNGE))) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        if (messageNewFetchItems != null && !(filter.isSelected() && events.contains(NotifyEvent.MESSAGE_NEW))) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.filter = filter;
+        this.mailboxes = (mailboxes != null) ? mailboxes.clone() : null;
+        this.events = events.isEmpty() ? Collections.<NotifyEvent>emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(events));
+        this.messageNewFetchItems = messageNewFetchItems;
+    }
+
+    /**
+     * @return filter of the mailboxes
+     */
+    @Nonnull
+    public NotifyMailboxFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return mailbox names for the subtree and mailboxes filters, null for other filters
+     */
+    @Nullable
+    public String[] getMailboxes() {
+        return (mailboxes != null) ? mailboxes.clone() : null;
+    }
+
+    /**
+     * @return events requested, in the order of {@link NotifyEvent}, empty for NONE
+     */
+    @Nonnull
+    public Set<NotifyEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * @return fetch attributes returned with MessageNew in the selected mailbox, null if none
+     */
+    @Nullable
+    public String getMessageNewFetchItems() {
+        return messageNewFetchItems;
+    }
+}
@@ -0,0 +1,58 @@
+package com.yahoo.imapnio.async.request;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Mailbox filters of NOTIFY (RFC5465), selecting the mailboxes an event group of the NOTIFY command applies to.
+ */
+public enum NotifyMailboxFilter {
+    /** The selected mailbox, events are sent as soon as they happen. */
+    SELECTED("selected"),
+    /** The selected mailbox, MessageExpunge events may be delayed until a command allowing expunge responses. */
+    SELECTED_DELAYED("selected-delayed"),
+    /** All mailboxes the user is likely to receive new messages in. */
+    INBOXES("inboxes"),
+    /** All mailboxes in the personal namespaces. */
+    PERSONAL("personal"),
+    /** All subscribed mailboxes. */
+    SUBSCRIBED("subscribed"),
+    /** The given mailboxes and all mailboxes below them. */
+    SUBTREE("subtree"),
+    /** The given mailboxes. */
+    MAILBOXES("mailboxes");
+
+    /** Name of the filter in the command. */
+    @Nonnull
+    private final String name;
+
+    /**
+     * Initializes a {@link NotifyMailboxFilter}.
+     *
+     * @param name name of the filter in the command
+     */
+    NotifyMailboxFilter(@Nonnull final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the filter in the command
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the filter is followed by one or more mailbox names
+     */
+    public boolean hasMailboxes() {
+        return this == SUBTREE || this == MAILBOXES;
+    }
+
+    /**
+     * @return true if the filter applies to the selected mailbox
+     */
+    public boolean isSelected() {
+        return this == SELECTED || this == SELECTED_DELAYED;
+    }
+}
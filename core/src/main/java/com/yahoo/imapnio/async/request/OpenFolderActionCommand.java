@@ -10,12 +10,11 @@ import com.yahoo.imapnio.async.data.QResyncParameter;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap abstract commands related to open operation on folder, like select and examine folder.
  */
-abstract class OpenFolderActionCommand extends ImapRequestAdapter {
+abstract class OpenFolderActionCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -62,7 +61,7 @@ abstract class OpenFolderActionCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    protected void writeCommandLine(@Nonnull final ByteBuf byteBuf) throws ImapAsyncClientException {
         final String base64Folder = BASE64MailboxEncoder.encode(folderName);
         int qResyncParameterSize = 0;
         StringBuilder sb = null;
@@ -83,9 +82,6 @@ abstract class OpenFolderActionCommand extends ImapRequestAdapter {
             sb.append("))");
             qResyncParameterSize = sb.length();
         }
-        // 2 * base64Folder.length(): assuming every char needs to be escaped, goal is eliminating resizing, and avoid complex length calculation
-        final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN + qResyncParameterSize;
-        final ByteBuf byteBuf = Unpooled.buffer(len);
         byteBuf.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
         byteBuf.writeByte(ImapClientConstants.SPACE);
 
@@ -98,7 +94,10 @@ abstract class OpenFolderActionCommand extends ImapRequestAdapter {
         }
 
         byteBuf.writeBytes(CRLF_B);
+    }
 
-        return byteBuf;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return 2 * folderName.length() + ImapClientConstants.PAD_LEN + ((qResyncParameter != null) ? ImapClientConstants.PAD_LEN : 0);
     }
 }
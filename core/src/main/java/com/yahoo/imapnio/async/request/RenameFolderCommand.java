@@ -8,12 +8,11 @@ import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines IMAP rename command request from client.
  */
-public class RenameFolderCommand extends ImapRequestAdapter {
+public class RenameFolderCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -48,9 +47,8 @@ public class RenameFolderCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         final int len = oldFolder.length() * 2 + newFolder.length() * 2 + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
         sb.writeBytes(RENAME_SP_B);
 
         final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
@@ -60,8 +58,11 @@ public class RenameFolderCommand extends ImapRequestAdapter {
         final String n = BASE64MailboxEncoder.encode(newFolder);
         formatter.formatArgument(n, sb, false); // already base64 encoded so can be formatted and write to sb
         sb.writeBytes(CRLF_B);
+    }
 
-        return sb;
+    @Override
+    protected int getCommandLineLengthHint() {
+        return oldFolder.length() * 2 + newFolder.length() * 2 + ImapClientConstants.PAD_LEN;
     }
 
     @Override
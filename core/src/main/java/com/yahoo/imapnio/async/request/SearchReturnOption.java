@@ -0,0 +1,15 @@
+package com.yahoo.imapnio.async.request;
+
+/**
+ * Return options of ESEARCH (RFC4731), requesting the server to return the search result in the extended ESEARCH response.
+ */
+public enum SearchReturnOption {
+    /** Lowest message number or UID satisfying the search criteria. */
+    MIN,
+    /** Highest message number or UID satisfying the search criteria. */
+    MAX,
+    /** Number of messages satisfying the search criteria. */
+    COUNT,
+    /** All message numbers or UIDs satisfying the search criteria, returned as a sequence-set. */
+    ALL
+}
@@ -8,7 +8,6 @@ import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines imap status command request from client. RFC 3501 ABNF for status command.
@@ -20,7 +19,7 @@ import io.netty.buffer.Unpooled;
  *                   "UNSEEN"
  * </pre>
  */
-public class StatusCommand extends ImapRequestAdapter {
+public class StatusCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -55,9 +54,7 @@ public class StatusCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-
-        final ByteBuf sb = Unpooled.buffer(ImapClientConstants.PAD_LEN);
+    protected void writeCommandLine(@Nonnull final ByteBuf sb) throws ImapAsyncClientException {
         // ex: STATUS "test1" (UIDNEXT MESSAGES UIDVALIDITY RECENT)
         sb.writeBytes(STATUS_SP_B);
 
@@ -77,7 +74,11 @@ public class StatusCommand extends ImapRequestAdapter {
         sb.writeByte(ImapClientConstants.R_PAREN);
 
         sb.writeBytes(CRLF_B);
-        return sb;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return 2 * folderName.length() + ImapClientConstants.PAD_LEN;
     }
 
     @Override
@@ -8,12 +8,11 @@ import com.sun.mail.imap.protocol.UIDSet;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
 /**
  * This class defines IMAP UID EXPUNGE command from client.
  */
-public class UidExpungeCommand extends ImapRequestAdapter {
+public class UidExpungeCommand extends ImapCommandLineAdapter {
 
     /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
     private static final byte[] CRLF_B = { '\r', '\n' };
@@ -60,13 +59,16 @@ public class UidExpungeCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf buf = Unpooled.buffer(UID_EXPUNGE.length() + uids.length() + ImapClientConstants.PAD_LEN);
+    protected void writeCommandLine(@Nonnull final ByteBuf buf) {
         buf.writeBytes(UID_EXPUNGE_B);
         buf.writeByte(ImapClientConstants.SPACE);
         buf.writeBytes(uids.getBytes(StandardCharsets.US_ASCII));
         buf.writeBytes(CRLF_B);
-        return buf;
+    }
+
+    @Override
+    protected int getCommandLineLengthHint() {
+        return UID_EXPUNGE.length() + uids.length() + ImapClientConstants.PAD_LEN;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package com.yahoo.imapnio.async.response;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -15,15 +16,22 @@ import com.sun.mail.iap.ParsingException;
 import com.sun.mail.iap.Response;
 import com.sun.mail.imap.AppendUID;
 import com.sun.mail.imap.CopyUID;
+import com.sun.mail.imap.protocol.BASE64MailboxDecoder;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.sun.mail.imap.protocol.ListInfo;
 import com.sun.mail.imap.protocol.MailboxInfo;
 import com.sun.mail.imap.protocol.Status;
 import com.sun.mail.imap.protocol.UIDSet;
 import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.ESearchResult;
 import com.yahoo.imapnio.async.data.ExtensionMailboxInfo;
+import com.yahoo.imapnio.async.data.FetchMessage;
+import com.yahoo.imapnio.async.data.FetchResult;
 import com.yahoo.imapnio.async.data.IdResult;
+import com.yahoo.imapnio.async.data.ImapResponseValues;
 import com.yahoo.imapnio.async.data.ListInfoList;
+import com.yahoo.imapnio.async.data.ListStatusResult;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.data.SearchResult;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
@@ -45,6 +53,9 @@ public class ImapResponseMapper {
     /** ] char. */
     private static final char R_BRACKET = ']';
 
+    /** Initial capacity of the message numbers array of SEARCH result. */
+    private static final int INITIAL_SEARCH_RESULT_CAPACITY = 64;
+
     /** Inner class instance parser. */
     private ImapResponseParser parser;
 
@@ -90,12 +101,21 @@ public class ImapResponseMapper {
         if (valueType == Status.class) {
             return (T) parser.parseToStatus(content);
         }
+        if (valueType == ListStatusResult.class) {
+            return (T) parser.parseToListStatusResult(content);
+        }
         if (valueType == IdResult.class) {
             return (T) parser.parseToIdResult(content);
         }
         if (valueType == SearchResult.class) {
             return (T) parser.parseToSearchResult(content);
         }
+        if (valueType == FetchResult.class) {
+            return (T) parser.parseToFetchResult(content);
+        }
+        if (valueType == ESearchResult.class) {
+            return (T) parser.parseToESearchResult(content);
+        }
         throw new ImapAsyncClientException(FailureType.UNKNOWN_PARSE_RESULT_TYPE);
     }
 
@@ -343,6 +363,48 @@ public class ImapResponseMapper {
             return new ListInfoList(v);
         }
 
+        /**
+         * Parses the LIST and STATUS responses of LIST with the STATUS return option (RFC5819) to a {@link ListStatusResult}. For ex:
+         *
+         * <pre>
+         * * LIST () "." "INBOX"
+         * * STATUS "INBOX" (MESSAGES 17 UNSEEN 16)
+         * * LIST (\Noselect) "." "foo"
+         * </pre>
+         *
+         * @param r the list of responses from LIST, the input responses array should contain the tagged/final one
+         * @return mailboxes listed joined with their status
+         * @throws ParsingException when encountering parsing exception
+         * @throws ImapAsyncClientException when input value is not valid
+         */
+        @Nonnull
+        private ListStatusResult parseToListStatusResult(@Nonnull final IMAPResponse[] r) throws ParsingException, ImapAsyncClientException {
+            if (r.length < 1) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            if (!r[r.length - 1].isOK()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final List<ListInfo> infos = new ArrayList<ListInfo>();
+            final Map<String, Status> statuses = new HashMap<String, Status>();
+            for (int i = 0, len = r.length - 1; i < len; i++) {
+                final IMAPResponse ir = r[i];
+                if (ir.keyEquals("LIST")) {
+                    infos.add(new ListInfo(ir));
+                } else if (ir.keyEquals("STATUS")) {
+                    final Status status = new Status(ir);
+                    final String name = BASE64MailboxDecoder.decode(status.mbox);
+                    final Status previous = statuses.get(name);
+                    if (previous == null) {
+                        statuses.put(name, status);
+                    } else { // collect them all if each attributes comes in its own line
+                        Status.add(previous, status);
+                    }
+                }
+            }
+            return new ListStatusResult(new ListInfoList(infos), statuses);
+        }
+
         /**
          * Parses the Status responses to a {@link Status}.
          *
@@ -440,7 +502,9 @@ public class ImapResponseMapper {
             if (!taggedResponse.isOK()) {
                 throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
             }
-            final List<Long> v = new ArrayList<Long>(); // will always return a non-null array
+            // numbers are read as primitives from the response bytes, no boxing even for millions of messages
+            long[] v = new long[INITIAL_SEARCH_RESULT_CAPACITY];
+            int count = 0;
 
             // Grab all SEARCH responses
             long num;
@@ -448,12 +512,118 @@ public class ImapResponseMapper {
                 // There *will* be one SEARCH response.
                 if (sr.keyEquals("SEARCH")) {
                     while ((num = sr.readLong()) != -1) {
-                        v.add(Long.valueOf(num));
+                        if (count == v.length) {
+                            v = Arrays.copyOf(v, v.length * 2);
+                        }
+                        v[count++] = num;
                     }
                 }
             }
 
-            return new SearchResult(v);
+            return new SearchResult(v, count);
+        }
+
+        /**
+         * Parses the responses from FETCH or UID FETCH command to a {@link FetchResult} object. The data items are not parsed at this point, but
+         * when accessed from {@link FetchMessage}.
+         *
+         * @param ir the list of responses from FETCH command, the input responses array should contain the tagged/final one
+         * @return FetchResult object constructed based on the given IMAPResponse array
+         * @throws ImapAsyncClientException when tagged response is not OK or given response length is 0
+         */
+        @Nonnull
+        private FetchResult parseToFetchResult(@Nonnull final IMAPResponse[] ir) throws ImapAsyncClientException {
+            if (ir.length < 1) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final Response taggedResponse = ir[ir.length - 1];
+            if (!taggedResponse.isOK()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final List<FetchMessage> messages = new ArrayList<FetchMessage>(ir.length - 1);
+            for (int i = 0, len = ir.length - 1; i < len; i++) {
+                if (ir[i].keyEquals("FETCH")) {
+                    messages.add(new FetchMessage(ir[i]));
+                }
+            }
+            return new FetchResult(messages);
+        }
+
+        /**
+         * Parses the ESEARCH response from SEARCH or UID SEARCH command with return options to a {@link ESearchResult} object. An ESEARCH response
+         * correlated to a different tag is ignored, and the result is empty if the server returns no ESEARCH response.
+         *
+         * @param ir the list of responses from search command, the input responses array should contain the tagged/final one
+         * @return ESearchResult object constructed based on the given IMAPResponse array
+         * @throws ImapAsyncClientException when tagged response is not OK, given response length is 0 or ESEARCH response is not valid
+         */
+        @Nonnull
+        private ESearchResult parseToESearchResult(@Nonnull final IMAPResponse[] ir) throws ImapAsyncClientException {
+            if (ir.length < 1) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final Response taggedResponse = ir[ir.length - 1];
+            if (!taggedResponse.isOK()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            for (int i = 0, len = ir.length - 1; i < len; i++) {
+                final IMAPResponse r = ir[i];
+                if (!r.keyEquals("ESEARCH")) {
+                    continue;
+                }
+                // search-correlator = SP "(" "TAG" SP tag-string ")"
+                String tag = null;
+                r.skipSpaces();
+                if (r.peekByte() == '(') {
+                    r.readByte();
+                    if (!"TAG".equalsIgnoreCase(r.readAtom())) {
+                        throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                    }
+                    tag = r.readString();
+                    r.skipSpaces();
+                    if (r.readByte() != ')') {
+                        throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                    }
+                    if (taggedResponse.getTag() != null && !taggedResponse.getTag().equals(tag)) {
+                        continue; // belongs to another command
+                    }
+                }
+                boolean isUid = false;
+                long min = -1;
+                long max = -1;
+                long count = -1;
+                long modSeq = -1;
+                MessageNumberSet[] all = null;
+                String name;
+                while ((name = r.readAtom()) != null && !name.isEmpty()) {
+                    final String key = name.toUpperCase(Locale.ENGLISH);
+                    if (key.equals("UID")) {
+                        isUid = true;
+                    } else if (key.equals("MIN")) {
+                        min = r.readLong();
+                    } else if (key.equals("MAX")) {
+                        max = r.readLong();
+                    } else if (key.equals("COUNT")) {
+                        count = r.readLong();
+                    } else if (key.equals("MODSEQ")) {
+                        modSeq = r.readLong();
+                    } else if (key.equals("ALL")) {
+                        final String sequenceSet = r.readString(' ');
+                        if (sequenceSet == null) {
+                            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+                        }
+                        all = MessageNumberSet.parseMessageNumberSets(sequenceSet);
+                    } else { // return data of an extension not known here
+                        try {
+                            ImapResponseValues.skipValue(r);
+                        } catch (final ParsingException e) {
+                            throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+                        }
+                    }
+                }
+                return new ESearchResult(tag, isUid, min, max, count, all, modSeq);
+            }
+            return new ESearchResult(null, false, -1, -1, -1, null, -1);
         }
     }
 }
@@ -1,17 +1,27 @@
 package com.yahoo.imapnio.client;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import com.sun.mail.util.ASCIIUtility;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.util.ByteProcessor;
 import io.netty.util.ReferenceCountUtil;
 
 /**
- * Basic response reader, read response from channel and decode based on line delimiter, also could handle IMAP literal response.
+ * Basic response reader, read response from channel and decode based on line delimiter, also could handle IMAP literal response. A response with
+ * literals is aggregated into a {@link CompositeByteBuf} of retained slices of the inbound buffers, so literal data is never copied by this reader;
+ * {@link com.yahoo.imapnio.command.ImapClientRespDecoder} still copies every frame once since the parsed response needs its own byte array.
+ * FETCH response literals can instead be streamed to the {@link ImapLiteralSink} given by the {@link LiteralSinkProvider}, chunk by chunk as they
+ * arrive, without being aggregated at all.
  *
  * @author kaituo
  *
@@ -27,14 +37,45 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
     /** Constant for 5. */
     private static final int FIVE = 5;
 
-    /** Extra length to accommodate CRLF. */
-    private static final int EXTRA_PADDING_LEN = 16;
+    /** Radix for decimal numbers. */
+    private static final int DECIMAL_RADIX = 10;
+
+    /** Maximum number of components of the aggregated buffer, large enough that the composite buffer never consolidates (copies) its components. */
+    private static final int MAX_COMPONENTS = Integer.MAX_VALUE;
 
     /** Literal response remaining bytes size. */
     private int literalCount;
 
     /** Literal response buffer. */
-    private ByteBuf literalBuf;
+    private CompositeByteBuf literalBuf;
+
+    /** Message sequence number of the FETCH response being aggregated, -1 if the response is not a FETCH response. */
+    private long fetchMessageNumber;
+
+    /** Sink receiving the data of the current literal, null if the literal is aggregated. */
+    private ImapLiteralSink streamingSink;
+
+    /** Provider of the sink to stream FETCH literals to, null if literals are always aggregated. */
+    private volatile LiteralSinkProvider literalSinkProvider;
+
+    /** Untagged FETCH response prefix after the star, space and message number. */
+    private static final byte[] SP_FETCH_SP = " FETCH ".getBytes(StandardCharsets.US_ASCII);
+
+    /** Empty literal replacing a streamed literal in the response. */
+    private static final ByteBuf EMPTY_LITERAL = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer("{0}\r\n".getBytes(StandardCharsets.US_ASCII)));
+
+    /** Prefixes of the fetch data items whose literals can be streamed. */
+    private static final String[] STREAMABLE_ITEMS = { "BODY[", "BINARY[", "RFC822" };
+
+    /**
+     * Provides the sink to stream the FETCH response literals to, normally the sink of the command in progress.
+     */
+    public interface LiteralSinkProvider {
+        /**
+         * @return the sink to stream the literal data to, null to aggregate the literal in the response
+         */
+        ImapLiteralSink getLiteralSink();
+    }
 
     /** IMAP response line delimiter, carriage return - new line. */
     private static final ByteBuf[] DELIMITER = new ByteBuf[] { Unpooled.wrappedBuffer(new byte[] { '\r', '\n' }) };
@@ -47,6 +88,16 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
     public ImapClientRespReader(final int maxLineLength) {
         super(maxLineLength, false, DELIMITER);
         literalCount = -1;
+        fetchMessageNumber = -1;
+    }
+
+    /**
+     * Sets the provider of the sink to stream FETCH response literals to.
+     *
+     * @param provider the provider, null to always aggregate literals in the response
+     */
+    public void setLiteralSinkProvider(final LiteralSinkProvider provider) {
+        this.literalSinkProvider = provider;
     }
 
     /**
@@ -55,7 +106,7 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
      * (a) line mode : The client will return the decoded line if it ends with CRLF and no literal preceding CRLF.
      *
      * (b) literal mode : When the client receiving a literal response({digits}), it will keep buffering the bytes until all literal data read and
-     * then continue read the next CRLF.
+     * then continue read the next CRLF. When the literal is streamed to a sink, the bytes are handed to the sink as they are read instead.
      *
      * @param ctx the {@link ChannelHandlerContext} which this decoder belongs to
      * @param inputBuf the {@link ByteBuf} from which to read data
@@ -91,16 +142,41 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
 
                 // literals follows if reaching here
                 if (literalBuf == null) {
-                    literalBuf = Unpooled.buffer(lineLen + literalCount + EXTRA_PADDING_LEN);
+                    literalBuf = inputBuf.alloc().compositeBuffer(MAX_COMPONENTS);
+                    fetchMessageNumber = getFetchMessageNumber(lineBuf, lineLen);
+                }
+                final ImapLiteralSink sink = getStreamingSink(lineBuf, lineLen);
+                if (sink == null) {
+                    writeLiteralBufFromLineBuf(lineBuf); // add current line (ex: "* 1 FETCH (FLAGS (\Seen $NotJunk) BODY[] {4495}\r\n")
+                } else {
+                    // add current line with an empty literal instead (ex: "* 1 FETCH (FLAGS (\Seen $NotJunk) BODY[] {0}\r\n")
+                    literalBuf.addComponent(true, lineBuf.retainedSlice(0, getLeftCurlyIndex(lineBuf, lineLen)));
+                    ReferenceCountUtil.release(lineBuf);
+                    literalBuf.addComponent(true, EMPTY_LITERAL.duplicate());
+                    if (literalCount == 0) {
+                        sink.onLiteralEnd();
+                    } else {
+                        streamingSink = sink;
+                    }
                 }
-                writeLiteralBufFromLineBuf(lineBuf); // add current line (ex: "* 1 FETCH (FLAGS (\Seen $NotJunk) BODY[] {4495}\r\n")
                 // back to top of loop to enter literal mode block
 
             } else { // LITERAL mode - read till reaching the count or end of inputBuf
                 final int avail = inputBuf.readableBytes(); // available bytes unread in inputBuf
-                final int actual = (literalCount <= avail) ? literalCount : avail; // actual length to copy
-                literalBuf.writeBytes(inputBuf, actual);
+                final int actual = (literalCount <= avail) ? literalCount : avail; // actual length to slice
                 literalCount -= actual;
+                if (streamingSink == null) {
+                    literalBuf.addComponent(true, inputBuf.readRetainedSlice(actual));
+                } else {
+                    final ImapLiteralSink sink = streamingSink;
+                    if (literalCount == 0) {
+                        streamingSink = null;
+                    }
+                    sink.onLiteralData(inputBuf.readSlice(actual));
+                    if (literalCount == 0) {
+                        sink.onLiteralEnd();
+                    }
+                }
             }
         }
 
@@ -108,14 +184,71 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
     }
 
     /**
-     * Writes the given lineBuf to literalBuf. When writing is finished, we need to release the given lineBuf since this lineBuf will not be given to
-     * StringDecoder to release.
+     * Adds the given lineBuf to literalBuf as a component. The ownership of lineBuf is transferred to literalBuf, which releases it when itself is
+     * released by the next handler.
      *
      * @param lineBuf the line buffer obtained from the super.decode
      */
     private void writeLiteralBufFromLineBuf(@Nonnull final ByteBuf lineBuf) {
-        literalBuf.writeBytes(lineBuf);
-        ReferenceCountUtil.release(lineBuf); // Decreases the reference count by {@link 1}
+        literalBuf.addComponent(true, lineBuf);
+    }
+
+    /**
+     * Releases the partially aggregated response, if any, and aborts the literal being streamed, if any, when this handler is removed from the
+     * pipeline or the channel is closed.
+     *
+     * @param ctx the {@link ChannelHandlerContext} which this decoder belongs to
+     * @throws Exception on failure
+     */
+    @Override
+    protected void handlerRemoved0(final ChannelHandlerContext ctx) throws Exception {
+        if (literalBuf != null) {
+            ReferenceCountUtil.release(literalBuf);
+            literalBuf = null;
+        }
+        literalCount = -1;
+        fetchMessageNumber = -1;
+        final ImapLiteralSink sink = streamingSink;
+        streamingSink = null;
+        try {
+            if (sink != null) {
+                sink.onLiteralAbort();
+            }
+        } finally {
+            super.handlerRemoved0(ctx);
+        }
+    }
+
+    /**
+     * Returns the literal payloads of a response frame produced by this reader, in the order they appear, as retained slices of the frame. No data is
+     * copied; the caller owns the returned slices and must release each of them, independently from the frame itself.
+     *
+     * @param frame a complete response frame produced by this reader, its reader index is not modified
+     * @return the literal payloads, empty if the response has no literal
+     */
+    public static List<ByteBuf> getLiteralSlices(@Nonnull final ByteBuf frame) {
+        final List<ByteBuf> literals = new ArrayList<ByteBuf>();
+        final int end = frame.writerIndex();
+        int lineStart = frame.readerIndex();
+        while (lineStart < end) {
+            final int lf = frame.forEachByte(lineStart, end - lineStart, ByteProcessor.FIND_LF);
+            if (lf < 0) { // last line without CRLF
+                break;
+            }
+            final int lineEnd = lf + 1; // exclusive, includes CRLF
+            final int lineLen = lineEnd - lineStart;
+            int count = -1;
+            if (lineLen >= FIVE && frame.getByte(lineEnd - THREE) == '}' && frame.getByte(lineEnd - 2) == '\r') {
+                count = getLiteralCount(frame.slice(lineStart, lineLen), lineLen);
+            }
+            if (count < 0 || lineEnd + count > end) { // no literal, or truncated frame
+                lineStart = lineEnd;
+                continue;
+            }
+            literals.add(frame.retainedSlice(lineEnd, count));
+            lineStart = lineEnd + count;
+        }
+        return literals;
     }
 
     /**
@@ -133,22 +266,122 @@ public class ImapClientRespReader extends DelimiterBasedFrameDecoder {
         // reset existing
         literalBuf = null;
         literalCount = -1;
+        fetchMessageNumber = -1;
         return result;
     }
 
+    /**
+     * Asks the sink of the provider whether it streams the literal at the end of the given line.
+     *
+     * @param lineBuf buffer for the line ended with a literal count and CRLF
+     * @param lineLen line length of the above lineBuf
+     * @return the sink to stream the literal to, null if the literal is aggregated
+     */
+    private ImapLiteralSink getStreamingSink(@Nonnull final ByteBuf lineBuf, final int lineLen) {
+        final LiteralSinkProvider provider = literalSinkProvider;
+        if (provider == null || fetchMessageNumber < 0) {
+            return null;
+        }
+        final ImapLiteralSink sink = provider.getLiteralSink();
+        if (sink == null) {
+            return null;
+        }
+        final String section = getSection(lineBuf, getLeftCurlyIndex(lineBuf, lineLen));
+        if (section == null) {
+            return null;
+        }
+        return sink.onLiteralStart(fetchMessageNumber, section, literalCount) ? sink : null;
+    }
+
+    /**
+     * @param lineBuf buffer for the first line of a response
+     * @param lineLen line length of the above lineBuf
+     * @return the message sequence number if the line starts an untagged FETCH response, -1 otherwise
+     */
+    private static long getFetchMessageNumber(@Nonnull final ByteBuf lineBuf, final int lineLen) {
+        if (lineLen < FOUR || lineBuf.getByte(0) != '*' || lineBuf.getByte(1) != ' ') {
+            return -1;
+        }
+        long number = 0;
+        int i = 2;
+        for (; i < lineLen; i++) {
+            final byte b = lineBuf.getByte(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            number = number * DECIMAL_RADIX + (b - '0');
+        }
+        if (i == 2 || i + SP_FETCH_SP.length > lineLen) {
+            return -1;
+        }
+        for (int j = 0; j < SP_FETCH_SP.length; j++) {
+            if (Character.toUpperCase(lineBuf.getByte(i + j)) != SP_FETCH_SP[j]) {
+                return -1;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Extracts the fetch data item name preceding the literal, for ex: BODY[1.2] or BODY[HEADER.FIELDS (FROM)]&lt;0&gt;.
+     *
+     * @param lineBuf buffer for the line ended with a literal count and CRLF
+     * @param leftCurly index of the left curly of the literal count
+     * @return the fetch data item name if its literal can be streamed, null otherwise
+     */
+    private static String getSection(@Nonnull final ByteBuf lineBuf, final int leftCurly) {
+        final int end = (leftCurly > 0 && lineBuf.getByte(leftCurly - 1) == ' ') ? leftCurly - 1 : leftCurly;
+        int i = end - 1;
+        if (i >= 0 && lineBuf.getByte(i) == '>') { // partial origin
+            while (i >= 0 && lineBuf.getByte(i) != '<') {
+                i--;
+            }
+            i--;
+        }
+        if (i >= 0 && lineBuf.getByte(i) == ']') { // section part could contain spaces
+            while (i >= 0 && lineBuf.getByte(i) != '[') {
+                i--;
+            }
+        }
+        while (i >= 0 && lineBuf.getByte(i) != ' ' && lineBuf.getByte(i) != '(') {
+            i--;
+        }
+        final int start = i + 1;
+        if (start >= end) {
+            return null;
+        }
+        final String section = lineBuf.toString(start, end - start, StandardCharsets.US_ASCII);
+        final String upper = section.toUpperCase();
+        for (final String item : STREAMABLE_ITEMS) {
+            if (upper.startsWith(item)) {
+                return section;
+            }
+        }
+        return null;
+    }
+
     /**
      * @param lineBuf buffer for the line ended with CRLF
      * @param lineLen line length of the above lineBuf
-     * @return literal in int data type between curly braces; return -1 if we cannot extract literal
+     * @return index of the left curly of the literal count, -1 if not found
      */
-    private int getLiteralCount(@Nonnull final ByteBuf lineBuf, @Nonnull final int lineLen) {
-        int i;
-        // look for left curly
-        for (i = lineLen - FOUR; i >= 0; i--) {
+    private static int getLeftCurlyIndex(@Nonnull final ByteBuf lineBuf, final int lineLen) {
+        for (int i = lineLen - FOUR; i >= 0; i--) {
             if (lineBuf.getByte(i) == '{') {
-                break;
+                return i;
             }
         }
+        return -1;
+    }
+
+    /**
+     * @param lineBuf buffer for the line ended with CRLF
+     * @param lineLen line length of the above lineBuf
+     * @return literal in int data type between curly braces; return -1 if we cannot extract literal
+     */
+    private static int getLiteralCount(@Nonnull final ByteBuf lineBuf, @Nonnull final int lineLen) {
+        // look for left curly
+        final int i = getLeftCurlyIndex(lineBuf, lineLen);
         if (i < 0) { // Nope, not a literal ?
             return -1;
         }
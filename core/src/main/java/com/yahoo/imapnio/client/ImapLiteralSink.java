@@ -0,0 +1,42 @@
+package com.yahoo.imapnio.client;
+
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Receives the data of FETCH response literals in chunks, as they arrive from the socket, instead of having them buffered in the response. Methods
+ * are invoked on the channel event loop thread, hence should not block. An exception thrown from a method fails the channel.
+ */
+public interface ImapLiteralSink {
+
+    /**
+     * Invoked when a literal of a FETCH response starts. The sink decides whether to receive this literal as a stream. When it does, the literal is
+     * replaced with an empty literal in the response handed back when the command completes.
+     *
+     * @param messageNumber the message sequence number of the FETCH response
+     * @param section the fetch data item name preceding the literal as sent by server, for ex: BODY[], BODY[1.2], BODY[]&lt;0&gt;, BINARY[1], RFC822
+     * @param size the size of the literal in bytes
+     * @return true to receive the literal data through {@link #onLiteralData(ByteBuf)}; false to keep the literal in the response
+     */
+    boolean onLiteralStart(long messageNumber, @Nonnull String section, int size);
+
+    /**
+     * Invoked for each chunk of the literal data accepted in {@link #onLiteralStart(long, String, int)}. The chunk is only valid during this call,
+     * the sink must retain it or copy its content to keep it longer.
+     *
+     * @param chunk the next chunk of the literal data
+     */
+    void onLiteralData(@Nonnull ByteBuf chunk);
+
+    /**
+     * Invoked when all the data of the literal accepted in {@link #onLiteralStart(long, String, int)} has been delivered.
+     */
+    void onLiteralEnd();
+
+    /**
+     * Invoked instead of {@link #onLiteralEnd()} when the literal accepted in {@link #onLiteralStart(long, String, int)} will not be completed, for
+     * example because the channel is closed while its data is still arriving. The data delivered so far is incomplete.
+     */
+    void onLiteralAbort();
+}
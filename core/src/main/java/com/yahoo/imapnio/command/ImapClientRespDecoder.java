@@ -1,28 +1,135 @@
 package com.yahoo.imapnio.command;
 
-import io.netty.handler.codec.MessageToMessageDecoder;
-
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.Properties;
+
+import javax.annotation.Nonnull;
 
+import com.sun.mail.iap.ByteArray;
+import com.sun.mail.iap.Protocol;
 import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.iap.ResponseInputStream;
 import com.sun.mail.imap.protocol.IMAPResponse;
-/**
- * @author kraman
- *
- */
+
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageDecoder;
 
 /**
- * Basic response decoder. A ResponseDecoder (as opposed to a handler) is anything that outputs an IMAPResponse.
+ * Basic response decoder. A ResponseDecoder (as opposed to a handler) is anything that outputs an IMAPResponse. The {@link IMAPResponse} is built
+ * directly from the bytes of the CRLF terminated frame produced by {@link com.yahoo.imapnio.client.ImapClientRespReader}, so 8-bit data in literals
+ * is preserved as is. Each frame is copied once into a new byte array, since {@link IMAPResponse} keeps the array and parses it from index 0, while
+ * frames are slices or composites of pooled buffers released after decoding. Literals streamed to an
+ * {@link com.yahoo.imapnio.client.ImapLiteralSink} are not part of the frame and never copied.
  *
  * @author kraman
  */
-public class ImapClientRespDecoder extends MessageToMessageDecoder<String> {
+public class ImapClientRespDecoder extends MessageToMessageDecoder<ByteBuf> {
+
+    /** Source of the frame bytes to be parsed, created once per decoder since a decoder belongs to one channel. */
+    private FrameProtocol protocol;
 
     @Override
-    protected void decode(final ChannelHandlerContext ctx, final String msg, final List<Object> out) throws IOException, ProtocolException {
-        out.add(new IMAPResponse(msg));
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf msg, final List<Object> out) throws IOException, ProtocolException {
+        out.add(parse(msg));
+    }
+
+    /**
+     * Builds an {@link IMAPResponse} from a CRLF terminated frame. The frame's reader index is moved to its writer index.
+     *
+     * @param frame the response frame including the trailing CRLF
+     * @return the parsed response
+     * @throws IOException on failure to read the frame
+     * @throws ProtocolException on failure to parse the frame
+     */
+    IMAPResponse parse(@Nonnull final ByteBuf frame) throws IOException, ProtocolException {
+        if (protocol == null) {
+            protocol = new FrameProtocol();
+        }
+        final byte[] bytes = new byte[frame.readableBytes()];
+        frame.readBytes(bytes);
+        return protocol.parse(bytes);
+    }
+
+    /**
+     * A {@link Protocol} whose input stream hands out the current frame instead of reading from a socket, so the {@link IMAPResponse} constructor
+     * reading from protocol parses the frame bytes without going through a String.
+     */
+    private static final class FrameProtocol extends Protocol {
+
+        /** Input stream handing out the current frame. */
+        private final FrameInputStream input;
+
+        /**
+         * Initializes a {@link FrameProtocol} object.
+         *
+         * @throws IOException will not throw since the streams are in-memory
+         */
+        FrameProtocol() throws IOException {
+            super(new ByteArrayInputStream(new byte[0]), null, new Properties(), false);
+            this.input = new FrameInputStream();
+        }
+
+        /**
+         * Parses the given frame.
+         *
+         * @param bytes the frame bytes including the trailing CRLF
+         * @return the parsed response
+         * @throws IOException on failure to read the frame
+         * @throws ProtocolException on failure to parse the frame
+         */
+        IMAPResponse parse(@Nonnull final byte[] bytes) throws IOException, ProtocolException {
+            input.setFrame(bytes);
+            try {
+                return new IMAPResponse(this);
+            } finally {
+                input.setFrame(null);
+            }
+        }
+
+        @Override
+        protected ResponseInputStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        protected ByteArray getResponseBuffer() {
+            return null;
+        }
+    }
+
+    /**
+     * A {@link ResponseInputStream} returning the frame bytes as the response without copying them.
+     */
+    private static final class FrameInputStream extends ResponseInputStream {
+
+        /** Current frame bytes. */
+        private byte[] frame;
+
+        /**
+         * Initializes a {@link FrameInputStream} object.
+         */
+        FrameInputStream() {
+            super(new ByteArrayInputStream(new byte[0]));
+        }
+
+        /**
+         * Sets the frame to be returned by the next read.
+         *
+         * @param frame the frame bytes including the trailing CRLF
+         */
+        void setFrame(final byte[] frame) {
+            this.frame = frame;
+        }
 
+        @Override
+        public ByteArray readResponse(final ByteArray ba) throws IOException {
+            if (frame == null) {
+                throw new IOException("No frame to read.");
+            }
+            return new ByteArray(frame, 0, frame.length);
+        }
     }
 }
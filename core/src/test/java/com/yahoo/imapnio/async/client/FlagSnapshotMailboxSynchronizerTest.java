@@ -0,0 +1,249 @@
+package com.yahoo.imapnio.async.client;
+
+import static com.yahoo.imapnio.async.client.RecordingSession.response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.data.MailboxFlagSnapshot;
+import com.yahoo.imapnio.async.data.MailboxSyncDelta;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Unit test for {@link FlagSnapshotMailboxSynchronizer}.
+ */
+public class FlagSnapshotMailboxSynchronizerTest {
+
+    /** Session mock. */
+    private ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private List<ImapRequest> requests;
+
+    /** Futures returned by the session, one per command. */
+    private List<ImapFuture<ImapAsyncResponse>> futures;
+
+    /**
+     * Sets up the session mock before each test method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws ImapAsyncClientException {
+        final RecordingSession recording = new RecordingSession();
+        session = recording.getSession();
+        requests = recording.getRequests();
+        futures = recording.getFutures();
+    }
+
+    /**
+     * Streams response lines to the streaming queue of a command, as the session does, and completes the command.
+     *
+     * @param index index of the command
+     * @param lines response lines
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private void stream(final int index, final String... lines) throws IOException, ProtocolException {
+        final ConcurrentLinkedQueue<IMAPResponse> queue = requests.get(index).getStreamingResponsesQueue();
+        Assert.assertNotNull(queue, "Responses should be streamed.");
+        for (final String line : lines) {
+            queue.add(new IMAPResponse(line));
+        }
+        Assert.assertEquals(queue.size(), 1, "Only the tagged response should be kept.");
+        futures.get(index).done(new ImapAsyncResponse(queue));
+    }
+
+    /**
+     * Tests the first synchronization lists the mailbox, and the next one reports new, vanished and flag-changed messages.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncInitialThenIncremental() throws Exception {
+        final FlagSnapshotMailboxSynchronizer synchronizer = new FlagSnapshotMailboxSynchronizer();
+        ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", null);
+        Assert.assertEquals(requests.get(0).getCommandLine(), "SELECT INBOX\r\n", "Command line mismatched.");
+        futures.get(0).done(response("* 3 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 9] Predicted next UID", "A01 OK done"));
+        Assert.assertEquals(requests.get(1).getCommandLine(), "UID FETCH 1:* (UID FLAGS)\r\n", "Command line mismatched.");
+        stream(1, "* 1 FETCH (UID 4 FLAGS (\\Seen $Forwarded))", "* 2 FETCH (UID 5 FLAGS ())", "* 3 FETCH (FLAGS (\\Recent \\Deleted) UID 8)",
+                "A02 OK done");
+
+        MailboxSyncDelta delta = future.get();
+        Assert.assertFalse(delta.isReset(), "isReset() mismatched.");
+        Assert.assertEquals(delta.getNewUids().toString(), "4:5,8", "getNewUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 3, "getFlagUpdateCount() mismatched.");
+        Assert.assertTrue(delta.getFlagUpdateFlags(0).contains("$Forwarded"), "getFlagUpdateFlags() mismatched.");
+        Assert.assertTrue(delta.getFlagUpdateFlags(2).contains(Flags.Flag.DELETED), "getFlagUpdateFlags() mismatched.");
+        Assert.assertFalse(delta.getFlagUpdateFlags(2).contains(Flags.Flag.RECENT), "\\Recent should not be kept.");
+        Assert.assertEquals(delta.getFlagUpdateModSeq(0), -1L, "getFlagUpdateModSeq() mismatched.");
+        final MailboxSyncState state = delta.getState();
+        Assert.assertEquals(state.getUidNext(), 9L, "getUidNext() mismatched.");
+        Assert.assertEquals(state.getHighestModSeq(), -1L, "getHighestModSeq() mismatched.");
+        Assert.assertEquals(state.getFlagSnapshot().size(), 3, "Flag snapshot mismatched.");
+
+        future = synchronizer.sync(session, "INBOX", state);
+        futures.get(2).done(response("* 3 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 10] Predicted next UID", "A03 OK done"));
+        stream(3, "* 1 FETCH (UID 4 FLAGS (\\Seen $Forwarded))", "* 2 FETCH (UID 8 FLAGS (\\Deleted \\Flagged))",
+                "* 3 FETCH (UID 9 FLAGS (\\Seen))", "* 2 FETCH (MODSEQ (5))", "A04 OK done");
+
+        delta = future.get();
+        Assert.assertFalse(delta.isReset(), "isReset() mismatched.");
+        Assert.assertEquals(delta.getNewUids().toString(), "9", "getNewUids() mismatched.");
+        Assert.assertEquals(delta.getVanishedUids().toString(), "5", "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 2, "Unchanged message should not be reported.");
+        Assert.assertEquals(delta.getFlagUpdateUid(0), 8L, "getFlagUpdateUid() mismatched.");
+        Assert.assertTrue(delta.getFlagUpdateFlags(0).contains(Flags.Flag.FLAGGED), "getFlagUpdateFlags() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateUid(1), 9L, "getFlagUpdateUid() mismatched.");
+        Assert.assertEquals(delta.getState().getUids().toString(), "4,8:9", "getUids() mismatched.");
+    }
+
+    /**
+     * Tests the keyword table is rebuilt from the keywords in use on each synchronization, so keywords no longer used do not fill it, and changes of
+     * keywords at other bits are still reported.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncKeywordTableRebuilt() throws Exception {
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+        long bits = 0;
+        for (int i = 0; i < MailboxFlagSnapshot.MAX_KEYWORDS; i++) {
+            bits |= builder.getFlagBit("k" + i);
+        }
+        final MailboxFlagSnapshot full = builder.add(1, bits).add(2, builder.getFlagBit("k0")).add(3, builder.getFlagBit("k1")).build();
+        final MailboxSyncState state = new MailboxSyncState(3, 4, -1, full.getUids(), full);
+
+        final FlagSnapshotMailboxSynchronizer synchronizer = new FlagSnapshotMailboxSynchronizer();
+        final ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", state);
+        futures.get(0).done(response("* 3 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 4] Predicted next UID", "A01 OK done"));
+        stream(1, "* 1 FETCH (UID 1 FLAGS (fresh))", "* 2 FETCH (UID 2 FLAGS (k1))", "* 3 FETCH (UID 3 FLAGS (k1))", "A02 OK done");
+
+        final MailboxSyncDelta delta = future.get();
+        Assert.assertEquals(delta.getFlagUpdateCount(), 2, "Keyword changes should be reported, unchanged keyword at another bit should not.");
+        Assert.assertEquals(delta.getFlagUpdateUid(0), 1L, "getFlagUpdateUid() mismatched.");
+        Assert.assertTrue(delta.getFlagUpdateFlags(0).contains("fresh"), "Keyword after a full table should not be dropped.");
+        Assert.assertFalse(delta.getFlagUpdateFlags(0).contains("k0"), "getFlagUpdateFlags() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateUid(1), 2L, "getFlagUpdateUid() mismatched.");
+        Assert.assertEquals(delta.getState().getFlagSnapshot().getKeywords(), new String[] { "fresh", "k1" }, "Keyword table should be rebuilt.");
+    }
+
+    /**
+     * Tests a mailbox with more keywords in use than the keyword table holds is still synchronized, changes of the overflowing keywords being
+     * reported.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncKeywordTableOverflow() throws Exception {
+        final StringBuilder all = new StringBuilder();
+        for (int i = 0; i < MailboxFlagSnapshot.MAX_KEYWORDS + 4; i++) {
+            all.append(" k").append(i);
+        }
+        final String allFlags = all.substring(1);
+        final FlagSnapshotMailboxSynchronizer synchronizer = new FlagSnapshotMailboxSynchronizer();
+        ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", null);
+        futures.get(0).done(response("* 2 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 3] Predicted next UID", "A01 OK done"));
+        stream(1, "* 1 FETCH (UID 1 FLAGS (" + allFlags + "))", "* 2 FETCH (UID 2 FLAGS (k61))", "A02 OK done");
+        MailboxSyncDelta delta = future.get();
+        Assert.assertEquals(delta.getFlagUpdateCount(), 2, "getFlagUpdateCount() mismatched.");
+        final MailboxFlagSnapshot snapshot = delta.getState().getFlagSnapshot();
+        Assert.assertEquals(snapshot.getKeywords().length, MailboxFlagSnapshot.MAX_KEYWORDS, "Keyword table should stay bounded.");
+        Assert.assertTrue(snapshot.hasOverflowKeywords(), "hasOverflowKeywords() mismatched.");
+
+        // message 1 unchanged, overflowing keyword of message 2 replaced
+        future = synchronizer.sync(session, "INBOX", delta.getState());
+        futures.get(2).done(response("* 2 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 3] Predicted next UID", "A03 OK done"));
+        stream(3, "* 1 FETCH (UID 1 FLAGS (" + allFlags + "))", "* 2 FETCH (UID 2 FLAGS (k60))", "A04 OK done");
+        delta = future.get();
+        Assert.assertEquals(delta.getFlagUpdateCount(), 1, "Only the changed message should be reported.");
+        Assert.assertEquals(delta.getFlagUpdateUid(0), 2L, "getFlagUpdateUid() mismatched.");
+    }
+
+    /**
+     * Tests synchronization from a state without flag snapshot reports all messages still in the mailbox, and a UIDVALIDITY change resets.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncWithoutSnapshotAndReset() throws Exception {
+        final FlagSnapshotMailboxSynchronizer synchronizer = new FlagSnapshotMailboxSynchronizer(true);
+        final MailboxSyncState state = new MailboxSyncState(7L, 4L, 100L, MessageNumberRangeSet.parse("1:3"));
+        ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", state);
+        Assert.assertEquals(requests.get(0).getCommandLine(), "EXAMINE INBOX\r\n", "Command line mismatched.");
+        futures.get(0).done(response("* 1 EXISTS", "* OK [UIDVALIDITY 7] UIDVALIDITY", "* OK [HIGHESTMODSEQ 120] Highest", "A01 OK done"));
+        stream(1, "* 1 FETCH (UID 2 FLAGS (\\Seen))", "A02 OK done");
+
+        MailboxSyncDelta delta = future.get();
+        Assert.assertTrue(delta.getNewUids().isEmpty(), "getNewUids() mismatched.");
+        Assert.assertEquals(delta.getVanishedUids().toString(), "1,3", "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 1, "getFlagUpdateCount() mismatched.");
+        Assert.assertEquals(delta.getState().getUidNext(), 4L, "getUidNext() mismatched.");
+        Assert.assertEquals(delta.getState().getHighestModSeq(), 120L, "getHighestModSeq() mismatched.");
+
+        future = synchronizer.sync(session, "INBOX", delta.getState());
+        futures.get(2).done(response("* 0 EXISTS", "* OK [UIDVALIDITY 8] UIDVALIDITY", "A03 OK done"));
+        Assert.assertEquals(requests.size(), 3, "Empty mailbox should not be listed.");
+        delta = future.get();
+        Assert.assertTrue(delta.isReset(), "isReset() mismatched.");
+        Assert.assertTrue(delta.getVanishedUids().isEmpty(), "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getState().getFlagSnapshot(), MailboxFlagSnapshot.EMPTY, "Flag snapshot mismatched.");
+        Assert.assertEquals(delta.getState().getUidValidity(), 8L, "getUidValidity() mismatched.");
+    }
+
+    /**
+     * Tests synchronization fails when a FETCH response is not valid, or the listing fails.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncFailure() throws Exception {
+        final FlagSnapshotMailboxSynchronizer synchronizer = new FlagSnapshotMailboxSynchronizer();
+        ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", null);
+        futures.get(0).done(response("* 1 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "A01 OK done"));
+        stream(1, "* 1 FETCH (UID x FLAGS ())", "A02 OK done");
+        assertFailure(future, FailureType.INVALID_INPUT);
+
+        future = synchronizer.sync(session, "INBOX", null);
+        futures.get(2).done(response("* 1 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "A03 OK done"));
+        futures.get(3).done(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT));
+        assertFailure(future, FailureType.CHANNEL_TIMEOUT);
+
+        future = synchronizer.sync(session, "INBOX", null);
+        futures.get(4).done(response("A05 NO Mailbox does not exist"));
+        assertFailure(future, FailureType.INVALID_INPUT);
+    }
+
+    /**
+     * Asserts the future fails with the given failure type.
+     *
+     * @param future the future
+     * @param failureType the failure type expected
+     * @throws InterruptedException will not throw
+     */
+    private static void assertFailure(final ImapFuture<MailboxSyncDelta> future, final FailureType failureType) throws InterruptedException {
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), failureType, "Failure type mismatched.");
+    }
+}
@@ -11,9 +11,14 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -30,6 +35,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.yahoo.imapnio.async.client.ImapAsyncClient.ImapClientChannelInitializer;
+import com.yahoo.imapnio.async.client.ImapAsyncClient.TransportType;
 import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
@@ -41,13 +47,17 @@ import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ConnectTimeoutException;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.string.StringDecoder;
+import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.string.StringEncoder;
+import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GenericFutureListener;
 
@@ -90,6 +100,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionNoLocalAddressNoSNISuccessful() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -146,9 +157,9 @@ public class ImapAsyncClientTest {
         // following order should be preserved
         Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
         Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ChunkedWriteHandler.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
@@ -182,6 +193,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionNoLocalAddressNoSSLSuccessful() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -236,9 +248,9 @@ public class ImapAsyncClientTest {
         // following order should be preserved
         Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
         Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ChunkedWriteHandler.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
@@ -270,6 +282,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionNoLocalAddressSNIEmptySuccessful() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -325,9 +338,9 @@ public class ImapAsyncClientTest {
         // following order should be preserved
         Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
         Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ChunkedWriteHandler.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
@@ -359,6 +372,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionWithLocalAddressSniSuccessfulSessionDebugOff() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -412,9 +426,9 @@ public class ImapAsyncClientTest {
         // following order should be preserved
         Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
         Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ChunkedWriteHandler.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
@@ -457,6 +471,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionWithLocalAddressSniSuccessfulSessionDebugOn() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -514,9 +529,9 @@ public class ImapAsyncClientTest {
         // following order should be preserved
         Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
         Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ChunkedWriteHandler.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
@@ -547,6 +562,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionNoLocalAddressConnectFailed() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -615,6 +631,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionUnknownHostConnectFailed() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -700,6 +717,7 @@ public class ImapAsyncClientTest {
     public void testCreateSessionConnectionTimeoutFailed() throws SSLException, URISyntaxException, Exception {
 
         final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -774,4 +792,143 @@ public class ImapAsyncClientTest {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests transport selection, native epoll transport is used only when preferred and available.
+     *
+     * @throws SSLException will not throw
+     */
+    @Test
+    public void testTransportType() throws SSLException {
+        Assert.assertFalse(ImapAsyncClient.isEpollUsable(TransportType.NIO), "NIO should not use epoll.");
+        Assert.assertEquals(ImapAsyncClient.isEpollUsable(TransportType.EPOLL), Epoll.isAvailable(), "Epoll usability mismatched.");
+
+        final ImapAsyncClient nioClient = new ImapAsyncClient(1);
+        Assert.assertEquals(nioClient.getTransportType(), TransportType.NIO, "Transport mismatched.");
+        nioClient.shutdown();
+
+        final ImapAsyncClient preferEpollClient = new ImapAsyncClient(1, TransportType.EPOLL);
+        Assert.assertEquals(preferEpollClient.getTransportType(), Epoll.isAvailable() ? TransportType.EPOLL : TransportType.NIO,
+                "Transport mismatched.");
+        preferEpollClient.shutdown();
+
+        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncClient fallbackClient = new ImapAsyncClient(clock, bootstrap, 1, false, logger);
+        Assert.assertEquals(fallbackClient.getTransportType(), TransportType.NIO, "Transport mismatched.");
+        Mockito.verify(bootstrap, Mockito.times(1)).channel(NioSocketChannel.class);
+        fallbackClient.shutdown();
+
+        Assert.assertEquals(TransportType.values().length, 2, "Number of enums mismatched.");
+        Assert.assertSame(TransportType.valueOf("EPOLL"), TransportType.EPOLL, "Enum does not match.");
+    }
+
+    /**
+     * Tests getSslContext method reuses the SslContext across sessions of the same SSL configuration only.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testGetSslContext() throws Exception {
+        final ImapAsyncClient aclient = new ImapAsyncClient(clock, Mockito.mock(Bootstrap.class), Mockito.mock(EventLoopGroup.class),
+                Mockito.mock(Logger.class));
+        final SslContext defaultContext = aclient.getSslContext(null, null);
+        Assert.assertNotNull(defaultContext, "SslContext should not be null.");
+        Assert.assertSame(aclient.getSslContext(null, new ArrayList<String>()), defaultContext, "Default SslContext should be reused.");
+        final SslContext sniContext = aclient.getSslContext(null, Arrays.asList("a.com", "b.com"));
+        Assert.assertNotSame(sniContext, defaultContext, "Sessions of other SNI names should not share the TLS session cache.");
+        Assert.assertSame(aclient.getSslContext(null, Arrays.asList("a.com", "b.com")), sniContext, "SslContext of same SNI names should be reused.");
+        Assert.assertNotSame(aclient.getSslContext(null, Arrays.asList("a.com")), sniContext, "Sessions of other SNI names should not share.");
+
+        final SSLContext jdkContext = buildSSLContext();
+        final SslContext wrapped = aclient.getSslContext(jdkContext, null);
+        Assert.assertNotSame(wrapped, defaultContext, "Caller SSLContext should be used.");
+        final SslContext otherWrapped = aclient.getSslContext(buildSSLContext(), null);
+        Assert.assertNotSame(otherWrapped, wrapped, "Another SSLContext should be wrapped.");
+        Assert.assertSame(aclient.getSslContext(jdkContext, Arrays.asList("a.com")), wrapped, "Wrapper of the same SSLContext should be reused.");
+        Assert.assertSame(aclient.getSslContext(null, null), defaultContext, "Default SslContext should be reused.");
+    }
+
+    /**
+     * Tests getBootstrap method returns one bootstrap per distinct configuration, when called concurrently, without mutating the shared one.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testGetBootstrapConcurrently() throws Exception {
+        final Bootstrap bootstrap = new Bootstrap();
+        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final ImapAsyncClient aclient = new ImapAsyncClient(clock, bootstrap, group, Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config1 = new ImapAsyncSessionConfig();
+        config1.setConnectionTimeoutMillis(1000);
+        config1.setReadTimeoutMillis(2000);
+        final ImapAsyncSessionConfig config2 = new ImapAsyncSessionConfig();
+        config2.setConnectionTimeoutMillis(3000);
+        config2.setReadTimeoutMillis(2000);
+
+        final int numThreads = 8;
+        final long timeoutMillis = 1000L;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Bootstrap>> results = new ArrayList<Future<Bootstrap>>();
+        for (int i = 0; i < numThreads; i++) {
+            final ImapAsyncSessionConfig config = (i % 2 == 0) ? config1 : config2;
+            results.add(executor.submit(new Callable<Bootstrap>() {
+                @Override
+                public Bootstrap call() throws InterruptedException {
+                    start.await();
+                    return aclient.getBootstrap(config);
+                }
+            }));
+        }
+        start.countDown();
+        final Bootstrap bootstrap1 = results.get(0).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        final Bootstrap bootstrap2 = results.get(1).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < numThreads; i++) {
+            Assert.assertSame(results.get(i).get(timeoutMillis, TimeUnit.MILLISECONDS), (i % 2 == 0) ? bootstrap1 : bootstrap2,
+                    "Bootstrap should be shared by the same configuration.");
+        }
+        executor.shutdown();
+
+        Assert.assertNotSame(bootstrap1, bootstrap2, "Bootstraps mismatched.");
+        Assert.assertEquals(bootstrap1.config().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS), Integer.valueOf(1000), "Timeout mismatched.");
+        Assert.assertEquals(bootstrap2.config().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS), Integer.valueOf(3000), "Timeout mismatched.");
+        Assert.assertEquals(bootstrap1.config().handler().getClass(), ImapClientChannelInitializer.class, "Handler mismatched.");
+        Assert.assertSame(bootstrap1.config().group(), group, "Group mismatched.");
+        Assert.assertNull(bootstrap.config().handler(), "Shared bootstrap should not be mutated.");
+        Assert.assertNull(bootstrap.config().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS), "Shared bootstrap should not be mutated.");
+    }
+
+    /**
+     * Tests createSession method with connection admission, holding the connect back while the destination has a connect in flight.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithAdmission() throws Exception {
+        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapAsyncConnectAdmissionConfig admissionConfig = new ImapAsyncConnectAdmissionConfig();
+        admissionConfig.setMaxInFlightConnectsPerDestination(1);
+        final ImapAsyncClient aclient = new ImapAsyncClient(clock, bootstrap, Mockito.mock(EventLoopGroup.class), admissionConfig,
+                Mockito.mock(Logger.class));
+
+        final URI serverUri = new URI(SERVER_URI_STR);
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        final Future<ImapAsyncCreateSessionResponse> future1 = aclient.createSession(serverUri, config, null, null, DebugMode.DEBUG_OFF);
+        final Future<ImapAsyncCreateSessionResponse> future2 = aclient.createSession(serverUri, config, null, null, DebugMode.DEBUG_OFF);
+        Mockito.verify(bootstrap, Mockito.times(1)).connect(Mockito.anyString(), Mockito.anyInt());
+        Assert.assertFalse(future2.isDone(), "Second connect should be queued.");
+
+        // first connect fails, second one is started
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
+        Mockito.when(nettyConnectFuture.cause()).thenReturn(new ConnectTimeoutException("timeout"));
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+        Assert.assertTrue(future1.isDone(), "First future should be done.");
+        Mockito.verify(bootstrap, Mockito.times(2)).connect(Mockito.anyString(), Mockito.anyInt());
+    }
+}
@@ -0,0 +1,244 @@
+package com.yahoo.imapnio.async.client;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@link ImapAsyncConnectAdmission}.
+ */
+public class ImapAsyncConnectAdmissionTest {
+
+    /** Destination A. */
+    private static final String DEST_A = "imap.a.com:993";
+
+    /** Destination B. */
+    private static final String DEST_B = "imap.b.com:993";
+
+    /** Current time in milliseconds of the clock. */
+    private final AtomicLong now = new AtomicLong();
+
+    /** Clock instance. */
+    private Clock clock;
+
+    /** Timer mock. */
+    private ScheduledExecutorService timer;
+
+    /** Admission settings. */
+    private ImapAsyncConnectAdmissionConfig config;
+
+    /**
+     * Sets up instances before each test method.
+     */
+    @BeforeMethod
+    public void beforeMethod() {
+        now.set(1000L);
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(final InvocationOnMock invocation) {
+                return now.get();
+            }
+        });
+        timer = Mockito.mock(ScheduledExecutorService.class);
+        config = new ImapAsyncConnectAdmissionConfig();
+        config.setConnectsPerSecond(0);
+        config.setMaxInFlightConnectsPerDestination(1);
+        config.setMaxQueueWaitMillis(50L);
+    }
+
+    /**
+     * Connect task counting the number of times it is run.
+     */
+    private static final class CountingConnect implements Runnable {
+        /** Number of runs. */
+        private final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+        }
+
+        /**
+         * @return number of runs
+         */
+        int getRuns() {
+            return runs.get();
+        }
+    }
+
+    /**
+     * Tests the maximum number of connects in flight is enforced per destination.
+     */
+    @Test
+    public void testInFlightLimitPerDestination() {
+        final ImapAsyncConnectAdmission admission = new ImapAsyncConnectAdmission(clock, config, timer);
+        final ImapFuture<ImapAsyncCreateSessionResponse> futureA1 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        final CountingConnect connectA1 = new CountingConnect();
+        admission.admit(DEST_A, futureA1, connectA1);
+        Assert.assertEquals(connectA1.getRuns(), 1, "Connect should be started right away.");
+
+        final CountingConnect connectA2 = new CountingConnect();
+        admission.admit(DEST_A, new ImapFuture<ImapAsyncCreateSessionResponse>(), connectA2);
+        Assert.assertEquals(connectA2.getRuns(), 0, "Connect should be queued.");
+        Assert.assertEquals(admission.getQueuedConnects(), 1, "Queued count mismatched.");
+
+        final CountingConnect connectB1 = new CountingConnect();
+        admission.admit(DEST_B, new ImapFuture<ImapAsyncCreateSessionResponse>(), connectB1);
+        Assert.assertEquals(connectB1.getRuns(), 1, "Other destination should not be held back.");
+        Assert.assertEquals(admission.getInFlightConnects(DEST_A), 1, "In flight count mismatched.");
+
+        futureA1.done(new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION));
+        Assert.assertEquals(connectA2.getRuns(), 1, "Connect should be started once a slot is released.");
+        Assert.assertEquals(admission.getQueuedConnects(), 0, "Queued count mismatched.");
+        Assert.assertEquals(admission.getInFlightConnects(DEST_A), 1, "In flight count mismatched.");
+    }
+
+    /**
+     * Tests connects are started at the configured rate.
+     */
+    @Test
+    public void testConnectRate() {
+        config.setMaxInFlightConnectsPerDestination(100);
+        config.setConnectsPerSecond(10);
+        config.setConnectBurst(2);
+        config.setMaxQueueWaitMillis(1000L);
+        final ImapAsyncConnectAdmission admission = new ImapAsyncConnectAdmission(clock, config, timer);
+        final CountingConnect connect = new CountingConnect();
+        for (int i = 0; i < 3; i++) {
+            admission.admit(DEST_A, new ImapFuture<ImapAsyncCreateSessionResponse>(), connect);
+        }
+        Assert.assertEquals(connect.getRuns(), 2, "Only the burst should be started.");
+
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(timer, Mockito.times(1)).schedule(taskCaptor.capture(), Mockito.eq(100L), Mockito.eq(TimeUnit.MILLISECONDS));
+        now.addAndGet(100L);
+        taskCaptor.getValue().run();
+        Assert.assertEquals(connect.getRuns(), 3, "Connect should be started with the refilled token.");
+        Assert.assertEquals(admission.getQueuedConnects(), 0, "Queued count mismatched.");
+    }
+
+    /**
+     * Tests a queued connect fails once its deadline expires, and a cancelled one is dropped.
+     *
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testDeadlineAndCancel() throws InterruptedException {
+        final ImapAsyncConnectAdmission admission = new ImapAsyncConnectAdmission(clock, config, timer);
+        final ImapFuture<ImapAsyncCreateSessionResponse> future1 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        admission.admit(DEST_A, future1, new CountingConnect());
+        final ImapFuture<ImapAsyncCreateSessionResponse> future2 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        final CountingConnect connect2 = new CountingConnect();
+        admission.admit(DEST_A, future2, connect2);
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(timer, Mockito.times(1)).schedule(taskCaptor.capture(), Mockito.eq(50L), Mockito.eq(TimeUnit.MILLISECONDS));
+
+        now.addAndGet(10L);
+        final ImapFuture<ImapAsyncCreateSessionResponse> future3 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        final CountingConnect connect3 = new CountingConnect();
+        admission.admit(DEST_A, future3, connect3);
+        future3.cancel(false);
+
+        now.addAndGet(40L);
+        taskCaptor.getValue().run();
+        Assert.assertTrue(future2.isDone(), "Future should be done.");
+        ExecutionException ex = null;
+        try {
+            future2.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.CONNECTION_ADMISSION_TIMEOUT,
+                "Failure type mismatched.");
+        Assert.assertEquals(connect2.getRuns(), 0, "Expired connect should not be started.");
+
+        future1.cancel(false);
+        Assert.assertEquals(connect3.getRuns(), 0, "Cancelled connect should not be started.");
+        Assert.assertEquals(admission.getQueuedConnects(), 0, "Queued count mismatched.");
+        Assert.assertEquals(admission.getInFlightConnects(DEST_A), 0, "In flight count mismatched.");
+    }
+
+    /**
+     * Tests a connect task throwing fails its session future and releases its slot, and the connects admitted with it are still started.
+     *
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testConnectThrows() throws InterruptedException {
+        final ImapAsyncConnectAdmission admission = new ImapAsyncConnectAdmission(clock, config, timer);
+        final ImapFuture<ImapAsyncCreateSessionResponse> futureA1 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        admission.admit(DEST_A, futureA1, new CountingConnect());
+        final ImapFuture<ImapAsyncCreateSessionResponse> futureA2 = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        admission.admit(DEST_A, futureA2, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("bootstrap failed");
+            }
+        });
+        final CountingConnect connectA3 = new CountingConnect();
+        admission.admit(DEST_A, new ImapFuture<ImapAsyncCreateSessionResponse>(), connectA3);
+        final CountingConnect connectB1 = new CountingConnect();
+        admission.admit(DEST_B, new ImapFuture<ImapAsyncCreateSessionResponse>(), connectB1);
+        Assert.assertEquals(connectB1.getRuns(), 1, "Other destination should not be held back.");
+        Assert.assertEquals(admission.getQueuedConnects(), 2, "Queued count mismatched.");
+
+        futureA1.done(new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION));
+        Assert.assertTrue(futureA2.isDone(), "Future should be done.");
+        ExecutionException ex = null;
+        try {
+            futureA2.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.CONNECTION_FAILED_EXCEPTION,
+                "Failure type mismatched.");
+        Assert.assertEquals(ex.getCause().getCause().getClass(), IllegalStateException.class, "Cause mismatched.");
+        Assert.assertEquals(connectA3.getRuns(), 1, "Next connect should be started once the failed one released its slot.");
+        Assert.assertEquals(admission.getQueuedConnects(), 0, "Queued count mismatched.");
+        Assert.assertEquals(admission.getInFlightConnects(DEST_A), 1, "In flight count mismatched.");
+    }
+
+    /**
+     * Tests many connects queued for a saturated destination are started one per released slot, in arrival order.
+     */
+    @Test
+    public void testSaturatedDestinationOrder() {
+        config.setMaxQueueWaitMillis(1000L);
+        final ImapAsyncConnectAdmission admission = new ImapAsyncConnectAdmission(clock, config, timer);
+        final int count = 1000;
+        final List<ImapFuture<ImapAsyncCreateSessionResponse>> futures = new ArrayList<ImapFuture<ImapAsyncCreateSessionResponse>>();
+        final List<CountingConnect> connects = new ArrayList<CountingConnect>();
+        for (int i = 0; i < count; i++) {
+            futures.add(new ImapFuture<ImapAsyncCreateSessionResponse>());
+            connects.add(new CountingConnect());
+            admission.admit(DEST_A, futures.get(i), connects.get(i));
+        }
+        Assert.assertEquals(admission.getQueuedConnects(), count - 1, "Queued count mismatched.");
+        futures.get(count / 2).cancel(false);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(connects.get(i).getRuns(), (i == count / 2) ? 0 : 1, "Connect should be started in arrival order.");
+            futures.get(i).done(new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION));
+        }
+        Assert.assertEquals(admission.getQueuedConnects(), 0, "Queued count mismatched.");
+        Assert.assertEquals(admission.getInFlightConnects(DEST_A), 0, "In flight count mismatched.");
+    }
+}
@@ -22,6 +22,10 @@ public class ImapAsyncSessionConfigTest {
         final int readTimeout = 2000;
         config.setReadTimeoutMillis(readTimeout);
         Assert.assertEquals(config.getReadTimeoutMillis(), readTimeout, "Result mismatched.");
+
+        Assert.assertFalse(config.isPipeliningEnabled(), "Pipelining should be disabled by default.");
+        config.setPipeliningEnabled(true);
+        Assert.assertTrue(config.isPipeliningEnabled(), "Result mismatched.");
     }
 
 }
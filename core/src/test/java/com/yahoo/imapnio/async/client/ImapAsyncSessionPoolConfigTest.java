@@ -0,0 +1,32 @@
+package com.yahoo.imapnio.async.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ImapAsyncSessionPoolConfig}.
+ */
+public class ImapAsyncSessionPoolConfigTest {
+
+    /**
+     * Tests the default values, getters and setters.
+     */
+    @Test
+    public void testGettersSetters() {
+        final ImapAsyncSessionPoolConfig config = new ImapAsyncSessionPoolConfig();
+        Assert.assertEquals(config.getMaxSessionsPerKey(), ImapAsyncSessionPoolConfig.DEFAULT_MAX_SESSIONS_PER_KEY, "Result mismatched.");
+        Assert.assertEquals(config.getMaxIdleMillis(), ImapAsyncSessionPoolConfig.DEFAULT_MAX_IDLE_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getHealthCheckIdleMillis(), ImapAsyncSessionPoolConfig.DEFAULT_HEALTH_CHECK_IDLE_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getLeakDetectionThresholdMillis(), ImapAsyncSessionPoolConfig.DEFAULT_LEAK_DETECTION_THRESHOLD_MILLIS,
+                "Result mismatched.");
+
+        config.setMaxSessionsPerKey(2);
+        config.setMaxIdleMillis(1000L);
+        config.setHealthCheckIdleMillis(500L);
+        config.setLeakDetectionThresholdMillis(0L);
+        Assert.assertEquals(config.getMaxSessionsPerKey(), 2, "Result mismatched.");
+        Assert.assertEquals(config.getMaxIdleMillis(), 1000L, "Result mismatched.");
+        Assert.assertEquals(config.getHealthCheckIdleMillis(), 500L, "Result mismatched.");
+        Assert.assertEquals(config.getLeakDetectionThresholdMillis(), 0L, "Result mismatched.");
+    }
+}
@@ -0,0 +1,333 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Clock;
+import java.util.Arrays;
+
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.internal.ImapAsyncSessionImpl;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Unit test for {@link ImapAsyncSessionPool}.
+ */
+public class ImapAsyncSessionPoolTest {
+
+    /** Dummy account. */
+    private static final String ACCOUNT = "Argentinosaurus@long.enough";
+
+    /** Server URI. */
+    private URI serverUri;
+
+    /** Clock instance. */
+    private Clock clock;
+
+    /** Logger instance. */
+    private Logger logger;
+
+    /** Pool settings. */
+    private ImapAsyncSessionPoolConfig config;
+
+    /**
+     * Sets up instances before each test method.
+     *
+     * @throws URISyntaxException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws URISyntaxException {
+        serverUri = new URI("imaps://imap.server.com:993");
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1L);
+        logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(true);
+        config = new ImapAsyncSessionPoolConfig();
+        config.setMaxSessionsPerKey(2);
+        config.setHealthCheckIdleMillis(100L);
+        config.setMaxIdleMillis(1000L);
+        config.setLeakDetectionThresholdMillis(500L);
+    }
+
+    /**
+     * Tests borrowing a reserved slot, attaching a session, releasing and borrowing it again.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBorrowAttachReleaseReuse() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+
+        final ImapAsyncSessionLease lease = pool.borrow(serverUri, ACCOUNT);
+        Assert.assertNull(lease.getSession(), "Session should be created by caller.");
+        Assert.assertFalse(lease.isReused(), "isReused() mismatched.");
+        Assert.assertEquals(lease.getBorrowTimeMillis(), 1L, "Borrow time mismatched.");
+        Assert.assertEquals(pool.getLeasedSessionCount(serverUri, ACCOUNT), 1, "Leased count mismatched.");
+        lease.attach(session);
+        pool.release(lease);
+        // releasing again has no effect
+        pool.release(lease);
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 1, "Idle count mismatched.");
+        Assert.assertEquals(pool.getLeasedSessionCount(serverUri, ACCOUNT), 0, "Leased count mismatched.");
+
+        final ImapAsyncSessionLease lease2 = pool.borrow(serverUri, ACCOUNT);
+        Assert.assertSame(lease2.getSession(), session, "Session should be reused.");
+        Assert.assertTrue(lease2.isReused(), "isReused() mismatched.");
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+
+        // different account does not share the session
+        final ImapAsyncSessionLease otherLease = pool.borrow(serverUri, "Sauroposeidon@tallerthan.tree");
+        Assert.assertNull(otherLease.getSession(), "Session should not be shared across accounts.");
+        Mockito.verify(session, Mockito.times(0)).close();
+    }
+
+    /**
+     * Tests the maximum number of sessions per key.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBorrowExhausted() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSessionLease lease1 = pool.borrow(serverUri, ACCOUNT);
+        pool.borrow(serverUri, ACCOUNT);
+
+        ImapAsyncClientException ex = null;
+        try {
+            pool.borrow(serverUri, ACCOUNT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.SESSION_POOL_EXHAUSTED, "FailureType mismatched.");
+
+        // creation failed, reserved slot is given back
+        pool.release(lease1);
+        Assert.assertNotNull(pool.borrow(serverUri, ACCOUNT), "Lease should be granted.");
+    }
+
+    /**
+     * Tests borrowing closes idle sessions whose connection is closed instead of leasing them, and keys without sessions are removed.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBorrowEvictClosedAndRemoveEmptyKey() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSessionImpl closedSession = Mockito.mock(ImapAsyncSessionImpl.class);
+        Mockito.when(closedSession.isChannelClosed()).thenReturn(true);
+        final ImapAsyncSessionImpl openSession = Mockito.mock(ImapAsyncSessionImpl.class);
+
+        final ImapAsyncSessionLease lease1 = pool.borrow(serverUri, ACCOUNT);
+        final ImapAsyncSessionLease lease2 = pool.borrow(serverUri, ACCOUNT);
+        lease1.attach(openSession);
+        lease2.attach(closedSession);
+        pool.release(lease1);
+        pool.release(lease2);
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 2, "Idle count mismatched.");
+
+        final ImapAsyncSessionLease lease = pool.borrow(serverUri, ACCOUNT);
+        Assert.assertSame(lease.getSession(), openSession, "Session with closed connection should not be leased.");
+        Mockito.verify(closedSession, Mockito.times(1)).close();
+        Mockito.verify(openSession, Mockito.times(0)).close();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+
+        pool.invalidate(lease);
+        Assert.assertEquals(pool.getKeyCount(), 0, "Key without session should be removed.");
+
+        // key is added back when borrowed again
+        final ImapAsyncSessionLease newLease = pool.borrow(serverUri, ACCOUNT);
+        Assert.assertNull(newLease.getSession(), "Session should be created by caller.");
+        Assert.assertEquals(pool.getKeyCount(), 1, "Key count mismatched.");
+        Assert.assertEquals(pool.getLeasedSessionCount(serverUri, ACCOUNT), 1, "Leased count mismatched.");
+    }
+
+    /**
+     * Tests invalidating a lease closes the session and frees the slot.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testInvalidate() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSessionLease lease = pool.borrow(serverUri, ACCOUNT);
+        lease.attach(session);
+        pool.invalidate(lease);
+        Mockito.verify(session, Mockito.times(1)).close();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+        Assert.assertEquals(pool.getLeasedSessionCount(serverUri, ACCOUNT), 0, "Leased count mismatched.");
+
+        // lease without a session
+        pool.invalidate(pool.borrow(serverUri, ACCOUNT));
+        Assert.assertEquals(pool.getLeasedSessionCount(serverUri, ACCOUNT), 0, "Leased count mismatched.");
+    }
+
+    /**
+     * Tests maintenance evicting sessions idle too long and verifying sessions with NOOP.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testRunMaintenanceHealthCheckAndEviction() throws ImapAsyncClientException, IOException, ProtocolException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSession goodSession = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession badSession = Mockito.mock(ImapAsyncSession.class);
+        final ImapFuture<ImapAsyncResponse> goodFuture = new ImapFuture<ImapAsyncResponse>();
+        final ImapFuture<ImapAsyncResponse> badFuture = new ImapFuture<ImapAsyncResponse>();
+        Mockito.when(goodSession.execute(Mockito.isA(ImapRequest.class))).thenReturn(goodFuture);
+        Mockito.when(badSession.execute(Mockito.isA(ImapRequest.class))).thenReturn(badFuture);
+
+        final ImapAsyncSessionLease lease1 = pool.borrow(serverUri, ACCOUNT);
+        final ImapAsyncSessionLease lease2 = pool.borrow(serverUri, ACCOUNT);
+        lease1.attach(goodSession);
+        lease2.attach(badSession);
+        pool.release(lease1);
+        pool.release(lease2);
+
+        // not idle long enough, nothing happens
+        Mockito.when(clock.millis()).thenReturn(50L);
+        pool.runMaintenance();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 2, "Idle count mismatched.");
+
+        // health check started, sessions are not borrowable during the check, and still count towards the maximum
+        Mockito.when(clock.millis()).thenReturn(200L);
+        pool.runMaintenance();
+        Mockito.verify(goodSession, Mockito.times(1)).execute(Mockito.isA(ImapRequest.class));
+        Mockito.verify(badSession, Mockito.times(1)).execute(Mockito.isA(ImapRequest.class));
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+        ImapAsyncClientException ex = null;
+        try {
+            pool.borrow(serverUri, ACCOUNT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+
+        // checks not done yet
+        pool.runMaintenance();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+
+        goodFuture.done(new ImapAsyncResponse(Arrays.asList(new IMAPResponse("a1 OK NOOP completed"))));
+        badFuture.done(new ImapAsyncResponse(Arrays.asList(new IMAPResponse("a1 BAD NOOP failed"))));
+        pool.runMaintenance();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 1, "Idle count mismatched.");
+        Mockito.verify(badSession, Mockito.times(1)).close();
+        Mockito.verify(goodSession, Mockito.times(0)).close();
+
+        // idle too long, evicted
+        Mockito.when(clock.millis()).thenReturn(2000L);
+        pool.runMaintenance();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+        Mockito.verify(goodSession, Mockito.times(1)).close();
+    }
+
+    /**
+     * Tests maintenance when health check fails with exception.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testRunMaintenanceHealthCheckException() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        final ImapAsyncSession closedSession = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession failedSession = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(closedSession.execute(Mockito.isA(ImapRequest.class)))
+                .thenThrow(new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL));
+        final ImapFuture<ImapAsyncResponse> failedFuture = new ImapFuture<ImapAsyncResponse>();
+        Mockito.when(failedSession.execute(Mockito.isA(ImapRequest.class))).thenReturn(failedFuture);
+
+        final ImapAsyncSessionLease lease1 = pool.borrow(serverUri, ACCOUNT);
+        final ImapAsyncSessionLease lease2 = pool.borrow(serverUri, ACCOUNT);
+        lease1.attach(closedSession);
+        lease2.attach(failedSession);
+        pool.release(lease1);
+        pool.release(lease2);
+
+        Mockito.when(clock.millis()).thenReturn(200L);
+        pool.runMaintenance();
+        Mockito.verify(closedSession, Mockito.times(1)).close();
+
+        failedFuture.done(new ImapAsyncClientException(FailureType.CHANNEL_DISCONNECTED));
+        pool.runMaintenance();
+        Mockito.verify(failedSession, Mockito.times(1)).close();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+        Assert.assertNotNull(pool.borrow(serverUri, ACCOUNT), "Lease should be granted.");
+    }
+
+    /**
+     * Tests leak detection reports a lease held too long only once.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testRunMaintenanceLeakDetection() throws ImapAsyncClientException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(clock, config, logger);
+        pool.borrow(serverUri, ACCOUNT);
+
+        Mockito.when(clock.millis()).thenReturn(100L);
+        pool.runMaintenance();
+        Mockito.verify(logger, Mockito.times(0)).error(Mockito.anyString(), (Object[]) Mockito.anyVararg());
+
+        Mockito.when(clock.millis()).thenReturn(600L);
+        pool.runMaintenance();
+        pool.runMaintenance();
+        Mockito.verify(logger, Mockito.times(1)).error(Mockito.anyString(), (Object[]) Mockito.anyVararg());
+
+        // leak detection disabled
+        config.setLeakDetectionThresholdMillis(0L);
+        final ImapAsyncSessionPool pool2 = new ImapAsyncSessionPool(clock, config, logger);
+        pool2.borrow(serverUri, ACCOUNT);
+        Mockito.when(clock.millis()).thenReturn(100000L);
+        pool2.runMaintenance();
+        Mockito.verify(logger, Mockito.times(1)).error(Mockito.anyString(), (Object[]) Mockito.anyVararg());
+    }
+
+    /**
+     * Tests shutdown closes idle sessions, rejects borrowing and closes sessions returned afterwards.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws URISyntaxException will not throw
+     */
+    @Test
+    public void testShutdown() throws ImapAsyncClientException, URISyntaxException {
+        final ImapAsyncSessionPool pool = new ImapAsyncSessionPool(new ImapAsyncSessionPoolConfig());
+        final ImapAsyncSession idleSession = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession leasedSession = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSessionLease lease1 = pool.borrow(serverUri, ACCOUNT);
+        final ImapAsyncSessionLease lease2 = pool.borrow(serverUri, ACCOUNT);
+        lease1.attach(idleSession);
+        lease2.attach(leasedSession);
+        pool.release(lease1);
+
+        pool.shutdown();
+        Mockito.verify(idleSession, Mockito.times(1)).close();
+
+        pool.release(lease2);
+        Mockito.verify(leasedSession, Mockito.times(1)).close();
+        Assert.assertEquals(pool.getIdleSessionCount(serverUri, ACCOUNT), 0, "Idle count mismatched.");
+
+        ImapAsyncClientException ex = null;
+        try {
+            pool.borrow(serverUri, ACCOUNT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.SESSION_POOL_SHUTDOWN, "FailureType mismatched.");
+        Assert.assertEquals(pool.getLeasedSessionCount(new URI("imap://unknown.server.com:143"), ACCOUNT), 0, "Leased count mismatched.");
+    }
+}
@@ -0,0 +1,194 @@
+package com.yahoo.imapnio.async.client;
+
+import static com.yahoo.imapnio.async.client.RecordingSession.response;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nonnull;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.imap.CopyUID;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.UIDSet;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.UidCopyMessageCommand;
+import com.yahoo.imapnio.async.request.UidFetchCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Unit test for {@link ImapCommandBatcher}.
+ */
+public class ImapCommandBatcherTest {
+
+    /** Sparse UIDs, 1,3,5,7,9,11. */
+    private static final MessageNumberSet[] UIDS = MessageNumberSet.createMessageNumberSets(new long[] { 1, 3, 5, 7, 9, 11 });
+
+    /** Session mock. */
+    private ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private List<ImapRequest> requests;
+
+    /** Futures returned by the session, one per command. */
+    private List<ImapFuture<ImapAsyncResponse>> futures;
+
+    /**
+     * Sets up the session mock before each test method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws ImapAsyncClientException {
+        final RecordingSession recording = new RecordingSession();
+        session = recording.getSession();
+        requests = recording.getRequests();
+        futures = recording.getFutures();
+    }
+
+    /**
+     * Factory of UID FETCH commands.
+     */
+    private static final class FetchFactory implements ImapCommandBatcher.RequestFactory {
+        @Override
+        public ImapRequest create(@Nonnull final String sequenceSet) {
+            return new UidFetchCommand(sequenceSet, "FLAGS");
+        }
+    }
+
+    /**
+     * Tests commands are issued back to back and their responses are merged.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteBackToBack() throws Exception {
+        final ImapCommandBatcher batcher = new ImapCommandBatcher(session, 5);
+        final ImapFuture<ImapAsyncResponse> future = batcher.execute(UIDS, new FetchFactory());
+        Assert.assertEquals(requests.size(), 1, "Only one command should be in flight.");
+        Assert.assertEquals(requests.get(0).getCommandLine(), "UID FETCH 1,3,5 (FLAGS)\r\n", "Command line mismatched.");
+
+        futures.get(0).done(response("* 1 FETCH (UID 1 FLAGS ())", "* 2 FETCH (UID 3 FLAGS ())", "a1 OK FETCH completed"));
+        Assert.assertEquals(requests.size(), 2, "Next command should be issued.");
+        Assert.assertEquals(requests.get(1).getCommandLine(), "UID FETCH 7,9 (FLAGS)\r\n", "Command line mismatched.");
+        futures.get(1).done(response("* 4 FETCH (UID 7 FLAGS ())", "a2 OK FETCH completed"));
+        Assert.assertFalse(future.isDone(), "Future should not be done.");
+        futures.get(2).done(response("a3 OK FETCH completed"));
+
+        final List<IMAPResponse> lines = new ArrayList<IMAPResponse>(future.get().getResponseLines());
+        Assert.assertEquals(lines.size(), 4, "Merged response lines mismatched.");
+        Assert.assertEquals(lines.get(2).toString(), "* 4 FETCH (UID 7 FLAGS ())", "Merged response lines mismatched.");
+        Assert.assertEquals(lines.get(3).getTag(), "a3", "Tagged response mismatched.");
+    }
+
+    /**
+     * Tests commands are pipelined up to the limit, and no more commands are issued once a tagged response is not OK.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecutePipelinedStopsOnNo() throws Exception {
+        final ImapCommandBatcher batcher = new ImapCommandBatcher(session, 1, 2);
+        final ImapFuture<ImapAsyncResponse> future = batcher.execute(UIDS, new FetchFactory());
+        Assert.assertEquals(requests.size(), 2, "Two commands should be in flight.");
+
+        futures.get(0).done(response("a1 OK FETCH completed"));
+        Assert.assertEquals(requests.size(), 3, "Next command should be issued.");
+        futures.get(1).done(response("a2 NO FETCH failed"));
+        Assert.assertEquals(requests.size(), 3, "No more command should be issued.");
+        Assert.assertFalse(future.isDone(), "Future should wait for the commands in flight.");
+        futures.get(2).done(response("* 3 FETCH (UID 5 FLAGS ())", "a3 OK FETCH completed"));
+
+        final List<IMAPResponse> lines = new ArrayList<IMAPResponse>(future.get().getResponseLines());
+        Assert.assertEquals(lines.size(), 2, "Merged response lines mismatched.");
+        Assert.assertEquals(lines.get(1).getTag(), "a2", "First failed tagged response should be the last line.");
+        Assert.assertTrue(lines.get(1).isNO(), "Tagged response mismatched.");
+    }
+
+    /**
+     * Tests the merged future fails when a command fails, or message numbers are empty.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteFailure() throws Exception {
+        final ImapCommandBatcher batcher = new ImapCommandBatcher(session, 5);
+        final ImapFuture<ImapAsyncResponse> future = batcher.execute(UIDS, new FetchFactory());
+        futures.get(0).done(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT));
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.CHANNEL_TIMEOUT, "Failure type mismatched.");
+        Assert.assertEquals(requests.size(), 1, "No more command should be issued.");
+
+        ImapAsyncClientException actual = null;
+        try {
+            batcher.execute(new MessageNumberSet[0], new FetchFactory());
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Expect exception to be thrown.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests COPYUID of all commands are merged.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteCopyUid() throws Exception {
+        final ImapCommandBatcher batcher = new ImapCommandBatcher(session, 8, 2);
+        final ImapFuture<CopyUID> future = batcher.executeCopyUid(UIDS, new ImapCommandBatcher.RequestFactory() {
+            @Override
+            public ImapRequest create(@Nonnull final String sequenceSet) {
+                return new UidCopyMessageCommand(sequenceSet, "Archive");
+            }
+        });
+        Assert.assertEquals(requests.get(0).getCommandLine(), "UID COPY 1,3,5,7 Archive\r\n", "Command line mismatched.");
+        futures.get(0).done(response("a1 OK [COPYUID 38505 1,3,5,7 101:104] Done"));
+        futures.get(1).done(response("a2 OK [COPYUID 38505 9,11 105:106] Done"));
+
+        final CopyUID copyUid = future.get();
+        Assert.assertEquals(copyUid.uidvalidity, 38505L, "uidvalidity mismatched.");
+        Assert.assertEquals(UIDSet.toString(copyUid.src), "1,3,5,7,9,11", "src mismatched.");
+        Assert.assertEquals(Arrays.toString(UIDSet.toArray(copyUid.dst)), "[101, 102, 103, 104, 105, 106]", "dst mismatched.");
+    }
+
+    /**
+     * Tests the merged COPYUID future fails when a command does not return COPYUID.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteCopyUidMissing() throws Exception {
+        final ImapCommandBatcher batcher = new ImapCommandBatcher(session, 100);
+        final ImapFuture<CopyUID> future = batcher.executeCopyUid(UIDS, new ImapCommandBatcher.RequestFactory() {
+            @Override
+            public ImapRequest create(@Nonnull final String sequenceSet) {
+                return new UidCopyMessageCommand(sequenceSet, "Archive");
+            }
+        });
+        futures.get(0).done(response("a1 NO [TRYCREATE] No such mailbox"));
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
@@ -8,10 +8,16 @@ import static org.testng.Assert.assertTrue;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -187,4 +193,205 @@ public class ImapFutureTest {
         imapFuture.get(mockTimeoutForFailure, TimeUnit.MILLISECONDS);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests listeners are notified upon completion with result, and listener added after completion is notified right away.
+     */
+    @Test
+    public void testAddListenerSuccess() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final List<Object> notified = new ArrayList<Object>();
+        final ImapFutureListener<ImapAsyncResponse> listener = new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse result) {
+                notified.add(result);
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                notified.add(cause);
+            }
+        };
+        Assert.assertSame(imapFuture.addListener(listener), imapFuture, "Future mismatched.");
+        Assert.assertEquals(notified.size(), 0, "Listener should not be notified yet.");
+
+        imapFuture.done(imapAsyncResp);
+        imapFuture.done(imapAsyncResp);
+        Assert.assertEquals(notified.size(), 1, "Listener should be notified once.");
+        Assert.assertSame(notified.get(0), imapAsyncResp, "Result mismatched.");
+
+        imapFuture.addListener(listener);
+        Assert.assertEquals(notified.size(), 2, "Listener should be notified right away.");
+        Assert.assertSame(notified.get(1), imapAsyncResp, "Result mismatched.");
+    }
+
+    /**
+     * Tests listeners are notified upon failure and cancellation, and a faulty listener does not prevent others from being notified.
+     */
+    @Test
+    public void testAddListenerFailure() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final List<Exception> causes = new ArrayList<Exception>();
+        final ImapFutureListener<ImapAsyncResponse> faulty = new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse result) {
+                throw new IllegalStateException("should not be called");
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                throw new IllegalStateException("faulty listener");
+            }
+        };
+        final ImapFutureListener<ImapAsyncResponse> listener = new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse result) {
+                Assert.fail("should not be called");
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                causes.add(cause);
+            }
+        };
+        imapFuture.addListener(faulty).addListener(listener);
+        final Exception cause = new Exception("test");
+        imapFuture.done(cause);
+        Assert.assertEquals(causes.size(), 1, "Listener should be notified once.");
+        Assert.assertSame(causes.get(0), cause, "Cause mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> cancelledFuture = new ImapFuture<ImapAsyncResponse>();
+        cancelledFuture.addListener(listener);
+        cancelledFuture.cancel(true);
+        Assert.assertEquals(causes.size(), 2, "Listener should be notified.");
+        Assert.assertEquals(causes.get(1).getClass(), CancellationException.class, "Cause mismatched.");
+    }
+
+    /**
+     * Tests listeners are invoked through the given executor, and on the completing thread when the executor rejects the task.
+     */
+    @Test
+    public void testAddListenerWithExecutor() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                tasks.add(command);
+            }
+        };
+        final Executor rejecting = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        final List<ImapAsyncResponse> results = new ArrayList<ImapAsyncResponse>();
+        final ImapFutureListener<ImapAsyncResponse> listener = new ImapFutureListener<ImapAsyncResponse>() {
+            @Override
+            public void onSuccess(final ImapAsyncResponse result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onFailure(final Exception cause) {
+                Assert.fail("should not be called");
+            }
+        };
+        imapFuture.addListener(listener, executor);
+        imapFuture.addListener(listener, rejecting);
+        imapFuture.done(imapAsyncResp);
+        Assert.assertEquals(tasks.size(), 1, "Listener should be handed to executor.");
+        Assert.assertEquals(results.size(), 1, "Rejected listener should be invoked on completing thread.");
+
+        tasks.get(0).run();
+        Assert.assertEquals(results.size(), 2, "Listener should be notified.");
+    }
+
+    /**
+     * Tests toCompletableFuture when this future is completed with result, exception, and when the returned future is cancelled.
+     *
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testToCompletableFuture() throws InterruptedException, ExecutionException {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final CompletableFuture<ImapAsyncResponse> cf = imapFuture.toCompletableFuture();
+        Assert.assertFalse(cf.isDone(), "CompletableFuture should not be done.");
+        imapFuture.done(imapAsyncResp);
+        Assert.assertSame(cf.get(), imapAsyncResp, "Result mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> failedFuture = new ImapFuture<ImapAsyncResponse>();
+        final Exception cause = new Exception("test");
+        failedFuture.done(cause);
+        final CompletableFuture<ImapAsyncResponse> failedCf = failedFuture.toCompletableFuture(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        });
+        Assert.assertTrue(failedCf.isCompletedExceptionally(), "CompletableFuture should fail.");
+        ExecutionException ex = null;
+        try {
+            failedCf.get();
+        } catch (final ExecutionException ee) {
+            ex = ee;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertSame(ex.getCause(), cause, "Cause mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> cancelledFuture = new ImapFuture<ImapAsyncResponse>();
+        cancelledFuture.toCompletableFuture().cancel(true);
+        Assert.assertTrue(cancelledFuture.isCancelled(), "Future should be cancelled.");
+    }
+
+    /**
+     * Tests threads blocked in get are woken up, and every listener is notified exactly once when listeners are added concurrently with completion.
+     *
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     * @throws TimeoutException will not throw
+     */
+    @Test
+    public void testConcurrentCompletion() throws InterruptedException, ExecutionException, TimeoutException {
+        final int numOfListeners = 2000;
+        for (int round = 0; round < 20; round++) {
+            final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+            final AtomicInteger notified = new AtomicInteger(0);
+            final ImapFutureListener<ImapAsyncResponse> listener = new ImapFutureListener<ImapAsyncResponse>() {
+                @Override
+                public void onSuccess(final ImapAsyncResponse result) {
+                    notified.incrementAndGet();
+                }
+
+                @Override
+                public void onFailure(final Exception cause) {
+                    Assert.fail("should not be called");
+                }
+            };
+            final CompletableFuture<ImapAsyncResponse> waiter = CompletableFuture.supplyAsync(new Supplier<ImapAsyncResponse>() {
+                @Override
+                public ImapAsyncResponse get() {
+                    try {
+                        return imapFuture.get();
+                    } catch (final InterruptedException | ExecutionException e) {
+                        return null;
+                    }
+                }
+            });
+            final Thread adder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < numOfListeners; i++) {
+                        imapFuture.addListener(listener);
+                    }
+                }
+            });
+            adder.start();
+            imapFuture.done(imapAsyncResp);
+            adder.join();
+            Assert.assertEquals(notified.get(), numOfListeners, "Every listener should be notified exactly once.");
+            Assert.assertSame(waiter.get(TIME_OUT_MILLIS, TimeUnit.MILLISECONDS), imapAsyncResp, "Result mismatched.");
+        }
+    }
+}
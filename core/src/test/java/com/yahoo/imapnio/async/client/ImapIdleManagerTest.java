@@ -0,0 +1,299 @@
+package com.yahoo.imapnio.async.client;
+
+import static com.yahoo.imapnio.async.client.RecordingSession.response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.NoopCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * Unit test for {@link ImapIdleManager}.
+ */
+public class ImapIdleManagerTest {
+
+    /** Session mock. */
+    private ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private List<ImapRequest> requests;
+
+    /** Futures returned by the session, one per command. */
+    private List<ImapFuture<ImapAsyncResponse>> futures;
+
+    /** Timer mock. */
+    private Timer timer;
+
+    /** Delays in milliseconds of the timeouts scheduled on the timer. */
+    private List<Long> delays;
+
+    /** Timeouts scheduled on the timer. */
+    private List<Timeout> timeouts;
+
+    /** Tasks scheduled on the timer. */
+    private List<TimerTask> tasks;
+
+    /** Events received by the listener. */
+    private List<MailboxEvent> events;
+
+    /** Stop notifications received by the listener, the cause or a string when stopped without failure. */
+    private List<Object> stops;
+
+    /** Listener recording the events and stops. */
+    private ImapIdleListener listener;
+
+    /**
+     * Sets up the session and timer mocks before each test method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws ImapAsyncClientException {
+        final RecordingSession recording = new RecordingSession(ImapUntaggedResponseSource.class);
+        session = recording.getSession();
+        requests = recording.getRequests();
+        futures = recording.getFutures();
+
+        delays = new ArrayList<Long>();
+        timeouts = new ArrayList<Timeout>();
+        tasks = new ArrayList<TimerTask>();
+        timer = Mockito.mock(Timer.class);
+        final Answer<Timeout> newTimeout = new Answer<Timeout>() {
+            @Override
+            public Timeout answer(final InvocationOnMock invocation) {
+                tasks.add((TimerTask) invocation.getArguments()[0]);
+                delays.add((Long) invocation.getArguments()[1]);
+                final Timeout timeout = Mockito.mock(Timeout.class);
+                timeouts.add(timeout);
+                return timeout;
+            }
+        };
+        Mockito.when(timer.newTimeout(Mockito.any(TimerTask.class), Mockito.anyLong(), Mockito.any(TimeUnit.class))).thenAnswer(newTimeout);
+
+        events = new ArrayList<MailboxEvent>();
+        stops = new ArrayList<Object>();
+        listener = new ImapIdleListener() {
+            @Override
+            public void onEvent(final ImapAsyncSession s, final MailboxEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(final ImapAsyncSession s, final ImapAsyncClientException cause) {
+                stops.add("error");
+            }
+
+            @Override
+            public void onStopped(final ImapAsyncSession s, final Exception cause) {
+                stops.add((cause != null) ? cause : "stopped");
+            }
+        };
+    }
+
+    /**
+     * Streams a response to the IDLE command at the given index, as the session does.
+     *
+     * @param index index of the IDLE command
+     * @param line response line
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private void stream(final int index, final String line) throws IOException, ProtocolException {
+        requests.get(index).getStreamingResponsesQueue().add(new IMAPResponse(line));
+    }
+
+    /**
+     * Tests events are delivered as they arrive, and IDLE is re-armed when its jittered timeout expires.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testEventsAndRearm() throws Exception {
+        final ImapIdleManager manager = new ImapIdleManager(timer, TimeUnit.MINUTES.toMillis(20), TimeUnit.MINUTES.toMillis(2));
+        final ImapIdleManager.IdleHandle handle = manager.start(session, listener);
+        Assert.assertSame(handle.getSession(), session, "getSession() mismatched.");
+        Assert.assertTrue(handle.isIdling(), "isIdling() mismatched.");
+        Assert.assertEquals(requests.size(), 1, "IDLE should be executed.");
+        Assert.assertTrue(requests.get(0) instanceof IdleCommand, "IDLE should be executed.");
+        Assert.assertEquals(timeouts.size(), 1, "Re-arm timeout should be scheduled.");
+        Assert.assertTrue(delays.get(0) >= TimeUnit.MINUTES.toMillis(18) && delays.get(0) <= TimeUnit.MINUTES.toMillis(20), "Delay mismatched.");
+
+        stream(0, "+ idling");
+        stream(0, "* 23 EXISTS");
+        stream(0, "* OK Still here");
+        stream(0, "* VANISHED 101:102");
+        Assert.assertEquals(events.size(), 2, "Events should be delivered.");
+        Assert.assertEquals(events.get(0).getMessageNumber(), 23, "getMessageNumber() mismatched.");
+        Assert.assertEquals(events.get(1).getVanishedUids().toString(), "101:102", "getVanishedUids() mismatched.");
+        Assert.assertTrue(requests.get(0).getStreamingResponsesQueue().isEmpty(), "Events should not be kept.");
+
+        tasks.get(0).run(timeouts.get(0));
+        Assert.assertFalse(handle.isIdling(), "isIdling() mismatched.");
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(requests.get(0));
+
+        futures.get(0).done(response("A1 OK IDLE terminated"));
+        Assert.assertEquals(requests.size(), 2, "IDLE should be executed again.");
+        Assert.assertTrue(requests.get(1) instanceof IdleCommand, "IDLE should be executed again.");
+        Assert.assertEquals(timeouts.size(), 2, "Re-arm timeout should be scheduled again.");
+        Assert.assertTrue(handle.isIdling(), "isIdling() mismatched.");
+
+        tasks.get(0).run(timeouts.get(0)); // stale timeout is ignored
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(Mockito.any(ImapRequest.class));
+        Assert.assertTrue(stops.isEmpty(), "Listener should not be notified of a stop.");
+    }
+
+    /**
+     * Tests commands suspend IDLE, DONE waits for the continuation request, and IDLE is resumed once the commands are done.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecute() throws Exception {
+        final ImapIdleManager.IdleHandle handle = new ImapIdleManager(timer).start(session, listener);
+        final ImapFuture<ImapAsyncResponse> noop1 = handle.execute(new NoopCommand());
+        final ImapFuture<ImapAsyncResponse> noop2 = handle.execute(new NoopCommand());
+        Mockito.verify(timeouts.get(0)).cancel();
+        Mockito.verify(session, Mockito.never()).terminateCommand(Mockito.any(ImapRequest.class));
+
+        stream(0, "+ idling");
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(requests.get(0));
+
+        futures.get(0).done(response("A1 OK IDLE terminated"));
+        Assert.assertEquals(requests.size(), 2, "First command should be executed.");
+        Assert.assertTrue(requests.get(1) instanceof NoopCommand, "First command should be executed.");
+
+        futures.get(1).done(response("A2 OK NOOP completed"));
+        Assert.assertTrue(noop1.isDone(), "First command future should be done.");
+        Assert.assertEquals(requests.size(), 3, "Second command should be executed.");
+        Assert.assertTrue(requests.get(2) instanceof NoopCommand, "Second command should be executed.");
+
+        futures.get(2).done(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT));
+        ExecutionException ex = null;
+        try {
+            noop2.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(requests.size(), 4, "IDLE should be resumed.");
+        Assert.assertTrue(requests.get(3) instanceof IdleCommand, "IDLE should be resumed.");
+        Assert.assertTrue(handle.isIdling(), "isIdling() mismatched.");
+    }
+
+    /**
+     * Tests stopping, and IDLE failures stopping the session.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStop() throws Exception {
+        final ImapIdleManager manager = new ImapIdleManager(timer);
+        final ImapIdleManager.IdleHandle handle = manager.start(session, listener);
+        stream(0, "+ idling");
+        handle.stop();
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(requests.get(0));
+        futures.get(0).done(response("A1 OK IDLE terminated"));
+        Assert.assertEquals(stops.size(), 1, "Listener should be notified of the stop.");
+        Assert.assertEquals(stops.get(0), "stopped", "Stop cause mismatched.");
+        Assert.assertEquals(requests.size(), 1, "IDLE should not be executed again.");
+
+        ImapAsyncClientException ex = null;
+        try {
+            handle.execute(new NoopCommand());
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.COMMAND_NOT_ALLOWED, "Failure type mismatched.");
+
+        manager.start(session, listener);
+        futures.get(1).done(response("A2 NO IDLE not allowed"));
+        Assert.assertEquals(((ImapAsyncClientException) stops.get(1)).getFailureType(), FailureType.COMMAND_NOT_ALLOWED, "Stop cause mismatched.");
+
+        manager.start(session, listener);
+        futures.get(2).done(new ImapAsyncClientException(FailureType.CHANNEL_DISCONNECTED));
+        Assert.assertEquals(((ImapAsyncClientException) stops.get(2)).getFailureType(), FailureType.CHANNEL_DISCONNECTED, "Stop cause mismatched.");
+        Assert.assertEquals(requests.size(), 3, "IDLE should not be executed again.");
+    }
+
+    /**
+     * Tests a failing listener is logged without breaking the session, and events received while a command is executed are delivered too.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testListenerFailureAndEventsDuringCommand() throws Exception {
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapIdleManager manager = new ImapIdleManager(timer, TimeUnit.MINUTES.toMillis(20), TimeUnit.MINUTES.toMillis(2), logger);
+        final ImapIdleListener failing = Mockito.mock(ImapIdleListener.class);
+        Mockito.doThrow(new IllegalStateException()).when(failing).onEvent(Mockito.any(ImapAsyncSession.class), Mockito.any(MailboxEvent.class));
+        final ImapIdleManager.IdleHandle failingHandle = manager.start(session, failing);
+        stream(0, "* 3 EXISTS");
+        Mockito.verify(failing, Mockito.times(1)).onEvent(Mockito.any(ImapAsyncSession.class), Mockito.any(MailboxEvent.class));
+        Mockito.verify(logger, Mockito.times(1)).error(Mockito.anyString(), Mockito.anyString(), Mockito.any(), Mockito.any(Exception.class));
+        Assert.assertTrue(failingHandle.isIdling(), "Session should keep idling.");
+
+        final ArgumentCaptor<ImapUntaggedResponseListener> captor = ArgumentCaptor.forClass(ImapUntaggedResponseListener.class);
+        final ImapIdleManager.IdleHandle handle = manager.start(session, listener);
+        Mockito.verify((ImapUntaggedResponseSource) session, Mockito.times(2)).addUntaggedResponseListener(captor.capture());
+        final ImapUntaggedResponseListener forwarder = captor.getValue();
+        final MailboxEvent exists = MailboxEvent.ofExists(7);
+        forwarder.onMailboxEvent(session, exists);
+        Assert.assertTrue(events.isEmpty(), "Events while idling come from the IDLE responses only.");
+
+        handle.execute(new NoopCommand());
+        stream(1, "+ idling");
+        futures.get(1).done(response("A2 OK IDLE terminated"));
+        Assert.assertTrue(requests.get(2) instanceof NoopCommand, "Command should be executed.");
+        forwarder.onMailboxEvent(session, exists);
+        Assert.assertEquals(events.size(), 1, "Event received while the command is executed should be delivered.");
+        Assert.assertSame(events.get(0), exists, "Event mismatched.");
+
+        handle.stop();
+        futures.get(2).done(response("A3 OK NOOP completed"));
+        Mockito.verify((ImapUntaggedResponseSource) session, Mockito.times(1)).removeUntaggedResponseListener(forwarder);
+        Assert.assertEquals(stops.get(0), "stopped", "Stop cause mismatched.");
+    }
+
+    /**
+     * Tests the re-arm interval and jitter are validated.
+     */
+    @Test
+    public void testInvalidIntervals() {
+        final long[][] invalids = { { 0, 0 }, { TimeUnit.MINUTES.toMillis(30), 0 }, { 1000, 1000 }, { 1000, -1 } };
+        for (final long[] invalid : invalids) {
+            ImapAsyncClientException ex = null;
+            try {
+                new ImapIdleManager(timer, invalid[0], invalid[1]);
+            } catch (final ImapAsyncClientException e) {
+                ex = e;
+            }
+            Assert.assertNotNull(ex, "Expect exception to be thrown.");
+            Assert.assertEquals(ex.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.IdleCommand;
+
+/**
+ * Unit test for {@link MailboxEventReader}.
+ */
+public class MailboxEventReaderTest {
+
+    /**
+     * Tests events streamed to the queue of an IdleCommand are decoded in order, and other responses are dropped.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testPoll() throws Exception {
+        final ConcurrentLinkedQueue<IMAPResponse> queue = new ConcurrentLinkedQueue<IMAPResponse>();
+        final IdleCommand idle = new IdleCommand(queue);
+        final MailboxEventReader reader = new MailboxEventReader(idle.getStreamingResponsesQueue());
+        Assert.assertNull(reader.poll(), "Queue should have no event.");
+
+        queue.add(new IMAPResponse("+ idling"));
+        queue.add(new IMAPResponse("* STATUS \"Lists &AOQ-\" (MESSAGES 3 UIDNEXT 104 UNSEEN 2)"));
+        queue.add(new IMAPResponse("* 23 EXISTS"));
+        queue.add(new IMAPResponse("* 23 FETCH (UID 104 FLAGS (\\Seen))"));
+        queue.add(new IMAPResponse("* OK Still here"));
+        queue.add(new IMAPResponse("* 12 EXPUNGE"));
+        queue.add(new IMAPResponse("* VANISHED 101:102,105"));
+        queue.add(new IMAPResponse("* LIST () \"/\" \"New &AOQ-\" (\"OLDNAME\" (\"Old\"))"));
+        queue.add(new IMAPResponse("* LIST (\\NonExistent) \"/\" Trash"));
+
+        MailboxEvent event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.STATUS, "getType() mismatched.");
+        Assert.assertEquals(event.getMailboxName(), "Lists ä", "getMailboxName() mismatched.");
+        Assert.assertEquals(event.getStatus().uidnext, 104L, "getStatus() mismatched.");
+        Assert.assertEquals(event.getStatus().total, 3, "getStatus() mismatched.");
+        Assert.assertEquals(event.getMessageNumber(), -1, "getMessageNumber() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.EXISTS, "getType() mismatched.");
+        Assert.assertEquals(event.getMessageNumber(), 23, "getMessageNumber() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.FETCH, "getType() mismatched.");
+        Assert.assertEquals(event.getMessageNumber(), 23, "getMessageNumber() mismatched.");
+        Assert.assertEquals(event.getFetchMessage().getUid(), 104L, "getFetchMessage() mismatched.");
+        Assert.assertTrue(event.getFetchMessage().getFlags().contains(Flags.Flag.SEEN), "getFetchMessage() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.EXPUNGE, "getType() mismatched.");
+        Assert.assertEquals(event.getMessageNumber(), 12, "getMessageNumber() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.VANISHED, "getType() mismatched.");
+        Assert.assertEquals(event.getVanishedUids().toString(), "101:102,105", "getVanishedUids() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getType(), MailboxEvent.Type.MAILBOX_NAME, "getType() mismatched.");
+        Assert.assertEquals(event.getMailboxName(), "New ä", "getMailboxName() mismatched.");
+        Assert.assertEquals(event.getOldMailboxName(), "Old", "getOldMailboxName() mismatched.");
+        Assert.assertFalse(event.isMailboxDeleted(), "isMailboxDeleted() mismatched.");
+        Assert.assertEquals(event.getListInfo().separator, '/', "getListInfo() mismatched.");
+
+        event = reader.poll();
+        Assert.assertEquals(event.getMailboxName(), "Trash", "getMailboxName() mismatched.");
+        Assert.assertNull(event.getOldMailboxName(), "getOldMailboxName() mismatched.");
+        Assert.assertTrue(event.isMailboxDeleted(), "isMailboxDeleted() mismatched.");
+        Assert.assertNull(event.getStatus(), "getStatus() mismatched.");
+
+        Assert.assertNull(reader.poll(), "Queue should have no more event.");
+        Assert.assertTrue(queue.isEmpty(), "Queue should be drained.");
+    }
+
+    /**
+     * Tests decoding fails on an invalid event response, and tagged responses are not events.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testDecodeInvalid() throws Exception {
+        Assert.assertNull(MailboxEventReader.decode(new IMAPResponse("a1 OK NOTIFY completed")), "Tagged response is not an event.");
+        ImapAsyncClientException actual = null;
+        try {
+            MailboxEventReader.decode(new IMAPResponse("* STATUS INBOX MESSAGES 3"));
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Expect exception to be thrown.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
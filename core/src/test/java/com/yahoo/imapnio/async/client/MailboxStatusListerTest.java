@@ -0,0 +1,158 @@
+package com.yahoo.imapnio.async.client;
+
+import static com.yahoo.imapnio.async.client.RecordingSession.response;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.ListStatusResult;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Unit test for {@link MailboxStatusLister}.
+ */
+public class MailboxStatusListerTest {
+
+    /** Status items. */
+    private static final String[] ITEMS = { "MESSAGES", "UNSEEN" };
+
+    /** Session mock. */
+    private ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private List<ImapRequest> requests;
+
+    /** Futures returned by the session, one per command. */
+    private List<ImapFuture<ImapAsyncResponse>> futures;
+
+    /**
+     * Sets up the session mock before each test method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws ImapAsyncClientException {
+        final RecordingSession recording = new RecordingSession();
+        session = recording.getSession();
+        requests = recording.getRequests();
+        futures = recording.getFutures();
+    }
+
+    /**
+     * @param names capability names
+     * @return the capabilities
+     */
+    private static Capability capability(final String... names) {
+        final Map<String, List<String>> capas = new HashMap<String, List<String>>();
+        for (final String name : names) {
+            capas.put(name, Collections.singletonList(name));
+        }
+        return new Capability(capas);
+    }
+
+    /**
+     * Tests a single LIST command with the STATUS return option is executed when the server supports LIST-STATUS.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testListWithListStatus() throws Exception {
+        final MailboxStatusLister lister = new MailboxStatusLister(capability("IMAP4REV1", "LIST-STATUS"), 2);
+        final ImapFuture<ListStatusResult> future = lister.list(session, "", "*", ITEMS);
+        Assert.assertEquals(requests.size(), 1, "Only LIST should be executed.");
+        Assert.assertEquals(requests.get(0).getCommandLine(), "LIST \"\" \"*\" RETURN (STATUS (MESSAGES UNSEEN))\r\n", "Command line mismatched.");
+
+        futures.get(0).done(response("* LIST () \".\" \"INBOX\"", "* STATUS \"INBOX\" (MESSAGES 17 UNSEEN 16)", "* LIST (\\Noselect) \".\" \"foo\"",
+                "a1 OK List completed."));
+        final ListStatusResult result = future.get();
+        Assert.assertEquals(result.getListInfoList().getListInfo().size(), 2, "ListInfo count mismatched.");
+        Assert.assertEquals(result.getStatus("INBOX").total, 17, "MESSAGES mismatched.");
+        Assert.assertNull(result.getStatus("foo"), "Mailbox which cannot be selected should have no status.");
+    }
+
+    /**
+     * Tests LIST then pipelined STATUS commands are executed when the server does not support LIST-STATUS.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testListWithStatusFallback() throws Exception {
+        final MailboxStatusLister lister = new MailboxStatusLister(capability("IMAP4REV1"), 2);
+        final ImapFuture<ListStatusResult> future = lister.list(session, "", "*", ITEMS);
+        Assert.assertEquals(requests.get(0).getCommandLine(), "LIST \"\" \"*\"\r\n", "Command line mismatched.");
+
+        futures.get(0).done(response("* LIST () \".\" \"INBOX\"", "* LIST (\\Noselect) \".\" \"foo\"", "* LIST () \".\" \"Lists &AOQ-\"",
+                "* LIST (\\NonExistent) \".\" \"gone\"", "* LIST () \".\" \"Trash\"", "a1 OK List completed."));
+        Assert.assertEquals(requests.size(), 3, "STATUS commands should be pipelined up to the limit.");
+        Assert.assertEquals(requests.get(1).getCommandLine(), "STATUS INBOX (MESSAGES UNSEEN)\r\n", "Command line mismatched.");
+        Assert.assertEquals(requests.get(2).getCommandLine(), "STATUS \"Lists &AOQ-\" (MESSAGES UNSEEN)\r\n", "Command line mismatched.");
+
+        futures.get(2).done(response("a3 NO Mailbox does not exist"));
+        Assert.assertEquals(requests.size(), 4, "Next STATUS should be executed.");
+        Assert.assertEquals(requests.get(3).getCommandLine(), "STATUS Trash (MESSAGES UNSEEN)\r\n", "Command line mismatched.");
+        futures.get(3).done(response("* STATUS \"Trash\" (MESSAGES 2 UNSEEN 0)", "a4 OK STATUS completed"));
+        Assert.assertFalse(future.isDone(), "Future should wait for all STATUS commands.");
+
+        futures.get(1).done(response("* STATUS \"INBOX\" (MESSAGES 17 UNSEEN 16)", "a2 OK STATUS completed"));
+        final ListStatusResult result = future.get();
+        Assert.assertEquals(requests.size(), 4, "Commands count mismatched.");
+        Assert.assertEquals(result.getListInfoList().getListInfo().size(), 5, "ListInfo count mismatched.");
+        Assert.assertEquals(result.getStatuses().size(), 2, "Status count mismatched.");
+        Assert.assertEquals(result.getStatus("INBOX").unseen, 16, "UNSEEN mismatched.");
+        Assert.assertEquals(result.getStatus("Trash").total, 2, "MESSAGES mismatched.");
+        Assert.assertNull(result.getStatus("Lists ä"), "Mailbox whose STATUS failed should have no status.");
+    }
+
+    /**
+     * Tests the result fails when LIST or a STATUS command fails.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testListFailure() throws Exception {
+        final MailboxStatusLister lister = new MailboxStatusLister(capability("IMAP4REV1"), 1);
+        ImapFuture<ListStatusResult> future = lister.list(session, "", "*", ITEMS);
+        futures.get(0).done(response("a1 BAD LIST failed"));
+        assertFailure(future, FailureType.INVALID_INPUT);
+
+        future = lister.list(session, "", "*", ITEMS);
+        futures.get(1).done(response("* LIST () \".\" \"INBOX\"", "* LIST () \".\" \"Trash\"", "a2 OK List completed."));
+        Assert.assertEquals(requests.size(), 3, "STATUS commands should be issued back to back.");
+        futures.get(2).done(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT));
+        assertFailure(future, FailureType.CHANNEL_TIMEOUT);
+        Assert.assertEquals(requests.size(), 3, "No more STATUS should be executed.");
+
+        future = lister.list(session, "", "nothing*", ITEMS);
+        futures.get(3).done(response("a4 OK List completed."));
+        Assert.assertTrue(future.get().getStatuses().isEmpty(), "Status count mismatched.");
+    }
+
+    /**
+     * Asserts the future fails with the given failure type.
+     *
+     * @param future the future
+     * @param failureType the failure type expected
+     * @throws InterruptedException will not throw
+     */
+    private static void assertFailure(final ImapFuture<ListStatusResult> future, final FailureType failureType) throws InterruptedException {
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), failureType, "Failure type mismatched.");
+    }
+}
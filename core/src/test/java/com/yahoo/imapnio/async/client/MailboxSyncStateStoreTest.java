@@ -0,0 +1,278 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.data.MailboxFlagSnapshot;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Unit test for {@link MailboxSyncStateStore}.
+ */
+public class MailboxSyncStateStoreTest {
+
+    /** Temporary directory of the store file. */
+    private Path dir;
+
+    /** Path of the store file. */
+    private Path path;
+
+    /**
+     * Creates a temporary directory before each test method.
+     *
+     * @throws IOException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws IOException {
+        dir = Files.createTempDirectory("syncstate");
+        path = dir.resolve("state.db");
+    }
+
+    /**
+     * Deletes the temporary directory after each test method.
+     *
+     * @throws IOException will not throw
+     */
+    @AfterMethod
+    public void afterMethod() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(dir.resolve("state.db.compact"));
+        Files.delete(dir);
+    }
+
+    /**
+     * Creates a state with a flag snapshot.
+     *
+     * @param uidValidity UIDVALIDITY
+     * @return the state
+     * @throws ImapAsyncClientException will not throw
+     */
+    private static MailboxSyncState newSnapshotState(final long uidValidity) throws ImapAsyncClientException {
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+        final long junk = builder.getFlagBit("Junk");
+        final long label = builder.getFlagBit("étiquette");
+        builder.add(1, MailboxFlagSnapshot.SEEN).add(2, junk | label).add(4000000000L, MailboxFlagSnapshot.DELETED);
+        final MailboxFlagSnapshot snapshot = builder.build();
+        return new MailboxSyncState(uidValidity, 4000000001L, -1, snapshot.getUids(), snapshot);
+    }
+
+    /**
+     * Tests states are saved, replaced and removed, and are read back after reopening the store.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testPutGetRemoveReopen() throws Exception {
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, true)) {
+            Assert.assertNull(store.get("alice", "INBOX"), "State should not exist.");
+            store.put("alice", "INBOX", new MailboxSyncState(1L, 10L, 100L, MessageNumberRangeSet.parse("1:5,7")));
+            store.put("alice", "F2f8a3", newSnapshotState(2L));
+            store.put("bob", "INBOX", new MailboxSyncState(3L, 2L, 5L, MessageNumberRangeSet.parse("1")));
+            store.put("alice", "INBOX", new MailboxSyncState(1L, 12L, 120L, MessageNumberRangeSet.parse("1:5,7,11")));
+            store.remove("bob", "INBOX");
+            store.remove("carol", "INBOX");
+            Assert.assertEquals(store.size(), 2, "size() mismatched.");
+            Assert.assertNull(store.get("bob", "INBOX"), "State should be removed.");
+        }
+
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            Assert.assertEquals(store.size(), 2, "size() mismatched.");
+            Assert.assertNull(store.get("bob", "INBOX"), "State should be removed.");
+            final MailboxSyncState inbox = store.get("alice", "INBOX");
+            Assert.assertEquals(inbox.getUidValidity(), 1L, "getUidValidity() mismatched.");
+            Assert.assertEquals(inbox.getUidNext(), 12L, "getUidNext() mismatched.");
+            Assert.assertEquals(inbox.getHighestModSeq(), 120L, "getHighestModSeq() mismatched.");
+            Assert.assertEquals(inbox.getUids().toString(), "1:5,7,11", "getUids() mismatched.");
+            Assert.assertNull(inbox.getFlagSnapshot(), "getFlagSnapshot() mismatched.");
+
+            final MailboxSyncState other = store.get("alice", "F2f8a3");
+            final MailboxFlagSnapshot snapshot = other.getFlagSnapshot();
+            Assert.assertEquals(other.getUids().toString(), "1:2,4000000000", "getUids() mismatched.");
+            Assert.assertEquals(snapshot.size(), 3, "size() mismatched.");
+            Assert.assertEquals(snapshot.getUid(2), 4000000000L, "getUid() mismatched.");
+            Assert.assertEquals(snapshot.getFlagBits(2), MailboxFlagSnapshot.DELETED, "getFlagBits() mismatched.");
+            Assert.assertTrue(snapshot.toFlags(snapshot.getFlagBits(1)).contains("étiquette"), "Keyword table mismatched.");
+            Assert.assertEquals(snapshot.getKeywords(), new String[] { "Junk", "étiquette" }, "getKeywords() mismatched.");
+        }
+    }
+
+    /**
+     * Tests the hashes of the keywords overflowing the keyword table are saved and read back.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testPutGetOverflowKeywords() throws Exception {
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+        builder.add(3, MailboxFlagSnapshot.SEEN).add(5, builder.getFlagBit("Junk") | MailboxFlagSnapshot.OVERFLOW_KEYWORDS, 77);
+        final MailboxFlagSnapshot saved = builder.build();
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, true)) {
+            store.put("alice", "INBOX", new MailboxSyncState(2L, 6L, -1, saved.getUids(), saved));
+        }
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            final MailboxFlagSnapshot snapshot = store.get("alice", "INBOX").getFlagSnapshot();
+            Assert.assertTrue(snapshot.hasOverflowKeywords(), "hasOverflowKeywords() mismatched.");
+            Assert.assertEquals(snapshot.getOverflowHash(0), 0, "getOverflowHash() mismatched.");
+            Assert.assertEquals(snapshot.getOverflowHash(1), 77, "getOverflowHash() mismatched.");
+            Assert.assertEquals(snapshot.getFlagBits(1), saved.getFlagBits(1), "getFlagBits() mismatched.");
+        }
+    }
+
+    /**
+     * Tests an incomplete record at the end of the file, as left by a crash, is discarded when the store is opened.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testOpenTruncatesIncompleteRecord() throws Exception {
+        final long validLength;
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, true)) {
+            store.put("alice", "INBOX", new MailboxSyncState(1L, 10L, 100L, MessageNumberRangeSet.parse("1:9")));
+            validLength = store.getFileLength();
+            store.put("alice", "Sent", newSnapshotState(2L));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 3);
+        }
+
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, true)) {
+            Assert.assertEquals(store.getFileLength(), validLength, "Incomplete record should be truncated.");
+            Assert.assertEquals(Files.size(path), validLength, "Incomplete record should be truncated.");
+            Assert.assertNull(store.get("alice", "Sent"), "Incomplete record should be discarded.");
+            Assert.assertEquals(store.get("alice", "INBOX").getUids().toString(), "1:9", "getUids() mismatched.");
+            store.put("alice", "Sent", newSnapshotState(3L));
+        }
+
+        // corrupts the last byte of the content, the CRC32 does not match anymore
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), Files.size(path) - 5);
+        }
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, true)) {
+            Assert.assertEquals(store.size(), 1, "Corrupted record should be discarded.");
+            Assert.assertEquals(store.getFileLength(), validLength, "Corrupted record should be truncated.");
+        }
+    }
+
+    /**
+     * Tests compaction keeps only the latest record of each mailbox with a saved state.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCompact() throws Exception {
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            for (int i = 0; i < 2000; i++) {
+                store.put("account" + (i % 700), "INBOX", new MailboxSyncState(i, i + 1, -1, MessageNumberRangeSet.parse("1:" + (i + 1))));
+            }
+            for (int i = 0; i < 100; i++) {
+                store.remove("account" + i, "INBOX");
+            }
+            Assert.assertEquals(store.size(), 600, "size() mismatched.");
+            final long liveLength = store.getLiveLength();
+            Assert.assertTrue(liveLength < store.getFileLength(), "Live length should be less than file length.");
+
+            store.compact();
+            Assert.assertEquals(store.getFileLength(), liveLength, "getFileLength() mismatched.");
+            Assert.assertEquals(Files.size(path), liveLength, "File length mismatched.");
+            Assert.assertFalse(Files.exists(dir.resolve("state.db.compact")), "Temporary file should be moved.");
+            Assert.assertEquals(store.get("account699", "INBOX").getUidValidity(), 1399L, "getUidValidity() mismatched.");
+            store.put("account0", "INBOX", new MailboxSyncState(5L, 6L, -1, MessageNumberRangeSet.EMPTY));
+        }
+
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            Assert.assertEquals(store.size(), 601, "size() mismatched.");
+            Assert.assertNull(store.get("account1", "INBOX"), "State should be removed.");
+            Assert.assertEquals(store.get("account100", "INBOX").getUids().toString(), "1:1501", "getUids() mismatched.");
+            Assert.assertTrue(store.get("account0", "INBOX").getUids().isEmpty(), "getUids() mismatched.");
+        }
+    }
+
+    /**
+     * Tests the store remains usable when compaction fails.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCompactFailure() throws Exception {
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            store.put("alice", "INBOX", newSnapshotState(1L));
+            Files.createDirectory(dir.resolve("state.db.compact"));
+            IOException actual = null;
+            try {
+                store.compact();
+            } catch (final IOException e) {
+                actual = e;
+            }
+            Assert.assertNotNull(actual, "Expect exception to be thrown.");
+            store.put("alice", "Trash", newSnapshotState(2L));
+            Assert.assertEquals(store.get("alice", "INBOX").getUidValidity(), 1L, "getUidValidity() mismatched.");
+            Assert.assertEquals(store.get("alice", "Trash").getUidValidity(), 2L, "getUidValidity() mismatched.");
+        }
+    }
+
+    /**
+     * Tests appending and reading back records does not map the file again on each append.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testAppendsDoNotRemapEachTime() throws Exception {
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false)) {
+            for (int i = 1; i <= 5000; i++) {
+                store.put("alice", "INBOX", new MailboxSyncState(i, i + 1, -1, MessageNumberRangeSet.parse("1:" + i)));
+                Assert.assertEquals(store.get("alice", "INBOX").getUidValidity(), i, "getUidValidity() mismatched.");
+            }
+            Assert.assertEquals(store.size(), 1, "size() mismatched.");
+            Assert.assertTrue(store.getMapCount() <= 20, "Mappings should grow geometrically: " + store.getMapCount());
+        }
+    }
+
+    /**
+     * Tests records are read across memory-mapped segments.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSmallSegments() throws Exception {
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false, 64)) {
+            for (int i = 0; i < 50; i++) {
+                store.put("alice", "folder" + i, newSnapshotState(i));
+            }
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals(store.get("alice", "folder" + i).getUidValidity(), i, "getUidValidity() mismatched.");
+            }
+        }
+        try (MailboxSyncStateStore store = new MailboxSyncStateStore(path, false, 64)) {
+            Assert.assertEquals(store.size(), 50, "size() mismatched.");
+            Assert.assertEquals(store.get("alice", "folder49").getFlagSnapshot().size(), 3, "Flag snapshot mismatched.");
+        }
+    }
+
+    /**
+     * Tests opening a file which is not a store fails.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testOpenNotStoreFile() throws Exception {
+        Files.write(path, "not a store file".getBytes("US-ASCII"));
+        IOException actual = null;
+        try {
+            new MailboxSyncStateStore(path, false).close();
+        } catch (final IOException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Expect exception to be thrown.");
+    }
+}
@@ -0,0 +1,167 @@
+package com.yahoo.imapnio.async.client;
+
+import static com.yahoo.imapnio.async.client.RecordingSession.response;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.data.MailboxSyncDelta;
+import com.yahoo.imapnio.async.data.MailboxSyncState;
+import com.yahoo.imapnio.async.data.MessageNumberRangeSet;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Unit test for {@link QResyncMailboxSynchronizer}.
+ */
+public class QResyncMailboxSynchronizerTest {
+
+    /** Session mock. */
+    private ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private List<ImapRequest> requests;
+
+    /** Futures returned by the session, one per command. */
+    private List<ImapFuture<ImapAsyncResponse>> futures;
+
+    /**
+     * Sets up the session mock before each test method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @BeforeMethod
+    public void beforeMethod() throws ImapAsyncClientException {
+        final RecordingSession recording = new RecordingSession();
+        session = recording.getSession();
+        requests = recording.getRequests();
+        futures = recording.getFutures();
+    }
+
+    /**
+     * Tests incremental synchronization from VANISHED (EARLIER) and FETCH responses of a QRESYNC select.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncIncremental() throws Exception {
+        final MailboxSyncState state = new MailboxSyncState(67890007L, 120L, 90060115194045000L, MessageNumberRangeSet.parse("1:119"));
+        final ImapFuture<MailboxSyncDelta> future = new QResyncMailboxSynchronizer().sync(session, "INBOX", state);
+        Assert.assertEquals(requests.size(), 1, "Only SELECT should be executed.");
+        Assert.assertEquals(requests.get(0).getCommandLine(), "SELECT INBOX (QRESYNC (67890007 90060115194045000 1:119))\r\n",
+                "Command line mismatched.");
+
+        futures.get(0).done(response("* 100 EXISTS", "* OK [UIDVALIDITY 67890007] UIDVALIDITY", "* OK [UIDNEXT 122] Predicted next UID",
+                "* OK [HIGHESTMODSEQ 90060115205545359] Highest", "* VANISHED (EARLIER) 41,43:116,118,200",
+                "* 49 FETCH (UID 117 FLAGS (\\Seen \\Answered) MODSEQ (90060115194045001))",
+                "* 50 FETCH (UID 121 FLAGS () MODSEQ (90060115205545359))", "A02 OK [READ-WRITE] done"));
+
+        final MailboxSyncDelta delta = future.get();
+        Assert.assertFalse(delta.isReset(), "isReset() mismatched.");
+        Assert.assertEquals(delta.getVanishedUids().toString(), "41,43:116,118", "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getNewUids().toString(), "121", "getNewUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 2, "getFlagUpdateCount() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateUid(0), 117L, "getFlagUpdateUid() mismatched.");
+        Assert.assertTrue(delta.getFlagUpdateFlags(0).contains(Flags.Flag.ANSWERED), "getFlagUpdateFlags() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateModSeq(0), 90060115194045001L, "getFlagUpdateModSeq() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateUid(1), 121L, "getFlagUpdateUid() mismatched.");
+
+        final MailboxSyncState newState = delta.getState();
+        Assert.assertEquals(newState.getUids().toString(), "1:40,42,117,119,121", "getUids() mismatched.");
+        Assert.assertEquals(newState.getUidNext(), 122L, "getUidNext() mismatched.");
+        Assert.assertEquals(newState.getHighestModSeq(), 90060115205545359L, "getHighestModSeq() mismatched.");
+        Assert.assertEquals(newState.getUidValidity(), 67890007L, "getUidValidity() mismatched.");
+    }
+
+    /**
+     * Tests the first synchronization lists the mailbox.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncInitial() throws Exception {
+        final ImapFuture<MailboxSyncDelta> future = new QResyncMailboxSynchronizer().sync(session, "INBOX", null);
+        Assert.assertEquals(requests.get(0).getCommandLine(), "SELECT INBOX\r\n", "Command line mismatched.");
+        futures.get(0).done(response("* 2 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [UIDNEXT 6] Predicted next UID",
+                "* OK [HIGHESTMODSEQ 715] Highest", "A01 OK [READ-WRITE] done"));
+        Assert.assertEquals(requests.size(), 2, "UID FETCH should be executed.");
+        Assert.assertEquals(requests.get(1).getCommandLine(), "UID FETCH 1:* (FLAGS MODSEQ)\r\n", "Command line mismatched.");
+        futures.get(1).done(response("* 1 FETCH (UID 4 FLAGS (\\Seen) MODSEQ (700))", "* 2 FETCH (UID 5 FLAGS () MODSEQ (715))",
+                "A02 OK done"));
+
+        final MailboxSyncDelta delta = future.get();
+        Assert.assertFalse(delta.isReset(), "isReset() mismatched.");
+        Assert.assertEquals(delta.getNewUids().toString(), "4:5", "getNewUids() mismatched.");
+        Assert.assertTrue(delta.getVanishedUids().isEmpty(), "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 2, "getFlagUpdateCount() mismatched.");
+        Assert.assertEquals(delta.getState().getHighestModSeq(), 715L, "getHighestModSeq() mismatched.");
+        Assert.assertEquals(delta.getState().getUidNext(), 6L, "getUidNext() mismatched.");
+    }
+
+    /**
+     * Tests synchronization resets when UIDVALIDITY changed, and an empty mailbox is not listed.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncUidValidityChanged() throws Exception {
+        final MailboxSyncState state = new MailboxSyncState(1L, 10L, 100L, MessageNumberRangeSet.parse("1:9"));
+        final ImapFuture<MailboxSyncDelta> future = new QResyncMailboxSynchronizer(true, 100).sync(session, "INBOX", state);
+        Assert.assertEquals(requests.get(0).getCommandLine(), "EXAMINE INBOX (QRESYNC (1 100 1:9))\r\n", "Command line mismatched.");
+        futures.get(0).done(response("* 0 EXISTS", "* OK [UIDVALIDITY 2] UIDVALIDITY", "* OK [HIGHESTMODSEQ 1] Highest", "A01 OK [READ-ONLY] done"));
+
+        Assert.assertEquals(requests.size(), 1, "Empty mailbox should not be listed.");
+        final MailboxSyncDelta delta = future.get();
+        Assert.assertTrue(delta.isReset(), "isReset() mismatched.");
+        Assert.assertTrue(delta.getNewUids().isEmpty(), "getNewUids() mismatched.");
+        Assert.assertEquals(delta.getState().getUidValidity(), 2L, "getUidValidity() mismatched.");
+        Assert.assertEquals(delta.getState().getUidNext(), 1L, "getUidNext() mismatched.");
+    }
+
+    /**
+     * Tests synchronization fails when the server does not support mod-sequences for the mailbox, or the mailbox cannot be selected.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testSyncFailure() throws Exception {
+        final QResyncMailboxSynchronizer synchronizer = new QResyncMailboxSynchronizer();
+        ImapFuture<MailboxSyncDelta> future = synchronizer.sync(session, "INBOX", null);
+        futures.get(0).done(response("* 2 EXISTS", "* OK [UIDVALIDITY 3] UIDVALIDITY", "* OK [NOMODSEQ] No mod-sequences", "A01 OK done"));
+        assertFailure(future, FailureType.MODSEQ_NOT_SUPPORTED);
+
+        future = synchronizer.sync(session, "INBOX", null);
+        futures.get(1).done(response("A02 NO Mailbox does not exist"));
+        assertFailure(future, FailureType.INVALID_INPUT);
+
+        future = synchronizer.sync(session, "INBOX", null);
+        futures.get(2).done(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT));
+        assertFailure(future, FailureType.CHANNEL_TIMEOUT);
+    }
+
+    /**
+     * Asserts the future fails with the given failure type.
+     *
+     * @param future the future
+     * @param failureType the failure type expected
+     * @throws InterruptedException will not throw
+     */
+    private static void assertFailure(final ImapFuture<MailboxSyncDelta> future, final FailureType failureType) throws InterruptedException {
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), failureType, "Failure type mismatched.");
+    }
+}
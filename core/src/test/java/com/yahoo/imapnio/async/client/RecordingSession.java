@@ -0,0 +1,88 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * Test fixture of a mocked {@link ImapAsyncSession} recording the commands executed on it and the futures returned for them, so that tests can
+ * check the commands and complete them with the responses of their choice.
+ */
+final class RecordingSession {
+
+    /** Session mock. */
+    private final ImapAsyncSession session;
+
+    /** Commands executed on the session. */
+    private final List<ImapRequest> requests = new ArrayList<ImapRequest>();
+
+    /** Futures returned by the session, one per command. */
+    private final List<ImapFuture<ImapAsyncResponse>> futures = new ArrayList<ImapFuture<ImapAsyncResponse>>();
+
+    /**
+     * Initializes a session mock recording the executed commands.
+     *
+     * @param extraInterfaces additional interfaces the session mock implements
+     * @throws ImapAsyncClientException will not throw
+     */
+    RecordingSession(final Class<?>... extraInterfaces) throws ImapAsyncClientException {
+        session = (extraInterfaces.length == 0) ? Mockito.mock(ImapAsyncSession.class)
+                : Mockito.mock(ImapAsyncSession.class, Mockito.withSettings().extraInterfaces(extraInterfaces));
+        Mockito.when(session.execute(Mockito.any(ImapRequest.class))).thenAnswer(new Answer<ImapFuture<ImapAsyncResponse>>() {
+            @Override
+            public ImapFuture<ImapAsyncResponse> answer(final InvocationOnMock invocation) {
+                requests.add((ImapRequest) invocation.getArguments()[0]);
+                final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+                futures.add(future);
+                return future;
+            }
+        });
+    }
+
+    /**
+     * @return the session mock
+     */
+    ImapAsyncSession getSession() {
+        return session;
+    }
+
+    /**
+     * @return the commands executed on the session, in execution order
+     */
+    List<ImapRequest> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the futures returned by the session, one per command
+     */
+    List<ImapFuture<ImapAsyncResponse>> getFutures() {
+        return futures;
+    }
+
+    /**
+     * Creates a response.
+     *
+     * @param lines response lines
+     * @return the response
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    static ImapAsyncResponse response(final String... lines) throws IOException, ProtocolException {
+        final List<IMAPResponse> list = new ArrayList<IMAPResponse>();
+        for (final String line : lines) {
+            list.add(new IMAPResponse(line));
+        }
+        return new ImapAsyncResponse(list);
+    }
+}
@@ -0,0 +1,26 @@
+package com.yahoo.imapnio.async.data;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link ESearchResult}.
+ */
+public class ESearchResultTest {
+
+    /**
+     * Tests ESearchResult constructor and getters.
+     */
+    @Test
+    public void testESearchResult() {
+        final MessageNumberSet[] all = new MessageNumberSet[] { new MessageNumberSet(1, 5) };
+        final ESearchResult result = new ESearchResult("A1", true, 1L, 5L, 5L, all, 100L);
+        Assert.assertEquals(result.getTag(), "A1", "getTag() mismatched.");
+        Assert.assertTrue(result.isUid(), "isUid() mismatched.");
+        Assert.assertEquals(result.getMin(), 1L, "getMin() mismatched.");
+        Assert.assertEquals(result.getMax(), 5L, "getMax() mismatched.");
+        Assert.assertEquals(result.getCount(), 5L, "getCount() mismatched.");
+        Assert.assertSame(result.getAll(), all, "getAll() mismatched.");
+        Assert.assertEquals(result.getModSeq(), 100L, "getModSeq() mismatched.");
+    }
+}
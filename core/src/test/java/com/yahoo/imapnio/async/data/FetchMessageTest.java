@@ -0,0 +1,133 @@
+package com.yahoo.imapnio.async.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ByteArray;
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.ENVELOPE;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+/**
+ * Unit test for {@link FetchMessage}.
+ */
+public class FetchMessageTest {
+
+    /**
+     * Tests UID, FLAGS, MODSEQ and RFC822.SIZE items.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testNumericItemsAndFlags() throws IOException, ProtocolException {
+        final FetchMessage msg = new FetchMessage(new IMAPResponse("* 12 FETCH (uid 1234 FLAGS (\\Seen $Junk) MODSEQ (98765) RFC822.SIZE 4567)"));
+        Assert.assertEquals(msg.getMessageNumber(), 12, "Message number mismatched.");
+        Assert.assertEquals(msg.getUid(), 1234L, "UID mismatched.");
+        Assert.assertEquals(msg.getModSeq(), 98765L, "MODSEQ mismatched.");
+        Assert.assertEquals(msg.getSize(), 4567L, "Size mismatched.");
+        final Flags flags = msg.getFlags();
+        Assert.assertNotNull(flags, "Flags should be present.");
+        Assert.assertTrue(flags.contains(Flags.Flag.SEEN), "Seen flag mismatched.");
+        Assert.assertTrue(flags.contains("$Junk"), "User flag mismatched.");
+        Assert.assertFalse(flags.contains(Flags.Flag.DELETED), "Deleted flag mismatched.");
+        // accessing again gives the same result
+        Assert.assertEquals(msg.getUid(), 1234L, "UID mismatched.");
+
+        Assert.assertNull(msg.getInternalDate(), "Internal date should not be present.");
+        Assert.assertNull(msg.getEnvelope(), "Envelope should not be present.");
+        Assert.assertNull(msg.getBodySection(""), "Body should not be present.");
+    }
+
+    /**
+     * Tests items not present.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testItemsNotPresent() throws IOException, ProtocolException {
+        final FetchMessage msg = new FetchMessage(new IMAPResponse("* 3 FETCH (RFC822.SIZE 10)"));
+        Assert.assertEquals(msg.getUid(), -1L, "UID mismatched.");
+        Assert.assertEquals(msg.getModSeq(), -1L, "MODSEQ mismatched.");
+        Assert.assertNull(msg.getFlags(), "Flags should not be present.");
+        Assert.assertEquals(msg.getSize(), 10L, "Size mismatched.");
+    }
+
+    /**
+     * Tests INTERNALDATE, ENVELOPE and BODY sections, located after items with literals and bracketed names.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testDateEnvelopeAndBodySections() throws IOException, ProtocolException {
+        final String envelope = "(\"Wed, 17 Jul 1996 02:23:25 -0700 (PDT)\" {11}\r\nHi (there)\" ((\"Terry\" NIL \"gray\" \"example.com\")) NIL NIL "
+                + "((NIL NIL \"imap\" \"example.com\")) NIL NIL NIL \"<B27397-0100000@example.com>\")";
+        final FetchMessage msg = new FetchMessage(new IMAPResponse("* 7 FETCH (BODY[HEADER.FIELDS (SUBJECT FROM)] {8}\r\nSubject)"
+                + " UID 55 ENVELOPE " + envelope + " INTERNALDATE \"17-Jul-1996 02:44:25 -0700\" BODY[1.2]<0> {5}\r\nhello BODY[TEXT] NIL)"));
+        Assert.assertEquals(msg.getUid(), 55L, "UID mismatched.");
+
+        final ENVELOPE env = msg.getEnvelope();
+        Assert.assertNotNull(env, "Envelope should be present.");
+        Assert.assertEquals(env.subject, "Hi (there)\"", "Subject mismatched.");
+        Assert.assertEquals(env.from[0].getAddress(), "gray@example.com", "From mismatched.");
+        Assert.assertEquals(env.messageId, "<B27397-0100000@example.com>", "Message id mismatched.");
+
+        final Date date = msg.getInternalDate();
+        Assert.assertNotNull(date, "Internal date should be present.");
+        Assert.assertEquals(date.getTime(), 837596665000L, "Internal date mismatched.");
+
+        final ByteArray header = msg.getBodySection("header.fields (SUBJECT FROM)");
+        Assert.assertNotNull(header, "Header should be present.");
+        Assert.assertEquals(new String(header.getNewBytes(), StandardCharsets.US_ASCII), "Subject)", "Header mismatched.");
+        final ByteArray part = msg.getBodySection("1.2");
+        Assert.assertNotNull(part, "Part should be present.");
+        Assert.assertEquals(new String(part.getNewBytes(), StandardCharsets.US_ASCII), "hello", "Part mismatched.");
+        Assert.assertNull(msg.getBodySection("TEXT"), "NIL section should be null.");
+        Assert.assertNull(msg.getBodySection("1"), "Section should not be present.");
+    }
+
+    /**
+     * Tests invalid responses.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testInvalidResponses() throws IOException, ProtocolException {
+        final FetchMessage badUid = new FetchMessage(new IMAPResponse("* 1 FETCH (UID abc)"));
+        ParsingException ex = null;
+        try {
+            badUid.getUid();
+        } catch (final ParsingException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+
+        final FetchMessage badLiteral = new FetchMessage(new IMAPResponse("* 1 FETCH (BODY[] {50}\r\nshort UID 1)"));
+        ex = null;
+        try {
+            badLiteral.getUid();
+        } catch (final ParsingException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+
+        final FetchMessage badModSeq = new FetchMessage(new IMAPResponse("* 1 FETCH (MODSEQ 5)"));
+        ex = null;
+        try {
+            badModSeq.getModSeq();
+        } catch (final ParsingException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+    }
+}
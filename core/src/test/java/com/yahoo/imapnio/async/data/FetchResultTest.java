@@ -0,0 +1,31 @@
+package com.yahoo.imapnio.async.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+/**
+ * Unit test for {@link FetchResult}.
+ */
+public class FetchResultTest {
+
+    /**
+     * Tests FetchResult constructor and getters.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testFetchResult() throws IOException, ProtocolException {
+        final List<FetchMessage> messages = new ArrayList<FetchMessage>();
+        messages.add(new FetchMessage(new IMAPResponse("* 1 FETCH (UID 5)")));
+        final FetchResult result = new FetchResult(messages);
+        Assert.assertSame(result.getMessages(), messages, "Result mismatched.");
+    }
+}
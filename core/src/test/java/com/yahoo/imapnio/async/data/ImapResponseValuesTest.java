@@ -0,0 +1,70 @@
+package com.yahoo.imapnio.async.data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+/**
+ * Unit test for {@link ImapResponseValues}.
+ */
+public class ImapResponseValuesTest {
+
+    /**
+     * Tests skipping single tokens, nested lists, and lists holding quoted strings and literals with parentheses.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testSkipValue() throws IOException, ProtocolException {
+        final IMAPResponse r = new IMAPResponse("* 1 FETCH (X-TOKEN 12 X-LIST (a (b c) d) X-QUOTED (\"a)b\" \"c\\\"(\") X-NIL NIL UID 7)");
+        r.skipSpaces();
+        r.readByte(); // (
+        Assert.assertEquals(r.readAtom(), "X-TOKEN", "Item mismatched.");
+        ImapResponseValues.skipValue(r);
+        Assert.assertEquals(r.readAtom(), "X-LIST", "Token should be skipped.");
+        ImapResponseValues.skipValue(r);
+        Assert.assertEquals(r.readAtom(), "X-QUOTED", "Nested list should be skipped.");
+        ImapResponseValues.skipValue(r);
+        Assert.assertEquals(r.readAtom(), "X-NIL", "Quoted strings with parentheses should be skipped.");
+        ImapResponseValues.skipValue(r);
+        Assert.assertEquals(r.readAtom(), "UID", "NIL should be skipped.");
+
+        final byte[] bytes = "* 2 FETCH (X-LIT ({3}\r\na)b x) UID 9)".getBytes(StandardCharsets.US_ASCII);
+        final IMAPResponse literal = new IMAPResponse(new String(bytes, StandardCharsets.US_ASCII));
+        literal.skipSpaces();
+        literal.readByte(); // (
+        Assert.assertEquals(literal.readAtom(), "X-LIT", "Item mismatched.");
+        ImapResponseValues.skipValue(literal);
+        Assert.assertEquals(literal.readAtom(), "UID", "Literal with parenthesis should be skipped.");
+        Assert.assertEquals(literal.readLong(), 9L, "UID mismatched.");
+    }
+
+    /**
+     * Tests skipping an unclosed list, an unclosed quoted string and a literal longer than the response fails.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testSkipValueInvalid() throws IOException, ProtocolException {
+        final String[] invalids = { "* ESEARCH X-EXT (1 (2", "* ESEARCH X-EXT \"abc", "* ESEARCH X-EXT {10}\r\nab", "* ESEARCH X-EXT" };
+        for (final String invalid : invalids) {
+            final IMAPResponse r = new IMAPResponse(invalid);
+            Assert.assertEquals(r.readAtom(), "X-EXT", "Item mismatched.");
+            ParsingException ex = null;
+            try {
+                ImapResponseValues.skipValue(r);
+            } catch (final ParsingException e) {
+                ex = e;
+            }
+            Assert.assertNotNull(ex, "Expect exception to be thrown for " + invalid);
+        }
+    }
+}
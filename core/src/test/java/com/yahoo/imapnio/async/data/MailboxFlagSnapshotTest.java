@@ -0,0 +1,153 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@link MailboxFlagSnapshot}.
+ */
+public class MailboxFlagSnapshotTest {
+
+    /**
+     * Tests building a snapshot in ascending UID order, and converting flag masks to flags.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBuildAndToFlags() throws ImapAsyncClientException {
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+        Assert.assertEquals(builder.getFlagBit("\\Seen"), MailboxFlagSnapshot.SEEN, "getFlagBit() mismatched.");
+        Assert.assertEquals(builder.getFlagBit("\\ANSWERED"), MailboxFlagSnapshot.ANSWERED, "getFlagBit() mismatched.");
+        Assert.assertEquals(builder.getFlagBit("\\Recent"), 0L, "\\Recent should not be kept.");
+        final long forwarded = builder.getFlagBit("$Forwarded");
+        Assert.assertEquals(forwarded, 1L << 5, "getFlagBit() mismatched.");
+        Assert.assertEquals(builder.getFlagBit("$Forwarded"), forwarded, "Same keyword should take the same bit.");
+
+        builder.add(3, MailboxFlagSnapshot.SEEN | forwarded).add(4000000000L, MailboxFlagSnapshot.DELETED).add(4000000001L, 0);
+        final MailboxFlagSnapshot snapshot = builder.build();
+        Assert.assertEquals(snapshot.size(), 3, "size() mismatched.");
+        Assert.assertEquals(snapshot.getUid(1), 4000000000L, "getUid() mismatched.");
+        Assert.assertEquals(snapshot.getFlagBits(1), MailboxFlagSnapshot.DELETED, "getFlagBits() mismatched.");
+        Assert.assertEquals(snapshot.indexOf(4000000001L), 2, "indexOf() mismatched.");
+        Assert.assertTrue(snapshot.indexOf(5) < 0, "indexOf() mismatched.");
+        Assert.assertEquals(snapshot.getUids().toString(), "3,4000000000:4000000001", "getUids() mismatched.");
+        Assert.assertEquals(snapshot.getKeywords(), new String[] { "$Forwarded" }, "getKeywords() mismatched.");
+
+        final Flags flags = snapshot.toFlags(snapshot.getFlagBits(0));
+        Assert.assertTrue(flags.contains(Flags.Flag.SEEN), "toFlags() mismatched.");
+        Assert.assertTrue(flags.contains("$Forwarded"), "toFlags() mismatched.");
+        Assert.assertFalse(flags.contains(Flags.Flag.DELETED), "toFlags() mismatched.");
+    }
+
+    /**
+     * Tests building a snapshot out of order keeps the last flags of a duplicated UID, and the keyword table of a previous snapshot is kept.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBuildUnsortedWithPrevious() throws ImapAsyncClientException {
+        final MailboxFlagSnapshot.Builder first = new MailboxFlagSnapshot.Builder();
+        final long junk = first.getFlagBit("Junk");
+        final MailboxFlagSnapshot previous = first.add(1, junk).build();
+
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder(previous, 2);
+        final long label = builder.getFlagBit("Label");
+        Assert.assertEquals(builder.getFlagBit("Junk"), junk, "Keyword of the previous snapshot should keep its bit.");
+        builder.add(9, 0).add(2, label).add(9, MailboxFlagSnapshot.FLAGGED).add(5, junk);
+        final MailboxFlagSnapshot snapshot = builder.build();
+        Assert.assertEquals(snapshot.getUids().toString(), "2,5,9", "getUids() mismatched.");
+        Assert.assertEquals(snapshot.getFlagBits(2), MailboxFlagSnapshot.FLAGGED, "Last flags added should be kept.");
+        Assert.assertEquals(snapshot.getKeywords(), new String[] { "Junk", "Label" }, "getKeywords() mismatched.");
+        Assert.assertEquals(MailboxFlagSnapshot.EMPTY.getUids(), MessageNumberRangeSet.EMPTY, "getUids() mismatched.");
+    }
+
+    /**
+     * Tests keywords no message has are dropped from the keyword table when building, and flags are compared across keyword tables.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testDropUnusedKeywordsAndHasSameFlags() throws ImapAsyncClientException {
+        final MailboxFlagSnapshot.Builder first = new MailboxFlagSnapshot.Builder();
+        final long junk = first.getFlagBit("Junk");
+        final long old = first.getFlagBit("Old");
+        final long label = first.getFlagBit("Label");
+        final MailboxFlagSnapshot previous = first.add(1, junk | label).add(2, old).add(3, MailboxFlagSnapshot.SEEN).build();
+        Assert.assertEquals(previous.getKeywords(), new String[] { "Junk", "Old", "Label" }, "getKeywords() mismatched.");
+
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder(previous, 3);
+        builder.add(1, builder.getFlagBit("Label") | builder.getFlagBit("Junk")).add(2, 0).add(3, MailboxFlagSnapshot.SEEN);
+        final MailboxFlagSnapshot current = builder.build();
+        Assert.assertEquals(current.getKeywords(), new String[] { "Junk", "Label" }, "Unused keyword should be dropped.");
+        Assert.assertEquals(current.getFlagBits(0), (1L << 5) | (1L << 6), "Flag masks should follow the keyword table.");
+
+        final MailboxFlagSnapshot.Builder other = new MailboxFlagSnapshot.Builder();
+        other.add(1, other.getFlagBit("Label") | other.getFlagBit("Junk")).add(2, 0).add(3, MailboxFlagSnapshot.SEEN | MailboxFlagSnapshot.DELETED);
+        final MailboxFlagSnapshot reordered = other.build();
+        Assert.assertEquals(reordered.getKeywords(), new String[] { "Label", "Junk" }, "getKeywords() mismatched.");
+        final long[] keywordBits = previous.getKeywordBits(reordered);
+        Assert.assertEquals(keywordBits, new long[] { 1L << 6, 0, 1L << 5 }, "getKeywordBits() mismatched.");
+        Assert.assertTrue(previous.hasSameFlags(0, keywordBits, reordered.getFlagBits(0), 0), "Same keywords at other bits should be the same.");
+        Assert.assertFalse(previous.hasSameFlags(1, keywordBits, reordered.getFlagBits(1), 0), "Keyword no longer used should be a change.");
+        Assert.assertFalse(previous.hasSameFlags(2, keywordBits, reordered.getFlagBits(2), 0), "System flag added should be a change.");
+    }
+
+    /**
+     * Tests keywords not fitting in the keyword table take the overflow bit, their changes are detected through the overflow hash, and invalid UIDs
+     * are rejected.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testKeywordTableOverflowAndInvalidUid() throws ImapAsyncClientException {
+        final MailboxFlagSnapshot.Builder builder = new MailboxFlagSnapshot.Builder();
+        long bits = 0;
+        for (int i = 0; i < MailboxFlagSnapshot.MAX_KEYWORDS; i++) {
+            final long bit = builder.getFlagBit("k" + i);
+            Assert.assertNotEquals(bit, 0L, "Keyword should fit in the table.");
+            Assert.assertNotEquals(bit, MailboxFlagSnapshot.OVERFLOW_KEYWORDS, "Keyword should fit in the table.");
+            bits |= bit;
+        }
+        Assert.assertEquals(builder.getFlagBit("k57"), 1L << 62, "Last keyword should take the bit below the overflow bit.");
+        Assert.assertEquals(builder.getFlagBit("k58"), MailboxFlagSnapshot.OVERFLOW_KEYWORDS, "Keyword should overflow.");
+        Assert.assertEquals(builder.getFlagBit("k59"), MailboxFlagSnapshot.OVERFLOW_KEYWORDS, "Keyword should overflow.");
+        final int hash5859 = "k58".hashCode() + "k59".hashCode();
+        final int hash58 = "k58".hashCode();
+        builder.add(1, bits | MailboxFlagSnapshot.OVERFLOW_KEYWORDS, hash5859).add(2, MailboxFlagSnapshot.OVERFLOW_KEYWORDS, hash58).add(3, 0);
+        final MailboxFlagSnapshot previous = builder.build();
+        Assert.assertTrue(previous.hasOverflowKeywords(), "hasOverflowKeywords() mismatched.");
+        Assert.assertEquals(previous.getOverflowHash(0), hash5859, "getOverflowHash() mismatched.");
+        Assert.assertEquals(previous.getOverflowHash(2), 0, "getOverflowHash() mismatched.");
+        Assert.assertEquals(previous.getKeywords().length, MailboxFlagSnapshot.MAX_KEYWORDS, "Keyword table should stay bounded.");
+        Assert.assertFalse(previous.toFlags(previous.getFlagBits(1)).contains("k58"), "Overflow keywords should not be listed.");
+
+        // unchanged, overflow keyword replaced by another one, overflow keyword added
+        final MailboxFlagSnapshot.Builder next = new MailboxFlagSnapshot.Builder(previous, 3);
+        long nextBits = 0;
+        for (int i = 0; i < MailboxFlagSnapshot.MAX_KEYWORDS; i++) {
+            nextBits |= next.getFlagBit("k" + i);
+        }
+        Assert.assertEquals(next.getFlagBit("k60"), MailboxFlagSnapshot.OVERFLOW_KEYWORDS, "Keyword should overflow.");
+        next.add(3, MailboxFlagSnapshot.OVERFLOW_KEYWORDS, hash58).add(2, MailboxFlagSnapshot.OVERFLOW_KEYWORDS, "k60".hashCode());
+        next.add(1, nextBits | MailboxFlagSnapshot.OVERFLOW_KEYWORDS, hash5859);
+        final MailboxFlagSnapshot current = next.build();
+        final long[] keywordBits = previous.getKeywordBits(current);
+        Assert.assertTrue(previous.hasSameFlags(0, keywordBits, current.getFlagBits(0), current.getOverflowHash(0)), "Same flags mismatched.");
+        Assert.assertFalse(previous.hasSameFlags(1, keywordBits, current.getFlagBits(1), current.getOverflowHash(1)), "Replaced overflow keyword.");
+        Assert.assertFalse(previous.hasSameFlags(2, keywordBits, current.getFlagBits(2), current.getOverflowHash(2)), "Added overflow keyword.");
+
+        ImapAsyncClientException actual = null;
+        try {
+            builder.add(0, 0);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Expect exception to be thrown.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
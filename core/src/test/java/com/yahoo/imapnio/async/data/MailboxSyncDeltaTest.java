@@ -0,0 +1,51 @@
+package com.yahoo.imapnio.async.data;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Unit test for {@link MailboxSyncDelta} and {@link MailboxSyncState}.
+ */
+public class MailboxSyncDeltaTest {
+
+    /**
+     * Tests MailboxSyncDelta constructor and getters.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testMailboxSyncDelta() throws ImapAsyncClientException {
+        final MessageNumberRangeSet uids = MessageNumberRangeSet.parse("1:3,5");
+        final MailboxSyncState state = new MailboxSyncState(7L, 6L, 100L, uids);
+        Assert.assertEquals(state.getUidValidity(), 7L, "getUidValidity() mismatched.");
+        Assert.assertEquals(state.getUidNext(), 6L, "getUidNext() mismatched.");
+        Assert.assertEquals(state.getHighestModSeq(), 100L, "getHighestModSeq() mismatched.");
+        Assert.assertSame(state.getUids(), uids, "getUids() mismatched.");
+
+        final MessageNumberRangeSet newUids = MessageNumberRangeSet.parse("5");
+        final MessageNumberRangeSet vanished = MessageNumberRangeSet.parse("4");
+        final Flags seen = new Flags(Flags.Flag.SEEN);
+        final MailboxSyncDelta delta = new MailboxSyncDelta(true, newUids, vanished, new long[] { 5, 0 }, new Flags[] { seen, null },
+                new long[] { 100, 0 }, 1, state);
+        Assert.assertTrue(delta.isReset(), "isReset() mismatched.");
+        Assert.assertSame(delta.getNewUids(), newUids, "getNewUids() mismatched.");
+        Assert.assertSame(delta.getVanishedUids(), vanished, "getVanishedUids() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateCount(), 1, "getFlagUpdateCount() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateUid(0), 5L, "getFlagUpdateUid() mismatched.");
+        Assert.assertSame(delta.getFlagUpdateFlags(0), seen, "getFlagUpdateFlags() mismatched.");
+        Assert.assertEquals(delta.getFlagUpdateModSeq(0), 100L, "getFlagUpdateModSeq() mismatched.");
+        Assert.assertSame(delta.getState(), state, "getState() mismatched.");
+
+        IndexOutOfBoundsException actual = null;
+        try {
+            delta.getFlagUpdateUid(1);
+        } catch (final IndexOutOfBoundsException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "IndexOutOfBoundsException should occur.");
+    }
+}
@@ -0,0 +1,170 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.data.MessageNumberSet.LastMessage;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@link MessageNumberRangeSet}.
+ */
+public class MessageNumberRangeSetTest {
+
+    /**
+     * Tests creating a set from unsorted numbers with duplicates, and the accessors.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testOfNumbers() throws ImapAsyncClientException {
+        final MessageNumberRangeSet set = MessageNumberRangeSet.of(new long[] { 9, 3, 4, 5, 1, 4, 10, 4294967295L });
+        Assert.assertEquals(set.toString(), "1,3:5,9:10,4294967295", "toString() mismatched.");
+        Assert.assertEquals(set.size(), 7L, "size() mismatched.");
+        Assert.assertEquals(set.getRangeCount(), 4, "getRangeCount() mismatched.");
+        Assert.assertEquals(set.first(), 1L, "first() mismatched.");
+        Assert.assertEquals(set.last(), 4294967295L, "last() mismatched.");
+        Assert.assertFalse(set.isEmpty(), "isEmpty() mismatched.");
+        Assert.assertTrue(set.contains(4), "contains() mismatched.");
+        Assert.assertTrue(set.contains(4294967295L), "contains() mismatched.");
+        Assert.assertFalse(set.contains(2), "contains() mismatched.");
+        Assert.assertFalse(set.contains(11), "contains() mismatched.");
+        Assert.assertFalse(set.contains(0), "contains() mismatched.");
+
+        Assert.assertTrue(MessageNumberRangeSet.EMPTY.isEmpty(), "isEmpty() mismatched.");
+        Assert.assertEquals(MessageNumberRangeSet.EMPTY.first(), -1L, "first() mismatched.");
+        Assert.assertEquals(MessageNumberRangeSet.EMPTY.last(), -1L, "last() mismatched.");
+        Assert.assertEquals(MessageNumberRangeSet.EMPTY.toString(), "", "toString() mismatched.");
+        Assert.assertSame(MessageNumberRangeSet.of(new long[0]), MessageNumberRangeSet.EMPTY, "Empty set mismatched.");
+    }
+
+    /**
+     * Tests a large set of contiguous ranges stays compact.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testBuilderLargeRanges() throws ImapAsyncClientException {
+        final MessageNumberRangeSet.Builder builder = new MessageNumberRangeSet.Builder();
+        builder.add(20000001L, 30000000L).add(1L, 10000000L).add(5000000L, 20000000L).add(40000000L);
+        final MessageNumberRangeSet set = builder.build();
+        Assert.assertEquals(set.size(), 30000001L, "size() mismatched.");
+        Assert.assertEquals(set.getRangeCount(), 2, "getRangeCount() mismatched.");
+        Assert.assertEquals(set.toString(), "1:30000000,40000000", "toString() mismatched.");
+    }
+
+    /**
+     * Tests the builder rejects invalid numbers.
+     */
+    @Test
+    public void testBuilderInvalid() {
+        final long[][] invalids = { { 0, 1 }, { 5, 4 }, { 1, 4294967296L } };
+        for (final long[] invalid : invalids) {
+            ImapAsyncClientException actual = null;
+            try {
+                new MessageNumberRangeSet.Builder().add(invalid[0], invalid[1]);
+            } catch (final ImapAsyncClientException e) {
+                actual = e;
+            }
+            Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+            Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+    }
+
+    /**
+     * Tests union, intersection and difference.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testSetOperations() throws ImapAsyncClientException {
+        final MessageNumberRangeSet a = MessageNumberRangeSet.parse("1:10,20:30,40");
+        final MessageNumberRangeSet b = MessageNumberRangeSet.parse("5:25,31,35:45");
+        Assert.assertEquals(a.union(b).toString(), "1:31,35:45", "union() mismatched.");
+        Assert.assertEquals(a.intersection(b).toString(), "5:10,20:25,40", "intersection() mismatched.");
+        Assert.assertEquals(a.difference(b).toString(), "1:4,26:30", "difference() mismatched.");
+        Assert.assertEquals(b.difference(a).toString(), "11:19,31,35:39,41:45", "difference() mismatched.");
+
+        Assert.assertSame(a.union(MessageNumberRangeSet.EMPTY), a, "union() mismatched.");
+        Assert.assertSame(MessageNumberRangeSet.EMPTY.union(a), a, "union() mismatched.");
+        Assert.assertSame(a.difference(MessageNumberRangeSet.EMPTY), a, "difference() mismatched.");
+        Assert.assertTrue(a.intersection(MessageNumberRangeSet.EMPTY).isEmpty(), "intersection() mismatched.");
+        Assert.assertTrue(a.difference(a).isEmpty(), "difference() mismatched.");
+        Assert.assertEquals(a.intersection(a), a, "intersection() mismatched.");
+
+        final MessageNumberRangeSet max = MessageNumberRangeSet.parse("4294967290:4294967295");
+        final MessageNumberRangeSet diff = max.difference(MessageNumberRangeSet.parse("4294967292,4294967295"));
+        Assert.assertEquals(diff.toString(), "4294967290:4294967291,4294967293:4294967294", "difference() mismatched.");
+    }
+
+    /**
+     * Tests iterator.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testIterator() throws ImapAsyncClientException {
+        final PrimitiveIterator.OfLong it = MessageNumberRangeSet.parse("3:4,7").iterator();
+        Assert.assertEquals(it.nextLong(), 3L, "nextLong() mismatched.");
+        Assert.assertEquals(it.nextLong(), 4L, "nextLong() mismatched.");
+        Assert.assertTrue(it.hasNext(), "hasNext() mismatched.");
+        Assert.assertEquals(it.nextLong(), 7L, "nextLong() mismatched.");
+        Assert.assertFalse(it.hasNext(), "hasNext() mismatched.");
+        NoSuchElementException actual = null;
+        try {
+            it.nextLong();
+        } catch (final NoSuchElementException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "NoSuchElementException should occur.");
+        Assert.assertFalse(MessageNumberRangeSet.EMPTY.iterator().hasNext(), "hasNext() mismatched.");
+    }
+
+    /**
+     * Tests conversion from and to MessageNumberSet array, parse, equals and hashCode.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testMessageNumberSets() throws ImapAsyncClientException {
+        final MessageNumberSet[] msgsets = { new MessageNumberSet(7, 5), new MessageNumberSet(1, 1), new MessageNumberSet(2, 3) };
+        final MessageNumberRangeSet set = MessageNumberRangeSet.of(msgsets);
+        Assert.assertEquals(MessageNumberSet.buildString(set.toMessageNumberSets()), "1:3,5:7", "toMessageNumberSets() mismatched.");
+        final MessageNumberRangeSet parsed = MessageNumberRangeSet.parse("7:5,3,1:2");
+        Assert.assertEquals(parsed, set, "equals() mismatched.");
+        Assert.assertEquals(parsed.hashCode(), set.hashCode(), "hashCode() mismatched.");
+        Assert.assertFalse(set.equals(MessageNumberRangeSet.EMPTY), "equals() mismatched.");
+        Assert.assertFalse(set.equals(null), "equals() mismatched.");
+
+        ImapAsyncClientException actual = null;
+        try {
+            MessageNumberRangeSet.of(new MessageNumberSet[] { new MessageNumberSet(1, LastMessage.LAST_MESSAGE) });
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests parse method with invalid sequence-sets.
+     */
+    @Test
+    public void testParseInvalid() {
+        final String[] invalids = { "", "1,", "1,,2", "0", "*", "1:*", "a", "4294967296" };
+        for (final String invalid : invalids) {
+            ImapAsyncClientException actual = null;
+            try {
+                MessageNumberRangeSet.parse(invalid);
+            } catch (final ImapAsyncClientException e) {
+                actual = e;
+            }
+            Assert.assertNotNull(actual, "ImapAsyncClientException should occur for " + invalid);
+            Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+    }
+}
@@ -219,4 +219,53 @@ public class MessageNumberSetTest {
         final LastMessage value = LastMessage.valueOf("LAST_MESSAGE");
         Assert.assertSame(value, LastMessage.LAST_MESSAGE, "Enum does not match.");
     }
+
+    /**
+     * Tests parseMessageNumberSets method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseMessageNumberSets() throws ImapAsyncClientException {
+        final MessageNumberSet[] msgsets = MessageNumberSet.parseMessageNumberSets("2,4:7,9:8,12:*,*,*:3,4294967295");
+        Assert.assertEquals(msgsets.length, 7, "Length mismatched.");
+        Assert.assertEquals(msgsets[0], new MessageNumberSet(2, 2), "MessageNumberSet mismatched.");
+        Assert.assertEquals(msgsets[1], new MessageNumberSet(4, 7), "MessageNumberSet mismatched.");
+        Assert.assertEquals(msgsets[2], new MessageNumberSet(8, 9), "MessageNumberSet mismatched.");
+        Assert.assertEquals(msgsets[3], new MessageNumberSet(12, LastMessage.LAST_MESSAGE), "MessageNumberSet mismatched.");
+        Assert.assertEquals(msgsets[4], new MessageNumberSet(LastMessage.LAST_MESSAGE), "MessageNumberSet mismatched.");
+        Assert.assertEquals(msgsets[5], new MessageNumberSet(3, LastMessage.LAST_MESSAGE), "MessageNumberSet mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildString(msgsets), "2,4:7,8:9,12:*,*,3:*,4294967295", "buildString mismatched.");
+    }
+
+    /**
+     * Tests parseMessageNumberSets method with invalid sequence-sets.
+     */
+    @Test
+    public void testParseMessageNumberSetsInvalid() {
+        final String[] invalids = { "", ",", "1,", ",1", "1,,2", "0", "1:", ":2", "a", "1:2:3", "4294967296", "**" };
+        for (final String invalid : invalids) {
+            ImapAsyncClientException actual = null;
+            try {
+                MessageNumberSet.parseMessageNumberSets(invalid);
+            } catch (final ImapAsyncClientException e) {
+                actual = e;
+            }
+            Assert.assertNotNull(actual, "ImapAsyncClientException should occur for " + invalid);
+            Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+    }
+
+    /**
+     * Tests buildStrings method splitting into sequence-sets under the given length.
+     */
+    @Test
+    public void testBuildStrings() {
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(new long[] { 1, 3, 5, 6, 7, 9, 11, 13 });
+        Assert.assertEquals(MessageNumberSet.buildStrings(msgsets, 7).toString(), "[1,3,5:7, 9,11,13]", "buildStrings mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildStrings(msgsets, 3).toString(), "[1,3, 5:7, 9, 11, 13]", "buildStrings mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildStrings(msgsets, 100).get(0), MessageNumberSet.buildString(msgsets), "buildStrings mismatched.");
+        Assert.assertTrue(MessageNumberSet.buildStrings(null, 100).isEmpty(), "buildStrings mismatched.");
+        Assert.assertTrue(MessageNumberSet.buildStrings(new MessageNumberSet[0], 100).isEmpty(), "buildStrings mismatched.");
+    }
 }
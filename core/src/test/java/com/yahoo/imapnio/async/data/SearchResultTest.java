@@ -33,4 +33,42 @@ public class SearchResultTest {
         final List<Long> result = infos.getMessageNumbers();
         Assert.assertNull(result, "Result mismatched.");
     }
+
+    /**
+     * Tests SearchResult constructor with primitive array, getters and conversion to MessageNumberSet.
+     */
+    @Test
+    public void testSearchResultPrimitive() {
+        final long[] numbers = new long[] { 1, 2, 3, 7, 9, 10, 0, 0 };
+        final SearchResult result = new SearchResult(numbers, 6);
+        Assert.assertEquals(result.getCount(), 6, "Count mismatched.");
+        Assert.assertEquals(result.getMessageNumberArray(), new long[] { 1, 2, 3, 7, 9, 10 }, "Array mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildString(result.toMessageNumberSets()), "1:3,7,9:10", "Sets mismatched.");
+        final List<Long> list = result.getMessageNumbers();
+        Assert.assertEquals(list.size(), 6, "Result mismatched.");
+        Assert.assertEquals(list.get(3), Long.valueOf(7), "Result mismatched.");
+        Assert.assertSame(result.getMessageNumbers(), list, "List should be built once.");
+
+        final SearchResult empty = new SearchResult(new long[0], 0);
+        Assert.assertEquals(empty.toMessageNumberSets().length, 0, "Sets mismatched.");
+        Assert.assertEquals(empty.getMessageNumbers().size(), 0, "Result mismatched.");
+    }
+
+    /**
+     * Tests primitive getters and conversion when created with a list.
+     */
+    @Test
+    public void testSearchResultListToPrimitive() {
+        final List<Long> ll = new ArrayList<>();
+        ll.add(5L);
+        ll.add(6L);
+        final SearchResult result = new SearchResult(ll);
+        Assert.assertEquals(result.getCount(), 2, "Count mismatched.");
+        Assert.assertEquals(result.getMessageNumberArray(), new long[] { 5, 6 }, "Array mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildString(result.toMessageNumberSets()), "5:6", "Sets mismatched.");
+
+        final SearchResult nullResult = new SearchResult((List<Long>) null);
+        Assert.assertNull(nullResult.getMessageNumberArray(), "Array mismatched.");
+        Assert.assertEquals(nullResult.toMessageNumberSets().length, 0, "Sets mismatched.");
+    }
 }
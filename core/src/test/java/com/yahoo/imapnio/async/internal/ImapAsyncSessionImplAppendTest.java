@@ -0,0 +1,224 @@
+package com.yahoo.imapnio.async.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.request.AppendCommand;
+import com.yahoo.imapnio.async.request.AppendSource;
+import com.yahoo.imapnio.async.request.LiteralSupport;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * Unit test for {@link ImapAsyncSessionImpl} sending APPEND with message data streamed from {@link AppendSource}.
+ */
+public class ImapAsyncSessionImplAppendTest {
+
+    /** Dummy session id. */
+    private static final Long SESSION_ID = Long.valueOf(123456);
+
+    /** Dummy user id. */
+    private static final String USER_ID = "Argentinosaurus@long.enough";
+
+    /** Timeout in milliseconds for making get on future. */
+    private static final long FUTURE_GET_TIMEOUT_MILLIS = 5L;
+
+    /** Message data. */
+    private static final String MSG = "Subject: hi\r\n\r\nhello\r\n";
+
+    /** Clock instance. */
+    private Clock clock;
+
+    /** Channel mock. */
+    private Channel channel;
+
+    /** Pipeline mock. */
+    private ChannelPipeline pipeline;
+
+    /**
+     * Sets up instance before each test method.
+     */
+    @BeforeMethod
+    public void beforeMethod() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        channel = Mockito.mock(Channel.class);
+        pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+    }
+
+    /**
+     * Reads the whole content of the given chunked input.
+     *
+     * @param msg the message written to channel
+     * @return the content
+     * @throws Exception will not throw
+     */
+    @SuppressWarnings("unchecked")
+    private String readAll(final Object msg) throws Exception {
+        final ChunkedInput<ByteBuf> input = (ChunkedInput<ByteBuf>) msg;
+        final StringBuilder sb = new StringBuilder();
+        while (!input.isEndOfInput()) {
+            final ByteBuf chunk = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+            sb.append(chunk.toString(StandardCharsets.US_ASCII));
+            chunk.release();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tests message data is streamed after server continuation.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteAppendStreamedAfterContinuation() throws Exception {
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_ON, SESSION_ID, pipeline, USER_ID);
+        final ByteBuf data = Unpooled.copiedBuffer(MSG, StandardCharsets.US_ASCII);
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new AppendCommand("INBOX", null, null, AppendSource.of(data)));
+
+        aSession.handleChannelResponse(new IMAPResponse("+ Ready for literal data"));
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        final List<Object> writes = writeCaptor.getAllValues();
+        Assert.assertEquals(((ByteBuf) writes.get(0)).toString(StandardCharsets.US_ASCII), "a1 APPEND INBOX {22}\r\n", "Line mismatched.");
+        Assert.assertEquals(readAll(writes.get(1)), MSG + "\r\n", "Literal data mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK [APPENDUID 1 2] APPEND completed"));
+        Assert.assertTrue(future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size() == 2, "Responses count mismatched.");
+        Assert.assertEquals(data.refCnt(), 0, "Source should be released once command is done.");
+    }
+
+    /**
+     * Tests message data is streamed right after the command line with LITERAL+, without continuation.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteAppendStreamedLiteralPlus() throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException,
+            ExecutionException, TimeoutException, Exception {
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new AppendCommand("INBOX", null, null,
+                AppendSource.of(Unpooled.copiedBuffer(MSG, StandardCharsets.US_ASCII)), LiteralSupport.ENABLE_LITERAL_PLUS));
+
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        final List<Object> writes = writeCaptor.getAllValues();
+        Assert.assertEquals(((ByteBuf) writes.get(0)).toString(StandardCharsets.US_ASCII), "a1 APPEND INBOX {22+}\r\n", "Line mismatched.");
+        Assert.assertEquals(readAll(writes.get(1)), MSG + "\r\n", "Literal data mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK APPEND completed"));
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+    }
+
+    /**
+     * Creates a file channel for a file with the message data.
+     *
+     * @return the file channel
+     * @throws IOException will not throw
+     */
+    private FileChannel newMessageFile() throws IOException {
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(MSG.getBytes(StandardCharsets.US_ASCII));
+        }
+        return new RandomAccessFile(file, "r").getChannel();
+    }
+
+    /**
+     * Tests message data from file is written as a file region followed by CRLF when there is no SSL nor compression.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteAppendFileRegion() throws Exception {
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_ON, SESSION_ID, pipeline, USER_ID);
+        final FileChannel fileChannel = newMessageFile();
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new AppendCommand("INBOX", null, null, AppendSource.of(fileChannel, 0,
+                MSG.length())));
+
+        aSession.handleChannelResponse(new IMAPResponse("+ Ready for literal data"));
+        final ArgumentCaptor<Object> regionCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(1)).write(regionCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        final FileRegion region = (FileRegion) regionCaptor.getValue();
+        Assert.assertEquals(region.position(), 0, "Position mismatched.");
+        Assert.assertEquals(region.count(), MSG.length(), "Count mismatched.");
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        final List<Object> writes = writeCaptor.getAllValues();
+        Assert.assertEquals(((ByteBuf) writes.get(0)).toString(StandardCharsets.US_ASCII), "a1 APPEND INBOX {22}\r\n", "Line mismatched.");
+        Assert.assertEquals(((ByteBuf) writes.get(1)).toString(StandardCharsets.US_ASCII), "\r\n", "CRLF mismatched.");
+        region.release();
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK APPEND completed"));
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+        Assert.assertFalse(fileChannel.isOpen(), "File channel should be closed once command is done.");
+    }
+
+    /**
+     * Tests message data from file falls back to chunked input when SSL handler is in the pipeline.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteAppendFileWithSsl() throws Exception {
+        Mockito.when(pipeline.get("sslHandler")).thenReturn(Mockito.mock(SslHandler.class));
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new AppendCommand("INBOX", null, null, AppendSource.of(newMessageFile(), 0,
+                MSG.length())));
+
+        aSession.handleChannelResponse(new IMAPResponse("+ Ready for literal data"));
+        Mockito.verify(channel, Mockito.never()).write(Mockito.any(), Mockito.isA(ChannelPromise.class));
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(readAll(writeCaptor.getAllValues().get(1)), MSG + "\r\n", "Literal data mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK APPEND completed"));
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+    }
+}
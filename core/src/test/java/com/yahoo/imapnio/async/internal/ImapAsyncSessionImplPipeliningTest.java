@@ -0,0 +1,312 @@
+package com.yahoo.imapnio.async.internal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
+import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.CapaCommand;
+import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapRFCSupportedCommandType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.NoopCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Unit test for {@link ImapAsyncSessionImpl} when command pipelining is enabled.
+ */
+public class ImapAsyncSessionImplPipeliningTest {
+
+    /** Dummy session id. */
+    private static final Long SESSION_ID = Long.valueOf(123456);
+
+    /** Dummy user id. */
+    private static final String USER_ID = "Argentinosaurus@long.enough";
+
+    /** Timeout in milliseconds for making get on future. */
+    private static final long FUTURE_GET_TIMEOUT_MILLIS = 5L;
+
+    /** Clock instance. */
+    private Clock clock;
+
+    /**
+     * Sets up instance before each test method.
+     */
+    @BeforeMethod
+    public void beforeMethod() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+    }
+
+    /**
+     * Converts the written message to string.
+     *
+     * @param msg the message written to channel
+     * @return the command line
+     */
+    private String toLine(final Object msg) {
+        return ((ByteBuf) msg).toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Tests pipelining mode when multiple commands are in flight, completed by their own tags out of order, and un-tagged responses go to the oldest
+     * command in flight.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecutePipeliningCompletedByTag()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setPipeliningEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID,
+                config);
+
+        final ImapFuture<ImapAsyncResponse> capaFuture = aSession.execute(new CapaCommand());
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        final ImapFuture<ImapAsyncResponse> capaFuture2 = aSession.execute(new CapaCommand());
+
+        // all sent without waiting for the prior ones
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(3)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(toLine(writeCaptor.getAllValues().get(0)), "a1 CAPABILITY\r\n", "Line mismatched.");
+        Assert.assertEquals(toLine(writeCaptor.getAllValues().get(1)), "a2 NOOP\r\n", "Line mismatched.");
+        Assert.assertEquals(toLine(writeCaptor.getAllValues().get(2)), "a3 CAPABILITY\r\n", "Line mismatched.");
+
+        // writes complete in order
+        Mockito.when(writePromise.isSuccess()).thenReturn(true);
+        aSession.operationComplete(writePromise);
+        aSession.operationComplete(writePromise);
+        aSession.operationComplete(writePromise);
+        // no command waiting for write to complete
+        aSession.operationComplete(writePromise);
+
+        aSession.handleChannelResponse(new IMAPResponse("* CAPABILITY IMAP4rev1 SASL-IR AUTH=PLAIN"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+        Assert.assertFalse(capaFuture.isDone(), "isDone() should be false.");
+        Assert.assertEquals(noopFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 1, "Count mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK CAPABILITY completed"));
+        Assert.assertTrue(capaFuture.isDone(), "isDone() should be true now");
+        final Collection<IMAPResponse> capaLines = capaFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(capaLines.size(), 2, "responses count mismatched.");
+        Assert.assertTrue(capaLines.iterator().next().keyEquals("CAPABILITY"), "Un-tagged response should go to the oldest command.");
+
+        // tag not belonging to any command in flight is treated as the oldest command's response
+        aSession.handleChannelResponse(new IMAPResponse("a9 OK unknown"));
+        Assert.assertFalse(capaFuture2.isDone(), "isDone() should be false.");
+        aSession.handleChannelResponse(new IMAPResponse("* CAPABILITY IMAP4rev1"));
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK CAPABILITY completed"));
+        Assert.assertTrue(capaFuture2.isDone(), "isDone() should be true now");
+        Assert.assertEquals(capaFuture2.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 3, "Count mismatched.");
+    }
+
+    /**
+     * Tests pipelining mode when commands relying on continuation act as ordering barriers.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecutePipeliningBarrierHoldsCommands()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setPipeliningEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID,
+                config);
+
+        final ImapFuture<ImapAsyncResponse> capaFuture = aSession.execute(new CapaCommand());
+        final IdleCommand idleCmd = new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>());
+        final ImapFuture<ImapAsyncResponse> idleFuture = aSession.execute(idleCmd);
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        // idle waits for capability, noop waits behind idle
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+
+        // idle is not in flight yet, cannot be terminated
+        ImapAsyncClientException ex = null;
+        try {
+            aSession.terminateCommand(idleCmd);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.COMMAND_NOT_ALLOWED, "FailureType mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK CAPABILITY completed"));
+        Assert.assertTrue(capaFuture.isDone(), "isDone() should be true now");
+        final ArgumentCaptor<Object> writeCaptor = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(writeCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(toLine(writeCaptor.getAllValues().get(1)), "a2 IDLE\r\n", "Line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        aSession.handleChannelResponse(new IMAPResponse("* 3 EXISTS"));
+        final ImapFuture<ImapAsyncResponse> terminateFuture = aSession.terminateCommand(idleCmd);
+        Assert.assertSame(terminateFuture, idleFuture, "Future mismatched.");
+        Mockito.verify(channel, Mockito.times(3)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK IDLE terminated"));
+        Assert.assertTrue(idleFuture.isDone(), "isDone() should be true now");
+        Assert.assertFalse(noopFuture.isDone(), "isDone() should be false.");
+        final ArgumentCaptor<Object> writeCaptor2 = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(4)).writeAndFlush(writeCaptor2.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(toLine(writeCaptor2.getAllValues().get(3)), "a3 NOOP\r\n", "Line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK NOOP completed"));
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+    }
+
+    /**
+     * Tests pipelining mode when channel is closed, all commands in flight and held should be done with exception.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecutePipeliningChannelClosed() throws ImapAsyncClientException, InterruptedException {
+
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setPipeliningEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID,
+                config);
+
+        final List<ImapFuture<ImapAsyncResponse>> futures = new ArrayList<ImapFuture<ImapAsyncResponse>>();
+        futures.add(aSession.execute(new CapaCommand()));
+        futures.add(aSession.execute(new NoopCommand()));
+        futures.add(aSession.execute(new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>())));
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+
+        Mockito.when(channel.isActive()).thenReturn(false);
+        aSession.handleChannelClosed();
+
+        for (final ImapFuture<ImapAsyncResponse> future : futures) {
+            Assert.assertTrue(future.isDone(), "isDone() should be true now");
+            ExecutionException ex = null;
+            try {
+                future.get();
+            } catch (final ExecutionException ee) {
+                ex = ee;
+            }
+            Assert.assertNotNull(ex, "Expect exception to be thrown.");
+            Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.CHANNEL_DISCONNECTED, "Type mismatched.");
+        }
+    }
+
+    /**
+     * Tests pipelining mode when a held command fails to build its command line once released.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecutePipeliningHeldCommandFailedToSend() throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException {
+
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setPipeliningEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID,
+                config);
+
+        final ImapRequest badCmd = Mockito.mock(ImapRequest.class);
+        Mockito.when(badCmd.getCommandType()).thenReturn(ImapRFCSupportedCommandType.APPEND_MESSAGE);
+        Mockito.when(badCmd.getCommandLineBytes()).thenThrow(new ImapAsyncClientException(FailureType.INVALID_INPUT));
+
+        final ImapFuture<ImapAsyncResponse> capaFuture = aSession.execute(new CapaCommand());
+        final ImapFuture<ImapAsyncResponse> badFuture = aSession.execute(badCmd);
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK CAPABILITY completed"));
+
+        Assert.assertTrue(capaFuture.isDone(), "isDone() should be true now");
+        Assert.assertTrue(badFuture.isDone(), "isDone() should be true now");
+        ExecutionException ex = null;
+        try {
+            badFuture.get();
+        } catch (final ExecutionException ee) {
+            ex = ee;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFailureType(), FailureType.CHANNEL_EXCEPTION, "Type mismatched.");
+        Mockito.verify(channel, Mockito.times(1)).close(Mockito.isA(ChannelPromise.class));
+    }
+}
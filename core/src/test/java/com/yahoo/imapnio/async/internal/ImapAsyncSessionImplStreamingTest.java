@@ -0,0 +1,233 @@
+package com.yahoo.imapnio.async.internal;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.Status;
+import com.yahoo.imapnio.async.client.ImapAsyncSession;
+import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
+import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.client.ImapUntaggedResponseListener;
+import com.yahoo.imapnio.async.data.FetchMessage;
+import com.yahoo.imapnio.async.data.FetchResult;
+import com.yahoo.imapnio.async.data.ListInfoList;
+import com.yahoo.imapnio.async.data.MailboxEvent;
+import com.yahoo.imapnio.async.request.CapaCommand;
+import com.yahoo.imapnio.async.request.ListCommand;
+import com.yahoo.imapnio.async.request.StatusCommand;
+import com.yahoo.imapnio.async.request.UidFetchCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+import com.yahoo.imapnio.client.ImapClientRespReader;
+import com.yahoo.imapnio.client.ImapLiteralSink;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Unit test for the delivery of the server responses by {@link ImapAsyncSessionImpl} as they are read: literal sinks and untagged response
+ * listeners. Kept apart from {@link ImapAsyncSessionImplTest} which covers the command life cycle.
+ */
+public class ImapAsyncSessionImplStreamingTest {
+
+    /** Dummy session id. */
+    private static final Long SESSION_ID = Long.valueOf(123456);
+
+    /** Dummy user id. */
+    private static final String USER_ID = "Argentinosaurus@long.enough";
+
+    /** Timeout in milliseconds for making get on future. */
+    private static final long FUTURE_GET_TIMEOUT_MILLIS = 5L;
+
+    /** Clock instance. */
+    private Clock clock;
+
+    /** Channel mock, active. */
+    private Channel channel;
+
+    /** Pipeline mock of the channel. */
+    private ChannelPipeline pipeline;
+
+    /** Logger mock. */
+    private Logger logger;
+
+    /**
+     * Sets up the channel mocks before each test method.
+     */
+    @BeforeMethod
+    public void beforeMethod() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1L);
+        channel = Mockito.mock(Channel.class);
+        pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        logger = Mockito.mock(Logger.class);
+    }
+
+    /**
+     * @return a new session on the channel mock
+     */
+    private ImapAsyncSessionImpl newSession() {
+        return new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+    }
+
+    /**
+     * Tests the literal sink provider given to the response reader returns the sink of the command in progress.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteFetchWithLiteralSink() throws Exception {
+        final ImapClientRespReader reader = Mockito.mock(ImapClientRespReader.class);
+        Mockito.when(pipeline.get(ImapClientRespReader.class)).thenReturn(reader);
+        final ImapAsyncSessionImpl aSession = newSession();
+        final ArgumentCaptor<ImapClientRespReader.LiteralSinkProvider> providerCaptor = ArgumentCaptor
+                .forClass(ImapClientRespReader.LiteralSinkProvider.class);
+        Mockito.verify(reader, Mockito.times(1)).setLiteralSinkProvider(providerCaptor.capture());
+        final ImapClientRespReader.LiteralSinkProvider provider = providerCaptor.getValue();
+        Assert.assertNull(provider.getLiteralSink(), "No sink expected when no command is in progress.");
+
+        final ImapLiteralSink sink = Mockito.mock(ImapLiteralSink.class);
+        final UidFetchCommand cmd = new UidFetchCommand("10", "BODY.PEEK[]");
+        cmd.setLiteralSink(sink);
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(cmd);
+        Assert.assertSame(provider.getLiteralSink(), sink, "Sink of the command in progress expected.");
+
+        aSession.handleChannelResponse(new IMAPResponse("* 3 FETCH (UID 10 BODY[] {0}\r\n)"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK UID FETCH completed"));
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+        Assert.assertEquals(future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 2, "Responses count mismatched.");
+        Assert.assertNull(provider.getLiteralSink(), "No sink expected when no command is in progress.");
+    }
+
+    /**
+     * Tests a command with a literal sink is not sent along with other commands in pipelining mode, so the literals read while it is in flight are
+     * its own.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testPipeliningFetchWithLiteralSink() throws Exception {
+        final ImapClientRespReader reader = Mockito.mock(ImapClientRespReader.class);
+        Mockito.when(pipeline.get(ImapClientRespReader.class)).thenReturn(reader);
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setPipeliningEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID,
+                config);
+        final ArgumentCaptor<ImapClientRespReader.LiteralSinkProvider> providerCaptor = ArgumentCaptor
+                .forClass(ImapClientRespReader.LiteralSinkProvider.class);
+        Mockito.verify(reader, Mockito.times(1)).setLiteralSinkProvider(providerCaptor.capture());
+        final ImapClientRespReader.LiteralSinkProvider provider = providerCaptor.getValue();
+
+        final ImapFuture<ImapAsyncResponse> fetchFuture = aSession.execute(new UidFetchCommand("9", "BODY.PEEK[]"));
+        final ImapLiteralSink sink = Mockito.mock(ImapLiteralSink.class);
+        final UidFetchCommand sinkCmd = new UidFetchCommand("10", "BODY.PEEK[]");
+        sinkCmd.setLiteralSink(sink);
+        final ImapFuture<ImapAsyncResponse> sinkFuture = aSession.execute(sinkCmd);
+        final ImapFuture<ImapAsyncResponse> capaFuture = aSession.execute(new CapaCommand());
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+        Assert.assertNull(provider.getLiteralSink(), "Literals of the command ahead should not go to the sink.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK UID FETCH completed"));
+        Assert.assertTrue(fetchFuture.isDone(), "Future should be done.");
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+        Assert.assertSame(provider.getLiteralSink(), sink, "Sink of the command in progress expected.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK UID FETCH completed"));
+        Assert.assertTrue(sinkFuture.isDone(), "Future should be done.");
+        Mockito.verify(channel, Mockito.times(3)).writeAndFlush(Mockito.anyObject(), Mockito.isA(ChannelPromise.class));
+        Assert.assertNull(provider.getLiteralSink(), "No sink expected for the command in progress.");
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK CAPABILITY completed"));
+        Assert.assertTrue(capaFuture.isDone(), "Future should be done.");
+    }
+
+    /**
+     * Tests untagged response listeners are notified of each untagged response, with or without a command in flight, and the command still gets
+     * the responses intact.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testUntaggedResponseListeners() throws Exception {
+        final ImapAsyncSessionImpl aSession = newSession();
+
+        final List<MailboxEvent> events = new ArrayList<MailboxEvent>();
+        final List<IMAPResponse> others = new ArrayList<IMAPResponse>();
+        final ImapUntaggedResponseListener listener = new ImapUntaggedResponseListener() {
+            @Override
+            public void onMailboxEvent(final ImapAsyncSession session, final MailboxEvent event) {
+                Assert.assertSame(session, aSession, "Session mismatched.");
+                events.add(event);
+            }
+
+            @Override
+            public void onUntaggedResponse(final ImapAsyncSession session, final IMAPResponse response) {
+                others.add(response);
+            }
+        };
+        final ImapUntaggedResponseListener failingListener = Mockito.mock(ImapUntaggedResponseListener.class);
+        Mockito.doThrow(new IllegalStateException()).when(failingListener).onMailboxEvent(Matchers.any(ImapAsyncSession.class),
+                Matchers.any(MailboxEvent.class));
+        aSession.addUntaggedResponseListener(failingListener);
+        aSession.addUntaggedResponseListener(listener);
+        aSession.addUntaggedResponseListener(listener);
+
+        // no command in flight
+        aSession.handleChannelResponse(new IMAPResponse("* 4 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("* OK [ALERT] Maintenance tonight"));
+        Assert.assertEquals(events.size(), 1, "Listener should be notified once per event.");
+        Assert.assertEquals(events.get(0).getMessageNumber(), 4, "getMessageNumber() mismatched.");
+        Assert.assertEquals(others.size(), 1, "Listener should be notified of other responses.");
+        Assert.assertTrue(others.get(0).isOK(), "Response mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new StatusCommand("INBOX", new String[] { "MESSAGES", "UIDNEXT" }));
+        aSession.handleChannelResponse(new IMAPResponse("* STATUS INBOX (MESSAGES 5 UIDNEXT 44)"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK STATUS completed"));
+        Assert.assertEquals(events.size(), 2, "Listener should be notified of STATUS.");
+        Assert.assertEquals(events.get(1).getStatus().uidnext, 44L, "getStatus() mismatched.");
+        Assert.assertEquals(others.size(), 1, "Tagged response should not be notified.");
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final Status status = mapper.readValue(future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().toArray(
+                new IMAPResponse[0]), Status.class);
+        Assert.assertEquals(status.mbox, "INBOX", "Command response should be parsed after the key.");
+        Assert.assertEquals(status.total, 5, "Command response should be parsed after the key.");
+
+        final ImapFuture<ImapAsyncResponse> fetchFuture = aSession.execute(new UidFetchCommand("5", "(UID FLAGS)"));
+        aSession.handleChannelResponse(new IMAPResponse("* 3 FETCH (UID 5 FLAGS (\\Seen))"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK UID FETCH completed"));
+        final FetchMessage fetched = mapper.readValue(fetchFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().toArray(
+                new IMAPResponse[0]), FetchResult.class).getMessages().get(0);
+        Assert.assertEquals(fetched.getUid(), 5L, "FETCH of the command should be parsed after the key.");
+
+        final ImapFuture<ImapAsyncResponse> listFuture = aSession.execute(new ListCommand("", "*"));
+        aSession.handleChannelResponse(new IMAPResponse("* LIST (\\HasNoChildren) \".\" \"Trash\""));
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK LIST completed"));
+        Assert.assertEquals(events.get(3).getMailboxName(), "Trash", "Listener mailbox name mismatched.");
+        final ListInfoList infos = mapper.readValue(listFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().toArray(
+                new IMAPResponse[0]), ListInfoList.class);
+        Assert.assertEquals(infos.getListInfo().get(0).name, "Trash", "LIST of the command should be parsed after the key.");
+        Mockito.verify(logger, Mockito.times(4)).error(Matchers.anyString(), Matchers.anyLong(), Matchers.anyString(), Matchers.any(Exception.class));
+
+        aSession.removeUntaggedResponseListener(listener);
+        aSession.removeUntaggedResponseListener(failingListener);
+        aSession.handleChannelResponse(new IMAPResponse("* 5 EXISTS"));
+        Assert.assertEquals(events.size(), 4, "Removed listener should not be notified.");
+    }
+}
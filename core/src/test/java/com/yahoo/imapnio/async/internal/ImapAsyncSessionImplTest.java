@@ -3,6 +3,7 @@ package com.yahoo.imapnio.async.internal;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.util.Collection;
 import java.util.Collections;
@@ -39,10 +40,16 @@ import com.yahoo.imapnio.async.request.AuthPlainCommand;
 import com.yahoo.imapnio.async.request.AuthXoauth2Command;
 import com.yahoo.imapnio.async.request.CapaCommand;
 import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapCommandType;
+import com.yahoo.imapnio.async.request.ImapRFCSupportedCommandType;
 import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.ImapRequestAdapter;
 import com.yahoo.imapnio.async.response.ImapAsyncResponse;
 import com.yahoo.imapnio.async.response.ImapResponseMapper;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPipeline;
@@ -118,6 +125,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -302,6 +310,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -415,6 +424,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -513,6 +523,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -666,6 +677,7 @@ public class ImapAsyncSessionImplTest {
         final SslHandler sslHandler = Mockito.mock(SslHandler.class);
         Mockito.when(pipeline.get(ImapAsyncClient.SSL_HANDLER)).thenReturn(sslHandler);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -819,6 +831,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -967,6 +980,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1022,6 +1036,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1056,6 +1071,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         final ChannelPromise closePromise = Mockito.mock(ChannelPromise.class);
@@ -1089,6 +1105,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writeToServerPromise = Mockito.mock(ChannelPromise.class);
         final ChannelPromise closePromise = Mockito.mock(ChannelPromise.class);
@@ -1209,6 +1226,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1293,6 +1311,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1355,6 +1374,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1466,6 +1486,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(writePromise);
@@ -1506,6 +1527,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(false);
         final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
         final ChannelPromise closePromise = Mockito.mock(ChannelPromise.class);
@@ -1556,6 +1578,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise closePromise = Mockito.mock(ChannelPromise.class);
         Mockito.when(channel.newPromise()).thenReturn(closePromise);
@@ -1608,6 +1631,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -1710,6 +1734,7 @@ public class ImapAsyncSessionImplTest {
         final Channel channel = Mockito.mock(Channel.class);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         Mockito.when(channel.isActive()).thenReturn(true);
         final ChannelPromise authWritePromise = Mockito.mock(ChannelPromise.class); // first
         final ChannelPromise authWritePromise2 = Mockito.mock(ChannelPromise.class); // after +
@@ -1865,4 +1890,71 @@ public class ImapAsyncSessionImplTest {
         final DebugMode value = DebugMode.valueOf("DEBUG_OFF");
         Assert.assertSame(value, DebugMode.DEBUG_OFF, "Enum does not match.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests execute method for a command implementing {@link ImapRequest} directly, its command line is sent prefixed with the tag.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testExecuteRequestNotExtendingAdapter() throws ImapAsyncClientException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final ByteBuf line = Unpooled.copiedBuffer("X-CUSTOM\r\n", StandardCharsets.US_ASCII);
+        final ImapRequest cmd = Mockito.mock(ImapRequest.class);
+        Mockito.when(cmd.getCommandLineBytes()).thenReturn(line);
+        aSession.execute(cmd);
+
+        final ArgumentCaptor<ByteBuf> bufCaptor = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(bufCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(bufCaptor.getValue().toString(StandardCharsets.US_ASCII), "a1 X-CUSTOM\r\n", "Command line mismatched.");
+        Assert.assertEquals(line.refCnt(), 0, "Command line buffer should be released.");
+        bufCaptor.getValue().release();
+    }
+
+    /**
+     * Tests execute method sends the command line of a {@link ImapRequestAdapter} subclass which only overrides getCommandLineBytes.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testExecuteRequestAdapterOverridingCommandLineBytes() throws ImapAsyncClientException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(clock, channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final ImapRequest cmd = new ImapRequestAdapter() {
+            @Override
+            public ByteBuf getCommandLineBytes() {
+                return Unpooled.copiedBuffer("X-CUSTOM\r\n", StandardCharsets.US_ASCII);
+            }
+
+            @Override
+            public ImapCommandType getCommandType() {
+                return ImapRFCSupportedCommandType.NOOP;
+            }
+
+            @Override
+            public void cleanup() {
+            }
+        };
+        aSession.execute(cmd);
+
+        final ArgumentCaptor<ByteBuf> bufCaptor = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(bufCaptor.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(bufCaptor.getValue().toString(StandardCharsets.US_ASCII), "a1 X-CUSTOM\r\n", "Command line mismatched.");
+        bufCaptor.getValue().release();
+    }
+}
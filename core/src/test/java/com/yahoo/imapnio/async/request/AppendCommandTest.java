@@ -19,6 +19,10 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.stream.ChunkedInput;
 
 /**
  * Unit test for {@link AppendCommand}.
@@ -151,6 +155,28 @@ public class AppendCommandTest {
         }
     }
 
+    /**
+     * Tests getTaggedCommandLineBytes method with literal data sent along with the command line.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetTaggedCommandLineBytesLiteralPlus() throws ImapAsyncClientException {
+        final AppendCommand cmd = new AppendCommand("Inbox", null, null, TEST_MSG_BYTE, LiteralSupport.ENABLE_LITERAL_PLUS);
+        final ByteBuf buf = cmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a5");
+        final int initialCapacity = "a5".length() + 1 + 2 * "Inbox".length() + ImapClientConstants.PAD_LEN + TEST_MSG_BYTE.length
+                + ImapClientConstants.CRLFLEN;
+        Assert.assertEquals(buf.toString(StandardCharsets.US_ASCII), "a5 APPEND Inbox {300+}\r\n" + TEST_MSG_STR + "\r\n",
+                "Expected result mismatched.");
+        Assert.assertEquals(buf.capacity(), initialCapacity, "Buffer should not be resized.");
+        buf.release();
+
+        final AppendCommand syncCmd = new AppendCommand("Inbox", null, null, TEST_MSG_BYTE);
+        final ByteBuf syncBuf = syncCmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a6");
+        Assert.assertEquals(syncBuf.toString(StandardCharsets.US_ASCII), "a6 APPEND Inbox {300}\r\n", "Expected result mismatched.");
+        syncBuf.release();
+    }
+
     /**
      * Tests getCommandLine method.
      *
@@ -281,4 +307,88 @@ public class AppendCommandTest {
         final LiteralSupport plus = LiteralSupport.valueOf("ENABLE_LITERAL_PLUS");
         Assert.assertSame(plus, LiteralSupport.ENABLE_LITERAL_PLUS, "Enum does not match.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests command with message data streamed from source and continuation from server.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStreamedSourceWithContinuation() throws Exception {
+        final ByteBuf data = Unpooled.copiedBuffer(TEST_MSG_BYTE);
+        final AppendCommand cmd = new AppendCommand("Inbox", null, null, AppendSource.of(data));
+        Assert.assertTrue(cmd.isLiteralDataStreamed(), "Literal data should be streamed.");
+        Assert.assertFalse(cmd.isLiteralSentInline(), "Literal data should wait for continuation.");
+        Assert.assertEquals(cmd.getCommandLine(), "APPEND Inbox {300}\r\n", "Expected result mismatched.");
+
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getNextCommandLineAfterContinuation(new IMAPResponse("+"));
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Failure type mismatched.");
+
+        final ChunkedInput<ByteBuf> input = cmd.getLiteralData();
+        final ByteBuf chunk = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        final ByteBuf crlf = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertTrue(input.isEndOfInput(), "Input should be ended.");
+        Assert.assertEquals(chunk.toString(StandardCharsets.UTF_8) + crlf.toString(StandardCharsets.US_ASCII), TEST_MSG_STR + "\r\n",
+                "Data mismatched.");
+        chunk.release();
+        crlf.release();
+
+        cmd.cleanup();
+        Assert.assertEquals(data.refCnt(), 0, "Source should be released by cleanup.");
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
+    /**
+     * Tests command with message data streamed from source and LITERAL+ or LITERAL-, data is not part of the command line.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testStreamedSourceWithLiteralPlusAndMinus() throws ImapAsyncClientException {
+        final AppendCommand plusCmd = new AppendCommand("Inbox", null, null, AppendSource.of(Unpooled.copiedBuffer(TEST_MSG_BYTE)),
+                LiteralSupport.ENABLE_LITERAL_PLUS);
+        Assert.assertTrue(plusCmd.isLiteralSentInline(), "Literal data should be sent along.");
+        final ByteBuf buf = plusCmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a1");
+        Assert.assertEquals(buf.toString(StandardCharsets.US_ASCII), "a1 APPEND Inbox {300+}\r\n", "Expected result mismatched.");
+        buf.release();
+        plusCmd.cleanup();
+
+        final AppendCommand minusCmd = new AppendCommand("Inbox", null, null, AppendSource.of(Unpooled.copiedBuffer(TEST_MSG_BYTE)),
+                LiteralSupport.ENABLE_LITERAL_MINUS);
+        Assert.assertTrue(minusCmd.isLiteralSentInline(), "Literal data should be sent along.");
+        Assert.assertEquals(minusCmd.getCommandLine(), "APPEND Inbox {300-}\r\n", "Expected result mismatched.");
+        minusCmd.cleanup();
+
+        final AppendCommand largeCmd = new AppendCommand("Inbox", null, null, AppendSource.of(Unpooled.buffer(5000).writeZero(5000)),
+                LiteralSupport.ENABLE_LITERAL_MINUS);
+        Assert.assertFalse(largeCmd.isLiteralSentInline(), "Literal data larger than LITERAL- limit should wait for continuation.");
+        Assert.assertEquals(largeCmd.getCommandLine(), "APPEND Inbox {5000}\r\n", "Expected result mismatched.");
+        largeCmd.cleanup();
+    }
+
+    /**
+     * Tests getLiteralData method when data is given as byte array.
+     */
+    @Test
+    public void testGetLiteralDataNotStreamed() {
+        final AppendCommand cmd = new AppendCommand("Inbox", null, null, TEST_MSG_BYTE);
+        Assert.assertFalse(cmd.isLiteralDataStreamed(), "Literal data should not be streamed.");
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getLiteralData();
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Failure type mismatched.");
+    }
+}
@@ -0,0 +1,197 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * Unit test for {@link AppendSource}.
+ */
+public class AppendSourceTest {
+
+    /**
+     * Reads all the chunks of the given input.
+     *
+     * @param input the chunked input
+     * @param expectedChunks expected number of chunks
+     * @return the content of all the chunks
+     * @throws Exception will not throw
+     */
+    private byte[] readAll(final ChunkedInput<ByteBuf> input, final int expectedChunks) throws Exception {
+        final ByteBuf all = Unpooled.buffer();
+        int chunks = 0;
+        while (!input.isEndOfInput()) {
+            final ByteBuf chunk = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+            Assert.assertTrue(chunk.readableBytes() <= AppendSource.CHUNK_SIZE, "Chunk should not exceed chunk size.");
+            all.writeBytes(chunk);
+            chunk.release();
+            chunks++;
+        }
+        Assert.assertNull(input.readChunk(UnpooledByteBufAllocator.DEFAULT), "No more chunk expected.");
+        Assert.assertEquals(chunks, expectedChunks, "Chunks count mismatched.");
+        Assert.assertEquals(input.progress(), input.length(), "Progress should reach length.");
+        input.close();
+        final byte[] bytes = new byte[all.readableBytes()];
+        all.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Builds the data for testing, larger than 2 chunks.
+     *
+     * @return the data
+     */
+    private byte[] buildData() {
+        final byte[] data = new byte[AppendSource.CHUNK_SIZE * 2 + 10];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    /**
+     * Builds the expected content of the input, data followed by CRLF.
+     *
+     * @param data the data
+     * @return the expected content
+     */
+    private byte[] withCrlf(final byte[] data) {
+        final byte[] expected = Arrays.copyOf(data, data.length + 2);
+        expected[data.length] = '\r';
+        expected[data.length + 1] = '\n';
+        return expected;
+    }
+
+    /**
+     * Tests source backed by ByteBuf.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testByteBufSource() throws Exception {
+        final byte[] data = buildData();
+        final ByteBuf buf = Unpooled.wrappedBuffer(data);
+        final AppendSource source = AppendSource.of(buf);
+        Assert.assertEquals(source.getLength(), data.length, "Length mismatched.");
+
+        Assert.assertEquals(readAll(source.newChunkedInput(), 4), withCrlf(data), "Data mismatched.");
+        Assert.assertEquals(buf.refCnt(), 1, "Chunks should be released.");
+        Assert.assertEquals(buf.readableBytes(), data.length, "Source buffer indexes should not be changed.");
+        source.release();
+        Assert.assertEquals(buf.refCnt(), 0, "Buffer should be released with the source.");
+        source.release();
+    }
+
+    /**
+     * Tests source backed by InputStream.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testInputStreamSource() throws Exception {
+        final byte[] data = buildData();
+        // stream is longer than the declared length
+        final AppendSource source = AppendSource.of(new ByteArrayInputStream(data), data.length - 1);
+        Assert.assertEquals(source.getLength(), data.length - 1, "Length mismatched.");
+        Assert.assertEquals(readAll(source.newChunkedInput(), 4), withCrlf(Arrays.copyOf(data, data.length - 1)), "Data mismatched.");
+        source.release();
+    }
+
+    /**
+     * Tests source backed by InputStream ending before the declared length.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testInputStreamSourceTruncated() throws Exception {
+        final AppendSource source = AppendSource.of(new ByteArrayInputStream("abc".getBytes(StandardCharsets.US_ASCII)), 4);
+        final ChunkedInput<ByteBuf> input = source.newChunkedInput();
+        EOFException ex = null;
+        try {
+            input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        } catch (final EOFException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        source.release();
+    }
+
+    /**
+     * Tests source backed by FileChannel region.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testFileChannelSource() throws Exception {
+        final byte[] data = buildData();
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(data);
+        }
+        final FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+        final AppendSource source = AppendSource.of(fileChannel, 1, data.length - 1);
+        Assert.assertEquals(source.getLength(), data.length - 1, "Length mismatched.");
+        Assert.assertEquals(readAll(source.newChunkedInput(), 4), withCrlf(Arrays.copyOfRange(data, 1, data.length)), "Data mismatched.");
+        Assert.assertFalse(fileChannel.isOpen(), "File channel should be closed once written.");
+        source.release();
+    }
+
+    /**
+     * Tests file region of source backed by FileChannel region, and no file region for other sources.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testFileRegion() throws Exception {
+        final byte[] data = buildData();
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(data);
+        }
+        final FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+        final AppendSource source = AppendSource.of(fileChannel, 1, data.length - 1);
+        final FileRegion region = source.newFileRegion();
+        Assert.assertNotNull(region, "File region expected.");
+        Assert.assertEquals(region.position(), 1, "Position mismatched.");
+        Assert.assertEquals(region.count(), data.length - 1, "Count mismatched.");
+        region.release();
+        Assert.assertFalse(fileChannel.isOpen(), "File channel should be closed once region is released.");
+        source.release();
+
+        final AppendSource bufSource = AppendSource.of(Unpooled.wrappedBuffer(data));
+        Assert.assertNull(bufSource.newFileRegion(), "No file region expected for buffer.");
+        bufSource.release();
+        final AppendSource streamSource = AppendSource.of(new ByteArrayInputStream(data), data.length);
+        Assert.assertNull(streamSource.newFileRegion(), "No file region expected for stream.");
+        streamSource.release();
+    }
+
+    /**
+     * Tests source backed by empty data.
+     *
+     * @throws IOException will not throw
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testEmptySource() throws IOException, Exception {
+        final AppendSource source = AppendSource.of(Unpooled.buffer(0));
+        Assert.assertEquals(readAll(source.newChunkedInput(), 1), withCrlf(new byte[0]), "Data mismatched.");
+        source.release();
+    }
+}
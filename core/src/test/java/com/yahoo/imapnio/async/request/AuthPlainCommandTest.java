@@ -10,6 +10,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
@@ -21,6 +22,7 @@ import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 
 /**
  * Unit test for {@link AuthPlainCommand}.
@@ -86,6 +88,39 @@ public class AuthPlainCommandTest {
         }
     }
 
+    /**
+     * Tests getTaggedCommandLineBytes method builds the client response only once when SASL-IR is enabled.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetTaggedCommandLineBytesSASLIREnabled() throws ImapAsyncClientException {
+        final Map<String, List<String>> capas = new HashMap<String, List<String>>();
+        capas.put(ImapClientConstants.SASL_IR, Collections.singletonList(ImapClientConstants.SASL_IR));
+        final AtomicInteger builds = new AtomicInteger();
+        final AbstractAuthCommand cmd = new AbstractAuthCommand(new Capability(capas)) {
+            @Override
+            void buildCommand(final ByteBuf buf) {
+                buf.writeBytes("AUTHENTICATE PLAIN".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            @Override
+            String buildClientResponse() {
+                builds.incrementAndGet();
+                return "AHRlc2xhAHNlbGZkcml2aW5n";
+            }
+
+            @Override
+            public void cleanup() {
+            }
+        };
+        final ByteBuf buf = cmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a1");
+        Assert.assertEquals(buf.toString(StandardCharsets.US_ASCII), "a1 AUTHENTICATE PLAIN AHRlc2xhAHNlbGZkcml2aW5n\r\n",
+                "Expected result mismatched.");
+        buf.release();
+        Assert.assertEquals(builds.get(), 1, "Client response should be built once.");
+    }
+
     /**
      * Tests getCommandLine method when SASL-IR is enabled and auth id is passed.
      *
@@ -0,0 +1,116 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.mail.Flags;
+import javax.mail.search.FlagTerm;
+import javax.mail.search.SearchException;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.Argument;
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
+import com.yahoo.imapnio.async.data.MessageNumberSet.LastMessage;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Unit test for {@link ESearchCommand}.
+ */
+public class ESearchCommandTest {
+
+    /** Fields to check for cleanup. */
+    private Set<Field> fieldsToCheck;
+
+    /**
+     * Setup reflection.
+     */
+    @BeforeClass
+    public void setUp() {
+        // Use reflection to get all declared non-primitive non-static fields (We do not care about inherited fields)
+        final Class<?> classUnderTest = ESearchCommand.class;
+        fieldsToCheck = new HashSet<>();
+        for (Class<?> c = classUnderTest; c != null; c = c.getSuperclass()) {
+            for (final Field declaredField : c.getDeclaredFields()) {
+                if (!declaredField.getType().isPrimitive() && !Modifier.isStatic(declaredField.getModifiers())) {
+                    declaredField.setAccessible(true);
+                    fieldsToCheck.add(declaredField);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests getCommandLine method with message sequences set, SearchTerm and default return options.
+     *
+     * @throws IOException will not throw
+     * @throws IllegalAccessException will not throw
+     * @throws IllegalArgumentException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws SearchException will not throw
+     */
+    @Test
+    public void testGetCommandLineDefaultReturnOptions()
+            throws IOException, IllegalArgumentException, IllegalAccessException, SearchException, ImapAsyncClientException {
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(new long[] { 1, 2, 3 });
+        final FlagTerm term = new FlagTerm(new Flags(Flags.Flag.SEEN), false);
+        final ImapRequest cmd = new ESearchCommand(msgsets, term, null, null);
+        Assert.assertEquals(cmd.getCommandLine(), "SEARCH RETURN (MIN MAX COUNT ALL) 1:3 UNSEEN\r\n", "Expected result mismatched.");
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
+    /**
+     * Tests getCommandLine method with given return options, written in their canonical order.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws SearchException will not throw
+     */
+    @Test
+    public void testGetCommandLineGivenReturnOptions() throws IOException, SearchException, ImapAsyncClientException {
+        final FlagTerm term = new FlagTerm(new Flags(Flags.Flag.DELETED), true);
+        final ImapRequest cmd = new ESearchCommand((String) null, term, null, EnumSet.of(SearchReturnOption.COUNT, SearchReturnOption.MIN));
+        Assert.assertEquals(cmd.getCommandLine(), "SEARCH RETURN (MIN COUNT) DELETED\r\n", "Expected result mismatched.");
+    }
+
+    /**
+     * Tests getCommandLine method with empty return options and an Argument, which requests ALL only.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetCommandLineEmptyReturnOptionsArgument() throws IOException, ImapAsyncClientException {
+        final Argument args = new Argument();
+        args.writeAtom("ANSWERED");
+        final Capability capa = null;
+        final ImapRequest cmd = new ESearchCommand("1:*", "US-ASCII", args, capa, EnumSet.noneOf(SearchReturnOption.class));
+        Assert.assertEquals(cmd.getCommandLine(), "SEARCH RETURN () CHARSET US-ASCII 1:* ANSWERED\r\n", "Expected result mismatched.");
+    }
+
+    /**
+     * Tests getCommandType method.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws SearchException will not throw
+     */
+    @Test
+    public void testGetCommandType() throws ImapAsyncClientException, SearchException, IOException {
+        final Capability capa = null;
+        final ImapRequest cmd = new ESearchCommand(new MessageNumberSet[] { new MessageNumberSet(1, LastMessage.LAST_MESSAGE) }, null, capa, null);
+        Assert.assertSame(cmd.getCommandType(), ImapRFCSupportedCommandType.SEARCH);
+    }
+}
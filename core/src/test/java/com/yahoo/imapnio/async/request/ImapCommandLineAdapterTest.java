@@ -0,0 +1,95 @@
+package com.yahoo.imapnio.async.request;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Unit test for {@link ImapCommandLineAdapter}.
+ */
+public class ImapCommandLineAdapterTest {
+
+    /**
+     * Tests getTaggedCommandLineBytes method writes tag and command line in one buffer sized by the hint.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetTaggedCommandLineBytes() throws ImapAsyncClientException {
+        final ImapCommandLineAdapter cmd = new UidFetchCommand("1:100,200,300:400", FetchMacro.FAST);
+        final ByteBuf buf = cmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a123");
+        final int initialCapacity = "a123".length() + 1 + "1:100,200,300:400".length() + ImapClientConstants.PAD_LEN;
+        Assert.assertEquals(buf.toString(StandardCharsets.US_ASCII), "a123 UID FETCH 1:100,200,300:400 FAST\r\n", "Expected result mismatched.");
+        Assert.assertEquals(buf.capacity(), initialCapacity, "Buffer should not be resized.");
+        Assert.assertEquals(buf.refCnt(), 1, "Caller should own the buffer.");
+        buf.release();
+
+        Assert.assertEquals(cmd.getCommandLine(), "UID FETCH 1:100,200,300:400 FAST\r\n", "Expected result mismatched.");
+    }
+
+    /**
+     * Tests getTaggedCommandLineBytes method releases the buffer when building command line fails.
+     */
+    @Test
+    public void testGetTaggedCommandLineBytesFailed() {
+        final ImapCommandLineAdapter cmd = new ImapCommandLineAdapter() {
+            @Override
+            protected void writeCommandLine(@Nonnull final ByteBuf out) throws ImapAsyncClientException {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+
+            @Override
+            public ImapCommandType getCommandType() {
+                return null;
+            }
+
+            @Override
+            public void cleanup() {
+            }
+        };
+        final ByteBuf buf = Unpooled.buffer();
+        final ByteBufAllocator allocator = Mockito.mock(ByteBufAllocator.class);
+        Mockito.when(allocator.buffer(Mockito.anyInt())).thenReturn(buf);
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getTaggedCommandLineBytes(allocator, "a1");
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        Assert.assertEquals(buf.refCnt(), 0, "Buffer should be released.");
+    }
+
+    /**
+     * Tests getTaggedCommandLineBytes method sends the bytes of a subclass overriding getCommandLineBytes instead of writing the command line.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetTaggedCommandLineBytesOverridden() throws ImapAsyncClientException {
+        final ByteBuf line = Unpooled.copiedBuffer("NOOP X-CUSTOM\r\n", StandardCharsets.US_ASCII);
+        final ImapCommandLineAdapter cmd = new NoopCommand() {
+            @Override
+            public ByteBuf getCommandLineBytes() {
+                return line;
+            }
+        };
+        final ByteBuf buf = cmd.getTaggedCommandLineBytes(PooledByteBufAllocator.DEFAULT, "a7");
+        Assert.assertEquals(buf.toString(StandardCharsets.US_ASCII), "a7 NOOP X-CUSTOM\r\n", "Overridden command line should be sent.");
+        Assert.assertEquals(line.refCnt(), 0, "Command line buffer should be released.");
+        buf.release();
+    }
+}
@@ -0,0 +1,146 @@
+package com.yahoo.imapnio.async.request;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@link NotifyCommand}.
+ */
+public class NotifyCommandTest {
+
+    /** Fields to check for cleanup. */
+    private Set<Field> fieldsToCheck;
+
+    /**
+     * Setup reflection.
+     */
+    @BeforeClass
+    public void setUp() {
+        // Use reflection to get all declared non-primitive non-static fields (We do not care about inherited fields)
+        final Class<?> classUnderTest = NotifyCommand.class;
+        fieldsToCheck = new HashSet<>();
+        for (Class<?> c = classUnderTest; c != null; c = c.getSuperclass()) {
+            for (final Field declaredField : c.getDeclaredFields()) {
+                if (!declaredField.getType().isPrimitive() && !Modifier.isStatic(declaredField.getModifiers())) {
+                    declaredField.setAccessible(true);
+                    fieldsToCheck.add(declaredField);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests getCommandLine method with NOTIFY SET.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IllegalAccessException will not throw
+     * @throws IllegalArgumentException will not throw
+     */
+    @Test
+    public void testGetCommandLineSet() throws ImapAsyncClientException, IllegalArgumentException, IllegalAccessException {
+        final NotifyEventGroup selected = new NotifyEventGroup(NotifyMailboxFilter.SELECTED, null,
+                EnumSet.of(NotifyEvent.FLAG_CHANGE, NotifyEvent.MESSAGE_EXPUNGE, NotifyEvent.MESSAGE_NEW), "UID FLAGS");
+        final NotifyEventGroup subtree = new NotifyEventGroup(NotifyMailboxFilter.SUBTREE, new String[] { "Lists", "Archive ä" },
+                EnumSet.of(NotifyEvent.MESSAGE_NEW, NotifyEvent.MESSAGE_EXPUNGE), null);
+        final NotifyEventGroup personal = new NotifyEventGroup(NotifyMailboxFilter.PERSONAL, EnumSet.of(NotifyEvent.MAILBOX_NAME));
+        final NotifyEventGroup inboxes = new NotifyEventGroup(NotifyMailboxFilter.INBOXES, EnumSet.noneOf(NotifyEvent.class));
+        final ImapRequest cmd = new NotifyCommand(true, new NotifyEventGroup[] { selected, subtree, personal, inboxes });
+        Assert.assertEquals(cmd.getCommandLine(), "NOTIFY SET STATUS (selected (MessageNew (UID FLAGS) MessageExpunge FlagChange)) "
+                + "(subtree (Lists \"Archive &AOQ-\") (MessageNew MessageExpunge)) (personal (MailboxName)) (inboxes NONE)\r\n",
+                "Expected result mismatched.");
+        Assert.assertFalse(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() mismatched.");
+        Assert.assertNull(cmd.getStreamingResponsesQueue(), "Expected result mismatched.");
+
+        final NotifyEventGroup mailboxes = new NotifyEventGroup(NotifyMailboxFilter.MAILBOXES, new String[] { "INBOX" },
+                EnumSet.of(NotifyEvent.MESSAGE_NEW, NotifyEvent.MESSAGE_EXPUNGE), null);
+        Assert.assertEquals(new NotifyCommand(false, new NotifyEventGroup[] { mailboxes }).getCommandLine(),
+                "NOTIFY SET (mailboxes INBOX (MessageNew MessageExpunge))\r\n", "Expected result mismatched.");
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
+    /**
+     * Tests getCommandLine method with NOTIFY NONE.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetCommandLineNone() throws ImapAsyncClientException {
+        final ImapRequest cmd = new NotifyCommand();
+        Assert.assertEquals(cmd.getCommandLine(), "NOTIFY NONE\r\n", "Expected result mismatched.");
+    }
+
+    /**
+     * Tests event groups reject mailbox names not matching the filter, and invalid combinations of events.
+     */
+    @Test
+    public void testEventGroupInvalid() {
+        final Set<NotifyEvent> messageEvents = EnumSet.of(NotifyEvent.MESSAGE_NEW, NotifyEvent.MESSAGE_EXPUNGE);
+        assertInvalid(NotifyMailboxFilter.SUBTREE, null, messageEvents, null);
+        assertInvalid(NotifyMailboxFilter.MAILBOXES, new String[0], messageEvents, null);
+        assertInvalid(NotifyMailboxFilter.INBOXES, new String[] { "INBOX" }, messageEvents, null);
+        assertInvalid(NotifyMailboxFilter.SELECTED, null, EnumSet.of(NotifyEvent.MESSAGE_NEW), null);
+        assertInvalid(NotifyMailboxFilter.SELECTED, null, EnumSet.of(NotifyEvent.FLAG_CHANGE, NotifyEvent.MAILBOX_NAME), null);
+        assertInvalid(NotifyMailboxFilter.PERSONAL, null, messageEvents, "UID");
+        assertInvalid(NotifyMailboxFilter.SELECTED, null, EnumSet.of(NotifyEvent.MAILBOX_NAME), "UID");
+    }
+
+    /**
+     * Asserts an event group cannot be created.
+     *
+     * @param filter filter of the mailboxes
+     * @param mailboxes mailbox names
+     * @param events events requested
+     * @param fetchItems fetch attributes of MessageNew
+     */
+    private static void assertInvalid(final NotifyMailboxFilter filter, final String[] mailboxes, final Set<NotifyEvent> events,
+            final String fetchItems) {
+        ImapAsyncClientException actual = null;
+        try {
+            new NotifyEventGroup(filter, mailboxes, events, fetchItems);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Expect exception to be thrown.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests event group getters.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testEventGroupGetters() throws ImapAsyncClientException {
+        final NotifyEventGroup group = new NotifyEventGroup(NotifyMailboxFilter.SELECTED_DELAYED, null,
+                EnumSet.of(NotifyEvent.MESSAGE_EXPUNGE, NotifyEvent.MESSAGE_NEW), "FLAGS");
+        Assert.assertSame(group.getFilter(), NotifyMailboxFilter.SELECTED_DELAYED, "getFilter() mismatched.");
+        Assert.assertEquals(group.getFilter().getName(), "selected-delayed", "getName() mismatched.");
+        Assert.assertNull(group.getMailboxes(), "getMailboxes() mismatched.");
+        Assert.assertEquals(group.getEvents(), EnumSet.of(NotifyEvent.MESSAGE_NEW, NotifyEvent.MESSAGE_EXPUNGE), "getEvents() mismatched.");
+        Assert.assertEquals(group.getMessageNewFetchItems(), "FLAGS", "getMessageNewFetchItems() mismatched.");
+    }
+
+    /**
+     * Tests getCommandType method.
+     */
+    @Test
+    public void testGetCommandType() {
+        final ImapRequest cmd = new NotifyCommand();
+        Assert.assertSame(cmd.getCommandType(), ImapRFCSupportedCommandType.NOTIFY);
+    }
+}
@@ -5,12 +5,14 @@ import java.lang.reflect.Modifier;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.client.ImapLiteralSink;
 
 /**
  * Unit test for {@link UidFetchCommand}.
@@ -129,6 +131,27 @@ public class UidFetchCommandTest {
         }
     }
 
+    /**
+     * Tests setLiteralSink and getLiteralSink methods.
+     *
+     * @throws IllegalAccessException will not throw
+     * @throws IllegalArgumentException will not throw
+     */
+    @Test
+    public void testLiteralSink() throws IllegalArgumentException, IllegalAccessException {
+        final UidFetchCommand cmd = new UidFetchCommand("1:*", "BODY.PEEK[]");
+        Assert.assertNull(cmd.getLiteralSink(), "Literal sink should not be set by default.");
+        final ImapLiteralSink sink = Mockito.mock(ImapLiteralSink.class);
+        cmd.setLiteralSink(sink);
+        Assert.assertSame(cmd.getLiteralSink(), sink, "Literal sink mismatched.");
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
     /**
      * Tests getCommandType method.
      */
@@ -19,9 +19,14 @@ import com.sun.mail.imap.protocol.ListInfo;
 import com.sun.mail.imap.protocol.MailboxInfo;
 import com.sun.mail.imap.protocol.Status;
 import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.ESearchResult;
 import com.yahoo.imapnio.async.data.ExtensionMailboxInfo;
+import com.yahoo.imapnio.async.data.FetchMessage;
+import com.yahoo.imapnio.async.data.FetchResult;
 import com.yahoo.imapnio.async.data.IdResult;
 import com.yahoo.imapnio.async.data.ListInfoList;
+import com.yahoo.imapnio.async.data.ListStatusResult;
+import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.data.SearchResult;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
@@ -531,6 +536,39 @@ public class ImapResponseMapperTest {
         }
     }
 
+    /**
+     * Tests parsing LIST responses with the STATUS return option (RFC5819).
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseListStatusResult() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = { new IMAPResponse("* LIST () \".\" \"INBOX\""),
+                new IMAPResponse("* STATUS \"INBOX\" (MESSAGES 17 UNSEEN 16)"), new IMAPResponse("* LIST (\\Noselect) \".\" \"foo\""),
+                new IMAPResponse("* LIST () \".\" \"Lists &AOQ-\""), new IMAPResponse("* STATUS \"Lists &AOQ-\" (MESSAGES 3)"),
+                new IMAPResponse("* STATUS \"Lists &AOQ-\" (UNSEEN 1)"), new IMAPResponse("a3 OK List completed.") };
+        final ListStatusResult result = mapper.readValue(content, ListStatusResult.class);
+        Assert.assertEquals(result.getListInfoList().getListInfo().size(), 3, "ListInfo count mismatched.");
+        Assert.assertEquals(result.getStatuses().size(), 2, "Status count mismatched.");
+        Assert.assertEquals(result.getStatus("INBOX").total, 17, "MESSAGES mismatched.");
+        Assert.assertEquals(result.getStatus("INBOX").unseen, 16, "UNSEEN mismatched.");
+        Assert.assertNull(result.getStatus("foo"), "Mailbox which cannot be selected should have no status.");
+        Assert.assertEquals(result.getStatus("Lists \u00e4").total, 3, "MESSAGES mismatched.");
+        Assert.assertEquals(result.getStatus("Lists \u00e4").unseen, 1, "UNSEEN mismatched.");
+
+        ImapAsyncClientException cause = null;
+        try {
+            mapper.readValue(new IMAPResponse[] { new IMAPResponse("a3 NO LIST failed") }, ListStatusResult.class);
+        } catch (final ImapAsyncClientException e) {
+            cause = e;
+        }
+        Assert.assertNotNull(cause, "Expect exception to be thrown.");
+        Assert.assertEquals(cause.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+
     /**
      * Tests parseListInfos method successfully when responses are results of LSUB command.
      *
@@ -994,6 +1032,32 @@ public class ImapResponseMapperTest {
         Assert.assertEquals(list.get(0), Long.valueOf(150404), "getMessageSequence() mismatched.");
         Assert.assertEquals(list.get(1), Long.valueOf(150406), "getMessageSequence() mismatched.");
         Assert.assertEquals(list.get(2), Long.valueOf(150407), "getMessageSequence() mismatched.");
+        Assert.assertEquals(result.getCount(), 3, "getCount() mismatched.");
+        Assert.assertEquals(result.getMessageNumberArray(), new long[] { 150404, 150406, 150407 }, "getMessageNumberArray() mismatched.");
+    }
+
+    /**
+     * Tests parseSearchResult method with more numbers than the initial capacity, over multiple SEARCH responses.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToSearchResultManyNumbers() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final StringBuilder sb = new StringBuilder("* SEARCH");
+        for (int i = 1; i <= 150; i++) {
+            sb.append(' ').append(i);
+        }
+        final IMAPResponse[] content = new IMAPResponse[3];
+        content[0] = new IMAPResponse(sb.append("\r\n").toString());
+        content[1] = new IMAPResponse("* SEARCH 200\r\n");
+        content[2] = new IMAPResponse("a3 OK UID SEARCH completed\r\n");
+
+        final SearchResult result = mapper.readValue(content, SearchResult.class);
+        Assert.assertEquals(result.getCount(), 151, "getCount() mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildString(result.toMessageNumberSets()), "1:150,200", "toMessageNumberSets() mismatched.");
     }
 
     /**
@@ -1062,4 +1126,146 @@ public class ImapResponseMapperTest {
         Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
         Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
     }
+
+    /**
+     * Tests parseToFetchResult method successfully.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToFetchResult() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = new IMAPResponse[4];
+        content[0] = new IMAPResponse("* 1 FETCH (UID 100 FLAGS (\\Seen))\r\n");
+        content[1] = new IMAPResponse("* 3 EXPUNGE\r\n");
+        content[2] = new IMAPResponse("* 2 FETCH (UID 101 FLAGS ())\r\n");
+        content[3] = new IMAPResponse("a3 OK UID FETCH completed\r\n");
+
+        final FetchResult result = mapper.readValue(content, FetchResult.class);
+
+        // verify the result
+        Assert.assertNotNull(result, "result mismatched.");
+        final List<FetchMessage> messages = result.getMessages();
+        Assert.assertEquals(messages.size(), 2, "Messages count mismatched.");
+        Assert.assertEquals(messages.get(0).getMessageNumber(), 1, "Message number mismatched.");
+        Assert.assertEquals(messages.get(0).getUid(), 100L, "UID mismatched.");
+        Assert.assertTrue(messages.get(0).getFlags().contains(Flag.SEEN), "Flags mismatched.");
+        Assert.assertEquals(messages.get(1).getUid(), 101L, "UID mismatched.");
+        Assert.assertEquals(messages.get(1).getFlags().getSystemFlags().length, 0, "Flags mismatched.");
+    }
+
+    /**
+     * Tests parseToFetchResult method when tagged response is not OK.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testParseToFetchResultNotOK() throws IOException, ProtocolException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = new IMAPResponse[1];
+        content[0] = new IMAPResponse("a3 NO FETCH failed\r\n");
+
+        ImapAsyncClientException actual = null;
+        try {
+            mapper.readValue(content, FetchResult.class);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        // verify the result
+        Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        actual = null;
+        try {
+            mapper.readValue(new IMAPResponse[0], FetchResult.class);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+    }
+
+    /**
+     * Tests parseToESearchResult method with all return data, correlated to the tagged response.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToESearchResult() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = new IMAPResponse[4];
+        content[0] = new IMAPResponse("* ESEARCH (TAG \"a2\") UID COUNT 2 ALL 5\r\n");
+        content[1] = new IMAPResponse("* ESEARCH (TAG \"a3\") UID MIN 4 MAX 20 COUNT 6 XFOO (1 (2 3)) ALL 4,10:11,18:20 MODSEQ 917162500\r\n");
+        content[2] = new IMAPResponse("* 3 EXISTS\r\n");
+        content[3] = new IMAPResponse("a3 OK UID SEARCH completed\r\n");
+
+        final ESearchResult result = mapper.readValue(content, ESearchResult.class);
+        Assert.assertEquals(result.getTag(), "a3", "getTag() mismatched.");
+        Assert.assertTrue(result.isUid(), "isUid() mismatched.");
+        Assert.assertEquals(result.getMin(), 4L, "getMin() mismatched.");
+        Assert.assertEquals(result.getMax(), 20L, "getMax() mismatched.");
+        Assert.assertEquals(result.getCount(), 6L, "getCount() mismatched.");
+        Assert.assertEquals(MessageNumberSet.buildString(result.getAll()), "4,10:11,18:20", "getAll() mismatched.");
+        Assert.assertEquals(result.getModSeq(), 917162500L, "getModSeq() mismatched.");
+    }
+
+    /**
+     * Tests parseToESearchResult method when nothing is found, and when the server returns no ESEARCH response.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToESearchResultNothingFound() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = new IMAPResponse[2];
+        content[0] = new IMAPResponse("* ESEARCH COUNT 0\r\n");
+        content[1] = new IMAPResponse("a3 OK SEARCH completed\r\n");
+
+        ESearchResult result = mapper.readValue(content, ESearchResult.class);
+        Assert.assertNull(result.getTag(), "getTag() mismatched.");
+        Assert.assertFalse(result.isUid(), "isUid() mismatched.");
+        Assert.assertEquals(result.getCount(), 0L, "getCount() mismatched.");
+        Assert.assertEquals(result.getMin(), -1L, "getMin() mismatched.");
+        Assert.assertNull(result.getAll(), "getAll() mismatched.");
+
+        result = mapper.readValue(new IMAPResponse[] { content[1] }, ESearchResult.class);
+        Assert.assertEquals(result.getCount(), -1L, "getCount() mismatched.");
+    }
+
+    /**
+     * Tests parseToESearchResult method when tagged response is not OK and when ALL is not a valid sequence-set.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testParseToESearchResultInvalid() throws IOException, ProtocolException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        ImapAsyncClientException actual = null;
+        try {
+            mapper.readValue(new IMAPResponse[] { new IMAPResponse("a3 NO SEARCH failed\r\n") }, ESearchResult.class);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        actual = null;
+        final IMAPResponse[] content = new IMAPResponse[2];
+        content[0] = new IMAPResponse("* ESEARCH ALL 1:x\r\n");
+        content[1] = new IMAPResponse("a3 OK SEARCH completed\r\n");
+        try {
+            mapper.readValue(content, ESearchResult.class);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "ImapAsyncClientException should occur.");
+        Assert.assertEquals(actual.getFailureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
 }
@@ -1,12 +1,16 @@
 package com.yahoo.imapnio.client;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
 
 /**
  * Unit test for {@link ImapClientRespReader}.
@@ -312,4 +316,228 @@ public class ImapClientRespReaderTest {
         final String result = resultBuf3.toString(StandardCharsets.US_ASCII);
         Assert.assertEquals(result, literalResponse3, "decode() result mismatched.");
     }
+
+    /**
+     * Tests literal data spanning 2 input buffers is aggregated as slices of the input buffers rather than copied.
+     *
+     * @throws Exception not for this test
+     */
+    @Test
+    public void testDecodeLiteralResponseWithoutCopy() throws Exception {
+        final ByteBuf inputBuf1 = Unpooled.copiedBuffer("* 1 FETCH (BODY[] {15}\r\nabcdefgh", StandardCharsets.US_ASCII);
+        final ByteBuf inputBuf2 = Unpooled.copiedBuffer("ijklmno)\r\n", StandardCharsets.US_ASCII);
+        final ImapClientRespReader respReader = new ImapClientRespReader(Integer.MAX_VALUE);
+        Assert.assertNull(respReader.decode(null, inputBuf1), "should not return the result");
+        final ByteBuf resultBuf = (ByteBuf) respReader.decode(null, inputBuf2);
+
+        Assert.assertTrue(resultBuf instanceof CompositeByteBuf, "Literal response should be aggregated in composite buffer.");
+        Assert.assertEquals(((CompositeByteBuf) resultBuf).numComponents(), 4, "Components count mismatched.");
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII), "* 1 FETCH (BODY[] {15}\r\nabcdefghijklmno)\r\n", "data mismatched.");
+        Assert.assertEquals(inputBuf1.refCnt(), 3, "Input buffer should be retained by the line and literal slices.");
+        Assert.assertEquals(inputBuf2.refCnt(), 3, "Input buffer should be retained by the literal and line slices.");
+
+        // modifying input buffer is visible through the result since data is not copied
+        inputBuf2.setByte(0, 'I');
+        Assert.assertEquals(resultBuf.getByte(32), (byte) 'I', "Result should share memory with input buffer.");
+
+        final List<ByteBuf> literals = ImapClientRespReader.getLiteralSlices(resultBuf);
+        Assert.assertEquals(literals.size(), 1, "Literals count mismatched.");
+        Assert.assertEquals(literals.get(0).toString(StandardCharsets.US_ASCII), "abcdefghIjklmno", "Literal mismatched.");
+        literals.get(0).release();
+
+        resultBuf.release();
+        inputBuf1.release();
+        inputBuf2.release();
+        Assert.assertEquals(inputBuf1.refCnt(), 0, "All slices should be released.");
+        Assert.assertEquals(inputBuf2.refCnt(), 0, "All slices should be released.");
+    }
+
+    /**
+     * Tests getLiteralSlices method with multiple literals, a literal containing CRLF and curly braces, and a response without literal.
+     *
+     * @throws Exception not for this test
+     */
+    @Test
+    public void testGetLiteralSlices() throws Exception {
+        final String response = "* 1 FETCH (BODY[1] {9}\r\na{2}\r\nbcd BODY[2] {0}\r\n BODY[3] {3}\r\nxyz)\r\n";
+        final ByteBuf frame = Unpooled.copiedBuffer(response, StandardCharsets.US_ASCII);
+        final List<ByteBuf> literals = ImapClientRespReader.getLiteralSlices(frame);
+        Assert.assertEquals(literals.size(), 3, "Literals count mismatched.");
+        Assert.assertEquals(literals.get(0).toString(StandardCharsets.US_ASCII), "a{2}\r\nbcd", "Literal mismatched.");
+        Assert.assertEquals(literals.get(1).readableBytes(), 0, "Literal mismatched.");
+        Assert.assertEquals(literals.get(2).toString(StandardCharsets.US_ASCII), "xyz", "Literal mismatched.");
+        Assert.assertEquals(frame.refCnt(), 4, "Each literal slice should retain the frame.");
+        Assert.assertEquals(frame.readerIndex(), 0, "Reader index should not be modified.");
+        for (final ByteBuf literal : literals) {
+            literal.release();
+        }
+        Assert.assertEquals(frame.refCnt(), 1, "Reference count mismatched.");
+
+        final ByteBuf line = Unpooled.copiedBuffer("* 1 FETCH (UID 1)\r\n", StandardCharsets.US_ASCII);
+        Assert.assertTrue(ImapClientRespReader.getLiteralSlices(line).isEmpty(), "No literal expected.");
+        frame.release();
+        line.release();
+    }
+
+    /**
+     * Sink recording the calls, accepting the literals of the given section only.
+     */
+    private static final class RecordingSink implements ImapLiteralSink {
+        /** Section to accept. */
+        private final String acceptedSection;
+
+        /** Recorded calls. */
+        private final List<String> events = new ArrayList<String>();
+
+        /**
+         * Initializes a {@link RecordingSink} object.
+         *
+         * @param acceptedSection section to accept
+         */
+        RecordingSink(final String acceptedSection) {
+            this.acceptedSection = acceptedSection;
+        }
+
+        @Override
+        public boolean onLiteralStart(final long messageNumber, final String section, final int size) {
+            events.add("start:" + messageNumber + ":" + section + ":" + size);
+            return section.equals(acceptedSection);
+        }
+
+        @Override
+        public void onLiteralData(final ByteBuf chunk) {
+            events.add("data:" + chunk.toString(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void onLiteralEnd() {
+            events.add("end");
+        }
+
+        @Override
+        public void onLiteralAbort() {
+            events.add("abort");
+        }
+    }
+
+    /**
+     * Tests FETCH literal streamed to the sink in chunks as they arrive, while the literal declined by the sink is kept in the response.
+     *
+     * @throws Exception not for this test
+     */
+    @Test
+    public void testDecodeStreamingLiteral() throws Exception {
+        final RecordingSink sink = new RecordingSink("BODY[]");
+        final ImapClientRespReader respReader = new ImapClientRespReader(Integer.MAX_VALUE);
+        respReader.setLiteralSinkProvider(new ImapClientRespReader.LiteralSinkProvider() {
+            @Override
+            public ImapLiteralSink getLiteralSink() {
+                return sink;
+            }
+        });
+
+        final ByteBuf inputBuf1 = Unpooled.copiedBuffer("* 12 FETCH (UID 5 BODY[HEADER.FIELDS (FROM)] {6}\r\nFrom:x BODY[] {10}\r\n0123",
+                StandardCharsets.US_ASCII);
+        Assert.assertNull(respReader.decode(null, inputBuf1), "should not return the result");
+        Assert.assertEquals(inputBuf1.readableBytes(), 0, "readable bytes should be exhausted.");
+        final ByteBuf inputBuf2 = Unpooled.copiedBuffer("456789)\r\n", StandardCharsets.US_ASCII);
+        final ByteBuf resultBuf = (ByteBuf) respReader.decode(null, inputBuf2);
+
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII),
+                "* 12 FETCH (UID 5 BODY[HEADER.FIELDS (FROM)] {6}\r\nFrom:x BODY[] {0}\r\n)\r\n", "Result mismatched.");
+        Assert.assertEquals(sink.events.size(), 5, "Events count mismatched.");
+        Assert.assertEquals(sink.events.get(0), "start:12:BODY[HEADER.FIELDS (FROM)]:6", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(1), "start:12:BODY[]:10", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(2), "data:0123", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(3), "data:456789", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(4), "end", "Event mismatched.");
+
+        resultBuf.release();
+        inputBuf1.release();
+        inputBuf2.release();
+        Assert.assertEquals(inputBuf1.refCnt(), 0, "All slices should be released.");
+        Assert.assertEquals(inputBuf2.refCnt(), 0, "All slices should be released.");
+    }
+
+    /**
+     * Tests the literal being streamed is aborted when the reader is removed from the pipeline, and a literal fully streamed is not.
+     */
+    @Test
+    public void testHandlerRemovedAbortsStreamingLiteral() {
+        final RecordingSink sink = new RecordingSink("BODY[]");
+        final ImapClientRespReader respReader = new ImapClientRespReader(Integer.MAX_VALUE);
+        respReader.setLiteralSinkProvider(new ImapClientRespReader.LiteralSinkProvider() {
+            @Override
+            public ImapLiteralSink getLiteralSink() {
+                return sink;
+            }
+        });
+        final EmbeddedChannel channel = new EmbeddedChannel(respReader);
+        channel.writeInbound(Unpooled.copiedBuffer("* 3 FETCH (BODY[] {10}\r\n0123", StandardCharsets.US_ASCII));
+        channel.pipeline().remove(respReader);
+        Assert.assertEquals(sink.events.size(), 3, "Events count mismatched.");
+        Assert.assertEquals(sink.events.get(1), "data:0123", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(2), "abort", "Event mismatched.");
+        Assert.assertNull(channel.readInbound(), "Partial response should not be passed on.");
+
+        final RecordingSink completedSink = new RecordingSink("BODY[]");
+        final ImapClientRespReader completedReader = new ImapClientRespReader(Integer.MAX_VALUE);
+        completedReader.setLiteralSinkProvider(new ImapClientRespReader.LiteralSinkProvider() {
+            @Override
+            public ImapLiteralSink getLiteralSink() {
+                return completedSink;
+            }
+        });
+        final EmbeddedChannel completedChannel = new EmbeddedChannel(completedReader);
+        completedChannel.writeInbound(Unpooled.copiedBuffer("* 3 FETCH (BODY[] {2}\r\nab)\r\n", StandardCharsets.US_ASCII));
+        completedChannel.pipeline().remove(completedReader);
+        Assert.assertEquals(completedSink.events.get(completedSink.events.size() - 1), "end", "Completed literal should not be aborted.");
+        ((ByteBuf) completedChannel.readInbound()).release();
+        channel.finishAndReleaseAll();
+        completedChannel.finishAndReleaseAll();
+    }
+
+    /**
+     * Tests literals of non FETCH responses and non body items are not streamed, and partial and empty literals are streamed.
+     *
+     * @throws Exception not for this test
+     */
+    @Test
+    public void testDecodeStreamingLiteralSelection() throws Exception {
+        final RecordingSink sink = new RecordingSink("BODY[]<0>");
+        final ImapClientRespReader respReader = new ImapClientRespReader(Integer.MAX_VALUE);
+        respReader.setLiteralSinkProvider(new ImapClientRespReader.LiteralSinkProvider() {
+            @Override
+            public ImapLiteralSink getLiteralSink() {
+                return sink;
+            }
+        });
+
+        // not a FETCH response
+        ByteBuf resultBuf = (ByteBuf) respReader.decode(null, Unpooled.copiedBuffer("* LIST () \"/\" {3}\r\nabc\r\n", StandardCharsets.US_ASCII));
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII), "* LIST () \"/\" {3}\r\nabc\r\n", "Result mismatched.");
+        resultBuf.release();
+
+        // literal in envelope
+        final String envelope = "* 1 FETCH (ENVELOPE (NIL {2}\r\nhi NIL))\r\n";
+        resultBuf = (ByteBuf) respReader.decode(null, Unpooled.copiedBuffer(envelope, StandardCharsets.US_ASCII));
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII), "* 1 FETCH (ENVELOPE (NIL {2}\r\nhi NIL))\r\n", "Result mismatched.");
+        resultBuf.release();
+        Assert.assertTrue(sink.events.isEmpty(), "Sink should not be asked.");
+
+        // partial and empty literals
+        resultBuf = (ByteBuf) respReader.decode(null, Unpooled.copiedBuffer("* 7 fetch (BODY[]<0> {0}\r\n)\r\n", StandardCharsets.US_ASCII));
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII), "* 7 fetch (BODY[]<0> {0}\r\n)\r\n", "Result mismatched.");
+        resultBuf.release();
+        Assert.assertEquals(sink.events.size(), 2, "Events count mismatched.");
+        Assert.assertEquals(sink.events.get(0), "start:7:BODY[]<0>:0", "Event mismatched.");
+        Assert.assertEquals(sink.events.get(1), "end", "Event mismatched.");
+
+        // no sink provided
+        respReader.setLiteralSinkProvider(null);
+        resultBuf = (ByteBuf) respReader.decode(null, Unpooled.copiedBuffer("* 7 FETCH (BODY[]<0> {1}\r\nx)\r\n", StandardCharsets.US_ASCII));
+        Assert.assertEquals(resultBuf.toString(StandardCharsets.US_ASCII), "* 7 FETCH (BODY[]<0> {1}\r\nx)\r\n", "Result mismatched.");
+        resultBuf.release();
+        Assert.assertEquals(sink.events.size(), 2, "Sink should not be asked.");
+    }
 }
@@ -0,0 +1,106 @@
+package com.yahoo.imapnio.command;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.BODY;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Unit test for {@link ImapClientRespDecoder}.
+ */
+public class ImapClientRespDecoderTest {
+
+    /**
+     * Tests decode method for tagged, untagged and continuation responses.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testDecode() throws IOException, ProtocolException {
+        final ImapClientRespDecoder decoder = new ImapClientRespDecoder();
+        final List<Object> out = new ArrayList<Object>();
+        final ByteBuf tagged = Unpooled.copiedBuffer("a1 OK LOGIN completed\r\n", StandardCharsets.US_ASCII);
+        decoder.decode(null, tagged, out);
+        Assert.assertEquals(tagged.readableBytes(), 0, "Frame should be consumed.");
+        final ByteBuf untagged = Unpooled.copiedBuffer("* 3 EXISTS\r\n", StandardCharsets.US_ASCII);
+        decoder.decode(null, untagged, out);
+        final ByteBuf continuation = Unpooled.copiedBuffer("+ idling\r\n", StandardCharsets.US_ASCII);
+        decoder.decode(null, continuation, out);
+        Assert.assertEquals(out.size(), 3, "Result count mismatched.");
+
+        final IMAPResponse okResp = (IMAPResponse) out.get(0);
+        Assert.assertTrue(okResp.isTagged(), "Should be tagged.");
+        Assert.assertTrue(okResp.isOK(), "Should be OK.");
+        Assert.assertEquals(okResp.getTag(), "a1", "Tag mismatched.");
+        Assert.assertEquals(okResp.getRest(), "LOGIN completed", "Rest mismatched.");
+
+        final IMAPResponse existsResp = (IMAPResponse) out.get(1);
+        Assert.assertTrue(existsResp.isUnTagged(), "Should be untagged.");
+        Assert.assertEquals(existsResp.getKey(), "EXISTS", "Key mismatched.");
+        Assert.assertEquals(existsResp.getNumber(), 3, "Number mismatched.");
+
+        final IMAPResponse contResp = (IMAPResponse) out.get(2);
+        Assert.assertTrue(contResp.isContinuation(), "Should be continuation.");
+        Assert.assertEquals(contResp.getRest(), "idling", "Rest mismatched.");
+    }
+
+    /**
+     * Tests decode method keeps 8-bit literal data intact.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testDecode8BitLiteral() throws IOException, ProtocolException {
+        final byte[] body = "Grüße".getBytes(StandardCharsets.UTF_8);
+        final ByteBuf frame = Unpooled.buffer();
+        frame.writeCharSequence("* 1 FETCH (BODY[] {" + body.length + "}\r\n", StandardCharsets.US_ASCII);
+        frame.writeBytes(body);
+        frame.writeCharSequence(")\r\n", StandardCharsets.US_ASCII);
+
+        final IMAPResponse resp = new ImapClientRespDecoder().parse(frame);
+        final FetchResponse fetchResp = new FetchResponse(resp);
+        final BODY bodyItem = fetchResp.getItem(BODY.class);
+        Assert.assertNotNull(bodyItem, "BODY item should be parsed.");
+        Assert.assertEquals(new String(bodyItem.getByteArray().getNewBytes(), StandardCharsets.UTF_8), "Grüße", "Literal mismatched.");
+        frame.release();
+    }
+
+    /**
+     * Tests parsing frames which are slices of a larger buffer or direct buffers, the response not sharing the frame bytes.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testParseSliceAndDirect() throws IOException, ProtocolException {
+        final ImapClientRespDecoder decoder = new ImapClientRespDecoder();
+        final ByteBuf cumulation = Unpooled.copiedBuffer("* 1 EXISTS\r\n* 2 RECENT\r\n", StandardCharsets.US_ASCII);
+        cumulation.skipBytes("* 1 EXISTS\r\n".length());
+        final ByteBuf slice = cumulation.readSlice(cumulation.readableBytes());
+        final IMAPResponse copied = decoder.parse(slice);
+        Assert.assertEquals(copied.getNumber(), 2, "Number mismatched.");
+        Assert.assertEquals(copied.getKey(), "RECENT", "Key mismatched.");
+        Assert.assertEquals(slice.readableBytes(), 0, "Frame should be consumed.");
+        slice.setByte(2, '5');
+        Assert.assertEquals(copied.toString(), "* 2 RECENT", "Response should not share the frame bytes.");
+
+        final ByteBuf direct = Unpooled.directBuffer();
+        direct.writeCharSequence("a2 OK done\r\n", StandardCharsets.US_ASCII);
+        Assert.assertTrue(decoder.parse(direct).isOK(), "Direct frame should be parsed.");
+        direct.release();
+        cumulation.release();
+    }
+}